@@ -1,12 +1,16 @@
 package ml.echelon133.blobb;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 @SpringBootApplication
+@EnableScheduling
 public class BlobbApplication {
 
 	@Bean
@@ -14,6 +18,16 @@ public class BlobbApplication {
 		return new BCryptPasswordEncoder();
 	}
 
+	// scheduled tasks get their own threads, so that a long reconciliation of counters
+	// does not delay frequent flushes of buffered likes
+	@Bean
+	public ThreadPoolTaskScheduler taskScheduler(@Value("${blobb.scheduling.pool-size:4}") int poolSize) {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setPoolSize(poolSize);
+		scheduler.setThreadNamePrefix("blobb-scheduling-");
+		return scheduler;
+	}
+
 	public static void main(String[] args) {
 		SpringApplication.run(BlobbApplication.class, args);
 	}
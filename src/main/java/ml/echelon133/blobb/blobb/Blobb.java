@@ -1,5 +1,6 @@
 package ml.echelon133.blobb.blobb;
 
+import ml.echelon133.blobb.schema.EpochMillisDateConverter;
 import ml.echelon133.blobb.tag.Tag;
 import ml.echelon133.blobb.user.User;
 import org.neo4j.ogm.annotation.NodeEntity;
@@ -22,6 +23,7 @@ public class Blobb {
     @Convert(UuidStringConverter.class)
     private UUID uuid;
     private String content;
+    @Convert(EpochMillisDateConverter.class)
     private Date creationDate;
     private boolean deleted;
 
@@ -0,0 +1,87 @@
+package ml.echelon133.blobb.blobb;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/*
+    Bounded cache of blobbs and information about them, which are read every time someone opens a blobb.
+
+    Popular blobbs are requested far more often than they change, so their reads are served from memory.
+    Entries expire after a short time, and BlobbService invalidates them whenever a blobb is deleted,
+    or receives a response or a reblobb. Likes are counted by LikeCounterBuffer, which invalidates information
+    about blobbs whose counters it has written.
+
+    Loading an entry that is missing blocks other threads that request the same uuid until it's loaded,
+    so concurrent reads of a blobb that is not cached only query the database once.
+    Blobbs that don't exist are never cached.
+ */
+@Component
+public class BlobbCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlobbCache.class);
+
+    private Cache<UUID, FeedBlobb> blobbs;
+    private Cache<UUID, BlobbInfo> infos;
+
+    @Autowired
+    public BlobbCache(@Value("${blobb.blobbs.cache.max-size:10000}") long maxSize,
+                      @Value("${blobb.blobbs.cache.ttl:10000}") long ttl) {
+        this.blobbs = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttl))
+                .recordStats()
+                .build();
+        this.infos = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttl))
+                .recordStats()
+                .build();
+    }
+
+    public Optional<FeedBlobb> getBlobb(UUID uuid, Function<UUID, Optional<FeedBlobb>> loader) {
+        return Optional.ofNullable(blobbs.get(uuid, u -> loader.apply(u).orElse(null)));
+    }
+
+    public Optional<BlobbInfo> getInfo(UUID uuid, Function<UUID, Optional<BlobbInfo>> loader) {
+        return Optional.ofNullable(infos.get(uuid, u -> loader.apply(u).orElse(null)));
+    }
+
+    public void invalidate(UUID uuid) {
+        blobbs.invalidate(uuid);
+        infos.invalidate(uuid);
+    }
+
+    public void invalidateInfo(UUID uuid) {
+        infos.invalidate(uuid);
+    }
+
+    public CacheStats getBlobbStats() {
+        return blobbs.stats();
+    }
+
+    public CacheStats getInfoStats() {
+        return infos.stats();
+    }
+
+    @Scheduled(fixedDelayString = "${blobb.blobbs.cache.stats-interval:600000}")
+    public void logStats() {
+        CacheStats blobb = getBlobbStats();
+        CacheStats info = getInfoStats();
+        LOGGER.info("Blobb cache: {} hits, {} misses, {} evictions, hit rate {}; " +
+                        "info cache: {} hits, {} misses, {} evictions, hit rate {}",
+                blobb.hitCount(), blobb.missCount(), blobb.evictionCount(), blobb.hitRate(),
+                info.hitCount(), info.missCount(), info.evictionCount(), info.hitRate());
+    }
+}
@@ -1,5 +1,6 @@
 package ml.echelon133.blobb.blobb;
 
+import ml.echelon133.blobb.pagination.Cursor;
 import ml.echelon133.blobb.user.User;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -43,7 +44,8 @@ public class BlobbController {
     @GetMapping("/{uuid}/responses")
     public ResponseEntity<List<FeedBlobb>> getResponsesToBlobb(@PathVariable String uuid,
                                                                @RequestParam(required = false) Long skip,
-                                                               @RequestParam(required = false) Long limit) throws Exception {
+                                                               @RequestParam(required = false) Long limit,
+                                                               @RequestParam(required = false) String cursor) throws Exception {
         if (skip == null) {
             skip = 0L;
         }
@@ -51,15 +53,23 @@ public class BlobbController {
             limit = 5L;
         }
 
+        List<FeedBlobb> responses;
+        if (cursor == null) {
+            responses = blobbService.getAllResponsesTo(UUID.fromString(uuid), skip, limit);
+        } else {
+            responses = blobbService.getAllResponsesTo(UUID.fromString(uuid), Cursor.decode(cursor), limit);
+        }
         return new ResponseEntity<>(
-                blobbService.getAllResponsesTo(UUID.fromString(uuid), skip, limit),
+                responses,
+                Cursor.nextCursorHeaders(responses, limit, b -> new Cursor(b.getDate(), b.getUuid())),
                 HttpStatus.OK);
     }
 
     @GetMapping("/{uuid}/reblobbs")
     public ResponseEntity<List<FeedBlobb>> getReblobbsOfBlobb(@PathVariable String uuid,
                                                               @RequestParam(required = false) Long skip,
-                                                              @RequestParam(required = false) Long limit) throws Exception {
+                                                              @RequestParam(required = false) Long limit,
+                                                              @RequestParam(required = false) String cursor) throws Exception {
         if (skip == null) {
             skip = 0L;
         }
@@ -67,8 +77,15 @@ public class BlobbController {
             limit = 5L;
         }
 
+        List<FeedBlobb> reblobbs;
+        if (cursor == null) {
+            reblobbs = blobbService.getAllReblobbsOf(UUID.fromString(uuid), skip, limit);
+        } else {
+            reblobbs = blobbService.getAllReblobbsOf(UUID.fromString(uuid), Cursor.decode(cursor), limit);
+        }
         return new ResponseEntity<>(
-                blobbService.getAllReblobbsOf(UUID.fromString(uuid), skip, limit),
+                reblobbs,
+                Cursor.nextCursorHeaders(reblobbs, limit, b -> new Cursor(b.getDate(), b.getUuid())),
                 HttpStatus.OK);
     }
 
@@ -110,13 +127,14 @@ public class BlobbController {
         }
 
         User loggedUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        Blobb savedBlobb = blobbService.postBlobb(loggedUser, blobbDto.getContent());
+        Blobb queuedBlobb = blobbService.postBlobb(loggedUser, blobbDto.getContent());
 
+        // the blobb is written to the database after the response is sent
         return new ResponseEntity<>(
-                Map.of("blobbUUID", savedBlobb.getUuid().toString(),
-                       "content", savedBlobb.getContent(),
+                Map.of("blobbUUID", queuedBlobb.getUuid().toString(),
+                       "content", queuedBlobb.getContent(),
                        "author", loggedUser.getUsername()),
-                HttpStatus.OK
+                HttpStatus.ACCEPTED
         );
     }
 
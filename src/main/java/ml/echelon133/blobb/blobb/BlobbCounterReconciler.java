@@ -0,0 +1,41 @@
+package ml.echelon133.blobb.blobb;
+
+import ml.echelon133.blobb.pagination.UuidBatches;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/*
+    Counters of likes, responses and reblobbs are updated every time one of these is created or removed,
+    but they can still drift away from the real number of relationships (e.g. when the application stops
+    between saving a response and incrementing the counter of its parent). This job periodically recomputes
+    all counters from the relationships. It also runs right after the start of the application,
+    so that blobbs created before counters existed get theirs.
+ */
+@Component
+public class BlobbCounterReconciler {
+
+    private BlobbRepository blobbRepository;
+    private LikeCounterBuffer likeCounterBuffer;
+    private long batchSize;
+
+    @Autowired
+    public BlobbCounterReconciler(BlobbRepository blobbRepository,
+                                  LikeCounterBuffer likeCounterBuffer,
+                                  @Value("${blobb.counters.reconcile.batch-size:1000}") long batchSize) {
+        this.blobbRepository = blobbRepository;
+        this.likeCounterBuffer = likeCounterBuffer;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${blobb.counters.reconcile.initial-delay:0}",
+               fixedDelayString = "${blobb.counters.reconcile.interval:3600000}")
+    public void reconcile() {
+        UuidBatches.processAll(batchSize, (afterUuid, limit) ->
+                // likes that are still in the buffer are already counted by their relationships,
+                // so they are left out of the counters until the buffer flushes them
+                likeCounterBuffer.withPendingDeltas(pending ->
+                        blobbRepository.reconcileCountersOfBlobbs(afterUuid, limit, pending)));
+    }
+}
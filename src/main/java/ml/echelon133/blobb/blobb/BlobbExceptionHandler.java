@@ -1,6 +1,7 @@
 package ml.echelon133.blobb.blobb;
 
 import ml.echelon133.blobb.exception.AbstractExceptionHandler;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -44,4 +45,18 @@ public class BlobbExceptionHandler extends AbstractExceptionHandler {
                 HttpStatus.FORBIDDEN
         );
     }
+
+    @ExceptionHandler(value = BlobbQueueFullException.class)
+    protected ResponseEntity<ErrorMessage> handleBlobbQueueFullException(BlobbQueueFullException ex, WebRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        return new ResponseEntity<>(
+                new ErrorMessage(new Date(),
+                        request.getDescription(false),
+                        HttpStatus.SERVICE_UNAVAILABLE,
+                        ex.getMessage()),
+                headers,
+                HttpStatus.SERVICE_UNAVAILABLE
+        );
+    }
 }
@@ -0,0 +1,166 @@
+package ml.echelon133.blobb.blobb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/*
+    Bounded queue of blobbs that have been accepted, but have not been written to the database yet.
+
+    Posting a blobb only validates it and assigns its uuid, then the blobb is put into this queue
+    and the request is answered without waiting for the database. A single writer thread drains the queue
+    in batches of at most 'batch-size' blobbs, and hands every batch to the writer registered by BlobbService,
+    which writes it with a single query.
+
+    Blobbs are rejected once the queue is full, so that clients back off instead of piling up blobbs in memory.
+    When the application stops, new blobbs are rejected and all queued blobbs are written before
+    any beans are destroyed.
+
+    A batch that cannot be written is written again up to 'max-attempts' times, waiting 'retry-delay' ms
+    before the first retry and twice as long before every next one. Accepted blobbs are never dropped silently:
+    if the last attempt fails too, every blobb of the batch is logged in full by the dead letter logger,
+    so that it can be replayed later.
+ */
+@Component
+public class BlobbIngestionQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlobbIngestionQueue.class);
+    private static final Logger DEAD_LETTERS = LoggerFactory.getLogger(BlobbIngestionQueue.class.getName() + ".DeadLetters");
+    private static final long POLL_TIMEOUT = 100;
+
+    private BlockingQueue<Blobb> queue;
+    private int batchSize;
+    private int maxAttempts;
+    private long retryDelay;
+    private volatile Consumer<List<Blobb>> writer = batch -> {};
+
+    // offering blobbs holds the read lock, so that once the queue stops accepting blobbs
+    // no blobb can be added after the final flush
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean accepting = true;
+    private Thread writerThread;
+
+    @Autowired
+    public BlobbIngestionQueue(@Value("${blobb.ingestion.capacity:10000}") int capacity,
+                               @Value("${blobb.ingestion.batch-size:100}") int batchSize,
+                               @Value("${blobb.ingestion.max-attempts:5}") int maxAttempts,
+                               @Value("${blobb.ingestion.retry-delay:100}") long retryDelay) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+    }
+
+    public void setWriter(Consumer<List<Blobb>> writer) {
+        this.writer = writer;
+    }
+
+    public boolean offer(Blobb blobb) {
+        lock.readLock().lock();
+        try {
+            return accepting && queue.offer(blobb);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (writerThread != null) {
+            return;
+        }
+        writerThread = new Thread(this::drain, "blobb-ingestion-writer");
+        writerThread.start();
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public synchronized void stop() {
+        lock.writeLock().lock();
+        try {
+            accepting = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (writerThread != null) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            writerThread = null;
+        }
+        flush();
+    }
+
+    // writes queued blobbs in batches until the queue is empty
+    synchronized void flush() {
+        List<Blobb> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    private void drain() {
+        while (accepting) {
+            try {
+                Blobb first = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<Blobb> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException ex) {
+                // blobbs that are left in the queue are written by stop()
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // used both by the writer thread and by the final flush, so batches are retried during shutdown too
+    private void write(List<Blobb> batch) {
+        long delay = retryDelay;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writer.accept(batch);
+                return;
+            } catch (RuntimeException ex) {
+                if (attempt >= maxAttempts) {
+                    LOGGER.error("Failed to write a batch of {} blobbs after {} attempts", batch.size(), attempt, ex);
+                    break;
+                }
+                LOGGER.warn("Failed to write a batch of {} blobbs, retrying in {} ms", batch.size(), delay, ex);
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            delay *= 2;
+        }
+        batch.forEach(BlobbIngestionQueue::logDeadLetter);
+    }
+
+    private static void logDeadLetter(Blobb blobb) {
+        DEAD_LETTERS.error("uuid={} author={} creationDate={} content={}",
+                blobb.getUuid(), blobb.getAuthor().getUuid(), blobb.getCreationDate().getTime(), blobb.getContent());
+    }
+}
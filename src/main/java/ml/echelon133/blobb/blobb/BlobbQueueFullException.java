@@ -0,0 +1,8 @@
+package ml.echelon133.blobb.blobb;
+
+public class BlobbQueueFullException extends Exception {
+
+    public BlobbQueueFullException() {
+        super("Too many blobbs are being posted, try again later");
+    }
+}
@@ -3,14 +3,21 @@ package ml.echelon133.blobb.blobb;
 import org.springframework.data.neo4j.annotation.Query;
 import org.springframework.data.neo4j.repository.Neo4jRepository;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface BlobbRepository extends Neo4jRepository<Blobb, UUID> {
 
     /*
+        Blobbs that are marked as deleted lose their 'Blobb', 'ResponseBlobb' and 'Reblobb' labels
+        and get the 'DeletedBlobb' label instead, so queries that match these labels never read deleted blobbs
+        and don't have to filter them out. Blobbs that respond to or reblobb a deleted blobb still reference it,
+        which is why their parents are matched only by the type of the relationship.
+
         User's feed consists of most recent blobbs/reblobbs/responses that have been posted
         either by themselves or users that they follow.
 
@@ -19,71 +26,293 @@ public interface BlobbRepository extends Neo4jRepository<Blobb, UUID> {
         results.
      */
     @Query( "MATCH (u:User)-[:FOLLOWS]->(poster:User)-[:POSTS]->(blobbs:Blobb) " +
-            "WHERE u.uuid = $uuid AND blobbs.creationDate >= $first AND blobbs.creationDate <= $second AND blobbs.deleted <> true " +
-            "OPTIONAL MATCH (blobbs:Blobb)-[:RESPONDS]->(respondsTo:Blobb) " +
-            "OPTIONAL MATCH (blobbs:Blobb)-[:REBLOBBS]->(reblobbs:Blobb) " +
-            "RETURN blobbs.uuid AS uuid, blobbs.content AS content, blobbs.creationDate AS date, poster AS author, " +
+            "WHERE u.uuid = $uuid AND blobbs.creationDate >= datetime($first).epochMillis AND blobbs.creationDate <= datetime($second).epochMillis " +
+            "OPTIONAL MATCH (blobbs:Blobb)-[:RESPONDS]->(respondsTo) " +
+            "OPTIONAL MATCH (blobbs:Blobb)-[:REBLOBBS]->(reblobbs) " +
+            "RETURN blobbs.uuid AS uuid, blobbs.content AS content, blobbs.creationDate AS date, poster {.uuid, .username, .displayedUsername, .aviURL} AS author, " +
             "reblobbs.uuid AS reblobbs, respondsTo.uuid AS respondsTo " +
-            "ORDER BY datetime(blobbs.creationDate) DESC SKIP $skip LIMIT $limit ")
+            "ORDER BY blobbs.creationDate DESC, blobbs.uuid DESC SKIP $skip LIMIT $limit ")
     List<FeedBlobb> getFeedForUserWithUuid_PostedBetween(UUID uuid, Date first, Date second, Long skip, Long limit);
 
+    // creation dates are stored as milliseconds since the epoch, while date parameters are sent as strings,
+    // so every parameter is converted once with datetime($param).epochMillis and stored dates are compared
+    // and ordered without any conversion, which lets the index on creationDate be used
     @Query( "MATCH (u:User)-[:FOLLOWS]->(poster:User)-[:POSTS]->(blobbs:Blobb) " +
-            "WHERE u.uuid = $uuid AND blobbs.creationDate >= $first AND blobbs.creationDate <= $second AND blobbs.deleted <> true " +
-            "OPTIONAL MATCH (blobbs:Blobb)-[:RESPONDS]->(respondsTo:Blobb) " +
-            "OPTIONAL MATCH (blobbs:Blobb)-[:REBLOBBS]->(reblobbs:Blobb) " +
-            "OPTIONAL MATCH (:User)-[l:LIKES]->(blobbs) " +
-            "WITH blobbs, reblobbs, respondsTo, poster, count(l) as amountLikes " +
-            "RETURN blobbs.uuid AS uuid, blobbs.content AS content, blobbs.creationDate AS date, poster AS author, " +
+            "WHERE u.uuid = $uuid AND blobbs.creationDate >= datetime($first).epochMillis AND blobbs.creationDate <= datetime($second).epochMillis " +
+            "AND (blobbs.creationDate < datetime($cursorDate).epochMillis OR (blobbs.creationDate = datetime($cursorDate).epochMillis AND blobbs.uuid < $cursorUuid)) " +
+            "OPTIONAL MATCH (blobbs:Blobb)-[:RESPONDS]->(respondsTo) " +
+            "OPTIONAL MATCH (blobbs:Blobb)-[:REBLOBBS]->(reblobbs) " +
+            "RETURN blobbs.uuid AS uuid, blobbs.content AS content, blobbs.creationDate AS date, poster {.uuid, .username, .displayedUsername, .aviURL} AS author, " +
+            "reblobbs.uuid AS reblobbs, respondsTo.uuid AS respondsTo " +
+            "ORDER BY blobbs.creationDate DESC, blobbs.uuid DESC LIMIT $limit ")
+    List<FeedBlobb> getFeedForUserWithUuid_PostedBetween_AfterCursor(UUID uuid, Date first, Date second,
+                                                                     Date cursorDate, UUID cursorUuid, Long limit);
+
+    // works like the feed query, but only returns blobbs posted by given authors, used for pulling blobbs
+    // of authors that are too popular for their blobbs to be pushed into timelines of their followers.
+    // If 'cursorUuid' is given, blobbs posted exactly at 'second' are only returned if their uuid comes before it
+    @Query( "MATCH (poster:User) WHERE poster.uuid IN $authorUuids " +
+            "MATCH (u:User)-[:FOLLOWS]->(poster)-[:POSTS]->(blobbs:Blobb) " +
+            "WHERE u.uuid = $uuid AND blobbs.creationDate >= datetime($first).epochMillis AND blobbs.creationDate <= datetime($second).epochMillis " +
+            "AND ($cursorUuid IS NULL OR blobbs.creationDate < datetime($second).epochMillis OR blobbs.uuid < $cursorUuid) " +
+            "OPTIONAL MATCH (blobbs:Blobb)-[:RESPONDS]->(respondsTo) " +
+            "OPTIONAL MATCH (blobbs:Blobb)-[:REBLOBBS]->(reblobbs) " +
+            "RETURN blobbs.uuid AS uuid, blobbs.content AS content, blobbs.creationDate AS date, poster {.uuid, .username, .displayedUsername, .aviURL} AS author, " +
             "reblobbs.uuid AS reblobbs, respondsTo.uuid AS respondsTo " +
-            "ORDER BY amountLikes DESC, datetime(blobbs.creationDate) DESC SKIP $skip LIMIT $limit ")
+            "ORDER BY blobbs.creationDate DESC, blobbs.uuid DESC LIMIT $limit ")
+    List<FeedBlobb> getFeedForUserWithUuid_PostedBetween_ByAuthors(UUID uuid, List<UUID> authorUuids,
+                                                                  Date first, Date second, UUID cursorUuid, Long limit);
+
+    @Query( "MATCH (u:User)-[:FOLLOWS]->(poster:User)-[:POSTS]->(blobbs:Blobb) " +
+            "WHERE u.uuid = $uuid AND blobbs.creationDate >= datetime($first).epochMillis AND blobbs.creationDate <= datetime($second).epochMillis " +
+            "OPTIONAL MATCH (blobbs:Blobb)-[:RESPONDS]->(respondsTo) " +
+            "OPTIONAL MATCH (blobbs:Blobb)-[:REBLOBBS]->(reblobbs) " +
+            "RETURN blobbs.uuid AS uuid, blobbs.content AS content, blobbs.creationDate AS date, poster {.uuid, .username, .displayedUsername, .aviURL} AS author, " +
+            "reblobbs.uuid AS reblobbs, respondsTo.uuid AS respondsTo " +
+            "ORDER BY coalesce(blobbs.popularity, 0) DESC, blobbs.creationDate DESC SKIP $skip LIMIT $limit ")
     List<FeedBlobb> getFeedForUserWithUuid_Popular_PostedBetween(UUID uuid, Date first, Date second, Long skip, Long limit);
 
-    @Query( "MATCH (u:User)-[:POSTS]->(blobb:Blobb) WHERE blobb.uuid = $uuid AND blobb.deleted <> true " +
-            "OPTIONAL MATCH (blobb:Blobb)-[:RESPONDS]->(respondsTo:Blobb) " +
-            "OPTIONAL MATCH (blobb:Blobb)-[:REBLOBBS]->(reblobbs:Blobb) " +
-            "RETURN blobb.uuid AS uuid, blobb.content AS content, blobb.creationDate AS date, u AS author, " +
+    // used for reading blobbs referenced by materialized timelines, the order of results
+    // is not guaranteed
+    @Query( "MATCH (poster:User)-[:POSTS]->(blobbs:Blobb) " +
+            "WHERE blobbs.uuid IN $uuids " +
+            "OPTIONAL MATCH (blobbs:Blobb)-[:RESPONDS]->(respondsTo) " +
+            "OPTIONAL MATCH (blobbs:Blobb)-[:REBLOBBS]->(reblobbs) " +
+            "RETURN blobbs.uuid AS uuid, blobbs.content AS content, blobbs.creationDate AS date, poster {.uuid, .username, .displayedUsername, .aviURL} AS author, " +
+            "reblobbs.uuid AS reblobbs, respondsTo.uuid AS respondsTo ")
+    List<FeedBlobb> getBlobbsWithUuids(List<UUID> uuids);
+
+    @Query( "MATCH (u:User)-[:POSTS]->(blobb:Blobb) WHERE blobb.uuid = $uuid " +
+            "OPTIONAL MATCH (blobb:Blobb)-[:RESPONDS]->(respondsTo) " +
+            "OPTIONAL MATCH (blobb:Blobb)-[:REBLOBBS]->(reblobbs) " +
+            "RETURN blobb.uuid AS uuid, blobb.content AS content, blobb.creationDate AS date, u {.uuid, .username, .displayedUsername, .aviURL} AS author, " +
             "reblobbs.uuid AS reblobbs, respondsTo.uuid AS respondsTo ")
     Optional<FeedBlobb> getBlobbWithUuid(UUID uuid);
 
-    @Query( "MATCH (blobb:Blobb) WHERE blobb.uuid = $uuid AND blobb.deleted <> true " +
-            "OPTIONAL MATCH (:User)-[likes:LIKES]->(blobb:Blobb) " +
-            "OPTIONAL MATCH (res:ResponseBlobb)-[responses:RESPONDS]->(blobb) WHERE res.deleted <> true " +
-            "OPTIONAL MATCH (reb:Reblobb)-[reblobbs:REBLOBBS]->(blobb:Blobb) WHERE reb.deleted <> true " +
-            "RETURN blobb.uuid AS uuid, count(distinct(responses)) AS responses, count(distinct(likes)) AS likes, " +
-            "count(distinct(reblobbs)) AS reblobbs")
+    /*
+        Blobb nodes hold counters of their likes, responses and reblobbs. These counters are not
+        mapped on the Blobb entity, so that saving an entity that had been loaded earlier never overwrites
+        counters that have been updated in the meantime. Blobbs that have never been counted don't have
+        any of these properties yet.
+
+        Every query that changes these counters also updates the 'popularity' score of the blobb,
+        which is used for ordering of the popular feed:
+            popularity = likes + 2 * responses + 3 * reblobbs
+     */
+    @Query( "MATCH (blobb:Blobb) WHERE blobb.uuid = $uuid " +
+            "RETURN blobb.uuid AS uuid, coalesce(blobb.responsesCount, 0) AS responses, " +
+            "coalesce(blobb.likesCount, 0) AS likes, coalesce(blobb.reblobbsCount, 0) AS reblobbs")
     Optional<BlobbInfo> getInfoAboutBlobbWithUuid(UUID uuid);
 
-    @Query( "MATCH (u:User) WHERE u.uuid = $uuidOfUser " +
-            "MATCH (b:Blobb) WHERE b.uuid = $uuidOfBlobb AND b.deleted <> true " +
-            "CREATE (u)-[l:LIKES]->(b) " +
-            "RETURN id(l)")
-    Optional<Long> likeBlobbWithUuid(UUID uuidOfUser, UUID uuidOfBlobb);
+    // the relationship is only created if it doesn't already exist and the blobb is not marked
+    // as deleted, so liking the same blobb again changes nothing.
+    // The user is locked (by writing a property that is removed before the end of the query) before
+    // the relationship is looked for, so that concurrent identical requests are run one after another
+    // and only one of them reports the like as created. Only a like of the same user can race with it,
+    // so the blobb is not written, likes of different users don't wait for each other on a popular blobb
+    @Query( "OPTIONAL MATCH (b:Blobb) WHERE b.uuid = $uuidOfBlobb " +
+            "OPTIONAL MATCH (d:DeletedBlobb) WHERE d.uuid = $uuidOfBlobb " +
+            "OPTIONAL MATCH (u:User) WHERE u.uuid = $uuidOfUser " +
+            "FOREACH (_ IN CASE WHEN u IS NOT NULL AND b IS NOT NULL THEN [1] ELSE [] END | " +
+            "SET u._lock = true) " +
+            "WITH u, b, d " +
+            "OPTIONAL MATCH (u)-[l:LIKES]->(b) " +
+            "WITH u, b, d, count(l) AS existing " +
+            "WITH u, b, d, existing, (u IS NOT NULL AND b IS NOT NULL AND existing = 0) AS create " +
+            "FOREACH (_ IN CASE WHEN create THEN [1] ELSE [] END | " +
+            "MERGE (u)-[:LIKES]->(b)) " +
+            "FOREACH (_ IN CASE WHEN u IS NOT NULL AND b IS NOT NULL THEN [1] ELSE [] END | " +
+            "REMOVE u._lock) " +
+            "RETURN (b IS NOT NULL OR d IS NOT NULL) AS blobbExists, CASE WHEN create THEN 1 ELSE 0 END AS changed, " +
+            "(create OR existing > 0) AS likes")
+    LikeResult likeBlobbWithUuid(UUID uuidOfUser, UUID uuidOfBlobb);
+
+    // blobbs that are marked as deleted exist, but cannot be liked
+    @Query( "OPTIONAL MATCH (b:Blobb) WHERE b.uuid = $uuidOfBlobb " +
+            "OPTIONAL MATCH (d:DeletedBlobb) WHERE d.uuid = $uuidOfBlobb " +
+            "OPTIONAL MATCH (u:User)-[l:LIKES]->(b) WHERE u.uuid = $uuidOfUser " +
+            "RETURN (b IS NOT NULL OR d IS NOT NULL) AS blobbExists, 0 AS changed, count(l) > 0 AS likes")
+    LikeResult checkIfUserWithUuidLikes(UUID uuidOfUser, UUID uuidOfBlobb);
+
+    // blobbs marked as deleted can still be unliked. Like in likeBlobbWithUuid, only the user
+    // is locked first, so that concurrent identical requests don't both report the like as deleted
+    @Query( "OPTIONAL MATCH (live:Blobb) WHERE live.uuid = $uuidOfBlobb " +
+            "OPTIONAL MATCH (deleted:DeletedBlobb) WHERE deleted.uuid = $uuidOfBlobb " +
+            "OPTIONAL MATCH (u:User) WHERE u.uuid = $uuidOfUser " +
+            "WITH u, coalesce(live, deleted) AS b " +
+            "FOREACH (_ IN CASE WHEN u IS NOT NULL AND b IS NOT NULL THEN [1] ELSE [] END | " +
+            "SET u._lock = true) " +
+            "WITH u, b " +
+            "OPTIONAL MATCH (u)-[l:LIKES]->(b) " +
+            "DELETE l " +
+            "WITH u, b, count(l) AS removed " +
+            "FOREACH (_ IN CASE WHEN u IS NOT NULL AND b IS NOT NULL THEN [1] ELSE [] END | " +
+            "REMOVE u._lock) " +
+            "RETURN b IS NOT NULL AS blobbExists, removed AS changed, false AS likes")
+    LikeResult unlikeBlobbWithUuid(UUID uuidOfUser, UUID uuidOfBlobb);
 
-    @Query( "MATCH (u:User)-[l:LIKES]->(b:Blobb)" +
-            "WHERE u.uuid = $uuidOfUser AND b.uuid = $uuidOfBlobb AND b.deleted <> true " +
-            "RETURN id(l)")
-    Optional<Long> checkIfUserWithUuidLikes(UUID uuidOfUser, UUID uuidOfBlobb);
+    // likes counters are not updated by the queries that like and unlike blobbs,
+    // changes of these counters are accumulated in memory and written in batches.
+    // Every delta is a map with the 'uuid' of the blobb and the number of 'likes' to add
+    @Query( "UNWIND $deltas AS delta " +
+            "MATCH (b:Blobb) WHERE b.uuid = delta.uuid " +
+            "SET b.likesCount = coalesce(b.likesCount, 0) + delta.likes, " +
+            "b.popularity = coalesce(b.popularity, 0) + delta.likes")
+    void addToLikesCounters(List<Map<String, Object>> deltas);
 
-    @Query( "MATCH (u:User)-[l:LIKES]->(b:Blobb) " +
-            "WHERE u.uuid = $uuidOfUser AND b.uuid = $uuidOfBlobb " +
-            "DELETE l")
-    void unlikeBlobbWithUuid(UUID uuidOfUser, UUID uuidOfBlobb);
+    // Blobbs are created with the queries below instead of being saved by OGM, because saving a blobb
+    // also writes its author and all its tags again. Every blobb is a map with its 'uuid', 'content',
+    // 'creationDate' in milliseconds, the uuid of its 'author' and a list of uuids of its 'tags'.
+    // Queued blobbs are merged by their uuids, because a batch that failed is written again
+    @Query( "UNWIND $blobbs AS blobb " +
+            "MATCH (u:User) WHERE u.uuid = blobb.author " +
+            "MERGE (b:Blobb { uuid: blobb.uuid }) " +
+            "ON CREATE SET b.content = blobb.content, b.creationDate = blobb.creationDate, b.deleted = false " +
+            "MERGE (u)-[:POSTS]->(b) " +
+            "WITH b, blobb " +
+            "UNWIND blobb.tags AS tagUuid " +
+            "MATCH (t:Tag) WHERE t.uuid = tagUuid " +
+            "MERGE (t)-[:TAGS]->(b)")
+    void createBlobbs(List<Map<String, Object>> blobbs);
+
+    // creates the response only if the parent exists and is not marked as deleted,
+    // returns the number of created blobbs. Tags are found or created by their names in the same query,
+    // after the parent has been matched, so no tags are created for responses to missing blobbs
+    @Query( "MATCH (parent:Blobb) WHERE parent.uuid = $parentUuid " +
+            "MATCH (u:User) WHERE u.uuid = $blobb.author " +
+            "CREATE (u)-[:POSTS]->(b:Blobb:ResponseBlobb { uuid: $blobb.uuid, content: $blobb.content, " +
+            "creationDate: $blobb.creationDate, deleted: false })-[:RESPONDS]->(parent) " +
+            "FOREACH (name IN $tagNames | " +
+            "MERGE (t:Tag { name: name }) ON CREATE SET t.uuid = randomUUID() " +
+            "CREATE (t)-[:TAGS]->(b)) " +
+            "RETURN count(b)")
+    Long createResponseToBlobb(Map<String, Object> blobb, Collection<String> tagNames, UUID parentUuid);
+
+    @Query( "MATCH (parent:Blobb) WHERE parent.uuid = $parentUuid " +
+            "MATCH (u:User) WHERE u.uuid = $blobb.author " +
+            "CREATE (u)-[:POSTS]->(b:Blobb:Reblobb { uuid: $blobb.uuid, content: $blobb.content, " +
+            "creationDate: $blobb.creationDate, deleted: false })-[:REBLOBBS]->(parent) " +
+            "FOREACH (name IN $tagNames | " +
+            "MERGE (t:Tag { name: name }) ON CREATE SET t.uuid = randomUUID() " +
+            "CREATE (t)-[:TAGS]->(b)) " +
+            "RETURN count(b)")
+    Long createReblobbOfBlobb(Map<String, Object> blobb, Collection<String> tagNames, UUID parentUuid);
+
+    // swaps labels of the blobb, returns the number of blobbs that have been marked as deleted
+    // by this query, blobbs that had been marked before are not counted
+    @Query( "MATCH (b:Blobb) WHERE b.uuid = $uuid " +
+            "REMOVE b:Blobb:ResponseBlobb:Reblobb " +
+            "SET b:DeletedBlobb, b.deleted = true " +
+            "RETURN count(b)")
+    Long markBlobbWithUuidAsDeleted(UUID uuid);
+
+    // blobbs marked as deleted cannot be loaded as 'Blobb' entities, so deleting them again
+    // only needs to know who posted them
+    @Query( "MATCH (u:User)-[:POSTS]->(b:DeletedBlobb) WHERE b.uuid = $uuid " +
+            "RETURN u.uuid")
+    Optional<UUID> findAuthorOfDeletedBlobbWithUuid(UUID uuid);
+
+    // increments either the responses or the reblobbs counter of the blobb that is referenced by
+    // the blobb with given uuid, blobbs that are marked as deleted are not counted
+    @Query( "MATCH (b:Blobb)-[r:RESPONDS|REBLOBBS]->(parent:Blobb) " +
+            "WHERE b.uuid = $uuid " +
+            "FOREACH (_ IN CASE WHEN type(r) = 'RESPONDS' THEN [1] ELSE [] END | " +
+            "SET parent.responsesCount = coalesce(parent.responsesCount, 0) + 1, " +
+            "parent.popularity = coalesce(parent.popularity, 0) + 2) " +
+            "FOREACH (_ IN CASE WHEN type(r) = 'REBLOBBS' THEN [1] ELSE [] END | " +
+            "SET parent.reblobbsCount = coalesce(parent.reblobbsCount, 0) + 1, " +
+            "parent.popularity = coalesce(parent.popularity, 0) + 3)")
+    void incrementCountersOfParentOfBlobbWithUuid(UUID uuid);
+
+    // has to be called after the blobb with given uuid has been marked as deleted
+    @Query( "MATCH (b:DeletedBlobb)-[r:RESPONDS|REBLOBBS]->(parent:Blobb) " +
+            "WHERE b.uuid = $uuid " +
+            "FOREACH (_ IN CASE WHEN type(r) = 'RESPONDS' THEN [1] ELSE [] END | " +
+            "SET parent.responsesCount = coalesce(parent.responsesCount, 1) - 1, " +
+            "parent.popularity = coalesce(parent.popularity, 2) - 2) " +
+            "FOREACH (_ IN CASE WHEN type(r) = 'REBLOBBS' THEN [1] ELSE [] END | " +
+            "SET parent.reblobbsCount = coalesce(parent.reblobbsCount, 1) - 1, " +
+            "parent.popularity = coalesce(parent.popularity, 3) - 3)")
+    void decrementCountersOfParentOfBlobbWithUuid(UUID uuid);
+
+    // recomputes counters of at most 'limit' blobbs which uuids come after 'afterUuid' (or all blobbs from the
+    // beginning if 'afterUuid' is null), returns uuids of blobbs that have been processed.
+    // 'pendingLikes' maps uuids of blobbs to deltas of likes that are counted by the relationships, but
+    // have not been added to the counters yet. These are subtracted, because they are added when flushed
+    @Query( "MATCH (blobb:Blobb) WHERE $afterUuid IS NULL OR blobb.uuid > $afterUuid " +
+            "WITH blobb ORDER BY blobb.uuid LIMIT $limit " +
+            "OPTIONAL MATCH (:User)-[likes:LIKES]->(blobb) " +
+            "WITH blobb, count(likes) - coalesce($pendingLikes[blobb.uuid], 0) AS likes " +
+            "OPTIONAL MATCH (res:ResponseBlobb)-[:RESPONDS]->(blobb) " +
+            "WITH blobb, likes, count(res) AS responses " +
+            "OPTIONAL MATCH (reb:Reblobb)-[:REBLOBBS]->(blobb) " +
+            "WITH blobb, likes, responses, count(reb) AS reblobbs " +
+            "SET blobb.likesCount = likes, blobb.responsesCount = responses, blobb.reblobbsCount = reblobbs, " +
+            "blobb.popularity = likes + 2 * responses + 3 * reblobbs " +
+            "RETURN blobb.uuid ORDER BY blobb.uuid")
+    List<UUID> reconcileCountersOfBlobbs(UUID afterUuid, Long limit, Map<String, Long> pendingLikes);
 
     // allow listing responses to blobbs marked as deleted
-    // but dont list responses that are marked as deleted
-    @Query( "MATCH (blobb:Blobb) WHERE blobb.uuid = $uuid " +
-            "MATCH (u:User)-[:POSTS]->(response:ResponseBlobb)-[:RESPONDS]->(blobb) WHERE response.deleted <> true " +
-            "RETURN response.uuid AS uuid, response.content AS content, response.creationDate AS date, u AS author, " +
+    // but dont list responses that are marked as deleted.
+    // Responses are followed by the existence marker of the blobb
+    @Query( "OPTIONAL MATCH (live:Blobb) WHERE live.uuid = $uuid " +
+            "OPTIONAL MATCH (deleted:DeletedBlobb) WHERE deleted.uuid = $uuid " +
+            "WITH coalesce(live, deleted) AS blobb " +
+            "MATCH (u:User)-[:POSTS]->(response:ResponseBlobb)-[:RESPONDS]->(blobb) " +
+            "RETURN response.uuid AS uuid, response.content AS content, response.creationDate AS date, u {.uuid, .username, .displayedUsername, .aviURL} AS author, " +
             "NULL AS reblobbs, blobb.uuid AS respondsTo " +
-            "ORDER BY date ASC SKIP $skip LIMIT $limit")
+            "ORDER BY date ASC, uuid ASC SKIP $skip LIMIT $limit " +
+            "UNION ALL " +
+            "OPTIONAL MATCH (live:Blobb) WHERE live.uuid = $uuid " +
+            "OPTIONAL MATCH (deleted:DeletedBlobb) WHERE deleted.uuid = $uuid " +
+            "WITH coalesce(live, deleted) AS blobb WHERE blobb IS NOT NULL " +
+            "RETURN NULL AS uuid, NULL AS content, NULL AS date, NULL AS author, NULL AS reblobbs, NULL AS respondsTo")
     List<FeedBlobb> getAllResponsesToBlobbWithUuid(UUID uuid, Long skip, Long limit);
 
+    @Query( "OPTIONAL MATCH (live:Blobb) WHERE live.uuid = $uuid " +
+            "OPTIONAL MATCH (deleted:DeletedBlobb) WHERE deleted.uuid = $uuid " +
+            "WITH coalesce(live, deleted) AS blobb " +
+            "MATCH (u:User)-[:POSTS]->(response:ResponseBlobb)-[:RESPONDS]->(blobb) " +
+            "WHERE (response.creationDate > datetime($cursorDate).epochMillis OR (response.creationDate = datetime($cursorDate).epochMillis AND response.uuid > $cursorUuid)) " +
+            "RETURN response.uuid AS uuid, response.content AS content, response.creationDate AS date, u {.uuid, .username, .displayedUsername, .aviURL} AS author, " +
+            "NULL AS reblobbs, blobb.uuid AS respondsTo " +
+            "ORDER BY date ASC, uuid ASC LIMIT $limit " +
+            "UNION ALL " +
+            "OPTIONAL MATCH (live:Blobb) WHERE live.uuid = $uuid " +
+            "OPTIONAL MATCH (deleted:DeletedBlobb) WHERE deleted.uuid = $uuid " +
+            "WITH coalesce(live, deleted) AS blobb WHERE blobb IS NOT NULL " +
+            "RETURN NULL AS uuid, NULL AS content, NULL AS date, NULL AS author, NULL AS reblobbs, NULL AS respondsTo")
+    List<FeedBlobb> getAllResponsesToBlobbWithUuid_AfterCursor(UUID uuid, Date cursorDate, UUID cursorUuid, Long limit);
+
     // allow listing reblobbs even when referenced blobb is marked as deleted
-    // but don't list reblobbs that are marked as deleted
-    @Query( "MATCH (blobb:Blobb) WHERE blobb.uuid = $uuid " +
-            "MATCH (u:User)-[:POSTS]->(reblobb:Reblobb)-[:REBLOBBS]->(blobb) WHERE reblobb.deleted <> true " +
-            "RETURN reblobb.uuid AS uuid, reblobb.content AS content, reblobb.creationDate AS date, u AS author, " +
+    // but don't list reblobbs that are marked as deleted.
+    // Reblobbs are followed by the existence marker of the blobb
+    @Query( "OPTIONAL MATCH (live:Blobb) WHERE live.uuid = $uuid " +
+            "OPTIONAL MATCH (deleted:DeletedBlobb) WHERE deleted.uuid = $uuid " +
+            "WITH coalesce(live, deleted) AS blobb " +
+            "MATCH (u:User)-[:POSTS]->(reblobb:Reblobb)-[:REBLOBBS]->(blobb) " +
+            "RETURN reblobb.uuid AS uuid, reblobb.content AS content, reblobb.creationDate AS date, u {.uuid, .username, .displayedUsername, .aviURL} AS author, " +
             "blobb.uuid AS reblobbs, NULL AS respondsTo " +
-            "ORDER BY date ASC SKIP $skip LIMIT $limit")
+            "ORDER BY date ASC, uuid ASC SKIP $skip LIMIT $limit " +
+            "UNION ALL " +
+            "OPTIONAL MATCH (live:Blobb) WHERE live.uuid = $uuid " +
+            "OPTIONAL MATCH (deleted:DeletedBlobb) WHERE deleted.uuid = $uuid " +
+            "WITH coalesce(live, deleted) AS blobb WHERE blobb IS NOT NULL " +
+            "RETURN NULL AS uuid, NULL AS content, NULL AS date, NULL AS author, NULL AS reblobbs, NULL AS respondsTo")
     List<FeedBlobb> getAllReblobbsOfBlobbWithUuid(UUID uuid, Long skip, Long limit);
+
+    @Query( "OPTIONAL MATCH (live:Blobb) WHERE live.uuid = $uuid " +
+            "OPTIONAL MATCH (deleted:DeletedBlobb) WHERE deleted.uuid = $uuid " +
+            "WITH coalesce(live, deleted) AS blobb " +
+            "MATCH (u:User)-[:POSTS]->(reblobb:Reblobb)-[:REBLOBBS]->(blobb) " +
+            "WHERE (reblobb.creationDate > datetime($cursorDate).epochMillis OR (reblobb.creationDate = datetime($cursorDate).epochMillis AND reblobb.uuid > $cursorUuid)) " +
+            "RETURN reblobb.uuid AS uuid, reblobb.content AS content, reblobb.creationDate AS date, u {.uuid, .username, .displayedUsername, .aviURL} AS author, " +
+            "blobb.uuid AS reblobbs, NULL AS respondsTo " +
+            "ORDER BY date ASC, uuid ASC LIMIT $limit " +
+            "UNION ALL " +
+            "OPTIONAL MATCH (live:Blobb) WHERE live.uuid = $uuid " +
+            "OPTIONAL MATCH (deleted:DeletedBlobb) WHERE deleted.uuid = $uuid " +
+            "WITH coalesce(live, deleted) AS blobb WHERE blobb IS NOT NULL " +
+            "RETURN NULL AS uuid, NULL AS content, NULL AS date, NULL AS author, NULL AS reblobbs, NULL AS respondsTo")
+    List<FeedBlobb> getAllReblobbsOfBlobbWithUuid_AfterCursor(UUID uuid, Date cursorDate, UUID cursorUuid, Long limit);
 }
@@ -1,17 +1,23 @@
 package ml.echelon133.blobb.blobb;
 
+import ml.echelon133.blobb.feed.TimelineStore;
+import ml.echelon133.blobb.pagination.Cursor;
+import ml.echelon133.blobb.pagination.ExistenceMarker;
 import ml.echelon133.blobb.tag.ITagService;
 import ml.echelon133.blobb.tag.Tag;
-import ml.echelon133.blobb.tag.TagDoesntExistException;
+import ml.echelon133.blobb.user.FollowGraph;
 import ml.echelon133.blobb.user.User;
+import ml.echelon133.blobb.user.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.time.Clock;
 import java.time.Instant;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static java.time.temporal.ChronoUnit.HOURS;
 
@@ -19,26 +25,77 @@ import static java.time.temporal.ChronoUnit.HOURS;
 public class BlobbService implements IBlobbService {
 
     private BlobbRepository blobbRepository;
+    private UserRepository userRepository;
     private ITagService tagService;
+    private TimelineStore timelineStore;
+    private LikeCounterBuffer likeCounterBuffer;
+    private BlobbIngestionQueue ingestionQueue;
+    private BlobbCache blobbCache;
+    private FollowGraph followGraph;
     private Clock clock = Clock.systemDefaultZone();
     private Pattern hashtagPattern = Pattern.compile("(#[a-zA-Z0-9]{2,20})");
 
+    // the same order in which the database returns blobbs of the feed
+    private static final Comparator<TimelineStore.Entry> FEED_ORDER = Comparator
+            .comparing(TimelineStore.Entry::getDate)
+            .thenComparing(e -> e.getBlobbUuid().toString())
+            .reversed();
+
     @Autowired
     public BlobbService(BlobbRepository blobbRepository,
-                        ITagService tagService) {
+                        UserRepository userRepository,
+                        ITagService tagService,
+                        TimelineStore timelineStore,
+                        LikeCounterBuffer likeCounterBuffer,
+                        BlobbIngestionQueue ingestionQueue,
+                        BlobbCache blobbCache,
+                        FollowGraph followGraph) {
         this.blobbRepository = blobbRepository;
+        this.userRepository = userRepository;
         this.tagService = tagService;
+        this.timelineStore = timelineStore;
+        this.likeCounterBuffer = likeCounterBuffer;
+        this.ingestionQueue = ingestionQueue;
+        this.blobbCache = blobbCache;
+        this.followGraph = followGraph;
+    }
+
+    // the writer is registered once the service is fully initialized, so that the queue
+    // never hands batches to a service that is still being constructed
+    @PostConstruct
+    public void registerIngestionWriter() {
+        ingestionQueue.setWriter(this::saveQueuedBlobbs);
+    }
+
+    // lists of responses and reblobbs are followed by the existence marker of the blobb they reference
+    private static List<FeedBlobb> pageOrThrow(UUID uuid, List<FeedBlobb> rows) throws BlobbDoesntExistException {
+        return ExistenceMarker
+                .strip(rows, FeedBlobb::getUuid)
+                .orElseThrow(() -> new BlobbDoesntExistException(uuid));
     }
 
-    private void throwIfBlobbDoesntExist(UUID uuid) throws BlobbDoesntExistException {
-        if (!blobbRepository.existsById(uuid)) {
-            throw new BlobbDoesntExistException(uuid);
+    private void throwIfInvalidCursorOrLimit(Cursor cursor, Long limit) throws IllegalArgumentException {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid limit value.");
+        }
+        // lists of blobbs are ordered by dates, so cursors without a date cannot point at any blobb
+        if (!cursor.hasDate()) {
+            throw new IllegalArgumentException("Invalid cursor value.");
         }
     }
 
+    private static boolean isAfterCursor(Date date, UUID uuid, Cursor cursor) {
+        if (cursor == null) {
+            return true;
+        }
+        // feed is ordered from the newest blobb, so blobbs that come after the cursor are older
+        return date.before(cursor.getDate()) ||
+                (date.equals(cursor.getDate()) && uuid.toString().compareTo(cursor.getUuid().toString()) < 0);
+    }
+
     @Override
     public FeedBlobb getByUuid(UUID uuid) throws BlobbDoesntExistException {
-        Optional<FeedBlobb> blobb = blobbRepository.getBlobbWithUuid(uuid);
+        Optional<FeedBlobb> blobb = blobbCache.getBlobb(uuid, blobbRepository::getBlobbWithUuid);
         if (blobb.isPresent()) {
             return blobb.get();
         }
@@ -47,57 +104,84 @@ public class BlobbService implements IBlobbService {
 
     @Override
     public BlobbInfo getBlobbInfo(UUID uuid) throws BlobbDoesntExistException {
-        Optional<BlobbInfo> info = blobbRepository.getInfoAboutBlobbWithUuid(uuid);
+        Optional<BlobbInfo> info = blobbCache.getInfo(uuid, blobbRepository::getInfoAboutBlobbWithUuid);
         if (info.isPresent()) {
-            return info.get();
+            // likes that have not been written to the database yet still have to be counted,
+            // cached information is shared between requests, so it cannot be modified
+            BlobbInfo cached = info.get();
+            BlobbInfo blobbInfo = new BlobbInfo();
+            blobbInfo.setUuid(cached.getUuid());
+            blobbInfo.setResponses(cached.getResponses());
+            blobbInfo.setReblobbs(cached.getReblobbs());
+            blobbInfo.setLikes(cached.getLikes() + likeCounterBuffer.getPendingDelta(uuid));
+            return blobbInfo;
         }
         throw new BlobbDoesntExistException(uuid);
     }
 
     @Override
     public List<FeedBlobb> getAllResponsesTo(UUID uuid, Long skip, Long limit) throws BlobbDoesntExistException, IllegalArgumentException {
-        throwIfBlobbDoesntExist(uuid);
         if (skip < 0 || limit < 0) {
             throw new IllegalArgumentException("Invalid skip and/or limit values.");
         }
-        return blobbRepository.getAllResponsesToBlobbWithUuid(uuid, skip, limit);
+        return pageOrThrow(uuid, blobbRepository.getAllResponsesToBlobbWithUuid(uuid, skip, limit));
+    }
+
+    @Override
+    public List<FeedBlobb> getAllResponsesTo(UUID uuid, Cursor cursor, Long limit) throws BlobbDoesntExistException, IllegalArgumentException {
+        throwIfInvalidCursorOrLimit(cursor, limit);
+        return pageOrThrow(uuid, blobbRepository
+                .getAllResponsesToBlobbWithUuid_AfterCursor(uuid, cursor.getDate(), cursor.getUuid(), limit));
     }
 
     @Override
     public List<FeedBlobb> getAllReblobbsOf(UUID uuid, Long skip, Long limit) throws BlobbDoesntExistException, IllegalArgumentException {
-        throwIfBlobbDoesntExist(uuid);
         if (skip < 0 || limit < 0) {
             throw new IllegalArgumentException("Invalid skip and/or limit values.");
         }
-        return blobbRepository.getAllReblobbsOfBlobbWithUuid(uuid, skip, limit);
+        return pageOrThrow(uuid, blobbRepository.getAllReblobbsOfBlobbWithUuid(uuid, skip, limit));
+    }
 
+    @Override
+    public List<FeedBlobb> getAllReblobbsOf(UUID uuid, Cursor cursor, Long limit) throws BlobbDoesntExistException, IllegalArgumentException {
+        throwIfInvalidCursorOrLimit(cursor, limit);
+        return pageOrThrow(uuid, blobbRepository
+                .getAllReblobbsOfBlobbWithUuid_AfterCursor(uuid, cursor.getDate(), cursor.getUuid(), limit));
     }
 
     @Override
     public boolean checkIfUserWithUuidLikes(User user, UUID blobbUuid) throws BlobbDoesntExistException {
-        throwIfBlobbDoesntExist(blobbUuid);
-        return blobbRepository.checkIfUserWithUuidLikes(user.getUuid(), blobbUuid).isPresent();
+        LikeResult like = blobbRepository.checkIfUserWithUuidLikes(user.getUuid(), blobbUuid);
+        if (!Boolean.TRUE.equals(like.getBlobbExists())) {
+            throw new BlobbDoesntExistException(blobbUuid);
+        }
+        return Boolean.TRUE.equals(like.getLikes());
     }
 
     @Override
     public boolean likeBlobb(User user, UUID blobbUuid) throws BlobbDoesntExistException {
-        throwIfBlobbDoesntExist(blobbUuid);
-        Optional<Long> like = blobbRepository.checkIfUserWithUuidLikes(user.getUuid(), blobbUuid);
-
-        // only like if there is no already existing 'likes' relationship
-        // between the user and the post
-        // otherwise this will create duplicate relationships
-        if (like.isEmpty()) {
-            like = blobbRepository.likeBlobbWithUuid(user.getUuid(), blobbUuid);
+        // a single query checks whether the blobb exists, and likes it only if
+        // there is no already existing 'likes' relationship between the user and the post
+        LikeResult like = blobbRepository.likeBlobbWithUuid(user.getUuid(), blobbUuid);
+        if (!Boolean.TRUE.equals(like.getBlobbExists())) {
+            throw new BlobbDoesntExistException(blobbUuid);
+        }
+        if (like.getChanged() > 0) {
+            likeCounterBuffer.add(blobbUuid, like.getChanged());
         }
-        return like.isPresent();
+        return Boolean.TRUE.equals(like.getLikes());
     }
 
     @Override
     public boolean unlikeBlobb(User user, UUID blobbUuid) throws BlobbDoesntExistException {
-        throwIfBlobbDoesntExist(blobbUuid);
-        blobbRepository.unlikeBlobbWithUuid(user.getUuid(), blobbUuid);
-        return blobbRepository.checkIfUserWithUuidLikes(user.getUuid(), blobbUuid).isEmpty();
+        LikeResult unlike = blobbRepository.unlikeBlobbWithUuid(user.getUuid(), blobbUuid);
+        if (!Boolean.TRUE.equals(unlike.getBlobbExists())) {
+            throw new BlobbDoesntExistException(blobbUuid);
+        }
+        if (unlike.getChanged() > 0) {
+            likeCounterBuffer.add(blobbUuid, -unlike.getChanged());
+        }
+        return !Boolean.TRUE.equals(unlike.getLikes());
     }
 
     @Override
@@ -106,12 +190,158 @@ public class BlobbService implements IBlobbService {
         if (limit < 0 || skip < 0) {
             throw new IllegalArgumentException("Invalid skip and/or limit values.");
         }
+        return getFeed(user, since, skip, null, limit);
+    }
 
+    @Override
+    public List<FeedBlobb> getFeedForUser(User user, BlobbsSince since, Cursor cursor, Long limit) throws IllegalArgumentException {
+        throwIfInvalidCursorOrLimit(cursor, limit);
+        return getFeed(user, since, 0L, cursor, limit);
+    }
+
+    private List<FeedBlobb> getFeed(User user, BlobbsSince since, Long skip, Cursor cursor, Long limit) {
         int hoursToSubtract = since.getHours();
         Date now = Date.from(Instant.now(clock));
         Date before =  Date.from(now.toInstant().minus(hoursToSubtract, HOURS));
+
+        Optional<TimelineStore.Timeline> timeline = timelineStore.getTimeline(user.getUuid());
+        if (timeline.isEmpty()) {
+            return seedTimelineAndGetFeed(user, before, now, skip, cursor, limit);
+        }
+
+        List<TimelineStore.Entry> timelineEntries = timeline.get().getEntries();
+        Map<UUID, TimelineStore.Entry> entries = new LinkedHashMap<>();
+        timelineEntries
+                .stream()
+                .filter(e -> !e.getDate().before(before) && !e.getDate().after(now))
+                .filter(e -> isAfterCursor(e.getDate(), e.getBlobbUuid(), cursor))
+                .forEach(e -> entries.put(e.getBlobbUuid(), e));
+
+        // blobbs of authors with a lot of followers are not pushed into timelines,
+        // they have to be pulled and merged with the timeline
+        Map<UUID, FeedBlobb> pulled = new HashMap<>();
+        Set<UUID> pulledAuthors = timelineStore.getPulledAuthors(before);
+        if (!pulledAuthors.isEmpty()) {
+            Date pullUntil = now;
+            UUID pullBeforeUuid = null;
+            if (cursor != null && !cursor.getDate().after(now)) {
+                pullUntil = cursor.getDate();
+                pullBeforeUuid = cursor.getUuid();
+            }
+            blobbRepository
+                    .getFeedForUserWithUuid_PostedBetween_ByAuthors(user.getUuid(), new ArrayList<>(pulledAuthors),
+                            before, pullUntil, pullBeforeUuid, skip + limit)
+                    .forEach(b -> {
+                        pulled.putIfAbsent(b.getUuid(), b);
+                        entries.putIfAbsent(b.getUuid(), new TimelineStore.Entry(b.getUuid(), b.getDate()));
+                    });
+        }
+
+        List<TimelineStore.Entry> page = entries.values()
+                .stream()
+                .sorted(FEED_ORDER)
+                .skip(skip)
+                .limit(limit)
+                .collect(Collectors.toList());
+
+        // timeline that had to evict its oldest entries might not reach as far as the requested page,
+        // in that case the feed has to be read from the database
+        if (!timeline.get().isComplete()) {
+            Date oldestInTimeline = timelineEntries.isEmpty() ?
+                    now : timelineEntries.get(timelineEntries.size() - 1).getDate();
+            boolean pageTooShort = page.size() < limit;
+            boolean pageOlderThanTimeline = !page.isEmpty() &&
+                    page.get(page.size() - 1).getDate().before(oldestInTimeline);
+            if (pageTooShort || pageOlderThanTimeline) {
+                return getFeedFromDatabase(user, before, now, skip, cursor, limit);
+            }
+        }
+        return getBlobbsReferencedBy(page, pulled);
+    }
+
+    private List<FeedBlobb> getFeedFromDatabase(User user, Date before, Date now, Long skip, Cursor cursor, Long limit) {
+        if (cursor == null) {
+            return blobbRepository
+                    .getFeedForUserWithUuid_PostedBetween(user.getUuid(), before, now, skip, limit);
+        }
         return blobbRepository
-                .getFeedForUserWithUuid_PostedBetween(user.getUuid(), before, now, skip, limit);
+                .getFeedForUserWithUuid_PostedBetween_AfterCursor(user.getUuid(), before, now,
+                        cursor.getDate(), cursor.getUuid(), limit);
+    }
+
+    private List<FeedBlobb> seedTimelineAndGetFeed(User user, Date before, Date now, Long skip, Cursor cursor, Long limit) {
+        // the timeline is seeded with blobbs from the longest period that can be requested
+        Date seedSince = Date.from(now.toInstant().minus(BlobbsSince.TWELVE_HOURS.getHours(), HOURS));
+        long capacity = timelineStore.getCapacity();
+
+        long seeding = timelineStore.beginSeeding(user.getUuid());
+        List<FeedBlobb> seed = blobbRepository
+                .getFeedForUserWithUuid_PostedBetween(user.getUuid(), seedSince, now, 0L, capacity);
+        List<TimelineStore.Entry> entries = seed
+                .stream()
+                .map(b -> new TimelineStore.Entry(b.getUuid(), b.getDate()))
+                .collect(Collectors.toList());
+        boolean complete = seed.size() < capacity;
+        timelineStore.finishSeeding(user.getUuid(), seeding, entries, complete);
+
+        List<FeedBlobb> feed = seed
+                .stream()
+                .filter(b -> !b.getDate().before(before))
+                .filter(b -> isAfterCursor(b.getDate(), b.getUuid(), cursor))
+                .skip(skip)
+                .limit(limit)
+                .collect(Collectors.toList());
+
+        if (feed.size() < limit && !complete) {
+            return getFeedFromDatabase(user, before, now, skip, cursor, limit);
+        }
+        return feed;
+    }
+
+    private List<FeedBlobb> getBlobbsReferencedBy(List<TimelineStore.Entry> entries, Map<UUID, FeedBlobb> alreadyLoaded) {
+        if (entries.isEmpty()) {
+            return List.of();
+        }
+
+        List<UUID> uuids = entries
+                .stream()
+                .map(TimelineStore.Entry::getBlobbUuid)
+                .collect(Collectors.toList());
+
+        List<UUID> uuidsToLoad = uuids
+                .stream()
+                .filter(uuid -> !alreadyLoaded.containsKey(uuid))
+                .collect(Collectors.toList());
+
+        Map<UUID, FeedBlobb> blobbs = new HashMap<>(alreadyLoaded);
+        if (!uuidsToLoad.isEmpty()) {
+            blobbRepository
+                    .getBlobbsWithUuids(uuidsToLoad)
+                    .forEach(b -> blobbs.putIfAbsent(b.getUuid(), b));
+        }
+
+        // blobbs have to be returned in the same order as they appear in the timeline,
+        // blobbs that have been deleted in the meantime are skipped
+        return uuids
+                .stream()
+                .map(blobbs::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private void pushToTimelines(Blobb blobb) {
+        UUID authorUuid = blobb.getAuthor().getUuid();
+
+        Date postedAt = blobb.getCreationDate();
+        // blobbs that have not been pushed are pulled for as long as they can be a part of any feed
+        Date forgetBefore = Date.from(postedAt.toInstant().minus(BlobbsSince.TWELVE_HOURS.getHours(), HOURS));
+        if (timelineStore.pullIfPopular(authorUuid, followGraph.countFollowers(authorUuid), postedAt, forgetBefore)) {
+            return;
+        }
+
+        // every user follows themselves, so the author's own timeline also receives the blobb
+        List<UUID> followers = userRepository.findUuidsOfAllFollowersOfUserWithUuid(authorUuid);
+        timelineStore.push(followers, new TimelineStore.Entry(blobb.getUuid(), blobb.getCreationDate()));
     }
 
     @Override
@@ -129,7 +359,7 @@ public class BlobbService implements IBlobbService {
 
     }
 
-    private List<Tag> findTagsInContent(Blobb blobb) {
+    private Set<String> findTagNamesInContent(Blobb blobb) {
         // look for the hashtag pattern in the blobb content
         Matcher m = hashtagPattern.matcher(blobb.getContent());
 
@@ -140,72 +370,179 @@ public class BlobbService implements IBlobbService {
             // every tag name should have all characters lower case
             uniqueTags.add(m.group().toLowerCase());
         }
+        return uniqueTags;
+    }
 
-        List<Tag> allFoundTags = new ArrayList<>();
-        for (String tagName : uniqueTags) {
-            // for every tag name check if that tag already exists
-            // in the database
-            try {
-                Tag dbTag = tagService.findByName(tagName);
-                allFoundTags.add(dbTag);
-            } catch (TagDoesntExistException ex) {
-                // tag doesn't exist in the database
-                // create a new tag
-                allFoundTags.add(new Tag(tagName));
-            }
+    private List<Tag> findTagsByNames(Set<String> names) {
+        if (names.isEmpty()) {
+            return List.of();
         }
-        return allFoundTags;
+        // existing tags are read and missing ones are created, all of them with a single query
+        return tagService.findOrCreateByNames(names);
     }
 
+    // blobbs are written with queries that only need uuids of their authors and tags
+    private static Map<String, Object> toRow(Blobb blobb) {
+        return Map.of(
+                "uuid", blobb.getUuid().toString(),
+                "content", blobb.getContent(),
+                "creationDate", blobb.getCreationDate().getTime(),
+                "author", blobb.getAuthor().getUuid().toString(),
+                "tags", blobb.getTags()
+                        .stream()
+                        .map(t -> t.getUuid().toString())
+                        .collect(Collectors.toList()));
+    }
+
+    /*
+        Blobbs are not saved by OGM, because that would also write their authors and all their tags again.
+        Responses and reblobbs are only created if their parents exist and are not marked as deleted,
+        so only uuids of the parents are needed. Their tags are created by the same query, only once the parent
+        has been found, so tags are resolved after the write and a missing parent leaves no tags behind.
+     */
     @Override
-    public Blobb processBlobbAndSave(Blobb blobb) {
-        List<Tag> tags = findTagsInContent(blobb);
-        tags.forEach(blobb::addTag);
-        return blobbRepository.save(blobb);
+    public Blobb processBlobbAndSave(Blobb blobb) throws BlobbDoesntExistException {
+        if (blobb.getUuid() == null) {
+            blobb.setUuid(UUID.randomUUID());
+        }
+        Set<String> tagNames = findTagNamesInContent(blobb);
+
+        if (blobb instanceof ResponseBlobb) {
+            UUID parentUuid = ((ResponseBlobb) blobb).getRespondsTo().getUuid();
+            if (blobbRepository.createResponseToBlobb(toRow(blobb), tagNames, parentUuid) == 0) {
+                throw new BlobbDoesntExistException(parentUuid);
+            }
+            findTagsByNames(tagNames).forEach(blobb::addTag);
+        } else if (blobb instanceof Reblobb) {
+            UUID parentUuid = ((Reblobb) blobb).getReblobbs().getUuid();
+            if (blobbRepository.createReblobbOfBlobb(toRow(blobb), tagNames, parentUuid) == 0) {
+                throw new BlobbDoesntExistException(parentUuid);
+            }
+            findTagsByNames(tagNames).forEach(blobb::addTag);
+        } else {
+            findTagsByNames(tagNames).forEach(blobb::addTag);
+            blobbRepository.createBlobbs(List.of(toRow(blobb)));
+        }
+
+        tagService.recordUses(blobb.getTags(), blobb.getCreationDate());
+        pushToTimelines(blobb);
+        return blobb;
+    }
+
+    // parents of responses and reblobbs are only referenced by their uuids
+    private static Blobb referenceTo(UUID uuid) {
+        Blobb blobb = new Blobb();
+        blobb.setUuid(uuid);
+        return blobb;
     }
 
+    /*
+        Blobbs are not saved while the request waits, they are queued and written in batches by saveQueuedBlobbs.
+        The uuid is assigned right away, so that it can be returned to the author.
+     */
     @Override
-    public Blobb postBlobb(User author, String content) {
+    public Blobb postBlobb(User author, String content) throws BlobbQueueFullException {
         Blobb b = new Blobb(author, content);
-        return processBlobbAndSave(b);
+        b.setUuid(UUID.randomUUID());
+        if (!ingestionQueue.offer(b)) {
+            throw new BlobbQueueFullException();
+        }
+        return b;
     }
 
-    @Override
-    public Blobb postReblobb(User author, String content, UUID reblobbedPostUuid) throws BlobbDoesntExistException {
-        Optional<Blobb> reblobbedPost = blobbRepository.findById(reblobbedPostUuid);
+    /*
+        Writes a batch of queued blobbs. Tags of all blobbs are found or created with a single query,
+        and all blobbs are created with another one. Only the uuid of the author is needed to create a blobb,
+        so queued blobbs do not require authors to be read from the database.
+
+        A batch can be written again after a failed attempt, so blobbs are merged by their uuids
+        and tags found during the previous attempt are replaced.
+     */
+    void saveQueuedBlobbs(List<Blobb> blobbs) {
+        Map<Blobb, Set<String>> tagNames = new HashMap<>();
+        Set<String> allTagNames = new HashSet<>();
+        for (Blobb blobb : blobbs) {
+            blobb.getTags().clear();
+            Set<String> names = findTagNamesInContent(blobb);
+            tagNames.put(blobb, names);
+            allTagNames.addAll(names);
+        }
+
+        Map<String, Tag> tags = new HashMap<>();
+        if (!allTagNames.isEmpty()) {
+            tagService.findOrCreateByNames(allTagNames).forEach(t -> tags.put(t.getName(), t));
+        }
+
+        List<Map<String, Object>> rows = new ArrayList<>(blobbs.size());
+        for (Blobb blobb : blobbs) {
+            tagNames.get(blobb).stream().map(tags::get).filter(Objects::nonNull).forEach(blobb::addTag);
+            rows.add(toRow(blobb));
+        }
+        blobbRepository.createBlobbs(rows);
 
-        if (reblobbedPost.isPresent() && !reblobbedPost.get().isDeleted()) {
-            Blobb reblobb = new Reblobb(author, content, reblobbedPost.get());
-            return processBlobbAndSave(reblobb);
+        for (Blobb blobb : blobbs) {
+            tagService.recordUses(blobb.getTags(), blobb.getCreationDate());
+            pushToTimelines(blobb);
         }
-        throw new BlobbDoesntExistException(reblobbedPostUuid);
     }
 
     @Override
-    public Blobb postResponse(User author, String content, UUID parentBlobbUuid) throws BlobbDoesntExistException {
-        Optional<Blobb> parentPost = blobbRepository.findById(parentBlobbUuid);
+    public Blobb postReblobb(User author, String content, UUID reblobbedPostUuid) throws BlobbDoesntExistException {
+        Blobb reblobb = processBlobbAndSave(new Reblobb(author, content, referenceTo(reblobbedPostUuid)));
+        blobbRepository.incrementCountersOfParentOfBlobbWithUuid(reblobb.getUuid());
+        blobbCache.invalidateInfo(reblobbedPostUuid);
+        return reblobb;
+    }
 
-        if (parentPost.isPresent() && !parentPost.get().isDeleted()) {
-            Blobb response = new ResponseBlobb(author, content, parentPost.get());
-            return processBlobbAndSave(response);
-        }
-        throw new BlobbDoesntExistException(parentBlobbUuid);
+    @Override
+    public Blobb postResponse(User author, String content, UUID parentBlobbUuid) throws BlobbDoesntExistException {
+        Blobb response = processBlobbAndSave(new ResponseBlobb(author, content, referenceTo(parentBlobbUuid)));
+        blobbRepository.incrementCountersOfParentOfBlobbWithUuid(response.getUuid());
+        blobbCache.invalidateInfo(parentBlobbUuid);
+        return response;
     }
 
     @Override
     public boolean markBlobbAsDeleted(User loggedUser, UUID blobbUuid) throws BlobbDoesntExistException, UserCannotDeleteBlobbException {
         Optional<Blobb> blobbToDelete = blobbRepository.findById(blobbUuid);
 
-        if (blobbToDelete.isPresent()) {
-            Blobb b = blobbToDelete.get();
-            // make sure that the user has the right to delete that blobb
-            if (!b.getAuthor().getUuid().equals(loggedUser.getUuid())) {
+        if (blobbToDelete.isEmpty()) {
+            // deleting a blobb that has already been marked as deleted succeeds without changing anything
+            Optional<UUID> authorUuid = blobbRepository.findAuthorOfDeletedBlobbWithUuid(blobbUuid);
+            if (authorUuid.isEmpty()) {
+                throw new BlobbDoesntExistException(blobbUuid);
+            }
+            if (!authorUuid.get().equals(loggedUser.getUuid())) {
                 throw new UserCannotDeleteBlobbException(loggedUser, blobbUuid);
             }
-            b.markAsDeleted();
-            return blobbRepository.save(b).isDeleted();
+            return true;
+        }
+
+        Blobb b = blobbToDelete.get();
+        // make sure that the user has the right to delete that blobb
+        if (!b.getAuthor().getUuid().equals(loggedUser.getUuid())) {
+            throw new UserCannotDeleteBlobbException(loggedUser, blobbUuid);
+        }
+        // only the flag is written, saving the whole blobb would also write its author and tags again.
+        // Concurrent requests can both find the blobb before it is marked, only the one that marks it
+        // decrements counters of its parent
+        if (blobbRepository.markBlobbWithUuidAsDeleted(blobbUuid) > 0) {
+            blobbRepository.decrementCountersOfParentOfBlobbWithUuid(blobbUuid);
+            tagService.removeUses(b.getTags(), b.getCreationDate());
+        }
+        timelineStore.removeBlobb(blobbUuid);
+        blobbCache.invalidate(blobbUuid);
+        // counters of the parent have been decremented
+        Blobb parent = null;
+        if (b instanceof ResponseBlobb) {
+            parent = ((ResponseBlobb) b).getRespondsTo();
+        } else if (b instanceof Reblobb) {
+            parent = ((Reblobb) b).getReblobbs();
+        }
+        if (parent != null) {
+            blobbCache.invalidateInfo(parent.getUuid());
         }
-        throw new BlobbDoesntExistException(blobbUuid);
+        return true;
     }
 
     public void setClock(Clock clock) {
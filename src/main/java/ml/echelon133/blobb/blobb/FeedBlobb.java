@@ -1,6 +1,7 @@
 package ml.echelon133.blobb.blobb;
 
-import ml.echelon133.blobb.user.User;
+import ml.echelon133.blobb.schema.EpochMillisDateConverter;
+import ml.echelon133.blobb.user.Author;
 import org.neo4j.ogm.annotation.typeconversion.Convert;
 import org.neo4j.ogm.typeconversion.UuidStringConverter;
 import org.springframework.data.neo4j.annotation.QueryResult;
@@ -9,12 +10,13 @@ import java.util.Date;
 import java.util.UUID;
 
 @QueryResult
-public class FeedBlobb {
+public class FeedBlobb implements ListedBlobb {
     @Convert(value = UuidStringConverter.class)
     private UUID uuid;
     private String content;
+    @Convert(value = EpochMillisDateConverter.class)
     private Date date;
-    private User author;
+    private Author author;
     @Convert(value = UuidStringConverter.class)
     private UUID reblobbs;
     @Convert(value = UuidStringConverter.class)
@@ -44,11 +46,11 @@ public class FeedBlobb {
         this.date = date;
     }
 
-    public User getAuthor() {
+    public Author getAuthor() {
         return author;
     }
 
-    public void setAuthor(User author) {
+    public void setAuthor(Author author) {
         this.author = author;
     }
 
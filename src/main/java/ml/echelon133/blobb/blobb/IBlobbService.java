@@ -1,5 +1,6 @@
 package ml.echelon133.blobb.blobb;
 
+import ml.echelon133.blobb.pagination.Cursor;
 import ml.echelon133.blobb.user.User;
 
 import java.util.List;
@@ -26,14 +27,17 @@ public interface IBlobbService {
     FeedBlobb getByUuid(UUID uuid) throws BlobbDoesntExistException;
     BlobbInfo getBlobbInfo(UUID uuid) throws BlobbDoesntExistException;
     List<FeedBlobb> getAllResponsesTo(UUID uuid, Long skip, Long limit) throws BlobbDoesntExistException, IllegalArgumentException;
+    List<FeedBlobb> getAllResponsesTo(UUID uuid, Cursor cursor, Long limit) throws BlobbDoesntExistException, IllegalArgumentException;
     List<FeedBlobb> getAllReblobbsOf(UUID uuid, Long skip, Long limit) throws BlobbDoesntExistException, IllegalArgumentException;
+    List<FeedBlobb> getAllReblobbsOf(UUID uuid, Cursor cursor, Long limit) throws BlobbDoesntExistException, IllegalArgumentException;
     boolean checkIfUserWithUuidLikes(User user, UUID blobbUuid) throws BlobbDoesntExistException;
     boolean likeBlobb(User user, UUID blobbUuid) throws BlobbDoesntExistException;
     boolean unlikeBlobb(User user, UUID blobbUuid) throws BlobbDoesntExistException;
     List<FeedBlobb> getFeedForUser(User user, BlobbsSince since, Long skip, Long limit) throws IllegalArgumentException;
+    List<FeedBlobb> getFeedForUser(User user, BlobbsSince since, Cursor cursor, Long limit) throws IllegalArgumentException;
     List<FeedBlobb> getFeedForUser_Popular(User user, BlobbsSince since, Long skip, Long limit) throws IllegalArgumentException;
-    Blobb processBlobbAndSave(Blobb blobb);
-    Blobb postBlobb(User author, String content);
+    Blobb processBlobbAndSave(Blobb blobb) throws BlobbDoesntExistException;
+    Blobb postBlobb(User author, String content) throws BlobbQueueFullException;
     Blobb postReblobb(User author, String content, UUID reblobbedPostUuid) throws BlobbDoesntExistException;
     Blobb postResponse(User author, String content, UUID parentBlobbUuid) throws BlobbDoesntExistException;
     boolean markBlobbAsDeleted(User loggedUser, UUID blobbUuid) throws BlobbDoesntExistException, UserCannotDeleteBlobbException;
@@ -0,0 +1,97 @@
+package ml.echelon133.blobb.blobb;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/*
+    Write-behind buffer of changes of likes counters.
+
+    Updating the counter of a blobb every time someone likes it makes all users that like a popular blobb
+    wait for each other, because each of these updates locks the same node. Instead, changes of the counter
+    are accumulated in memory and periodically written to the database, a single query updates
+    counters of all blobbs that have been liked or unliked since the last flush.
+
+    Deltas that have not been flushed yet are lost if the application stops abruptly,
+    these are repaired by BlobbCounterReconciler. Relationships that are counted by the reconciler
+    may still have their deltas pending, so the reconciler subtracts them (see withPendingDeltas).
+    A like is committed before its delta is added, so a like that is committed while the reconciler reads
+    the same blobb is counted both by the reconciler and by the next flush. Closing that window would mean
+    holding a lock shared with the reconciler during every like query, so the counter stays off by such likes
+    until the next reconciliation instead.
+
+    Deltas are kept in a ConcurrentHashMap rather than in striped counters (LongAdder). Likes of the same blobb
+    only wait for each other while the map adds a number under the lock of its bin, which is negligible
+    compared to the query that every like runs before. A LongAdder would also make removing a delta that
+    becomes 0 unsafe, because a like could be added to a counter that has just been removed from the map.
+
+    Information about blobbs whose counters have been written is removed from the BlobbCache,
+    because cached counters only add up with pending deltas until the next flush.
+ */
+@Component
+public class LikeCounterBuffer {
+
+    private BlobbRepository blobbRepository;
+    private BlobbCache blobbCache;
+    // deltas are only changed with atomic operations of the map, so that a delta that becomes 0
+    // can be removed without losing a like that is added to it at the same time
+    private final Map<UUID, Long> pendingDeltas = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LikeCounterBuffer(BlobbRepository blobbRepository, BlobbCache blobbCache) {
+        this.blobbRepository = blobbRepository;
+        this.blobbCache = blobbCache;
+    }
+
+    public void add(UUID blobbUuid, long delta) {
+        pendingDeltas.merge(blobbUuid, delta, LikeCounterBuffer::sumOrRemove);
+    }
+
+    public long getPendingDelta(UUID blobbUuid) {
+        return pendingDeltas.getOrDefault(blobbUuid, 0L);
+    }
+
+    // returning null from a remapping function removes the delta from the map
+    private static Long sumOrRemove(Long delta, Long change) {
+        long sum = delta + change;
+        return sum == 0 ? null : sum;
+    }
+
+    // runs the action with a snapshot of pending deltas (keyed by uuids of blobbs as strings),
+    // deltas of the snapshot are not flushed until the action is done
+    public synchronized <T> T withPendingDeltas(Function<Map<String, Long>, T> action) {
+        Map<String, Long> snapshot = new HashMap<>();
+        pendingDeltas.forEach((uuid, delta) -> snapshot.put(uuid.toString(), delta));
+        return action.apply(snapshot);
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${blobb.likes.flush-interval:1000}")
+    public synchronized void flush() {
+        Map<UUID, Long> flushed = new HashMap<>();
+        List<Map<String, Object>> deltas = new ArrayList<>();
+
+        // deltas that become 0 are removed from the map, so every delta has to be written
+        pendingDeltas.forEach((uuid, delta) -> {
+            flushed.put(uuid, delta);
+            deltas.add(Map.of("uuid", uuid.toString(), "likes", delta));
+        });
+
+        if (deltas.isEmpty()) {
+            return;
+        }
+        blobbRepository.addToLikesCounters(deltas);
+
+        // only subtract what has been written, likes that have been added
+        // during the flush stay in the buffer until the next one
+        flushed.forEach((uuid, delta) -> {
+            pendingDeltas.computeIfPresent(uuid, (k, current) -> sumOrRemove(current, -delta));
+            blobbCache.invalidateInfo(uuid);
+        });
+    }
+}
@@ -0,0 +1,48 @@
+package ml.echelon133.blobb.blobb;
+
+import org.springframework.data.neo4j.annotation.QueryResult;
+
+/*
+    Result of a query that likes or unlikes a blobb.
+
+    'blobbExists' tells whether the blobb exists (even if it's marked as deleted), 'changed' holds
+    the number of relationships that have been created or deleted, and 'likes' tells whether the relationship
+    exists after the query.
+ */
+@QueryResult
+public class LikeResult {
+    private Boolean blobbExists;
+    private Long changed;
+    private Boolean likes;
+
+    public LikeResult() {}
+    public LikeResult(Boolean blobbExists, Long changed, Boolean likes) {
+        this.blobbExists = blobbExists;
+        this.changed = changed;
+        this.likes = likes;
+    }
+
+    public Boolean getBlobbExists() {
+        return blobbExists;
+    }
+
+    public Long getChanged() {
+        return changed;
+    }
+
+    public Boolean getLikes() {
+        return likes;
+    }
+
+    public void setBlobbExists(Boolean blobbExists) {
+        this.blobbExists = blobbExists;
+    }
+
+    public void setChanged(Long changed) {
+        this.changed = changed;
+    }
+
+    public void setLikes(Boolean likes) {
+        this.likes = likes;
+    }
+}
@@ -0,0 +1,18 @@
+package ml.echelon133.blobb.blobb;
+
+import ml.echelon133.blobb.user.Author;
+
+import java.util.Date;
+import java.util.UUID;
+
+/*
+    Blobb as it is returned by queries that list blobbs, i.e. feeds and recent blobbs of tags and users.
+ */
+public interface ListedBlobb {
+    UUID getUuid();
+    String getContent();
+    Date getDate();
+    Author getAuthor();
+    UUID getReblobbs();
+    UUID getRespondsTo();
+}
@@ -0,0 +1,97 @@
+package ml.echelon133.blobb.blobb;
+
+import ml.echelon133.blobb.user.Author;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/*
+    Normalized shape of a list of blobbs, in which blobbs reference their authors by uuid,
+    and every author is present only once in a separate map of authors.
+
+    Listed blobbs usually have only a few distinct authors, so a page in which every blobb holds
+    its own copy of the author repeats the same properties of a user many times.
+ */
+public class NormalizedBlobbs {
+
+    private List<Entry> blobbs;
+    private Map<UUID, Author> authors;
+
+    private NormalizedBlobbs(List<Entry> blobbs, Map<UUID, Author> authors) {
+        this.blobbs = blobbs;
+        this.authors = authors;
+    }
+
+    public static NormalizedBlobbs of(List<? extends ListedBlobb> listed) {
+        List<Entry> blobbs = new ArrayList<>(listed.size());
+        // authors are kept in the order in which they first appear on the list
+        Map<UUID, Author> authors = new LinkedHashMap<>();
+        for (ListedBlobb blobb : listed) {
+            Author author = blobb.getAuthor();
+            UUID authorUuid = null;
+            if (author != null) {
+                authorUuid = author.getUuid();
+                authors.putIfAbsent(authorUuid, author);
+            }
+            blobbs.add(new Entry(blobb, authorUuid));
+        }
+        return new NormalizedBlobbs(blobbs, authors);
+    }
+
+    public List<Entry> getBlobbs() {
+        return blobbs;
+    }
+
+    public Map<UUID, Author> getAuthors() {
+        return authors;
+    }
+
+    /*
+        Listed blobb with its author replaced by the uuid of the author.
+     */
+    public static class Entry {
+        private UUID uuid;
+        private String content;
+        private Date date;
+        private UUID author;
+        private UUID reblobbs;
+        private UUID respondsTo;
+
+        private Entry(ListedBlobb blobb, UUID author) {
+            this.uuid = blobb.getUuid();
+            this.content = blobb.getContent();
+            this.date = blobb.getDate();
+            this.author = author;
+            this.reblobbs = blobb.getReblobbs();
+            this.respondsTo = blobb.getRespondsTo();
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public Date getDate() {
+            return date;
+        }
+
+        public UUID getAuthor() {
+            return author;
+        }
+
+        public UUID getReblobbs() {
+            return reblobbs;
+        }
+
+        public UUID getRespondsTo() {
+            return respondsTo;
+        }
+    }
+}
@@ -14,4 +14,8 @@ public class Reblobb extends Blobb {
         super(author, content);
         this.reblobbs = reblobbs;
     }
+
+    public Blobb getReblobbs() {
+        return reblobbs;
+    }
 }
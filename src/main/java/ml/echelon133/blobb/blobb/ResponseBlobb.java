@@ -14,4 +14,8 @@ public class ResponseBlobb extends Blobb {
         super(author, content);
         this.respondsTo = respondsTo;
     }
+
+    public Blobb getRespondsTo() {
+        return respondsTo;
+    }
 }
@@ -2,8 +2,11 @@ package ml.echelon133.blobb.feed;
 
 import ml.echelon133.blobb.blobb.FeedBlobb;
 import ml.echelon133.blobb.blobb.IBlobbService;
+import ml.echelon133.blobb.blobb.NormalizedBlobbs;
+import ml.echelon133.blobb.pagination.Cursor;
 import ml.echelon133.blobb.user.User;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -21,17 +24,39 @@ import static ml.echelon133.blobb.blobb.IBlobbService.BlobbsSince.*;
 public class FeedController {
 
     private IBlobbService blobbService;
+    private FeedRequestCoalescer feedRequestCoalescer;
 
     @Autowired
-    public FeedController(IBlobbService blobbService) {
+    public FeedController(IBlobbService blobbService, FeedRequestCoalescer feedRequestCoalescer) {
         this.blobbService = blobbService;
+        this.feedRequestCoalescer = feedRequestCoalescer;
+    }
+
+    // identical requests that are processed at the same time share a single read of the feed
+    private List<FeedBlobb> getPopularFeed(User user, IBlobbService.BlobbsSince since, Long skip, Long limit) {
+        FeedRequestCoalescer.FeedRequest request =
+                new FeedRequestCoalescer.FeedRequest(user.getUuid(), since, true, skip, null, limit);
+        return feedRequestCoalescer.getFeed(request, () ->
+                blobbService.getFeedForUser_Popular(user, since, skip, limit));
+    }
+
+    private List<FeedBlobb> getRecentFeed(User user, IBlobbService.BlobbsSince since, Long skip, Cursor cursor, Long limit) {
+        FeedRequestCoalescer.FeedRequest request =
+                new FeedRequestCoalescer.FeedRequest(user.getUuid(), since, false, skip, cursor, limit);
+        return feedRequestCoalescer.getFeed(request, () -> {
+            if (cursor == null) {
+                return blobbService.getFeedForUser(user, since, skip, limit);
+            }
+            return blobbService.getFeedForUser(user, since, cursor, limit);
+        });
     }
 
     @GetMapping
     public ResponseEntity<List<FeedBlobb>> getUserFeed(@RequestParam(required = false) String since,
                                                        @RequestParam(required = false) String by,
                                                        @RequestParam(required = false) Long skip,
-                                                       @RequestParam(required = false) Long limit) throws IllegalArgumentException {
+                                                       @RequestParam(required = false) Long limit,
+                                                       @RequestParam(required = false) String cursor) throws IllegalArgumentException {
 
         User loggedUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
 
@@ -60,17 +85,39 @@ public class FeedController {
         }
 
         List<FeedBlobb> feed;
+        HttpHeaders headers = new HttpHeaders();
 
         if (by != null && by.equalsIgnoreCase("POPULARITY")) {
             // if 'by' is provided and contains 'POPULARITY'
             // get most popular posts
-            feed = blobbService.getFeedForUser_Popular(loggedUser, blobbsSince, skip, limit);
+            // popular blobbs are not ordered by their dates, so a cursor cannot point at any of them
+            if (cursor != null) {
+                throw new IllegalArgumentException("Cursor cannot be used with popularity ordering.");
+            }
+            feed = getPopularFeed(loggedUser, blobbsSince, skip, limit);
         } else {
             // if 'by' is not provided or has some different value
             // get most recent posts
-            feed = blobbService.getFeedForUser(loggedUser, blobbsSince, skip, limit);
+            if (cursor == null) {
+                feed = getRecentFeed(loggedUser, blobbsSince, skip, null, limit);
+            } else {
+                // skip is ignored when the cursor is used
+                feed = getRecentFeed(loggedUser, blobbsSince, 0L, Cursor.decode(cursor), limit);
+            }
+            headers = Cursor.nextCursorHeaders(feed, limit, b -> new Cursor(b.getDate(), b.getUuid()));
         }
 
-        return new ResponseEntity<>(feed, HttpStatus.OK);
+        return new ResponseEntity<>(feed, headers, HttpStatus.OK);
+    }
+
+    // same feed, but every author is serialized only once instead of once for every blobb of that author
+    @GetMapping(params = "normalized=true")
+    public ResponseEntity<NormalizedBlobbs> getUserFeed_Normalized(@RequestParam(required = false) String since,
+                                                                   @RequestParam(required = false) String by,
+                                                                   @RequestParam(required = false) Long skip,
+                                                                   @RequestParam(required = false) Long limit,
+                                                                   @RequestParam(required = false) String cursor) throws IllegalArgumentException {
+        ResponseEntity<List<FeedBlobb>> feed = getUserFeed(since, by, skip, limit, cursor);
+        return new ResponseEntity<>(NormalizedBlobbs.of(feed.getBody()), feed.getHeaders(), feed.getStatusCode());
     }
 }
@@ -0,0 +1,138 @@
+package ml.echelon133.blobb.feed;
+
+import ml.echelon133.blobb.blobb.FeedBlobb;
+import ml.echelon133.blobb.blobb.IBlobbService;
+import ml.echelon133.blobb.pagination.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/*
+    Lets identical feed requests that are processed at the same time share a single read of the feed.
+
+    Clients often request the same page of the same feed within milliseconds, e.g. when a user has
+    the application open on several devices, or when requests are retried. The first of these requests
+    reads the feed, and all identical requests that arrive before it's done wait for its result
+    instead of reading the feed again. Results are not remembered after that, so requests that arrive
+    later always read the current feed.
+
+    Feeds that are requested at the same time are also shared if reading them fails, in which case
+    every waiting request fails with the same exception (or error).
+ */
+@Component
+public class FeedRequestCoalescer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeedRequestCoalescer.class);
+
+    private final Map<FeedRequest, CompletableFuture<List<FeedBlobb>>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public List<FeedBlobb> getFeed(FeedRequest request, Supplier<List<FeedBlobb>> reader) {
+        requests.increment();
+
+        CompletableFuture<List<FeedBlobb>> feed = new CompletableFuture<>();
+        CompletableFuture<List<FeedBlobb>> existing = inFlight.putIfAbsent(request, feed);
+        if (existing != null) {
+            coalesced.increment();
+            return join(existing);
+        }
+
+        // errors have to complete the feed too, otherwise waiting requests would never finish
+        try {
+            feed.complete(reader.get());
+        } catch (Throwable ex) {
+            feed.completeExceptionally(ex);
+        } finally {
+            inFlight.remove(request, feed);
+        }
+        return join(feed);
+    }
+
+    private static List<FeedBlobb> join(CompletableFuture<List<FeedBlobb>> feed) {
+        try {
+            return feed.join();
+        } catch (CompletionException ex) {
+            // exceptions thrown while reading the feed are rethrown as they are,
+            // so that they are handled just like when the feed is read without coalescing
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    // fraction of requests that have not read the feed themselves
+    public double getCoalescingRatio() {
+        long total = getRequestCount();
+        return total == 0 ? 0.0 : (double) getCoalescedCount() / total;
+    }
+
+    @Scheduled(fixedDelayString = "${blobb.feed.coalescing.stats-interval:600000}")
+    public void logStats() {
+        LOGGER.info("Feed requests: {} requests, {} coalesced, coalescing ratio {}",
+                getRequestCount(), getCoalescedCount(), getCoalescingRatio());
+    }
+
+    /*
+        Parameters that make feed requests identical.
+     */
+    public static class FeedRequest {
+        private UUID userUuid;
+        private IBlobbService.BlobbsSince since;
+        private boolean popular;
+        private Long skip;
+        private Cursor cursor;
+        private Long limit;
+
+        public FeedRequest(UUID userUuid, IBlobbService.BlobbsSince since, boolean popular,
+                           Long skip, Cursor cursor, Long limit) {
+            this.userUuid = userUuid;
+            this.since = since;
+            this.popular = popular;
+            this.skip = skip;
+            this.cursor = cursor;
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FeedRequest that = (FeedRequest) o;
+            return popular == that.popular &&
+                    Objects.equals(userUuid, that.userUuid) &&
+                    since == that.since &&
+                    Objects.equals(skip, that.skip) &&
+                    Objects.equals(cursor, that.cursor) &&
+                    Objects.equals(limit, that.limit);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userUuid, since, popular, skip, cursor, limit);
+        }
+    }
+}
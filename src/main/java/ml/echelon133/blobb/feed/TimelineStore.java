@@ -0,0 +1,227 @@
+package ml.echelon133.blobb.feed;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/*
+    Materialized, per-user timelines that hold uuids of the most recent blobbs
+    posted by users that the timeline owner follows.
+
+    Timelines are kept in memory, so they are lost on restart. A user that doesn't have
+    a timeline yet is 'cold' and their timeline has to be seeded from the database before
+    it can be used. New blobbs are only pushed into timelines that already exist, pushing them into
+    timelines of cold users is pointless, because these timelines will be seeded from the database anyway.
+
+    Pushing blobbs of authors that have a lot of followers would mean writing into a huge number of timelines
+    every time such an author posts something. Blobbs of authors with at least 'pullThreshold' followers
+    are never pushed, they have to be pulled from the database and merged with the timeline when the feed is read.
+    The number of followers is checked every time the author posts something, so an author that loses followers
+    has their new blobbs pushed again. Their blobbs that have not been pushed are still pulled until they are
+    too old to be a part of any feed, otherwise these blobbs would be missing from the feeds of their followers.
+ */
+@Component
+public class TimelineStore {
+
+    public static class Entry {
+        private UUID blobbUuid;
+        private Date date;
+
+        public Entry(UUID blobbUuid, Date date) {
+            this.blobbUuid = blobbUuid;
+            this.date = date;
+        }
+
+        public UUID getBlobbUuid() {
+            return blobbUuid;
+        }
+
+        public Date getDate() {
+            return date;
+        }
+    }
+
+    public static class Timeline {
+        // newest entries first
+        private List<Entry> entries;
+        // true if the timeline holds every blobb from the seeded period,
+        // false if some older entries had to be evicted to keep the timeline bounded
+        private boolean complete;
+
+        private Timeline(List<Entry> entries, boolean complete) {
+            this.entries = entries;
+            this.complete = complete;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    private static class MutableTimeline {
+        // identifies the seeding of this timeline, so that results of a seeding that began
+        // before the timeline was invalidated are never put into a timeline created later
+        private final long generation;
+        private LinkedList<Entry> entries = new LinkedList<>();
+        private boolean complete = true;
+        private volatile boolean ready = false;
+
+        private MutableTimeline(long generation) {
+            this.generation = generation;
+        }
+
+        private synchronized void add(Entry entry, int capacity) {
+            // entries are pushed right after the blobb is saved, so in most cases
+            // the new entry belongs at the very beginning of the list
+            ListIterator<Entry> it = entries.listIterator();
+            while (it.hasNext()) {
+                Entry e = it.next();
+                if (e.getBlobbUuid().equals(entry.getBlobbUuid())) {
+                    return;
+                }
+                if (e.getDate().before(entry.getDate())) {
+                    it.previous();
+                    break;
+                }
+            }
+            it.add(entry);
+            while (entries.size() > capacity) {
+                entries.removeLast();
+                complete = false;
+            }
+        }
+
+        private synchronized void seed(List<Entry> seededEntries, boolean seededComplete, int capacity) {
+            // entries that have been pushed while the timeline was seeding
+            // have to be merged with the entries read from the database
+            List<Entry> pushed = entries;
+            entries = new LinkedList<>();
+            complete = seededComplete;
+            // seeded entries are sorted from the newest, adding them from the oldest
+            // makes every one of them land at the beginning of the list
+            ListIterator<Entry> it = seededEntries.listIterator(seededEntries.size());
+            while (it.hasPrevious()) {
+                add(it.previous(), capacity);
+            }
+            pushed.forEach(e -> add(e, capacity));
+            ready = true;
+        }
+
+        private synchronized boolean remove(UUID blobbUuid) {
+            return entries.removeIf(e -> e.getBlobbUuid().equals(blobbUuid));
+        }
+
+        private synchronized Timeline snapshot() {
+            return new Timeline(new ArrayList<>(entries), complete);
+        }
+    }
+
+    private int capacity;
+    private long pullThreshold;
+    private final Map<UUID, MutableTimeline> timelines;
+    // authors mapped to the creation date of their newest blobb that has not been pushed
+    private final Map<UUID, Date> pulledAuthors = new ConcurrentHashMap<>();
+    private final AtomicLong generations = new AtomicLong();
+
+    @Autowired
+    public TimelineStore(@Value("${blobb.feed.timeline.capacity:500}") int capacity,
+                         @Value("${blobb.feed.timeline.max-users:10000}") int maxUsers,
+                         @Value("${blobb.feed.pull-threshold:10000}") long pullThreshold) {
+        this.capacity = capacity;
+        this.pullThreshold = pullThreshold;
+        // least recently used timelines are evicted when there are too many of them
+        this.timelines = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, MutableTimeline> eldest) {
+                return size() > maxUsers;
+            }
+        });
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public Optional<Timeline> getTimeline(UUID userUuid) {
+        MutableTimeline timeline = timelines.get(userUuid);
+        if (timeline == null || !timeline.ready) {
+            return Optional.empty();
+        }
+        return Optional.of(timeline.snapshot());
+    }
+
+    /*
+        Marks the beginning of seeding of user's timeline. Every blobb pushed between the call
+        of this method and the call of finishSeeding is not lost, even if the database query used for seeding
+        did not see that blobb.
+
+        Returned value identifies the seeding and has to be passed to finishSeeding. If the timeline
+        gets invalidated in the meantime, the seeded entries could be stale, so finishSeeding drops them,
+        even if another seeding has already created a new timeline of that user.
+     */
+    public long beginSeeding(UUID userUuid) {
+        MutableTimeline created = new MutableTimeline(generations.incrementAndGet());
+        MutableTimeline timeline = timelines.putIfAbsent(userUuid, created);
+        return (timeline == null ? created : timeline).generation;
+    }
+
+    public void finishSeeding(UUID userUuid, long seeding, List<Entry> entries, boolean complete) {
+        MutableTimeline timeline = timelines.get(userUuid);
+        if (timeline != null && timeline.generation == seeding) {
+            timeline.seed(entries, complete, capacity);
+        }
+    }
+
+    public void push(Collection<UUID> userUuids, Entry entry) {
+        for (UUID userUuid : userUuids) {
+            MutableTimeline timeline = timelines.get(userUuid);
+            if (timeline != null) {
+                timeline.add(entry, capacity);
+            }
+        }
+    }
+
+    /*
+        Returns true if the blobb posted by the author should be pulled instead of pushed.
+        An author that is not popular anymore is forgotten once their newest blobb that has not been pushed
+        was posted before 'forgetBefore', which should be the beginning of the longest period of a feed.
+     */
+    public boolean pullIfPopular(UUID authorUuid, long followers, Date postedAt, Date forgetBefore) {
+        if (followers >= pullThreshold) {
+            pulledAuthors.merge(authorUuid, postedAt, (a, b) -> a.after(b) ? a : b);
+            return true;
+        }
+        pulledAuthors.computeIfPresent(authorUuid, (uuid, newest) -> newest.before(forgetBefore) ? null : newest);
+        return false;
+    }
+
+    // returns authors that have blobbs which have not been pushed and were posted at 'since' or later
+    public Set<UUID> getPulledAuthors(Date since) {
+        return pulledAuthors.entrySet()
+                .stream()
+                .filter(e -> !e.getValue().before(since))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public void invalidate(UUID userUuid) {
+        timelines.remove(userUuid);
+    }
+
+    public void removeBlobb(UUID blobbUuid) {
+        List<MutableTimeline> all;
+        synchronized (timelines) {
+            all = new ArrayList<>(timelines.values());
+        }
+        all.forEach(t -> t.remove(blobbUuid));
+    }
+}
@@ -0,0 +1,95 @@
+package ml.echelon133.blobb.pagination;
+
+import org.springframework.http.HttpHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+
+/*
+    Opaque continuation token that points at the last element of a page.
+
+    Lists of blobbs are ordered by (creationDate, uuid), so their cursors hold both values.
+    Lists of users are ordered only by uuid, so their cursors don't hold any date.
+    Queries that receive a cursor seek past the element it points at, instead of skipping
+    every element that comes before it.
+ */
+public class Cursor {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private Date date;
+    private UUID uuid;
+
+    public Cursor(Date date, UUID uuid) {
+        this.date = date;
+        this.uuid = uuid;
+    }
+
+    public Cursor(UUID uuid) {
+        this(null, uuid);
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public boolean hasDate() {
+        return date != null;
+    }
+
+    public String encode() {
+        String value = (date == null ? "" : date.getTime()) + ":" + uuid;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Cursor decode(String encoded) throws IllegalArgumentException {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int separator = value.indexOf(':');
+            String date = value.substring(0, separator);
+            UUID uuid = UUID.fromString(value.substring(separator + 1));
+            if (date.isEmpty()) {
+                return new Cursor(uuid);
+            }
+            return new Cursor(new Date(Long.parseLong(date)), uuid);
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Invalid cursor value.");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Cursor cursor = (Cursor) o;
+        return Objects.equals(date, cursor.date) &&
+                Objects.equals(uuid, cursor.uuid);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(date, uuid);
+    }
+
+    /*
+        Only full pages get the header with the cursor. If the page is not full,
+        there is nothing more to read.
+     */
+    public static <T> HttpHeaders nextCursorHeaders(List<T> page, Long limit, Function<T, Cursor> cursorOf) {
+        HttpHeaders headers = new HttpHeaders();
+        if (!page.isEmpty() && page.size() >= limit) {
+            Cursor next = cursorOf.apply(page.get(page.size() - 1));
+            headers.set(NEXT_CURSOR_HEADER, next.encode());
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,33 @@
+package ml.echelon133.blobb.pagination;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/*
+    Queries that list blobbs related to some other node (a blobb, a user or a tag) also return
+    a marker row, which is only present if that node exists. Marker rows don't have any uuid.
+
+    This lets a single query tell apart a node without any related blobbs from a node that
+    doesn't exist at all, so that the existence of the node doesn't have to be checked with another query.
+ */
+public class ExistenceMarker {
+
+    private ExistenceMarker() {}
+
+    // returns an empty optional if there is no marker, otherwise returns all rows except the marker
+    public static <T> Optional<List<T>> strip(List<T> rows, Function<T, UUID> uuidOf) {
+        List<T> page = new ArrayList<>(rows.size());
+        boolean exists = false;
+        for (T row : rows) {
+            if (uuidOf.apply(row) == null) {
+                exists = true;
+            } else {
+                page.add(row);
+            }
+        }
+        return exists ? Optional.of(page) : Optional.empty();
+    }
+}
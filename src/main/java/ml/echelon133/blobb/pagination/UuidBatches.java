@@ -0,0 +1,28 @@
+package ml.echelon133.blobb.pagination;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+/*
+    Jobs that have to process every node of some kind (e.g. reconcilers of counters) do it in batches,
+    so that a single transaction never has to touch every node. Batches are ordered by uuids, and every batch
+    starts right after the last uuid of the previous one.
+ */
+public class UuidBatches {
+
+    private UuidBatches() {}
+
+    // 'batch' processes at most 'batchSize' nodes which uuids come after the given uuid
+    // (or from the beginning if it's null) and returns uuids of processed nodes in order
+    public static void processAll(long batchSize, BiFunction<UUID, Long, List<UUID>> batch) {
+        UUID lastUuid = null;
+        List<UUID> processed;
+        do {
+            processed = batch.apply(lastUuid, batchSize);
+            if (!processed.isEmpty()) {
+                lastUuid = processed.get(processed.size() - 1);
+            }
+        } while (processed.size() >= batchSize);
+    }
+}
@@ -0,0 +1,35 @@
+package ml.echelon133.blobb.schema;
+
+import org.neo4j.ogm.typeconversion.AttributeConverter;
+
+import java.time.OffsetDateTime;
+import java.util.Date;
+
+/*
+    Stores dates as milliseconds since the epoch, just like @DateLong.
+
+    Dates used to be stored as ISO-8601 strings, and schema migration 3 converts them in batches,
+    so until it finishes (or if it cannot run yet) nodes can still hold dates in the old format.
+    This converter reads both formats, so such nodes can be loaded in the meantime.
+ */
+public class EpochMillisDateConverter implements AttributeConverter<Date, Object> {
+
+    @Override
+    public Object toGraphProperty(Date value) {
+        if (value == null) {
+            return null;
+        }
+        return value.getTime();
+    }
+
+    @Override
+    public Date toEntityAttribute(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number) {
+            return new Date(((Number) value).longValue());
+        }
+        return Date.from(OffsetDateTime.parse(value.toString()).toInstant());
+    }
+}
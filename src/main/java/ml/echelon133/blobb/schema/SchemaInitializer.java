@@ -0,0 +1,150 @@
+package ml.echelon133.blobb.schema;
+
+import org.neo4j.ogm.session.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Creates constraints and indexes that are needed by the queries of repositories.
+
+    Changes of the schema are grouped into numbered migrations. The number of the last migration
+    that has been applied is stored in the database in a single 'SchemaVersion' node, so every migration
+    is applied only once, and only migrations that are newer than that number run on startup.
+    Statements of a migration can also safely be run again, because creating a constraint
+    or an index that already exists does nothing.
+
+    Migrations can also convert existing data. Such statements change at most $batchSize nodes at once,
+    return the number of changed nodes, and are repeated until nothing is left to change.
+
+    Schema changes cannot be mixed with data changes in a single transaction, so every statement
+    (and every batch) runs in its own transaction. If any statement fails (e.g. because the existing data violates
+    a constraint), the version is not bumped and the migration is retried on the next startup.
+    Later migrations still run, because they do not depend on each other (e.g. dates are converted even if
+    duplicate usernames prevent creating constraints), but the version is not bumped past the failed migration,
+    so they run again on the next startup, which is safe.
+
+    Migrations run while the bean is initialized, which is before the follow graph is loaded,
+    before scheduled tasks (e.g. counter reconcilers) are started and before the web server accepts requests.
+ */
+@Component
+public class SchemaInitializer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaInitializer.class);
+
+    static class Migration {
+        private int version;
+        private String description;
+        private List<String> statements;
+        private List<String> batchedStatements;
+
+        Migration(int version, String description, List<String> statements) {
+            this(version, description, statements, List.of());
+        }
+
+        Migration(int version, String description, List<String> statements, List<String> batchedStatements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+            this.batchedStatements = batchedStatements;
+        }
+    }
+
+    // new migrations have to be appended with the next version number,
+    // migrations that have already been released must never change
+    static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "uniqueness constraints", List.of(
+                    "CREATE CONSTRAINT ON (u:User) ASSERT u.uuid IS UNIQUE",
+                    "CREATE CONSTRAINT ON (u:User) ASSERT u.username IS UNIQUE",
+                    "CREATE CONSTRAINT ON (b:Blobb) ASSERT b.uuid IS UNIQUE",
+                    "CREATE CONSTRAINT ON (t:Tag) ASSERT t.uuid IS UNIQUE",
+                    "CREATE CONSTRAINT ON (t:Tag) ASSERT t.name IS UNIQUE"
+            )),
+            new Migration(2, "indexes of dates", List.of(
+                    "CREATE INDEX ON :Blobb(creationDate)"
+            )),
+            // dates used to be stored as strings, comparing them with an empty string
+            // only matches dates that have not been converted yet
+            new Migration(3, "dates stored as milliseconds since the epoch", List.of(), List.of(
+                    "MATCH (b:Blobb) WHERE b.creationDate >= '' " +
+                    "WITH b LIMIT $batchSize " +
+                    "SET b.creationDate = datetime(b.creationDate).epochMillis " +
+                    "RETURN count(b)",
+                    "MATCH (u:User) WHERE u.creationDate >= '' " +
+                    "WITH u LIMIT $batchSize " +
+                    "SET u.creationDate = datetime(u.creationDate).epochMillis " +
+                    "RETURN count(u)"
+            )),
+            // blobbs marked as deleted used to keep their labels and only had their 'deleted' flag set
+            new Migration(4, "label of deleted blobbs", List.of(
+                    "CREATE INDEX ON :DeletedBlobb(uuid)"
+            ), List.of(
+                    "MATCH (b:Blobb) WHERE b.deleted = true " +
+                    "WITH b LIMIT $batchSize " +
+                    "REMOVE b:Blobb:ResponseBlobb:Reblobb " +
+                    "SET b:DeletedBlobb " +
+                    "RETURN count(b)"
+            ))
+    );
+
+    private Session session;
+    private long batchSize;
+
+    @Autowired
+    public SchemaInitializer(Session session,
+                             @Value("${blobb.schema.migration.batch-size:10000}") long batchSize) {
+        this.session = session;
+        this.batchSize = batchSize;
+    }
+
+    public int getCurrentVersion() {
+        Long version = session.queryForObject(Long.class,
+                "OPTIONAL MATCH (v:SchemaVersion) RETURN coalesce(max(v.version), 0)", Map.of());
+        return version.intValue();
+    }
+
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        int currentVersion = getCurrentVersion();
+        boolean failed = false;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version <= currentVersion) {
+                continue;
+            }
+            try {
+                for (String statement : migration.statements) {
+                    session.query(statement, Map.of());
+                }
+                for (String statement : migration.batchedStatements) {
+                    Long changed;
+                    do {
+                        changed = session.queryForObject(Long.class, statement, Map.of("batchSize", batchSize));
+                    } while (changed != null && changed > 0);
+                }
+            } catch (RuntimeException ex) {
+                LOGGER.error("Schema migration {} ({}) failed", migration.version, migration.description, ex);
+                failed = true;
+                continue;
+            }
+            if (failed) {
+                // the version cannot skip a failed migration, so it's going to be applied again on the next start
+                LOGGER.warn("Applied schema migration {} ({}), but its version is not recorded, " +
+                        "because an earlier migration failed", migration.version, migration.description);
+                continue;
+            }
+            session.query("MERGE (v:SchemaVersion) SET v.version = $version",
+                    Map.of("version", migration.version));
+            LOGGER.info("Applied schema migration {} ({})", migration.version, migration.description);
+        }
+    }
+}
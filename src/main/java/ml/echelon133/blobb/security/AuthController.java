@@ -0,0 +1,43 @@
+package ml.echelon133.blobb.security;
+
+import ml.echelon133.blobb.user.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/auth")
+public class AuthController {
+
+    private TokenService tokenService;
+
+    @Autowired
+    public AuthController(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    // a token must not be renewed with another token, otherwise a stolen token could be renewed
+    // before it expires for as long as it is used, without ever knowing the password
+    @PostMapping("/token")
+    public ResponseEntity<Map<String, String>> issueToken() throws PasswordRequiredException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication instanceof TokenAuthentication) {
+            throw new PasswordRequiredException();
+        }
+        User loggedUser = (User) authentication.getPrincipal();
+        String token = tokenService.issueToken(loggedUser);
+
+        return new ResponseEntity<>(
+                Map.of("token", token,
+                       "expiresIn", String.valueOf(tokenService.getTtl() / 1000)),
+                HttpStatus.OK
+        );
+    }
+}
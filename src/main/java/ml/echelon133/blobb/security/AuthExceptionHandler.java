@@ -0,0 +1,25 @@
+package ml.echelon133.blobb.security;
+
+import ml.echelon133.blobb.exception.AbstractExceptionHandler;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Date;
+
+@ControllerAdvice(assignableTypes = AuthController.class)
+public class AuthExceptionHandler extends AbstractExceptionHandler {
+
+    @ExceptionHandler(value = PasswordRequiredException.class)
+    protected ResponseEntity<ErrorMessage> handlePasswordRequiredException(PasswordRequiredException ex, WebRequest request) {
+        return new ResponseEntity<>(
+                new ErrorMessage(new Date(),
+                        request.getDescription(false),
+                        HttpStatus.FORBIDDEN,
+                        ex.getMessage()),
+                HttpStatus.FORBIDDEN
+        );
+    }
+}
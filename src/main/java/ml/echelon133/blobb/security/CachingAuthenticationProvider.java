@@ -0,0 +1,57 @@
+package ml.echelon133.blobb.security;
+
+import ml.echelon133.blobb.user.User;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+
+/*
+    Authenticates users with their username and password, just like DaoAuthenticationProvider does,
+    but remembers users that have been authenticated successfully in the PrincipalCache.
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private DaoAuthenticationProvider delegate;
+    private PrincipalCache principalCache;
+
+    public CachingAuthenticationProvider(UserDetailsService userDetailsService,
+                                         PasswordEncoder passwordEncoder,
+                                         PrincipalCache principalCache) {
+        this.delegate = new DaoAuthenticationProvider();
+        this.delegate.setUserDetailsService(userDetailsService);
+        this.delegate.setPasswordEncoder(passwordEncoder);
+        this.principalCache = principalCache;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        String password = String.valueOf(authentication.getCredentials());
+
+        Optional<User> cached = principalCache.get(username, password);
+        if (cached.isPresent()) {
+            User user = cached.get();
+            UsernamePasswordAuthenticationToken result =
+                    new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+            result.setDetails(authentication.getDetails());
+            return result;
+        }
+
+        Authentication result = delegate.authenticate(authentication);
+        if (result.getPrincipal() instanceof User) {
+            principalCache.put(username, password, (User) result.getPrincipal());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+}
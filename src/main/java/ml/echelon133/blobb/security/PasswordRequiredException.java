@@ -0,0 +1,8 @@
+package ml.echelon133.blobb.security;
+
+public class PasswordRequiredException extends Exception {
+
+    public PasswordRequiredException() {
+        super("Tokens are only issued to requests authenticated with a password");
+    }
+}
@@ -0,0 +1,83 @@
+package ml.echelon133.blobb.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import ml.echelon133.blobb.user.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Optional;
+
+/*
+    Bounded cache of users that have recently been authenticated with HTTP Basic.
+
+    Every entry holds the user together with a digest of the password that has been verified
+    for them. Digests are computed with HMAC-SHA256 and a key that is randomly generated on startup,
+    so passwords are never held in memory and digests are useless outside of this process.
+    A request with the same username and password is authenticated without reading the user from
+    the database and without checking the password with BCrypt.
+ */
+@Component
+public class PrincipalCache {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static class Entry {
+        private byte[] passwordDigest;
+        private User user;
+
+        private Entry(byte[] passwordDigest, User user) {
+            this.passwordDigest = passwordDigest;
+            this.user = user;
+        }
+    }
+
+    private Cache<String, Entry> entries;
+    private SecretKeySpec key;
+
+    @Autowired
+    public PrincipalCache(@Value("${blobb.security.principal-cache.max-size:10000}") long maxSize,
+                          @Value("${blobb.security.principal-cache.ttl:300000}") long ttl) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttl))
+                .build();
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+    }
+
+    public Optional<User> get(String username, String password) {
+        Entry entry = entries.getIfPresent(username);
+        if (entry != null && MessageDigest.isEqual(entry.passwordDigest, digest(password))) {
+            return Optional.of(entry.user);
+        }
+        return Optional.empty();
+    }
+
+    public void put(String username, String password, User user) {
+        entries.put(username, new Entry(digest(password), user));
+    }
+
+    public void invalidate(String username) {
+        entries.invalidate(username);
+    }
+
+    private byte[] digest(String password) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @EnableWebSecurity
 @Configuration
@@ -16,17 +17,24 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
     private PasswordEncoder passwordEncoder;
     private UserDetailsService userDetailsService;
+    private TokenService tokenService;
+    private PrincipalCache principalCache;
 
     @Autowired
     public SecurityConfig(PasswordEncoder passwordEncoder,
-                          UserDetailsService userDetailsService) {
+                          UserDetailsService userDetailsService,
+                          TokenService tokenService,
+                          PrincipalCache principalCache) {
         this.passwordEncoder = passwordEncoder;
         this.userDetailsService = userDetailsService;
+        this.tokenService = tokenService;
+        this.principalCache = principalCache;
     }
 
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder);
+        auth.authenticationProvider(
+                new CachingAuthenticationProvider(userDetailsService, passwordEncoder, principalCache));
     }
 
     @Override
@@ -39,6 +47,9 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 .and()
                 .httpBasic()
                 .and()
-                .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
+                .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                .and()
+                // requests with a valid token skip the BCrypt check of HTTP Basic
+                .addFilterBefore(new TokenAuthenticationFilter(tokenService), BasicAuthenticationFilter.class);
     }
 }
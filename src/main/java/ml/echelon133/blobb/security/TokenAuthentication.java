@@ -0,0 +1,15 @@
+package ml.echelon133.blobb.security;
+
+import ml.echelon133.blobb.user.User;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+/*
+    Authentication of a request that has been authenticated by TokenAuthenticationFilter,
+    which lets endpoints tell it apart from requests in which the password has been checked.
+ */
+public class TokenAuthentication extends UsernamePasswordAuthenticationToken {
+
+    public TokenAuthentication(User user) {
+        super(user, null, user.getAuthorities());
+    }
+}
@@ -0,0 +1,42 @@
+package ml.echelon133.blobb.security;
+
+import ml.echelon133.blobb.user.User;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Optional;
+
+/*
+    Authenticates requests that have a valid token in the 'Authorization: Bearer <token>' header.
+    Requests without a valid token are passed further unauthenticated, so that they can still
+    be authenticated with HTTP Basic.
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private TokenService tokenService;
+
+    public TokenAuthenticationFilter(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            Optional<User> user = tokenService.verifyToken(header.substring(BEARER_PREFIX.length()));
+            user.ifPresent(u -> SecurityContextHolder.getContext().setAuthentication(new TokenAuthentication(u)));
+        }
+        filterChain.doFilter(request, response);
+    }
+}
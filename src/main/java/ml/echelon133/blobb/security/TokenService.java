@@ -0,0 +1,114 @@
+package ml.echelon133.blobb.security;
+
+import ml.echelon133.blobb.user.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+/*
+    Issues and verifies short-lived access tokens, which let clients skip the BCrypt check
+    of their password on every request.
+
+    A token holds the uuid and the username of the user together with its expiration time,
+    and is signed with HMAC-SHA256. Verifying a token only recomputes the signature,
+    it never reads anything from the database.
+
+    If the secret is not configured, a random one is generated on startup, which means that
+    tokens issued before a restart stop being valid.
+ */
+@Service
+public class TokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private SecretKeySpec key;
+    private long ttl;
+    private Clock clock = Clock.systemDefaultZone();
+
+    @Autowired
+    public TokenService(@Value("${blobb.security.token.secret:}") String secret,
+                        @Value("${blobb.security.token.ttl:900000}") long ttl) {
+        byte[] secretBytes;
+        if (secret.isEmpty()) {
+            secretBytes = new byte[32];
+            new SecureRandom().nextBytes(secretBytes);
+        } else {
+            secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(secretBytes, ALGORITHM);
+        this.ttl = ttl;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public String issueToken(User user) {
+        long expiresAt = clock.millis() + ttl;
+        String payload = user.getUuid() + ":" + expiresAt + ":" + user.getUsername();
+        return encode(payload.getBytes(StandardCharsets.UTF_8)) + "." + encode(sign(payload));
+    }
+
+    /*
+        Returns the user that the token has been issued for. That user only has
+        the uuid and the username set.
+     */
+    public Optional<User> verifyToken(String token) {
+        try {
+            int separator = token.indexOf('.');
+            if (separator < 0) {
+                return Optional.empty();
+            }
+            String payload = new String(decode(token.substring(0, separator)), StandardCharsets.UTF_8);
+            byte[] signature = decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                return Optional.empty();
+            }
+
+            // username is the last part, so that it can contain any character
+            String[] parts = payload.split(":", 3);
+            long expiresAt = Long.parseLong(parts[1]);
+            if (expiresAt <= clock.millis()) {
+                return Optional.empty();
+            }
+            User user = new User(parts[2], null, null, null);
+            user.setUuid(UUID.fromString(parts[0]));
+            return Optional.of(user);
+        } catch (RuntimeException ex) {
+            return Optional.empty();
+        }
+    }
+
+    private byte[] sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static byte[] decode(String value) {
+        return Base64.getUrlDecoder().decode(value);
+    }
+
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+}
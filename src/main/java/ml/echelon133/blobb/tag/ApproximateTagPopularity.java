@@ -0,0 +1,259 @@
+package ml.echelon133.blobb.tag;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static java.util.concurrent.TimeUnit.*;
+
+/*
+    Estimated counters of tag uses that take the same amount of memory no matter how many distinct
+    tags are used.
+
+    Every window (hour, day, week) is split into buckets, each bucket has:
+        * a Count-Min Sketch, which estimates the number of uses of any tag within the bucket
+        * a Space-Saving summary, which holds only 'capacity' tags that are used most often within the bucket
+    Candidates for the most popular tags of a window are the tags held by summaries of its buckets,
+    these are ranked by the sum of their estimates from all sketches of the window.
+
+    Estimates of the sketch are never lower than the real count and with probability of 1 - e^-depth
+    they are not higher than the real count by more than (e / width) * (number of uses within the window).
+    Removing uses (when blobbs get deleted) makes that guarantee slightly weaker.
+    The oldest bucket of a window is dropped as a whole, so windows are between (buckets - 1) and
+    (buckets) bucket lengths long.
+
+    Like exact counters, estimates are loaded from the database once all beans are created,
+    before the application starts handling requests.
+ */
+@Component
+@ConditionalOnProperty(name = TagPopularityTracker.MODE_PROPERTY, havingValue = "APPROXIMATE")
+public class ApproximateTagPopularity implements TagPopularityTracker, SmartInitializingSingleton {
+
+    // tag held by a Space-Saving summary together with its count
+    private static class Counter {
+        private Tag tag;
+        private long count;
+
+        private Counter(Tag tag, long count) {
+            this.tag = tag;
+            this.count = count;
+        }
+    }
+
+    private static final Comparator<Counter> LEAST_USED_FIRST =
+            Comparator.<Counter>comparingLong(c -> c.count).thenComparing(c -> c.tag.getName());
+
+    private static class Bucket {
+        // number of the bucket length since the epoch, -1 if the bucket is empty
+        private long stamp = -1;
+        private long total;
+        private long[][] sketch;
+        // summary is indexed both by names and by counts, so that updating a tag
+        // and finding the least used one both take O(log capacity)
+        private Map<String, Counter> summary = new HashMap<>();
+        private TreeSet<Counter> byCount = new TreeSet<>(LEAST_USED_FIRST);
+
+        private Bucket(int depth, int width) {
+            sketch = new long[depth][width];
+        }
+
+        private void reset(long stamp) {
+            this.stamp = stamp;
+            this.total = 0;
+            Arrays.stream(sketch).forEach(row -> Arrays.fill(row, 0));
+            this.summary = new HashMap<>();
+            this.byCount = new TreeSet<>(LEAST_USED_FIRST);
+        }
+
+        private long estimate(String name) {
+            int[] columns = columnsOf(name, sketch[0].length, sketch.length);
+            long min = Long.MAX_VALUE;
+            for (int row = 0; row < sketch.length; row++) {
+                min = Math.min(min, sketch[row][columns[row]]);
+            }
+            return Math.max(0, min);
+        }
+
+        private void add(Tag tag, long delta, int capacity) {
+            String name = tag.getName();
+            int[] columns = columnsOf(name, sketch[0].length, sketch.length);
+            for (int row = 0; row < sketch.length; row++) {
+                sketch[row][columns[row]] += delta;
+            }
+            total = Math.max(0, total + delta);
+
+            Counter counter = summary.get(name);
+            if (counter != null) {
+                // counters are ordered by their counts, so they have to leave the set while being changed
+                byCount.remove(counter);
+                if (counter.count + delta > 0) {
+                    counter.count += delta;
+                    byCount.add(counter);
+                } else {
+                    summary.remove(name);
+                }
+            } else if (delta > 0) {
+                long count = delta;
+                if (summary.size() >= capacity) {
+                    // the least used tag gives its place to the new one, which inherits its count,
+                    // so the new tag is never underestimated
+                    Counter min = byCount.pollFirst();
+                    summary.remove(min.tag.getName());
+                    count += min.count;
+                }
+                counter = new Counter(tag, count);
+                summary.put(name, counter);
+                byCount.add(counter);
+            }
+        }
+    }
+
+    private static class Window {
+        private long bucketLength;
+        private Bucket[] buckets;
+
+        private Window(long bucketLength, int bucketCount, int depth, int width) {
+            this.bucketLength = bucketLength;
+            this.buckets = new Bucket[bucketCount];
+            Arrays.setAll(buckets, i -> new Bucket(depth, width));
+        }
+
+        private List<Bucket> liveBuckets(long now) {
+            long current = now / bucketLength;
+            return Arrays.stream(buckets)
+                    .filter(b -> b.stamp > current - buckets.length && b.stamp <= current)
+                    .collect(Collectors.toList());
+        }
+
+        private void add(Tag tag, long date, long now, long delta, int capacity) {
+            long current = now / bucketLength;
+            // blobbs from the future are counted as if they were posted right now
+            long stamp = Math.min(date / bucketLength, current);
+            if (stamp <= current - buckets.length) {
+                return;
+            }
+            Bucket bucket = buckets[(int) (stamp % buckets.length)];
+            if (bucket.stamp != stamp) {
+                bucket.reset(stamp);
+            }
+            bucket.add(tag, delta, capacity);
+        }
+
+        private List<Tag> top(long limit, long now) {
+            List<Bucket> live = liveBuckets(now);
+            Map<String, Tag> candidates = new HashMap<>();
+            live.forEach(b -> b.summary.forEach((name, counter) -> candidates.put(name, counter.tag)));
+
+            Map<String, Long> estimates = new HashMap<>();
+            candidates.keySet().forEach(name ->
+                    estimates.put(name, live.stream().mapToLong(b -> b.estimate(name)).sum()));
+
+            return estimates.entrySet().stream()
+                    .filter(e -> e.getValue() > 0)
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(limit)
+                    .map(e -> candidates.get(e.getKey()))
+                    .collect(Collectors.toList());
+        }
+
+        private long errorBound(long now, int width) {
+            long total = liveBuckets(now).stream().mapToLong(b -> b.total).sum();
+            return (long) Math.ceil(Math.E / width * total);
+        }
+    }
+
+    private TagRepository tagRepository;
+    private int width;
+    private int capacity;
+    private Clock clock = Clock.systemDefaultZone();
+
+    private Window lastHour;
+    private Window lastDay;
+    private Window lastWeek;
+
+    @Autowired
+    public ApproximateTagPopularity(TagRepository tagRepository,
+                                    @Value("${blobb.tags.popularity.sketch.width:2048}") int width,
+                                    @Value("${blobb.tags.popularity.sketch.depth:4}") int depth,
+                                    @Value("${blobb.tags.popularity.capacity:100}") int capacity) {
+        this.tagRepository = tagRepository;
+        this.width = width;
+        this.capacity = capacity;
+        this.lastHour = new Window(MINUTES.toMillis(5), 12, depth, width);
+        this.lastDay = new Window(HOURS.toMillis(1), 24, depth, width);
+        this.lastWeek = new Window(DAYS.toMillis(1), 7, depth, width);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        load();
+    }
+
+    public synchronized void load() {
+        Date weekAgo = new Date(clock.millis() - DAYS.toMillis(7));
+        tagRepository.findTagUsesPerMinute_Since(weekAgo).forEach(u ->
+                add(List.of(u.getTag()), new Date(MINUTES.toMillis(u.getMinute())), u.getUses()));
+    }
+
+    @Override
+    public synchronized void record(Collection<Tag> tags, Date date) {
+        add(tags, date, 1);
+    }
+
+    @Override
+    public synchronized void remove(Collection<Tag> tags, Date date) {
+        add(tags, date, -1);
+    }
+
+    @Override
+    public synchronized List<Tag> findMostPopular(long limit, ITagService.PopularSince since) {
+        return windowOf(since).top(limit, clock.millis());
+    }
+
+    @Override
+    public synchronized long getErrorBound(ITagService.PopularSince since) {
+        return windowOf(since).errorBound(clock.millis(), width);
+    }
+
+    private void add(Collection<Tag> tags, Date date, long delta) {
+        long now = clock.millis();
+        for (Tag tag : tags) {
+            lastHour.add(tag, date.getTime(), now, delta, capacity);
+            lastDay.add(tag, date.getTime(), now, delta, capacity);
+            lastWeek.add(tag, date.getTime(), now, delta, capacity);
+        }
+    }
+
+    private Window windowOf(ITagService.PopularSince since) {
+        switch (since) {
+            case ONE_HOUR:
+                return lastHour;
+            case DAY:
+                return lastDay;
+            default:
+                return lastWeek;
+        }
+    }
+
+    // columns of the sketch are picked by combining two hashes of the name (one for each row)
+    private static int[] columnsOf(String name, int width, int depth) {
+        int h1 = name.hashCode();
+        int h2 = Integer.reverse(h1 * 0x9E3779B9) | 1;
+        int[] columns = new int[depth];
+        for (int row = 0; row < depth; row++) {
+            columns[row] = Math.floorMod(h1 + row * h2, width);
+        }
+        return columns;
+    }
+
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+}
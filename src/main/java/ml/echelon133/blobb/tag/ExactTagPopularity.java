@@ -0,0 +1,63 @@
+package ml.echelon133.blobb.tag;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.HOURS;
+
+/*
+    Counts uses of tags in the database on every read. Nothing has to be recorded,
+    because the database already holds every use of every tag.
+ */
+@Component
+@ConditionalOnProperty(name = TagPopularityTracker.MODE_PROPERTY, havingValue = "EXACT")
+public class ExactTagPopularity implements TagPopularityTracker {
+
+    private TagRepository tagRepository;
+    private Clock clock = Clock.systemDefaultZone();
+
+    @Autowired
+    public ExactTagPopularity(TagRepository tagRepository) {
+        this.tagRepository = tagRepository;
+    }
+
+    @Override
+    public void record(Collection<Tag> tags, Date date) {}
+
+    @Override
+    public void remove(Collection<Tag> tags, Date date) {}
+
+    @Override
+    public List<Tag> findMostPopular(long limit, ITagService.PopularSince since) {
+        Date before;
+        Date now = Date.from(Instant.now(clock));
+        switch (since) {
+            case ONE_HOUR:
+                before = Date.from(now.toInstant().minus(1, HOURS));
+                break;
+            case DAY:
+                before = Date.from(now.toInstant().minus(1, DAYS));
+                break;
+            default:
+                before = Date.from(now.toInstant().minus(7, DAYS));
+        }
+        return tagRepository.findMostPopularTags_Between(before, now, limit);
+    }
+
+    @Override
+    public long getErrorBound(ITagService.PopularSince since) {
+        return 0;
+    }
+
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+}
@@ -1,6 +1,11 @@
 package ml.echelon133.blobb.tag;
 
+import ml.echelon133.blobb.pagination.Cursor;
+
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 public interface ITagService {
@@ -11,7 +16,13 @@ public interface ITagService {
 
     Tag findByUuid(UUID uuid) throws TagDoesntExistException;
     Tag findByName(String name) throws TagDoesntExistException;
+    List<Tag> findOrCreateByNames(Set<String> names);
     List<Tag> findMostPopular(Long limit, PopularSince since) throws IllegalArgumentException;
+    long getPopularityErrorBound(PopularSince since);
     List<RecentBlobb> findRecentBlobbsTagged(UUID tagUuid, Long skip, Long limit) throws TagDoesntExistException,
             IllegalArgumentException;
+    List<RecentBlobb> findRecentBlobbsTagged(UUID tagUuid, Cursor cursor, Long limit) throws TagDoesntExistException,
+            IllegalArgumentException;
+    void recordUses(Collection<Tag> tags, Date date);
+    void removeUses(Collection<Tag> tags, Date date);
 }
@@ -1,6 +1,8 @@
 package ml.echelon133.blobb.tag;
 
-import ml.echelon133.blobb.user.User;
+import ml.echelon133.blobb.blobb.ListedBlobb;
+import ml.echelon133.blobb.schema.EpochMillisDateConverter;
+import ml.echelon133.blobb.user.Author;
 import org.neo4j.ogm.annotation.typeconversion.Convert;
 import org.neo4j.ogm.typeconversion.UuidStringConverter;
 import org.springframework.data.neo4j.annotation.QueryResult;
@@ -9,12 +11,13 @@ import java.util.Date;
 import java.util.UUID;
 
 @QueryResult
-public class RecentBlobb {
+public class RecentBlobb implements ListedBlobb {
     @Convert(value = UuidStringConverter.class)
     private UUID uuid;
     private String content;
+    @Convert(value = EpochMillisDateConverter.class)
     private Date date;
-    private User author;
+    private Author author;
     @Convert(value = UuidStringConverter.class)
     private UUID reblobbs;
     @Convert(value = UuidStringConverter.class)
@@ -44,11 +47,11 @@ public class RecentBlobb {
         this.date = date;
     }
 
-    public User getAuthor() {
+    public Author getAuthor() {
         return author;
     }
 
-    public void setAuthor(User author) {
+    public void setAuthor(Author author) {
         this.author = author;
     }
 
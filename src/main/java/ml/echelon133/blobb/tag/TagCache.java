@@ -0,0 +1,94 @@
+package ml.echelon133.blobb.tag;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+/*
+    Bounded cache of tags, which are looked up by name every time a blobb is posted.
+
+    Tags are never modified or deleted, so a cached tag never becomes stale. Only tags that exist
+    are cached, so a tag that is created right after a failed lookup is found by the next one.
+    Tags that are created while blobbs are posted are put into the cache right away.
+ */
+@Component
+public class TagCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TagCache.class);
+
+    private Cache<String, Tag> byName;
+    private Cache<UUID, Tag> byUuid;
+
+    @Autowired
+    public TagCache(@Value("${blobb.tags.cache.max-size:10000}") long maxSize,
+                    @Value("${blobb.tags.cache.ttl:3600000}") long ttl) {
+        this.byName = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttl))
+                .recordStats()
+                .build();
+        this.byUuid = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttl))
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Tag> getByName(String name, Function<String, Optional<Tag>> loader) {
+        Tag tag = byName.get(name, n -> loader.apply(n).orElse(null));
+        if (tag != null && tag.getUuid() != null) {
+            byUuid.put(tag.getUuid(), tag);
+        }
+        return Optional.ofNullable(tag);
+    }
+
+    public Optional<Tag> getByUuid(UUID uuid, Function<UUID, Optional<Tag>> loader) {
+        Tag tag = byUuid.get(uuid, u -> loader.apply(u).orElse(null));
+        if (tag != null) {
+            byName.put(tag.getName(), tag);
+        }
+        return Optional.ofNullable(tag);
+    }
+
+    public Map<String, Tag> getAllPresentByNames(Collection<String> names) {
+        return byName.getAllPresent(names);
+    }
+
+    public void putAll(Collection<Tag> tags) {
+        tags.forEach(t -> {
+            byName.put(t.getName(), t);
+            // only tags that have not been saved yet don't have any uuid
+            if (t.getUuid() != null) {
+                byUuid.put(t.getUuid(), t);
+            }
+        });
+    }
+
+    public CacheStats getNameStats() {
+        return byName.stats();
+    }
+
+    public CacheStats getUuidStats() {
+        return byUuid.stats();
+    }
+
+    @Scheduled(fixedDelayString = "${blobb.tags.cache.stats-interval:600000}")
+    public void logStats() {
+        CacheStats name = getNameStats();
+        CacheStats uuid = getUuidStats();
+        LOGGER.info("Tag cache by name: {} hits, {} misses, {} evictions, hit rate {}; " +
+                        "by uuid: {} hits, {} misses, {} evictions, hit rate {}",
+                name.hitCount(), name.missCount(), name.evictionCount(), name.hitRate(),
+                uuid.hitCount(), uuid.missCount(), uuid.evictionCount(), uuid.hitRate());
+    }
+}
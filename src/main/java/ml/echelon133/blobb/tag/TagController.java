@@ -1,6 +1,9 @@
 package ml.echelon133.blobb.tag;
 
+import ml.echelon133.blobb.blobb.NormalizedBlobbs;
+import ml.echelon133.blobb.pagination.Cursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -12,6 +15,8 @@ import java.util.UUID;
 @RequestMapping("/api/tags")
 public class TagController {
 
+    public static final String ERROR_BOUND_HEADER = "X-Popularity-Error-Bound";
+
     private ITagService tagService;
 
     @Autowired
@@ -49,15 +54,18 @@ public class TagController {
         }
 
         List<Tag> result = tagService.findMostPopular(limit, popularSince);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(ERROR_BOUND_HEADER, String.valueOf(tagService.getPopularityErrorBound(popularSince)));
         return new ResponseEntity<>(
-                result, HttpStatus.OK
+                result, headers, HttpStatus.OK
         );
     }
 
     @GetMapping("/{uuid}/recentBlobbs")
     public ResponseEntity<List<RecentBlobb>> findRecentBlobbs(@PathVariable String uuid,
                                                               @RequestParam(required = false) Long skip,
-                                                              @RequestParam(required = false) Long limit) throws Exception {
+                                                              @RequestParam(required = false) Long limit,
+                                                              @RequestParam(required = false) String cursor) throws Exception {
 
         if (skip == null) {
             skip = 0L;
@@ -67,7 +75,22 @@ public class TagController {
             limit = 5L;
         }
 
-        List<RecentBlobb> recent = tagService.findRecentBlobbsTagged(UUID.fromString(uuid), skip, limit);
-        return new ResponseEntity<>(recent, HttpStatus.OK);
+        List<RecentBlobb> recent;
+        if (cursor == null) {
+            recent = tagService.findRecentBlobbsTagged(UUID.fromString(uuid), skip, limit);
+        } else {
+            recent = tagService.findRecentBlobbsTagged(UUID.fromString(uuid), Cursor.decode(cursor), limit);
+        }
+        HttpHeaders headers = Cursor.nextCursorHeaders(recent, limit, b -> new Cursor(b.getDate(), b.getUuid()));
+        return new ResponseEntity<>(recent, headers, HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/{uuid}/recentBlobbs", params = "normalized=true")
+    public ResponseEntity<NormalizedBlobbs> findRecentBlobbs_Normalized(@PathVariable String uuid,
+                                                                        @RequestParam(required = false) Long skip,
+                                                                        @RequestParam(required = false) Long limit,
+                                                                        @RequestParam(required = false) String cursor) throws Exception {
+        ResponseEntity<List<RecentBlobb>> recent = findRecentBlobbs(uuid, skip, limit, cursor);
+        return new ResponseEntity<>(NormalizedBlobbs.of(recent.getBody()), recent.getHeaders(), recent.getStatusCode());
     }
 }
@@ -0,0 +1,23 @@
+package ml.echelon133.blobb.tag;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/*
+    Source of the most popular tags. The implementation is selected with the
+    'blobb.tags.popularity.mode' property:
+        * EXACT - counts uses in the database on every read
+        * TRENDING (default) - keeps exact counters of uses in memory
+        * APPROXIMATE - keeps estimated counters of uses in memory of constant size
+ */
+public interface TagPopularityTracker {
+    String MODE_PROPERTY = "blobb.tags.popularity.mode";
+
+    void record(Collection<Tag> tags, Date date);
+    void remove(Collection<Tag> tags, Date date);
+    List<Tag> findMostPopular(long limit, ITagService.PopularSince since);
+
+    // maximum number of uses by which counts of the most popular tags can be overestimated
+    long getErrorBound(ITagService.PopularSince since);
+}
@@ -3,6 +3,7 @@ package ml.echelon133.blobb.tag;
 import org.springframework.data.neo4j.annotation.Query;
 import org.springframework.data.neo4j.repository.Neo4jRepository;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -11,17 +12,46 @@ import java.util.UUID;
 public interface TagRepository extends Neo4jRepository<Tag, UUID> {
     Optional<Tag> findByName(String name);
 
+    @Query( "UNWIND $names AS name " +
+            "MERGE (t:Tag { name: name }) " +
+            "ON CREATE SET t.uuid = randomUUID() " +
+            "RETURN t")
+    List<Tag> findOrCreateByNames(Collection<String> names);
+
     @Query( "MATCH (t:Tag)-[r:TAGS]->(b:Blobb) " +
-            "WHERE b.creationDate >= $first AND b.creationDate <= $second AND b.deleted <> true " +
+            "WHERE b.creationDate >= datetime($first).epochMillis AND b.creationDate <= datetime($second).epochMillis " +
             "WITH t, count(r) as tagCounter RETURN t ORDER BY tagCounter DESC LIMIT $howManyTagsToGet")
     List<Tag> findMostPopularTags_Between(Date first, Date second, Long howManyTagsToGet);
 
+    @Query( "MATCH (t:Tag)-[:TAGS]->(b:Blobb) " +
+            "WHERE b.creationDate >= datetime($since).epochMillis " +
+            "WITH t, b.creationDate / 60000 AS minute " +
+            "RETURN t AS tag, minute, count(*) AS uses")
+    List<TagUsage> findTagUsesPerMinute_Since(Date since);
+
+    // recent blobbs are followed by the existence marker of the tag
     @Query( "MATCH (t:Tag)-[:TAGS]->(b:Blobb)<-[:POSTS]-(u:User) " +
-            "WHERE t.uuid = $tagUuid AND b.deleted <> true " +
-            "OPTIONAL MATCH (b:Blobb)-[:RESPONDS]->(respondsTo:Blobb) " +
-            "OPTIONAL MATCH (b:Blobb)-[:REBLOBBS]->(reblobbs:Blobb) " +
-            "RETURN b.uuid AS uuid, b.content AS content, b.creationDate AS date, u AS author, " +
+            "WHERE t.uuid = $tagUuid " +
+            "OPTIONAL MATCH (b:Blobb)-[:RESPONDS]->(respondsTo) " +
+            "OPTIONAL MATCH (b:Blobb)-[:REBLOBBS]->(reblobbs) " +
+            "RETURN b.uuid AS uuid, b.content AS content, b.creationDate AS date, u {.uuid, .username, .displayedUsername, .aviURL} AS author, " +
             "reblobbs.uuid AS reblobbs, respondsTo.uuid AS respondsTo " +
-            "ORDER BY datetime(b.creationDate) DESC SKIP $skip LIMIT $limit ")
+            "ORDER BY b.creationDate DESC, b.uuid DESC SKIP $skip LIMIT $limit " +
+            "UNION ALL " +
+            "MATCH (t:Tag) WHERE t.uuid = $tagUuid " +
+            "RETURN NULL AS uuid, NULL AS content, NULL AS date, NULL AS author, NULL AS reblobbs, NULL AS respondsTo")
     List<RecentBlobb> findRecentBlobbsTagged(UUID tagUuid, Long skip, Long limit);
+
+    @Query( "MATCH (t:Tag)-[:TAGS]->(b:Blobb)<-[:POSTS]-(u:User) " +
+            "WHERE t.uuid = $tagUuid " +
+            "AND (b.creationDate < datetime($cursorDate).epochMillis OR (b.creationDate = datetime($cursorDate).epochMillis AND b.uuid < $cursorUuid)) " +
+            "OPTIONAL MATCH (b:Blobb)-[:RESPONDS]->(respondsTo) " +
+            "OPTIONAL MATCH (b:Blobb)-[:REBLOBBS]->(reblobbs) " +
+            "RETURN b.uuid AS uuid, b.content AS content, b.creationDate AS date, u {.uuid, .username, .displayedUsername, .aviURL} AS author, " +
+            "reblobbs.uuid AS reblobbs, respondsTo.uuid AS respondsTo " +
+            "ORDER BY b.creationDate DESC, b.uuid DESC LIMIT $limit " +
+            "UNION ALL " +
+            "MATCH (t:Tag) WHERE t.uuid = $tagUuid " +
+            "RETURN NULL AS uuid, NULL AS content, NULL AS date, NULL AS author, NULL AS reblobbs, NULL AS respondsTo")
+    List<RecentBlobb> findRecentBlobbsTagged_AfterCursor(UUID tagUuid, Date cursorDate, UUID cursorUuid, Long limit);
 }
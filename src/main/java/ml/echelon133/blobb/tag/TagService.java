@@ -1,32 +1,36 @@
 package ml.echelon133.blobb.tag;
 
+import ml.echelon133.blobb.pagination.Cursor;
+import ml.echelon133.blobb.pagination.ExistenceMarker;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.Clock;
-import java.time.Instant;
-import java.util.Date;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
-
-import static java.time.temporal.ChronoUnit.DAYS;
-import static java.time.temporal.ChronoUnit.HOURS;
+import java.util.*;
 
 @Service
 public class TagService implements ITagService {
 
     private TagRepository tagRepository;
-    private Clock clock = Clock.systemDefaultZone();
+    private TagPopularityTracker popularityTracker;
+    private TagCache tagCache;
 
     @Autowired
-    public TagService(TagRepository tagRepository) {
+    public TagService(TagRepository tagRepository, TagPopularityTracker popularityTracker, TagCache tagCache) {
         this.tagRepository = tagRepository;
+        this.popularityTracker = popularityTracker;
+        this.tagCache = tagCache;
+    }
+
+    // lists of recent blobbs are followed by the existence marker of the tag
+    private static List<RecentBlobb> pageOrThrow(UUID uuid, List<RecentBlobb> rows) throws TagDoesntExistException {
+        return ExistenceMarker
+                .strip(rows, RecentBlobb::getUuid)
+                .orElseThrow(() -> new TagDoesntExistException(uuid));
     }
 
     @Override
     public Tag findByUuid(UUID uuid) throws TagDoesntExistException {
-        Optional<Tag> tag = tagRepository.findById(uuid);
+        Optional<Tag> tag = tagCache.getByUuid(uuid, tagRepository::findById);
         if (tag.isPresent()) {
             return tag.get();
         }
@@ -35,48 +39,74 @@ public class TagService implements ITagService {
 
     @Override
     public Tag findByName(String name) throws TagDoesntExistException {
-        Optional<Tag> tag = tagRepository.findByName(name);
+        Optional<Tag> tag = tagCache.getByName(name, tagRepository::findByName);
         if (tag.isPresent()) {
             return tag.get();
         }
         throw new TagDoesntExistException(name);
     }
 
+    @Override
+    public List<Tag> findOrCreateByNames(Set<String> names) {
+        Map<String, Tag> cached = tagCache.getAllPresentByNames(names);
+        if (cached.size() == names.size()) {
+            return new ArrayList<>(cached.values());
+        }
+
+        // only tags that are not cached have to be read or created
+        Set<String> missing = new HashSet<>(names);
+        missing.removeAll(cached.keySet());
+        List<Tag> found = tagRepository.findOrCreateByNames(missing);
+        tagCache.putAll(found);
+
+        List<Tag> tags = new ArrayList<>(cached.values());
+        tags.addAll(found);
+        return tags;
+    }
+
     @Override
     public List<Tag> findMostPopular(Long limit, PopularSince since) throws IllegalArgumentException {
         if (limit < 0) {
             throw new IllegalArgumentException("Limit cannot be negative");
         }
 
-        Date before;
-        Date now = Date.from(Instant.now(clock));
-        switch (since) {
-            case ONE_HOUR:
-                before = Date.from(now.toInstant().minus(1, HOURS));
-                break;
-            case DAY:
-                before = Date.from(now.toInstant().minus(1, DAYS));
-                break;
-            default:
-                before = Date.from(now.toInstant().minus(7, DAYS));
-        }
-        return tagRepository.findMostPopularTags_Between(before, now, limit);
+        return popularityTracker.findMostPopular(limit, since);
     }
 
     @Override
-    public List<RecentBlobb> findRecentBlobbsTagged(UUID tagUuid, Long skip, Long limit) throws TagDoesntExistException {
-        if (!tagRepository.existsById(tagUuid)) {
-            throw new TagDoesntExistException(tagUuid);
-        }
+    public long getPopularityErrorBound(PopularSince since) {
+        return popularityTracker.getErrorBound(since);
+    }
 
+    @Override
+    public List<RecentBlobb> findRecentBlobbsTagged(UUID tagUuid, Long skip, Long limit) throws TagDoesntExistException {
         if (limit < 0 || skip < 0) {
             throw new IllegalArgumentException("Invalid skip and/or limit values.");
         }
 
-        return tagRepository.findRecentBlobbsTagged(tagUuid, skip, limit);
+        return pageOrThrow(tagUuid, tagRepository.findRecentBlobbsTagged(tagUuid, skip, limit));
     }
 
-    public void setClock(Clock clock) {
-        this.clock = clock;
+    @Override
+    public List<RecentBlobb> findRecentBlobbsTagged(UUID tagUuid, Cursor cursor, Long limit) throws TagDoesntExistException {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid limit value.");
+        }
+        if (!cursor.hasDate()) {
+            throw new IllegalArgumentException("Invalid cursor value.");
+        }
+
+        return pageOrThrow(tagUuid, tagRepository
+                .findRecentBlobbsTagged_AfterCursor(tagUuid, cursor.getDate(), cursor.getUuid(), limit));
+    }
+
+    @Override
+    public void recordUses(Collection<Tag> tags, Date date) {
+        popularityTracker.record(tags, date);
+    }
+
+    @Override
+    public void removeUses(Collection<Tag> tags, Date date) {
+        popularityTracker.remove(tags, date);
     }
 }
@@ -0,0 +1,35 @@
+package ml.echelon133.blobb.tag;
+
+import org.springframework.data.neo4j.annotation.QueryResult;
+
+@QueryResult
+public class TagUsage {
+    private Tag tag;
+    // number of minutes since the epoch
+    private Long minute;
+    private Long uses;
+
+    public Tag getTag() {
+        return tag;
+    }
+
+    public void setTag(Tag tag) {
+        this.tag = tag;
+    }
+
+    public Long getMinute() {
+        return minute;
+    }
+
+    public void setMinute(Long minute) {
+        this.minute = minute;
+    }
+
+    public Long getUses() {
+        return uses;
+    }
+
+    public void setUses(Long uses) {
+        this.uses = uses;
+    }
+}
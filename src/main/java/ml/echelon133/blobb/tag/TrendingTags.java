@@ -0,0 +1,237 @@
+package ml.echelon133.blobb.tag;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static java.time.temporal.ChronoUnit.DAYS;
+
+/*
+    In-memory counters of tag uses, which make reading of the most popular tags
+    independent of the number of blobbs posted within the requested period.
+
+    Uses are counted in per-minute buckets (for the last hour) and per-hour buckets (for the last week).
+    Every window (hour, day, week) also keeps running totals of its buckets together with
+    a ranking of tags, so reading the most popular tags only walks the first elements of the ranking.
+    When the time moves on, buckets that fall out of a window are subtracted from its totals.
+
+    Counters are lost on restart, so they are loaded from the database once all beans are created,
+    before the application starts handling requests. A tag use recorded before the load would be counted twice,
+    and the most popular tags read before it would be incomplete.
+ */
+@Component
+@ConditionalOnProperty(name = TagPopularityTracker.MODE_PROPERTY, havingValue = "TRENDING", matchIfMissing = true)
+public class TrendingTags implements TagPopularityTracker, SmartInitializingSingleton {
+
+    private static final int MINUTE_BUCKETS = 60;
+    private static final int HOURS_IN_DAY = 24;
+    private static final int HOUR_BUCKETS = 7 * HOURS_IN_DAY;
+
+    private static class Bucket {
+        // minute or hour (since the epoch) counted by this bucket, -1 if the bucket is empty
+        private long stamp = -1;
+        private Map<String, Long> counts = new HashMap<>();
+
+        private void reset(long stamp) {
+            this.stamp = stamp;
+            this.counts = new HashMap<>();
+        }
+
+        // counts never go below zero, returns how much has really been added
+        private long add(String name, long delta) {
+            long current = counts.getOrDefault(name, 0L);
+            long updated = Math.max(0, current + delta);
+            if (updated == 0) {
+                counts.remove(name);
+            } else {
+                counts.put(name, updated);
+            }
+            return updated - current;
+        }
+    }
+
+    private static class Window {
+        private Map<String, Long> counts = new HashMap<>();
+        // tags ordered from the most used, tags used equally often are ordered by name
+        private TreeSet<String> ranking = new TreeSet<>(
+                Comparator.comparing((String name) -> counts.get(name)).reversed().thenComparing(name -> name));
+
+        private void add(String name, long delta) {
+            Long current = counts.get(name);
+            if (current != null) {
+                // tag has to be removed from the ranking before its count changes
+                ranking.remove(name);
+            }
+            long updated = (current == null ? 0 : current) + delta;
+            if (updated > 0) {
+                counts.put(name, updated);
+                ranking.add(name);
+            } else {
+                counts.remove(name);
+            }
+        }
+
+        private void subtract(Bucket bucket) {
+            bucket.counts.forEach((name, count) -> add(name, -count));
+        }
+
+        private List<String> top(long limit) {
+            return ranking.stream().limit(limit).collect(Collectors.toList());
+        }
+    }
+
+    private TagRepository tagRepository;
+    private Clock clock = Clock.systemDefaultZone();
+
+    private Bucket[] minutes = new Bucket[MINUTE_BUCKETS];
+    private Bucket[] hours = new Bucket[HOUR_BUCKETS];
+    private Window lastHour = new Window();
+    private Window lastDay = new Window();
+    private Window lastWeek = new Window();
+    private Map<String, Tag> tags = new HashMap<>();
+    // minute up to which buckets have been rolled
+    private long currentMinute = -1;
+
+    @Autowired
+    public TrendingTags(TagRepository tagRepository) {
+        this.tagRepository = tagRepository;
+        Arrays.setAll(minutes, i -> new Bucket());
+        Arrays.setAll(hours, i -> new Bucket());
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        load();
+    }
+
+    public synchronized void load() {
+        Date weekAgo = Date.from(clock.instant().minus(7, DAYS));
+        tagRepository.findTagUsesPerMinute_Since(weekAgo)
+                .forEach(u -> add(u.getTag(), u.getMinute(), u.getUses()));
+    }
+
+    @Override
+    public synchronized void record(Collection<Tag> usedTags, Date date) {
+        usedTags.forEach(t -> add(t, toMinute(date), 1));
+    }
+
+    @Override
+    public synchronized void remove(Collection<Tag> usedTags, Date date) {
+        usedTags.forEach(t -> add(t, toMinute(date), -1));
+    }
+
+    @Override
+    public synchronized List<Tag> findMostPopular(long limit, ITagService.PopularSince since) {
+        roll(currentMinute());
+        Window window;
+        switch (since) {
+            case ONE_HOUR:
+                window = lastHour;
+                break;
+            case DAY:
+                window = lastDay;
+                break;
+            default:
+                window = lastWeek;
+        }
+        return window.top(limit).stream().map(tags::get).collect(Collectors.toList());
+    }
+
+    @Override
+    public long getErrorBound(ITagService.PopularSince since) {
+        return 0;
+    }
+
+    private void add(Tag tag, long minute, long delta) {
+        long now = currentMinute();
+        roll(now);
+
+        String name = tag.getName();
+        if (delta > 0) {
+            tags.put(name, tag);
+        }
+
+        // blobbs from the future are counted as if they were posted right now
+        minute = Math.min(minute, now);
+        if (minute > now - MINUTE_BUCKETS) {
+            lastHour.add(name, bucketOf(minutes, minute).add(name, delta));
+        }
+
+        long hour = minute / 60;
+        long nowHour = now / 60;
+        if (hour > nowHour - HOUR_BUCKETS) {
+            long added = bucketOf(hours, hour).add(name, delta);
+            lastWeek.add(name, added);
+            if (hour > nowHour - HOURS_IN_DAY) {
+                lastDay.add(name, added);
+            }
+        }
+    }
+
+    private Bucket bucketOf(Bucket[] buckets, long stamp) {
+        Bucket bucket = buckets[(int) (stamp % buckets.length)];
+        if (bucket.stamp != stamp) {
+            bucket.reset(stamp);
+        }
+        return bucket;
+    }
+
+    private void roll(long now) {
+        if (now <= currentMinute) {
+            return;
+        }
+
+        if (now - currentMinute >= MINUTE_BUCKETS) {
+            Arrays.stream(minutes).forEach(b -> b.reset(-1));
+            lastHour = new Window();
+        } else {
+            for (long m = currentMinute + 1; m <= now; m++) {
+                expire(minutes, m - MINUTE_BUCKETS, lastHour);
+            }
+        }
+
+        long currentHour = currentMinute / 60;
+        long nowHour = now / 60;
+        if (nowHour - currentHour >= HOUR_BUCKETS) {
+            Arrays.stream(hours).forEach(b -> b.reset(-1));
+            lastDay = new Window();
+            lastWeek = new Window();
+        } else if (nowHour > currentHour) {
+            for (long h = currentHour + 1; h <= nowHour; h++) {
+                // bucket that is a day old stays in the week window
+                Bucket dayOld = hours[(int) ((h - HOURS_IN_DAY) % HOUR_BUCKETS)];
+                if (dayOld.stamp == h - HOURS_IN_DAY) {
+                    lastDay.subtract(dayOld);
+                }
+                expire(hours, h - HOUR_BUCKETS, lastWeek);
+            }
+        }
+        tags.keySet().retainAll(lastWeek.counts.keySet());
+        currentMinute = now;
+    }
+
+    private void expire(Bucket[] buckets, long stamp, Window window) {
+        Bucket bucket = buckets[(int) (stamp % buckets.length)];
+        if (bucket.stamp == stamp) {
+            window.subtract(bucket);
+            bucket.reset(-1);
+        }
+    }
+
+    private long currentMinute() {
+        return toMinute(Date.from(clock.instant()));
+    }
+
+    private static long toMinute(Date date) {
+        return date.getTime() / 60000;
+    }
+
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+}
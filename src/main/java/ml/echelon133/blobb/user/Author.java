@@ -0,0 +1,60 @@
+package ml.echelon133.blobb.user;
+
+import org.neo4j.ogm.annotation.typeconversion.Convert;
+import org.neo4j.ogm.typeconversion.UuidStringConverter;
+import org.springframework.data.neo4j.annotation.QueryResult;
+
+import java.util.UUID;
+
+/*
+    Author of a listed blobb. Queries only return the properties of the user that are displayed
+    next to the blobb, so that whole users are neither read nor mapped for every listed blobb.
+ */
+@QueryResult
+public class Author {
+    @Convert(value = UuidStringConverter.class)
+    private UUID uuid;
+    private String username;
+    private String displayedUsername;
+    private String aviURL;
+
+    public Author() {}
+    public Author(User user) {
+        this.uuid = user.getUuid();
+        this.username = user.getUsername();
+        this.displayedUsername = user.getDisplayedUsername();
+        this.aviURL = user.getAviURL();
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public void setUuid(UUID uuid) {
+        this.uuid = uuid;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getDisplayedUsername() {
+        return displayedUsername;
+    }
+
+    public void setDisplayedUsername(String displayedUsername) {
+        this.displayedUsername = displayedUsername;
+    }
+
+    public String getAviURL() {
+        return aviURL;
+    }
+
+    public void setAviURL(String aviURL) {
+        this.aviURL = aviURL;
+    }
+}
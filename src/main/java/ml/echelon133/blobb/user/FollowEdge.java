@@ -0,0 +1,37 @@
+package ml.echelon133.blobb.user;
+
+import org.neo4j.ogm.annotation.typeconversion.Convert;
+import org.neo4j.ogm.typeconversion.UuidStringConverter;
+import org.springframework.data.neo4j.annotation.QueryResult;
+
+import java.util.UUID;
+
+@QueryResult
+public class FollowEdge {
+    @Convert(value = UuidStringConverter.class)
+    private UUID follower;
+    @Convert(value = UuidStringConverter.class)
+    private UUID followed;
+
+    public FollowEdge() {}
+    public FollowEdge(UUID follower, UUID followed) {
+        this.follower = follower;
+        this.followed = followed;
+    }
+
+    public UUID getFollower() {
+        return follower;
+    }
+
+    public UUID getFollowed() {
+        return followed;
+    }
+
+    public void setFollower(UUID follower) {
+        this.follower = follower;
+    }
+
+    public void setFollowed(UUID followed) {
+        this.followed = followed;
+    }
+}
@@ -0,0 +1,294 @@
+package ml.echelon133.blobb.user;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+    In-memory replica of 'FOLLOWS' relationships between users, which lets the application
+    check whether one user follows another and list follows and followers
+    without querying the database. Numbers of follows and followers shown in profiles are counted
+    by counters stored on users, see UserRepository, but the number of followers is also read from here
+    when a new blobb is pushed into timelines, which happens far too often to query the database every time.
+
+    Every user is given a dense int id. Follows and followers of every user are held
+    in int arrays indexed by that id. Arrays are sorted by uuids of users as strings, which is the order
+    in which the database lists users, so checking a single relationship and finding the position
+    of a cursor are binary searches.
+
+    Users follow themselves, but that relationship is never listed.
+
+    The replica is loaded from the database once all beans are created, which happens before
+    the application starts handling requests, and then it's kept up to date by UserService,
+    which is the only place where relationships are created and deleted.
+ */
+@Component
+public class FollowGraph implements SmartInitializingSingleton {
+
+    private static final int[] EMPTY = new int[0];
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private UserRepository userRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<UUID, Integer> ids = new HashMap<>();
+    private UUID[] uuids = new UUID[INITIAL_CAPACITY];
+    // uuids as strings, which are compared while searching the arrays
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private int[][] follows = new int[INITIAL_CAPACITY][];
+    private int[][] followers = new int[INITIAL_CAPACITY][];
+
+    @Autowired
+    public FollowGraph(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        load();
+    }
+
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            // relationships are read while holding the lock, so that a follow or unfollow
+            // that happens during the read is not overwritten by the older state
+            List<FollowEdge> edges = userRepository.findAllFollowEdges();
+
+            ids = new HashMap<>();
+            uuids = new UUID[INITIAL_CAPACITY];
+            keys = new String[INITIAL_CAPACITY];
+            follows = new int[INITIAL_CAPACITY][];
+            followers = new int[INITIAL_CAPACITY][];
+
+            // users are given ids in the order of their uuids as strings, so that arrays of ids
+            // sorted like numbers are also sorted like uuids
+            SortedSet<String> sortedKeys = new TreeSet<>();
+            for (FollowEdge edge : edges) {
+                sortedKeys.add(edge.getFollower().toString());
+                sortedKeys.add(edge.getFollowed().toString());
+            }
+            sortedKeys.forEach(key -> idOf(UUID.fromString(key)));
+
+            // adjacency arrays are built in two passes, first their sizes are counted,
+            // then they are filled and sorted once
+            int[][] pairs = new int[edges.size()][];
+            for (int i = 0; i < pairs.length; i++) {
+                FollowEdge edge = edges.get(i);
+                pairs[i] = new int[] { idOf(edge.getFollower()), idOf(edge.getFollowed()) };
+            }
+            int[] followsSizes = new int[ids.size()];
+            int[] followersSizes = new int[ids.size()];
+            for (int[] pair : pairs) {
+                followsSizes[pair[0]]++;
+                followersSizes[pair[1]]++;
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                follows[i] = new int[followsSizes[i]];
+                followers[i] = new int[followersSizes[i]];
+            }
+            int[] followsFilled = new int[ids.size()];
+            int[] followersFilled = new int[ids.size()];
+            for (int[] pair : pairs) {
+                follows[pair[0]][followsFilled[pair[0]]++] = pair[1];
+                followers[pair[1]][followersFilled[pair[1]]++] = pair[0];
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                follows[i] = distinctSorted(follows[i]);
+                followers[i] = distinctSorted(followers[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean follows(UUID follower, UUID followed) {
+        lock.readLock().lock();
+        try {
+            Integer followerId = ids.get(follower);
+            Integer followedId = ids.get(followed);
+            if (followerId == null || followedId == null) {
+                return false;
+            }
+            return search(follows[followerId], keys[followedId]) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long countFollowers(UUID uuid) {
+        lock.readLock().lock();
+        try {
+            Integer id = ids.get(uuid);
+            if (id == null) {
+                return 0;
+            }
+            int[] related = followers[id];
+            // users follow themselves, which is never counted
+            return search(related, keys[id]) >= 0 ? related.length - 1 : related.length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addFollow(UUID follower, UUID followed) {
+        lock.writeLock().lock();
+        try {
+            int followerId = idOf(follower);
+            int followedId = idOf(followed);
+            follows[followerId] = insert(follows[followerId], followedId);
+            followers[followedId] = insert(followers[followedId], followerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFollow(UUID follower, UUID followed) {
+        lock.writeLock().lock();
+        try {
+            Integer followerId = ids.get(follower);
+            Integer followedId = ids.get(followed);
+            if (followerId == null || followedId == null) {
+                return;
+            }
+            follows[followerId] = delete(follows[followerId], followedId);
+            followers[followedId] = delete(followers[followedId], followerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<UUID> findFollows(UUID uuid, long skip, long limit) {
+        return page(uuid, follows, null, skip, limit);
+    }
+
+    public List<UUID> findFollows_AfterCursor(UUID uuid, UUID cursorUuid, long limit) {
+        return page(uuid, follows, cursorUuid, 0, limit);
+    }
+
+    public List<UUID> findFollowers(UUID uuid, long skip, long limit) {
+        return page(uuid, followers, null, skip, limit);
+    }
+
+    public List<UUID> findFollowers_AfterCursor(UUID uuid, UUID cursorUuid, long limit) {
+        return page(uuid, followers, cursorUuid, 0, limit);
+    }
+
+    // arrays are already ordered like results of the database queries, so a page
+    // is read right from the position of the cursor, without sorting anything
+    private List<UUID> page(UUID uuid, int[][] adjacency, UUID cursorUuid, long skip, long limit) {
+        lock.readLock().lock();
+        try {
+            Integer id = ids.get(uuid);
+            if (id == null) {
+                return List.of();
+            }
+            int[] related = adjacency[id];
+            int from = 0;
+            if (cursorUuid != null) {
+                // listing continues right after the user the cursor points at
+                int index = search(related, cursorUuid.toString());
+                from = index >= 0 ? index + 1 : -(index + 1);
+            }
+            // users follow themselves, which is never listed nor skipped
+            int self = search(related, keys[id]);
+            long start = from + skip;
+            if (self >= from && self < start) {
+                start++;
+            }
+            List<UUID> result = new ArrayList<>();
+            for (long i = start; i < related.length && result.size() < limit; i++) {
+                if (i != self) {
+                    result.add(uuids[related[(int) i]]);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // has to be called while holding the write lock
+    private int idOf(UUID uuid) {
+        Integer id = ids.get(uuid);
+        if (id != null) {
+            return id;
+        }
+        int newId = ids.size();
+        if (newId == uuids.length) {
+            int capacity = uuids.length * 2;
+            uuids = Arrays.copyOf(uuids, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            follows = Arrays.copyOf(follows, capacity);
+            followers = Arrays.copyOf(followers, capacity);
+        }
+        ids.put(uuid, newId);
+        uuids[newId] = uuid;
+        keys[newId] = uuid.toString();
+        follows[newId] = EMPTY;
+        followers[newId] = EMPTY;
+        return newId;
+    }
+
+    // returns the index of the user with the given key, or -(insertion point) - 1 if the array doesn't hold it
+    private int search(int[] sorted, String key) {
+        int low = 0;
+        int high = sorted.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = keys[sorted[mid]].compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int[] insert(int[] sorted, int value) {
+        int index = search(sorted, keys[value]);
+        if (index >= 0) {
+            return sorted;
+        }
+        int insertionPoint = -(index + 1);
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, insertionPoint);
+        result[insertionPoint] = value;
+        System.arraycopy(sorted, insertionPoint, result, insertionPoint + 1, sorted.length - insertionPoint);
+        return result;
+    }
+
+    private int[] delete(int[] sorted, int value) {
+        int index = search(sorted, keys[value]);
+        if (index < 0) {
+            return sorted;
+        }
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, index);
+        System.arraycopy(sorted, index + 1, result, index, sorted.length - index - 1);
+        return result;
+    }
+
+    // the database might contain duplicate relationships, which are only held once.
+    // Only used while loading, when ids are in the same order as uuids
+    private static int[] distinctSorted(int[] values) {
+        if (values.length == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(values);
+        int size = 1;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] != values[size - 1]) {
+                values[size++] = values[i];
+            }
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,48 @@
+package ml.echelon133.blobb.user;
+
+import org.springframework.data.neo4j.annotation.QueryResult;
+
+/*
+    Result of a query that follows or unfollows a user.
+
+    'userExists' tells whether the user that is (un)followed exists, 'changed' holds the number
+    of relationships that have been created or deleted, and 'follows' tells whether the relationship
+    exists after the query.
+ */
+@QueryResult
+public class FollowResult {
+    private Boolean userExists;
+    private Long changed;
+    private Boolean follows;
+
+    public FollowResult() {}
+    public FollowResult(Boolean userExists, Long changed, Boolean follows) {
+        this.userExists = userExists;
+        this.changed = changed;
+        this.follows = follows;
+    }
+
+    public Boolean getUserExists() {
+        return userExists;
+    }
+
+    public Long getChanged() {
+        return changed;
+    }
+
+    public Boolean getFollows() {
+        return follows;
+    }
+
+    public void setUserExists(Boolean userExists) {
+        this.userExists = userExists;
+    }
+
+    public void setChanged(Long changed) {
+        this.changed = changed;
+    }
+
+    public void setFollows(Boolean follows) {
+        this.follows = follows;
+    }
+}
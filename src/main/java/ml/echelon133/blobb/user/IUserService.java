@@ -1,5 +1,7 @@
 package ml.echelon133.blobb.user;
 
+import ml.echelon133.blobb.pagination.Cursor;
+
 import java.util.List;
 import java.util.UUID;
 
@@ -10,8 +12,11 @@ public interface IUserService {
     boolean followUserWithUuid(User user, UUID followUuid) throws UserDoesntExistException, IllegalArgumentException;
     boolean unfollowUserWithUuid(User user, UUID unfollowUuid) throws UserDoesntExistException;
     List<User> findAllFollowsOfUser(UUID uuid, Long skip, Long limit) throws UserDoesntExistException, IllegalArgumentException;
+    List<User> findAllFollowsOfUser(UUID uuid, Cursor cursor, Long limit) throws UserDoesntExistException, IllegalArgumentException;
     List<User> findAllFollowersOfUser(UUID uuid, Long skip, Long limit) throws UserDoesntExistException, IllegalArgumentException;
+    List<User> findAllFollowersOfUser(UUID uuid, Cursor cursor, Long limit) throws UserDoesntExistException, IllegalArgumentException;
     UserProfileInfo getUserProfileInfo(UUID uuid) throws UserDoesntExistException;
     List<UserBlobb> findRecentBlobbsOfUser(UUID uuid, Long skip, Long limit) throws UserDoesntExistException, IllegalArgumentException;
+    List<UserBlobb> findRecentBlobbsOfUser(UUID uuid, Cursor cursor, Long limit) throws UserDoesntExistException, IllegalArgumentException;
     User updateUser(User user, UserDetailsDto userDetailsDto);
 }
@@ -1,6 +1,7 @@
 package ml.echelon133.blobb.user;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import ml.echelon133.blobb.schema.EpochMillisDateConverter;
 import org.neo4j.ogm.annotation.GeneratedValue;
 import org.neo4j.ogm.annotation.Id;
 import org.neo4j.ogm.annotation.NodeEntity;
@@ -27,6 +28,7 @@ public class User implements UserDetails {
     private String description;
     private String passwordBCrypt;
     private String aviURL;
+    @Convert(EpochMillisDateConverter.class)
     private Date creationDate;
 
 
@@ -1,5 +1,7 @@
 package ml.echelon133.blobb.user;
 
+import ml.echelon133.blobb.blobb.ListedBlobb;
+import ml.echelon133.blobb.schema.EpochMillisDateConverter;
 import org.neo4j.ogm.annotation.typeconversion.Convert;
 import org.neo4j.ogm.typeconversion.UuidStringConverter;
 import org.springframework.data.neo4j.annotation.QueryResult;
@@ -8,12 +10,13 @@ import java.util.Date;
 import java.util.UUID;
 
 @QueryResult
-public class UserBlobb {
+public class UserBlobb implements ListedBlobb {
     @Convert(value = UuidStringConverter.class)
     private UUID uuid;
     private String content;
+    @Convert(value = EpochMillisDateConverter.class)
     private Date date;
-    private User author;
+    private Author author;
     @Convert(value = UuidStringConverter.class)
     private UUID reblobbs;
     @Convert(value = UuidStringConverter.class)
@@ -43,11 +46,11 @@ public class UserBlobb {
         this.date = date;
     }
 
-    public User getAuthor() {
+    public Author getAuthor() {
         return author;
     }
 
-    public void setAuthor(User author) {
+    public void setAuthor(Author author) {
         this.author = author;
     }
 
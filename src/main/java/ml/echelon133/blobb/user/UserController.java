@@ -1,5 +1,7 @@
 package ml.echelon133.blobb.user;
 
+import ml.echelon133.blobb.blobb.NormalizedBlobbs;
+import ml.echelon133.blobb.pagination.Cursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -32,9 +34,10 @@ public class UserController {
     }
 
     @GetMapping("/me")
-    public ResponseEntity<User> getLoggedUser() {
+    public ResponseEntity<User> getLoggedUser() throws Exception {
         User loggedUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        return new ResponseEntity<>(loggedUser, HttpStatus.OK);
+        // the principal doesn't hold every detail of the user if the request has been authenticated with a token
+        return new ResponseEntity<>(userService.findByUuid(loggedUser.getUuid()), HttpStatus.OK);
     }
 
     @PutMapping("/me")
@@ -94,37 +97,56 @@ public class UserController {
     @GetMapping("/{uuid}/followers")
     public ResponseEntity<List<User>> getFollowers(@PathVariable String uuid,
                                                    @RequestParam(required = false) Long skip,
-                                                   @RequestParam(required = false) Long limit) throws Exception {
+                                                   @RequestParam(required = false) Long limit,
+                                                   @RequestParam(required = false) String cursor) throws Exception {
         if (skip == null) {
             skip = 0L;
         }
         if (limit == null) {
             limit = 5L;
         }
+
+        List<User> followers;
+        if (cursor == null) {
+            followers = userService.findAllFollowersOfUser(UUID.fromString(uuid), skip, limit);
+        } else {
+            followers = userService.findAllFollowersOfUser(UUID.fromString(uuid), Cursor.decode(cursor), limit);
+        }
         return new ResponseEntity<>(
-                userService.findAllFollowersOfUser(UUID.fromString(uuid), skip, limit),
+                followers,
+                Cursor.nextCursorHeaders(followers, limit, u -> new Cursor(u.getUuid())),
                 HttpStatus.OK);
     }
 
     @GetMapping("/{uuid}/follows")
     public ResponseEntity<List<User>> getFollows(@PathVariable String uuid,
                                                  @RequestParam(required = false) Long skip,
-                                                 @RequestParam(required = false) Long limit) throws Exception {
+                                                 @RequestParam(required = false) Long limit,
+                                                 @RequestParam(required = false) String cursor) throws Exception {
         if (skip == null) {
             skip = 0L;
         }
         if (limit == null) {
             limit = 5L;
         }
+
+        List<User> follows;
+        if (cursor == null) {
+            follows = userService.findAllFollowsOfUser(UUID.fromString(uuid), skip, limit);
+        } else {
+            follows = userService.findAllFollowsOfUser(UUID.fromString(uuid), Cursor.decode(cursor), limit);
+        }
         return new ResponseEntity<>(
-                userService.findAllFollowsOfUser(UUID.fromString(uuid), skip, limit),
+                follows,
+                Cursor.nextCursorHeaders(follows, limit, u -> new Cursor(u.getUuid())),
                 HttpStatus.OK);
     }
 
     @GetMapping("/{uuid}/recentBlobbs")
     public ResponseEntity<List<UserBlobb>> getRecentBlobbs(@PathVariable String uuid,
                                                            @RequestParam(required = false) Long skip,
-                                                           @RequestParam(required = false) Long limit) throws Exception {
+                                                           @RequestParam(required = false) Long limit,
+                                                           @RequestParam(required = false) String cursor) throws Exception {
         if (skip == null) {
             skip = 0L;
         }
@@ -132,8 +154,24 @@ public class UserController {
             limit = 10L;
         }
 
+        List<UserBlobb> recent;
+        if (cursor == null) {
+            recent = userService.findRecentBlobbsOfUser(UUID.fromString(uuid), skip, limit);
+        } else {
+            recent = userService.findRecentBlobbsOfUser(UUID.fromString(uuid), Cursor.decode(cursor), limit);
+        }
         return new ResponseEntity<>(
-                userService.findRecentBlobbsOfUser(UUID.fromString(uuid), skip, limit),
+                recent,
+                Cursor.nextCursorHeaders(recent, limit, b -> new Cursor(b.getDate(), b.getUuid())),
                 HttpStatus.OK);
     }
+
+    @GetMapping(value = "/{uuid}/recentBlobbs", params = "normalized=true")
+    public ResponseEntity<NormalizedBlobbs> getRecentBlobbs_Normalized(@PathVariable String uuid,
+                                                                       @RequestParam(required = false) Long skip,
+                                                                       @RequestParam(required = false) Long limit,
+                                                                       @RequestParam(required = false) String cursor) throws Exception {
+        ResponseEntity<List<UserBlobb>> recent = getRecentBlobbs(uuid, skip, limit, cursor);
+        return new ResponseEntity<>(NormalizedBlobbs.of(recent.getBody()), recent.getHeaders(), recent.getStatusCode());
+    }
 }
@@ -0,0 +1,33 @@
+package ml.echelon133.blobb.user;
+
+import ml.echelon133.blobb.pagination.UuidBatches;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/*
+    Counters of follows and followers are updated by the queries that follow and unfollow users,
+    but relationships created in any other way are not counted. This job periodically recomputes
+    all counters from the relationships. It also runs right after the start of the application,
+    so that users created before counters existed get theirs.
+ */
+@Component
+public class UserCounterReconciler {
+
+    private UserRepository userRepository;
+    private long batchSize;
+
+    @Autowired
+    public UserCounterReconciler(UserRepository userRepository,
+                                 @Value("${blobb.counters.reconcile.batch-size:1000}") long batchSize) {
+        this.userRepository = userRepository;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${blobb.counters.reconcile.initial-delay:0}",
+               fixedDelayString = "${blobb.counters.reconcile.interval:3600000}")
+    public void reconcile() {
+        UuidBatches.processAll(batchSize, userRepository::reconcileCountersOfUsers);
+    }
+}
@@ -3,6 +3,7 @@ package ml.echelon133.blobb.user;
 import org.springframework.data.neo4j.annotation.Query;
 import org.springframework.data.neo4j.repository.Neo4jRepository;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -10,49 +11,117 @@ import java.util.UUID;
 public interface UserRepository extends Neo4jRepository<User, UUID> {
     Optional<User> findByUsername(String username);
 
-    @Query( "MATCH (u1:User), (u2:User) " +
-            "WHERE u1.uuid = $uuidOfFollower AND u2.uuid = $uuidOfFollowed " +
-            "CREATE (u1)-[f:FOLLOWS]->(u2) " +
-            "RETURN id(f)")
-    Optional<Long> followUserWithUuid(UUID uuidOfFollower, UUID uuidOfFollowed);
-
-    @Query( "MATCH(u1:User)-[f:FOLLOWS]->(u2:User) " +
-            "WHERE u1.uuid = $uuidOfFollower AND u2.uuid = $uuidOfFollowed " +
-            "RETURN id(f)")
-    Optional<Long> checkIfUserWithUuidFollows(UUID uuidOfFollower, UUID uuidOfFollowed);
-
-    @Query( "MATCH (u1:User)-[f:FOLLOWS]->(u2:User) " +
-            "WHERE u1.uuid = $uuidOfFollower AND u2.uuid = $uuidOfFollowed " +
-            "DELETE f")
-    void unfollowUserWithUuid(UUID uuidOfFollower, UUID uuidOfFollowed);
-
-    @Query( "MATCH (u:User)-[:FOLLOWS]->(followed) " +
-            "WHERE u.uuid = $uuid AND followed.uuid <> $uuid " +
-            "RETURN followed " +
-            "SKIP $skip " +
-            "LIMIT $limit")
-    List<User> findAllFollowsOfUserWithUuid(UUID uuid, Long skip, Long limit);
-
-    @Query( "MATCH (following)-[:FOLLOWS]->(u:User) " +
-            "WHERE u.uuid = $uuid AND following.uuid <> $uuid " +
-            "RETURN following " +
-            "SKIP $skip " +
-            "LIMIT $limit")
-    List<User> findAllFollowersOfUserWithUuid(UUID uuid, Long skip, Long limit);
+    // followsCount and followersCount are updated in the same query that creates or deletes
+    // the relationship, users following themselves are not counted.
+    // The relationship is only created if it doesn't already exist, so following
+    // the same user again changes nothing.
+    // Both users are locked (by writing a property that is removed before the end of the query) before
+    // the relationship is looked for, so that concurrent identical requests are run one after another
+    // and counters are only changed once. Users are always locked in the order of their uuids,
+    // so that two users following each other at the same time don't wait for each other forever
+    @Query( "OPTIONAL MATCH (u2:User) WHERE u2.uuid = $uuidOfFollowed " +
+            "OPTIONAL MATCH (u1:User) WHERE u1.uuid = $uuidOfFollower " +
+            "FOREACH (u IN CASE WHEN u1 IS NULL OR u2 IS NULL THEN [] WHEN u1.uuid < u2.uuid THEN [u1, u2] ELSE [u2, u1] END | " +
+            "SET u._lock = true) " +
+            "WITH u1, u2 " +
+            "OPTIONAL MATCH (u1)-[f:FOLLOWS]->(u2) " +
+            "WITH u1, u2, count(f) AS existing " +
+            "WITH u1, u2, existing, (u1 IS NOT NULL AND u2 IS NOT NULL AND existing = 0) AS create " +
+            "FOREACH (_ IN CASE WHEN create THEN [1] ELSE [] END | " +
+            "MERGE (u1)-[:FOLLOWS]->(u2)) " +
+            "FOREACH (_ IN CASE WHEN create AND u1 <> u2 THEN [1] ELSE [] END | " +
+            "SET u1.followsCount = coalesce(u1.followsCount, 0) + 1, " +
+            "u2.followersCount = coalesce(u2.followersCount, 0) + 1) " +
+            "FOREACH (_ IN CASE WHEN u1 IS NOT NULL AND u2 IS NOT NULL THEN [1] ELSE [] END | " +
+            "REMOVE u1._lock, u2._lock) " +
+            "RETURN u2 IS NOT NULL AS userExists, CASE WHEN create THEN 1 ELSE 0 END AS changed, " +
+            "(create OR existing > 0) AS follows")
+    FollowResult followUserWithUuid(UUID uuidOfFollower, UUID uuidOfFollowed);
+
+    // users are locked just like in followUserWithUuid
+    @Query( "OPTIONAL MATCH (u2:User) WHERE u2.uuid = $uuidOfFollowed " +
+            "OPTIONAL MATCH (u1:User) WHERE u1.uuid = $uuidOfFollower " +
+            "FOREACH (u IN CASE WHEN u1 IS NULL OR u2 IS NULL THEN [] WHEN u1.uuid < u2.uuid THEN [u1, u2] ELSE [u2, u1] END | " +
+            "SET u._lock = true) " +
+            "WITH u1, u2 " +
+            "OPTIONAL MATCH (u1)-[f:FOLLOWS]->(u2) " +
+            "DELETE f " +
+            "WITH u1, u2, count(f) AS removed " +
+            "FOREACH (_ IN CASE WHEN removed > 0 AND u1 <> u2 THEN [1] ELSE [] END | " +
+            "SET u1.followsCount = coalesce(u1.followsCount, removed) - removed, " +
+            "u2.followersCount = coalesce(u2.followersCount, removed) - removed) " +
+            "FOREACH (_ IN CASE WHEN u1 IS NOT NULL AND u2 IS NOT NULL THEN [1] ELSE [] END | " +
+            "REMOVE u1._lock, u2._lock) " +
+            "RETURN u2 IS NOT NULL AS userExists, removed AS changed, false AS follows")
+    FollowResult unfollowUserWithUuid(UUID uuidOfFollower, UUID uuidOfFollowed);
+
+    // this query does not hide the fact that the user follows themselves
+    @Query( "MATCH (follower:User)-[:FOLLOWS]->(u:User) " +
+            "WHERE u.uuid = $uuid " +
+            "RETURN follower.uuid")
+    List<UUID> findUuidsOfAllFollowersOfUserWithUuid(UUID uuid);
+
+    @Query( "MATCH (u1:User)-[:FOLLOWS]->(u2:User) " +
+            "RETURN u1.uuid AS follower, u2.uuid AS followed")
+    List<FollowEdge> findAllFollowEdges();
+
+    // also returns the user with the given uuid, which tells whether that user exists
+    @Query( "MATCH (u:User) " +
+            "WHERE u.uuid = $uuid OR u.uuid IN $uuids " +
+            "RETURN u")
+    List<User> findUserWithUuidAndAllWithUuids(UUID uuid, List<UUID> uuids);
 
     @Query( "MATCH (user:User) " +
             "WHERE user.uuid = $uuid " +
-            "OPTIONAL MATCH (user)-[follows:FOLLOWS]->(o1:User) WHERE o1.uuid <> user.uuid " +
-            "OPTIONAL MATCH (o2:User)-[followedBy:FOLLOWS]->(user) WHERE o2.uuid <> user.uuid " +
-            "RETURN user.uuid AS uuid, count(distinct(follows)) AS follows, count(distinct(followedBy)) AS followers")
+            "RETURN user.uuid AS uuid, coalesce(user.followsCount, 0) AS follows, " +
+            "coalesce(user.followersCount, 0) AS followers")
     Optional<UserProfileInfo> getUserProfileInfo(UUID uuid);
 
+    // recomputes counters of at most 'limit' users which uuids come after 'afterUuid' (or all users from the
+    // beginning if 'afterUuid' is null), returns uuids of users that have been processed
+    @Query( "MATCH (user:User) WHERE $afterUuid IS NULL OR user.uuid > $afterUuid " +
+            "WITH user ORDER BY user.uuid LIMIT $limit " +
+            "OPTIONAL MATCH (user)-[follows:FOLLOWS]->(o1:User) WHERE o1 <> user " +
+            "WITH user, count(follows) AS follows " +
+            "OPTIONAL MATCH (o2:User)-[followedBy:FOLLOWS]->(user) WHERE o2 <> user " +
+            "WITH user, follows, count(followedBy) AS followers " +
+            "SET user.followsCount = follows, user.followersCount = followers " +
+            "RETURN user.uuid ORDER BY user.uuid")
+    List<UUID> reconcileCountersOfUsers(UUID afterUuid, Long limit);
+
+    // returns uuids of users which counters differ from the real number of their relationships
+    @Query( "MATCH (user:User) " +
+            "OPTIONAL MATCH (user)-[follows:FOLLOWS]->(o1:User) WHERE o1 <> user " +
+            "WITH user, count(follows) AS follows " +
+            "OPTIONAL MATCH (o2:User)-[followedBy:FOLLOWS]->(user) WHERE o2 <> user " +
+            "WITH user, follows, count(followedBy) AS followers " +
+            "WHERE coalesce(user.followsCount, 0) <> follows OR coalesce(user.followersCount, 0) <> followers " +
+            "RETURN user.uuid")
+    List<UUID> findUuidsOfUsersWithInconsistentCounters();
+
+    // recent blobbs are followed by the existence marker of the user
     @Query( "MATCH (u:User)-[:POSTS]->(b:Blobb) " +
-            "WHERE u.uuid = $userUuid AND b.deleted <> true " +
-            "OPTIONAL MATCH (b:Blobb)-[:RESPONDS]->(respondsTo:Blobb) " +
-            "OPTIONAL MATCH (b:Blobb)-[:REBLOBBS]->(reblobbs:Blobb) " +
-            "RETURN b.uuid AS uuid, b.content AS content, b.creationDate AS date, u AS author, " +
+            "WHERE u.uuid = $userUuid " +
+            "OPTIONAL MATCH (b:Blobb)-[:RESPONDS]->(respondsTo) " +
+            "OPTIONAL MATCH (b:Blobb)-[:REBLOBBS]->(reblobbs) " +
+            "RETURN b.uuid AS uuid, b.content AS content, b.creationDate AS date, u {.uuid, .username, .displayedUsername, .aviURL} AS author, " +
             "reblobbs.uuid AS reblobbs, respondsTo.uuid AS respondsTo " +
-            "ORDER BY datetime(b.creationDate) DESC SKIP $skip LIMIT $limit ")
+            "ORDER BY b.creationDate DESC, b.uuid DESC SKIP $skip LIMIT $limit " +
+            "UNION ALL " +
+            "MATCH (u:User) WHERE u.uuid = $userUuid " +
+            "RETURN NULL AS uuid, NULL AS content, NULL AS date, NULL AS author, NULL AS reblobbs, NULL AS respondsTo")
     List<UserBlobb> findRecentBlobbsOfUser(UUID userUuid, Long skip, Long limit);
+
+    @Query( "MATCH (u:User)-[:POSTS]->(b:Blobb) " +
+            "WHERE u.uuid = $userUuid " +
+            "AND (b.creationDate < datetime($cursorDate).epochMillis OR (b.creationDate = datetime($cursorDate).epochMillis AND b.uuid < $cursorUuid)) " +
+            "OPTIONAL MATCH (b:Blobb)-[:RESPONDS]->(respondsTo) " +
+            "OPTIONAL MATCH (b:Blobb)-[:REBLOBBS]->(reblobbs) " +
+            "RETURN b.uuid AS uuid, b.content AS content, b.creationDate AS date, u {.uuid, .username, .displayedUsername, .aviURL} AS author, " +
+            "reblobbs.uuid AS reblobbs, respondsTo.uuid AS respondsTo " +
+            "ORDER BY b.creationDate DESC, b.uuid DESC LIMIT $limit " +
+            "UNION ALL " +
+            "MATCH (u:User) WHERE u.uuid = $userUuid " +
+            "RETURN NULL AS uuid, NULL AS content, NULL AS date, NULL AS author, NULL AS reblobbs, NULL AS respondsTo")
+    List<UserBlobb> findRecentBlobbsOfUser_AfterCursor(UUID userUuid, Date cursorDate, UUID cursorUuid, Long limit);
 }
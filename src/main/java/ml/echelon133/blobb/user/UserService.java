@@ -1,20 +1,33 @@
 package ml.echelon133.blobb.user;
 
+import ml.echelon133.blobb.feed.TimelineStore;
+import ml.echelon133.blobb.pagination.Cursor;
+import ml.echelon133.blobb.pagination.ExistenceMarker;
+import ml.echelon133.blobb.security.PrincipalCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class UserService implements IUserService {
 
     private UserRepository userRepository;
+    private TimelineStore timelineStore;
+    private PrincipalCache principalCache;
+    private FollowGraph followGraph;
 
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository,
+                       TimelineStore timelineStore,
+                       PrincipalCache principalCache,
+                       FollowGraph followGraph) {
         this.userRepository = userRepository;
+        this.timelineStore = timelineStore;
+        this.principalCache = principalCache;
+        this.followGraph = followGraph;
     }
 
     private void throwIfUserDoesntExist(UUID uuid) throws UserDoesntExistException{
@@ -23,6 +36,33 @@ public class UserService implements IUserService {
         }
     }
 
+    // lists of recent blobbs are followed by the existence marker of the user
+    private static List<UserBlobb> pageOrThrow(UUID uuid, List<UserBlobb> rows) throws UserDoesntExistException {
+        return ExistenceMarker
+                .strip(rows, UserBlobb::getUuid)
+                .orElseThrow(() -> new UserDoesntExistException(uuid));
+    }
+
+    /*
+        Follows and followers are listed by FollowGraph, but details of these users, and whether the user
+        whose follows or followers are listed exists at all, have to be read from the database.
+        Both are read with a single query. Users have to be returned in the same order as their uuids.
+     */
+    private List<User> findAllWithUuids(UUID uuidOfListedUser, List<UUID> uuids) throws UserDoesntExistException {
+        Map<UUID, User> users = userRepository
+                .findUserWithUuidAndAllWithUuids(uuidOfListedUser, uuids)
+                .stream()
+                .collect(Collectors.toMap(User::getUuid, Function.identity()));
+        if (!users.containsKey(uuidOfListedUser)) {
+            throw new UserDoesntExistException(uuidOfListedUser);
+        }
+        return uuids
+                .stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public User findByUsername(String username) throws UserDoesntExistException {
         Optional<User> user = userRepository.findByUsername(username);
@@ -34,7 +74,6 @@ public class UserService implements IUserService {
 
     @Override
     public User findByUuid(UUID uuid) throws UserDoesntExistException {
-        throwIfUserDoesntExist(uuid);
         Optional<User> user = userRepository.findById(uuid);
         if (user.isPresent()) {
             return user.get();
@@ -44,73 +83,123 @@ public class UserService implements IUserService {
 
     @Override
     public boolean followUserWithUuid(User user, UUID followUuid) throws UserDoesntExistException, IllegalArgumentException {
-        throwIfUserDoesntExist(followUuid);
-        Optional<Long> following = userRepository.checkIfUserWithUuidFollows(user.getUuid(), followUuid);
-
         if (user.getUuid().equals(followUuid)) {
             throw new IllegalArgumentException("Users cannot follow themselves.");
         }
 
-        // only follow if there is no already existing 'follows' relationship
-        // between these users
-        // otherwise this will create duplicate relationships
-        if (following.isEmpty()) {
-            following = userRepository.followUserWithUuid(user.getUuid(), followUuid);
+        // a single query checks whether the user exists, and follows them only if
+        // there is no already existing 'follows' relationship between these users
+        FollowResult following = userRepository.followUserWithUuid(user.getUuid(), followUuid);
+        if (!Boolean.TRUE.equals(following.getUserExists())) {
+            throw new UserDoesntExistException(followUuid);
         }
-        return following.isPresent();
+        boolean follows = Boolean.TRUE.equals(following.getFollows());
+        if (follows) {
+            // the graph is updated even if the relationship already existed, which repairs
+            // the graph in case it has missed that relationship
+            followGraph.addFollow(user.getUuid(), followUuid);
+        }
+        if (following.getChanged() > 0) {
+            // user's timeline doesn't contain blobbs of the newly followed user
+            timelineStore.invalidate(user.getUuid());
+        }
+        return follows;
     }
 
     @Override
     public boolean unfollowUserWithUuid(User user, UUID unfollowUuid) throws UserDoesntExistException {
-        throwIfUserDoesntExist(unfollowUuid);
-        userRepository.unfollowUserWithUuid(user.getUuid(), unfollowUuid);
-        return userRepository.checkIfUserWithUuidFollows(user.getUuid(), unfollowUuid).isEmpty();
+        FollowResult unfollowing = userRepository.unfollowUserWithUuid(user.getUuid(), unfollowUuid);
+        if (!Boolean.TRUE.equals(unfollowing.getUserExists())) {
+            throw new UserDoesntExistException(unfollowUuid);
+        }
+        boolean follows = Boolean.TRUE.equals(unfollowing.getFollows());
+        if (!follows) {
+            followGraph.removeFollow(user.getUuid(), unfollowUuid);
+        }
+        if (unfollowing.getChanged() > 0) {
+            // user's timeline still contains blobbs of the unfollowed user
+            timelineStore.invalidate(user.getUuid());
+        }
+        return !follows;
     }
 
     @Override
     public List<User> findAllFollowsOfUser(UUID uuid, Long skip, Long limit) throws UserDoesntExistException, IllegalArgumentException {
-        throwIfUserDoesntExist(uuid);
         if (skip < 0 || limit < 0) {
             throw new IllegalArgumentException("Invalid skip and/or limit values.");
         }
-        return userRepository.findAllFollowsOfUserWithUuid(uuid, skip, limit);
+        return findAllWithUuids(uuid, followGraph.findFollows(uuid, skip, limit));
+    }
+
+    @Override
+    public List<User> findAllFollowsOfUser(UUID uuid, Cursor cursor, Long limit) throws UserDoesntExistException, IllegalArgumentException {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid limit value.");
+        }
+        return findAllWithUuids(uuid, followGraph.findFollows_AfterCursor(uuid, cursor.getUuid(), limit));
     }
 
     @Override
     public List<User> findAllFollowersOfUser(UUID uuid, Long skip, Long limit) throws UserDoesntExistException, IllegalArgumentException {
-        throwIfUserDoesntExist(uuid);
         if (skip < 0 || limit < 0) {
             throw new IllegalArgumentException("Invalid skip and/or limit values.");
         }
-        return userRepository.findAllFollowersOfUserWithUuid(uuid, skip, limit);
+        return findAllWithUuids(uuid, followGraph.findFollowers(uuid, skip, limit));
+    }
+
+    @Override
+    public List<User> findAllFollowersOfUser(UUID uuid, Cursor cursor, Long limit) throws UserDoesntExistException, IllegalArgumentException {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid limit value.");
+        }
+        return findAllWithUuids(uuid, followGraph.findFollowers_AfterCursor(uuid, cursor.getUuid(), limit));
     }
 
     @Override
     public UserProfileInfo getUserProfileInfo(UUID uuid) throws UserDoesntExistException {
-        throwIfUserDoesntExist(uuid);
-        return userRepository.getUserProfileInfo(uuid).orElse(new UserProfileInfo());
+        // counters are stored on the user, so a single read both counts relationships and checks that the user exists
+        return userRepository
+                .getUserProfileInfo(uuid)
+                .orElseThrow(() -> new UserDoesntExistException(uuid));
     }
 
     @Override
     public boolean checkIfUserFollows(User user, UUID followedUuid) throws UserDoesntExistException {
         throwIfUserDoesntExist(followedUuid);
-        return userRepository.checkIfUserWithUuidFollows(user.getUuid(), followedUuid).isPresent();
+        return followGraph.follows(user.getUuid(), followedUuid);
     }
 
     @Override
     public List<UserBlobb> findRecentBlobbsOfUser(UUID uuid, Long skip, Long limit) throws UserDoesntExistException, IllegalArgumentException {
-        throwIfUserDoesntExist(uuid);
         if (skip < 0 || limit < 0) {
             throw new IllegalArgumentException("Invalid skip and/or limit values.");
         }
-        return userRepository.findRecentBlobbsOfUser(uuid, skip, limit);
+        return pageOrThrow(uuid, userRepository.findRecentBlobbsOfUser(uuid, skip, limit));
+    }
+
+    @Override
+    public List<UserBlobb> findRecentBlobbsOfUser(UUID uuid, Cursor cursor, Long limit) throws UserDoesntExistException, IllegalArgumentException {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid limit value.");
+        }
+        if (!cursor.hasDate()) {
+            throw new IllegalArgumentException("Invalid cursor value.");
+        }
+        return pageOrThrow(uuid, userRepository
+                .findRecentBlobbsOfUser_AfterCursor(uuid, cursor.getDate(), cursor.getUuid(), limit));
     }
 
     @Override
-    public User updateUser(User user, UserDetailsDto userDetailsDto) {
+    public User updateUser(User loggedUser, UserDetailsDto userDetailsDto) {
+        // principals authenticated with a token only hold the uuid and the username of the user,
+        // saving them would overwrite all other properties of the user
+        User user = userRepository.findById(loggedUser.getUuid()).orElse(loggedUser);
         user.setDisplayedUsername(userDetailsDto.getDisplayedUsername());
         user.setDescription(userDetailsDto.getDescription());
         user.setAviURL(userDetailsDto.getAviURL());
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        // cached principal holds details of the user from before the update
+        principalCache.invalidate(savedUser.getUsername());
+        return savedUser;
     }
 }
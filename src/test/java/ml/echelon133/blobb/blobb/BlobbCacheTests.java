@@ -0,0 +1,97 @@
+package ml.echelon133.blobb.blobb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlobbCacheTests {
+
+    @Test
+    public void getBlobb_RecordsHitsAndMisses() {
+        BlobbCache blobbCache = new BlobbCache(100, 60000);
+        UUID uuid = UUID.randomUUID();
+        FeedBlobb blobb = new FeedBlobb();
+
+        // when
+        blobbCache.getBlobb(uuid, u -> Optional.of(blobb));
+        Optional<FeedBlobb> cached = blobbCache.getBlobb(uuid, u -> Optional.empty());
+
+        // then
+        assertEquals(Optional.of(blobb), cached);
+        assertEquals(1, blobbCache.getBlobbStats().hitCount());
+        assertEquals(1, blobbCache.getBlobbStats().missCount());
+    }
+
+    @Test
+    public void getBlobb_DoesNotCacheMissingBlobbs() {
+        BlobbCache blobbCache = new BlobbCache(100, 60000);
+        UUID uuid = UUID.randomUUID();
+        FeedBlobb blobb = new FeedBlobb();
+
+        // when
+        Optional<FeedBlobb> missing = blobbCache.getBlobb(uuid, u -> Optional.empty());
+        Optional<FeedBlobb> created = blobbCache.getBlobb(uuid, u -> Optional.of(blobb));
+
+        // then
+        assertTrue(missing.isEmpty());
+        assertEquals(Optional.of(blobb), created);
+    }
+
+    @Test
+    public void getInfo_LoadsConcurrentlyRequestedInfoOnce() throws Exception {
+        BlobbCache blobbCache = new BlobbCache(100, 60000);
+        UUID uuid = UUID.randomUUID();
+        BlobbInfo info = new BlobbInfo();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // when
+            Future<Optional<BlobbInfo>> first = executor.submit(() -> blobbCache.getInfo(uuid, u -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return Optional.of(info);
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<Optional<BlobbInfo>> second = executor.submit(() -> blobbCache.getInfo(uuid, u -> {
+                loads.incrementAndGet();
+                return Optional.of(new BlobbInfo());
+            }));
+            release.countDown();
+
+            // then
+            assertEquals(Optional.of(info), first.get(5, TimeUnit.SECONDS));
+            assertEquals(Optional.of(info), second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void invalidate_RemovesBlobbAndInfo() {
+        BlobbCache blobbCache = new BlobbCache(100, 60000);
+        UUID uuid = UUID.randomUUID();
+        blobbCache.getBlobb(uuid, u -> Optional.of(new FeedBlobb()));
+        blobbCache.getInfo(uuid, u -> Optional.of(new BlobbInfo()));
+
+        // when
+        blobbCache.invalidate(uuid);
+
+        // then
+        assertTrue(blobbCache.getBlobb(uuid, u -> Optional.empty()).isEmpty());
+        assertTrue(blobbCache.getInfo(uuid, u -> Optional.empty()).isEmpty());
+    }
+}
@@ -1,6 +1,8 @@
 package ml.echelon133.blobb.blobb;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import ml.echelon133.blobb.pagination.Cursor;
+import ml.echelon133.blobb.user.Author;
 import ml.echelon133.blobb.user.User;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,12 +13,14 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.json.JacksonTester;
 import org.springframework.boot.test.json.JsonContent;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.web.context.SecurityContextPersistenceFilter;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -120,7 +124,7 @@ public class BlobbControllerTests {
         UUID uuid = UUID.randomUUID();
         FeedBlobb blobb = new FeedBlobb();
         blobb.setUuid(uuid);
-        blobb.setAuthor(testUser);
+        blobb.setAuthor(new Author(testUser));
 
         // expected json
         JsonContent<FeedBlobb> json = jsonFeedBlobb.write(blobb);
@@ -340,6 +344,40 @@ public class BlobbControllerTests {
                 .contains(json.getJson());
     }
 
+    @Test
+    public void getResponsesToBlobb_ProvidedCursorIsUsed() throws Exception {
+        FeedBlobb first = new FeedBlobb();
+        FeedBlobb last = new FeedBlobb();
+        last.setUuid(UUID.randomUUID());
+        last.setDate(new Date());
+        List<FeedBlobb> responses = List.of(first, last);
+
+        UUID uuid = UUID.randomUUID();
+        Cursor cursor = new Cursor(new Date(), UUID.randomUUID());
+
+        // expected json
+        JsonContent<List<FeedBlobb>> json = jsonFeedBlobbList.write(responses);
+
+        // given
+        given(blobbService.getAllResponsesTo(uuid, cursor, 2L))
+                .willReturn(responses);
+
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                get("/api/blobbs/" + uuid + "/responses")
+                        .param("cursor", cursor.encode())
+                        .param("limit", "2")
+                        .accept(APPLICATION_JSON)
+        ).andReturn().getResponse();
+
+        // then
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString())
+                .contains(json.getJson());
+        assertThat(response.getHeader(Cursor.NEXT_CURSOR_HEADER))
+                .isEqualTo(new Cursor(last.getDate(), last.getUuid()).encode());
+    }
+
     @Test
     public void getReblobbsOfBlobb_HandlesInvalidUuid() throws Exception {
         String invalidUuid = "asdf";
@@ -807,10 +845,38 @@ public class BlobbControllerTests {
         ).andReturn().getResponse();
 
         // then
-        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        // blobbs are written to the database after the response is sent
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.ACCEPTED.value());
         assertThat(response.getContentAsString()).isEqualTo(expected.getJson());
     }
 
+    @Test
+    public void postBlobb_HandlesFullQueue() throws Exception {
+        BlobbDto dto1 = new BlobbDto();
+        dto1.setContent("This is a test blobb");
+
+        // json
+        JsonContent<BlobbDto> json = jsonBlobbDto.write(dto1);
+
+        // given
+        given(blobbService.postBlobb(testUser, dto1.getContent())).willThrow(new BlobbQueueFullException());
+
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                post("/api/blobbs")
+                        .accept(APPLICATION_JSON)
+                        .with(user(testUser))
+                        .contentType(APPLICATION_JSON)
+                        .content(json.getJson())
+        ).andReturn().getResponse();
+
+        // then
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(response.getContentAsString())
+                .contains("Too many blobbs are being posted, try again later");
+    }
+
     @Test
     public void respondToBlobb_RejectsNullContent() throws Exception {
         UUID postUuid = UUID.randomUUID();
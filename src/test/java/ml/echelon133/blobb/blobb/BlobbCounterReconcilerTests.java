@@ -0,0 +1,42 @@
+package ml.echelon133.blobb.blobb;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+public class BlobbCounterReconcilerTests {
+
+    @Mock
+    private BlobbRepository blobbRepository;
+
+    @Mock
+    private BlobbCache blobbCache;
+
+    @Test
+    public void reconcile_PassesPendingLikesToRepository() {
+        LikeCounterBuffer likeCounterBuffer = new LikeCounterBuffer(blobbRepository, blobbCache);
+        BlobbCounterReconciler reconciler = new BlobbCounterReconciler(blobbRepository, likeCounterBuffer, 2L);
+        UUID uuid = UUID.randomUUID();
+        likeCounterBuffer.add(uuid, 3L);
+
+        // given
+        given(blobbRepository.reconcileCountersOfBlobbs(null, 2L, Map.of(uuid.toString(), 3L)))
+                .willReturn(List.of(uuid));
+
+        // when
+        reconciler.reconcile();
+
+        // then
+        // pending likes stay in the buffer, so that the next flush adds them to the counter
+        assertEquals(3L, likeCounterBuffer.getPendingDelta(uuid));
+    }
+}
@@ -0,0 +1,156 @@
+package ml.echelon133.blobb.blobb;
+
+import ml.echelon133.blobb.user.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlobbIngestionQueueTests {
+
+    private static Blobb createTestBlobb(String content) {
+        return new Blobb(new User(), content);
+    }
+
+    @Test
+    public void offer_RejectsBlobbsWhenQueueIsFull() {
+        BlobbIngestionQueue queue = new BlobbIngestionQueue(2, 10, 2, 0);
+
+        // when
+        boolean first = queue.offer(createTestBlobb("1"));
+        boolean second = queue.offer(createTestBlobb("2"));
+        boolean third = queue.offer(createTestBlobb("3"));
+
+        // then
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(third);
+    }
+
+    @Test
+    public void flush_WritesQueuedBlobbsInBatches() {
+        BlobbIngestionQueue queue = new BlobbIngestionQueue(10, 2, 2, 0);
+        List<List<Blobb>> batches = new ArrayList<>();
+        queue.setWriter(batches::add);
+
+        List<Blobb> blobbs = List.of(
+                createTestBlobb("1"), createTestBlobb("2"), createTestBlobb("3"),
+                createTestBlobb("4"), createTestBlobb("5"));
+        blobbs.forEach(queue::offer);
+
+        // when
+        queue.flush();
+
+        // then
+        assertEquals(List.of(blobbs.subList(0, 2), blobbs.subList(2, 4), blobbs.subList(4, 5)), batches);
+    }
+
+    @Test
+    public void flush_ContinuesWhenBatchFails() {
+        BlobbIngestionQueue queue = new BlobbIngestionQueue(10, 1, 2, 0);
+        List<Blobb> written = new ArrayList<>();
+        Blobb failing = createTestBlobb("1");
+        Blobb other = createTestBlobb("2");
+        queue.setWriter(batch -> {
+            if (batch.contains(failing)) {
+                throw new IllegalStateException();
+            }
+            written.addAll(batch);
+        });
+        queue.offer(failing);
+        queue.offer(other);
+
+        // when
+        queue.flush();
+
+        // then
+        assertEquals(List.of(other), written);
+    }
+
+    @Test
+    public void flush_RetriesFailedBatch() {
+        BlobbIngestionQueue queue = new BlobbIngestionQueue(10, 10, 3, 1);
+        List<List<Blobb>> attempts = new ArrayList<>();
+        queue.setWriter(batch -> {
+            attempts.add(batch);
+            if (attempts.size() < 3) {
+                throw new IllegalStateException();
+            }
+        });
+        Blobb b1 = createTestBlobb("1");
+        queue.offer(b1);
+
+        // when
+        queue.flush();
+
+        // then
+        assertEquals(List.of(List.of(b1), List.of(b1), List.of(b1)), attempts);
+    }
+
+    @Test
+    public void stop_RetriesFailedBatch() {
+        BlobbIngestionQueue queue = new BlobbIngestionQueue(10, 10, 2, 1);
+        List<Blobb> written = new ArrayList<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        queue.setWriter(batch -> {
+            if (!failed.getAndSet(true)) {
+                throw new IllegalStateException();
+            }
+            written.addAll(batch);
+        });
+        Blobb b1 = createTestBlobb("1");
+        queue.offer(b1);
+
+        // when
+        queue.stop();
+
+        // then
+        assertEquals(List.of(b1), written);
+    }
+
+    @Test
+    public void start_WritesBlobbsInBackground() throws Exception {
+        BlobbIngestionQueue queue = new BlobbIngestionQueue(10, 10, 2, 0);
+        CountDownLatch latch = new CountDownLatch(2);
+        List<Blobb> written = Collections.synchronizedList(new ArrayList<>());
+        queue.setWriter(batch -> {
+            written.addAll(batch);
+            batch.forEach(b -> latch.countDown());
+        });
+        Blobb b1 = createTestBlobb("1");
+        Blobb b2 = createTestBlobb("2");
+
+        // when
+        queue.start();
+        queue.offer(b1);
+        queue.offer(b2);
+
+        // then
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(b1, b2), written);
+        queue.stop();
+    }
+
+    @Test
+    public void stop_WritesRemainingBlobbsAndRejectsNewOnes() {
+        BlobbIngestionQueue queue = new BlobbIngestionQueue(10, 10, 2, 0);
+        List<Blobb> written = new ArrayList<>();
+        queue.setWriter(written::addAll);
+        Blobb b1 = createTestBlobb("1");
+        queue.offer(b1);
+
+        // when
+        queue.stop();
+        boolean accepted = queue.offer(createTestBlobb("2"));
+
+        // then
+        assertEquals(List.of(b1), written);
+        assertFalse(accepted);
+    }
+}
@@ -1,14 +1,23 @@
 package ml.echelon133.blobb.blobb;
 
+import ml.echelon133.blobb.pagination.ExistenceMarker;
+import ml.echelon133.blobb.tag.Tag;
+import ml.echelon133.blobb.user.Author;
 import ml.echelon133.blobb.user.User;
 import ml.echelon133.blobb.user.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.neo4j.ogm.session.Session;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.neo4j.DataNeo4jTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static java.time.temporal.ChronoUnit.MINUTES;
@@ -21,10 +30,13 @@ public class BlobbRepositoryTests {
 
     private BlobbRepository blobbRepository;
 
+    private Session session;
+
     @Autowired
-    public BlobbRepositoryTests(UserRepository userRepository, BlobbRepository blobbRepository) {
+    public BlobbRepositoryTests(UserRepository userRepository, BlobbRepository blobbRepository, Session session) {
         this.userRepository = userRepository;
         this.blobbRepository = blobbRepository;
+        this.session = session;
     }
 
     private User createTestUser(String username) {
@@ -57,6 +69,11 @@ public class BlobbRepositoryTests {
         return blobbRepository.save(blobb);
     }
 
+    // listed blobbs are followed by the existence marker of the blobb they reference
+    private static <T> List<T> pageOf(List<T> rows, Function<T, UUID> uuidOf) {
+        return ExistenceMarker.strip(rows, uuidOf).orElseThrow();
+    }
+
     @BeforeEach
     public void beforeEach() {
         // five test users
@@ -102,6 +119,10 @@ public class BlobbRepositoryTests {
             blobbRepository.likeBlobbWithUuid(test5.getUuid(), blobb.getUuid());
         }
 
+        // likes don't update counters and popularity scores of blobbs on their own,
+        // these have to be computed from the relationships
+        blobbRepository.reconcileCountersOfBlobbs(null, 20L, Map.of());
+
         /*
             Test database has 20 posts
             User "test1":
@@ -169,8 +190,8 @@ public class BlobbRepositoryTests {
 
         // create a post
         Blobb blobb = createTestBlobb(user, "200", 0L);
-        blobb.markAsDeleted(); // mark as deleted even before saving it
         blobbRepository.save(blobb);
+        blobbRepository.markBlobbWithUuidAsDeleted(blobb.getUuid());
 
         Date date15MinAgo = Date.from(Instant.now().minus(15, MINUTES));
 
@@ -284,7 +305,7 @@ public class BlobbRepositoryTests {
 
         // then
         // expected posts of test1: 0, 1, 2, 3, 4, 5, 6, 7, 8, 9
-        List<FeedBlobb> test1Posts = allBlobbs.stream().filter(b -> b.getAuthor().getUuid() == test1.getUuid())
+        List<FeedBlobb> test1Posts = allBlobbs.stream().filter(b -> b.getAuthor().getUuid().equals(test1.getUuid()))
                 .collect(Collectors.toList());
 
         assertEquals(10, test1Posts.size());
@@ -295,7 +316,7 @@ public class BlobbRepositoryTests {
         });
 
         // expected posts of test2: 10, 11, 12, 13, 14
-        List<FeedBlobb> test2Posts = allBlobbs.stream().filter(b -> b.getAuthor().getUuid() == test2.getUuid())
+        List<FeedBlobb> test2Posts = allBlobbs.stream().filter(b -> b.getAuthor().getUuid().equals(test2.getUuid()))
                 .collect(Collectors.toList());
 
         assertEquals(5, test2Posts.size());
@@ -306,7 +327,7 @@ public class BlobbRepositoryTests {
         });
 
         // expected posts of test3: 15, 16, 17, 18, 19
-        List<FeedBlobb> test3Posts = allBlobbs.stream().filter(b -> b.getAuthor().getUuid() == test3.getUuid())
+        List<FeedBlobb> test3Posts = allBlobbs.stream().filter(b -> b.getAuthor().getUuid().equals(test3.getUuid()))
                 .collect(Collectors.toList());
 
         assertEquals(5, test3Posts.size());
@@ -317,6 +338,104 @@ public class BlobbRepositoryTests {
         });
     }
 
+    @Test
+    public void getFeedForUserWithUuid_PostedBetween_AfterCursor_ContinuesWhereFirstPageEnds() {
+        User user = userRepository.findByUsername("test1").orElse(new User());
+
+        Date date40MinAgo = Date.from(Instant.now().minus(40, MINUTES));
+        Date now = new Date();
+
+        List<FeedBlobb> allBlobbs = blobbRepository
+                .getFeedForUserWithUuid_PostedBetween(user.getUuid(), date40MinAgo, now, 0L, 20L);
+
+        // when
+        List<FeedBlobb> readWithCursor = new ArrayList<>(blobbRepository
+                .getFeedForUserWithUuid_PostedBetween(user.getUuid(), date40MinAgo, now, 0L, 7L));
+        while (readWithCursor.size() < allBlobbs.size()) {
+            FeedBlobb last = readWithCursor.get(readWithCursor.size() - 1);
+            List<FeedBlobb> page = blobbRepository
+                    .getFeedForUserWithUuid_PostedBetween_AfterCursor(user.getUuid(), date40MinAgo, now,
+                            last.getDate(), last.getUuid(), 7L);
+            if (page.isEmpty()) {
+                break;
+            }
+            readWithCursor.addAll(page);
+        }
+
+        // then
+        List<UUID> expected = allBlobbs.stream().map(FeedBlobb::getUuid).collect(Collectors.toList());
+        List<UUID> actual = readWithCursor.stream().map(FeedBlobb::getUuid).collect(Collectors.toList());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void getFeedForUserWithUuid_PostedBetween_AfterCursor_HandlesBlobbsWithEqualDates() {
+        User user = userRepository.findByUsername("test1").orElse(new User());
+
+        // create 6 posts that have exactly the same date
+        Date sameDate = Date.from(Instant.now().minus(5, MINUTES));
+        for (int i = 0; i < 6; i++) {
+            Blobb blobb = new Blobb(user, "same " + i);
+            blobb.setCreationDate(sameDate);
+            blobbRepository.save(blobb);
+        }
+
+        Date date6MinAgo = Date.from(Instant.now().minus(6, MINUTES));
+        Date now = new Date();
+
+        // when
+        List<FeedBlobb> firstPage = blobbRepository
+                .getFeedForUserWithUuid_PostedBetween(user.getUuid(), date6MinAgo, now, 0L, 4L);
+        FeedBlobb last = firstPage.get(firstPage.size() - 1);
+        List<FeedBlobb> secondPage = blobbRepository
+                .getFeedForUserWithUuid_PostedBetween_AfterCursor(user.getUuid(), date6MinAgo, now,
+                        last.getDate(), last.getUuid(), 4L);
+
+        // then
+        // 5 posts made 1 min ago come first, then 6 posts with equal dates
+        assertEquals(4, firstPage.size());
+        assertEquals(4, secondPage.size());
+        Set<UUID> uuids = new HashSet<>();
+        firstPage.forEach(b -> uuids.add(b.getUuid()));
+        secondPage.forEach(b -> uuids.add(b.getUuid()));
+        assertEquals(8, uuids.size());
+    }
+
+    @Test
+    public void getBlobbsWithUuids_ReturnsOnlyRequestedBlobbs() {
+        User u = createTestUser("user");
+
+        Blobb b1 = createTestBlobb(u, "first", 0L);
+        Blobb b2 = createTestBlobb(u, "second", 0L);
+        createTestBlobb(u, "third", 0L);
+
+        // when
+        List<FeedBlobb> blobbs = blobbRepository.getBlobbsWithUuids(List.of(b1.getUuid(), b2.getUuid()));
+
+        // then
+        List<String> contents = blobbs.stream().map(FeedBlobb::getContent).collect(Collectors.toList());
+        assertEquals(2, blobbs.size());
+        assertTrue(contents.containsAll(List.of("first", "second")));
+        blobbs.forEach(b -> assertEquals(u.getUuid(), b.getAuthor().getUuid()));
+    }
+
+    @Test
+    public void getBlobbsWithUuids_DoesNotContainDeletedBlobbs() {
+        User u = createTestUser("user");
+
+        Blobb b1 = createTestBlobb(u, "first", 0L);
+        Blobb b2 = createTestBlobb(u, "second", 0L);
+        blobbRepository.save(b2);
+        blobbRepository.markBlobbWithUuidAsDeleted(b2.getUuid());
+
+        // when
+        List<FeedBlobb> blobbs = blobbRepository.getBlobbsWithUuids(List.of(b1.getUuid(), b2.getUuid()));
+
+        // then
+        assertEquals(1, blobbs.size());
+        assertEquals(b1.getUuid(), blobbs.get(0).getUuid());
+    }
+
     @Test
     public void getBlobbWithUuid_ReturnsEmptyObjectWhenUuidDoesNotExistInDb() {
 
@@ -332,8 +451,8 @@ public class BlobbRepositoryTests {
         User test1 = userRepository.findByUsername("test1").orElse(new User());
 
         Blobb b = createTestBlobb(test1, "test blobb", 0L);
-        b.markAsDeleted();
         blobbRepository.save(b);
+        blobbRepository.markBlobbWithUuidAsDeleted(b.getUuid());
 
         // when
         Optional<FeedBlobb> blobb = blobbRepository.getBlobbWithUuid(b.getUuid());
@@ -357,11 +476,28 @@ public class BlobbRepositoryTests {
 
         FeedBlobb feedBlobb = blobb.get();
         assertEquals(b.getUuid(), feedBlobb.getUuid());
-        assertEquals(b.getAuthor(), feedBlobb.getAuthor());
+        assertEquals(b.getAuthor().getUuid(), feedBlobb.getAuthor().getUuid());
         assertEquals(b.getContent(), feedBlobb.getContent());
         assertEquals(b.getCreationDate(), feedBlobb.getDate());
     }
 
+    @Test
+    public void getBlobbWithUuid_ReturnsOnlyDisplayedPropertiesOfAuthor() {
+        User u = new User("user", "user@mail.com", "secret", "avi");
+        u.setDisplayedUsername("displayed");
+        userRepository.save(u);
+        Blobb b = createTestBlobb(u, "test", 0L);
+
+        // when
+        Author author = blobbRepository.getBlobbWithUuid(b.getUuid()).orElseThrow().getAuthor();
+
+        // then
+        assertEquals(u.getUuid(), author.getUuid());
+        assertEquals("user", author.getUsername());
+        assertEquals("displayed", author.getDisplayedUsername());
+        assertEquals("avi", author.getAviURL());
+    }
+
     @Test
     public void getBlobbWithUuid_HoldsUuidOfParentBlobb() {
         // setup a user with one post and one response to that post
@@ -411,27 +547,54 @@ public class BlobbRepositoryTests {
     }
 
     @Test
-    public void likeBlobbWithUuid_IsEmptyWhenUuidInvalid() {
+    public void likeBlobbWithUuid_ReportsMissingBlobbWhenUuidInvalid() {
         // when
-        Optional<Long> result = blobbRepository.likeBlobbWithUuid(UUID.randomUUID(), UUID.randomUUID());
+        LikeResult result = blobbRepository.likeBlobbWithUuid(UUID.randomUUID(), UUID.randomUUID());
 
         // then
-        assertTrue(result.isEmpty());
+        assertFalse(result.getBlobbExists());
+        assertEquals(0L, result.getChanged());
+        assertFalse(result.getLikes());
     }
 
     @Test
-    public void likeBlobbWithUuid_IsEmptyWhenBlobbMarkedAsDeleted() {
+    public void likeBlobbWithUuid_DoesNotLikeBlobbMarkedAsDeleted() {
         User test1 = userRepository.findByUsername("test1").orElse(new User());
 
         Blobb b = createTestBlobb(test1, "test blobb", 0L);
-        b.markAsDeleted();
         blobbRepository.save(b);
+        blobbRepository.markBlobbWithUuidAsDeleted(b.getUuid());
 
         // when
-        Optional<Long> result = blobbRepository.likeBlobbWithUuid(test1.getUuid(), b.getUuid());
+        LikeResult result = blobbRepository.likeBlobbWithUuid(test1.getUuid(), b.getUuid());
 
         // then
-        assertTrue(result.isEmpty());
+        assertTrue(result.getBlobbExists());
+        assertEquals(0L, result.getChanged());
+        assertFalse(result.getLikes());
+    }
+
+    @Test
+    public void likeBlobbWithUuid_DoesNotCreateDuplicateLikes() {
+        User u1 = createTestUser("u1");
+        User u2 = createTestUser("u2");
+
+        Blobb b = createTestBlobb(u2, "test", 0L);
+
+        // when
+        LikeResult first = blobbRepository.likeBlobbWithUuid(u1.getUuid(), b.getUuid());
+        LikeResult second = blobbRepository.likeBlobbWithUuid(u1.getUuid(), b.getUuid());
+
+        // then
+        assertTrue(first.getBlobbExists());
+        assertEquals(1L, first.getChanged());
+        assertTrue(first.getLikes());
+        assertTrue(second.getBlobbExists());
+        assertEquals(0L, second.getChanged());
+        assertTrue(second.getLikes());
+
+        // a single unlike removes the only like
+        assertEquals(1L, blobbRepository.unlikeBlobbWithUuid(u1.getUuid(), b.getUuid()).getChanged());
     }
 
     @Test
@@ -444,10 +607,11 @@ public class BlobbRepositoryTests {
         Blobb b = createTestBlobb(u2, "test", 0L);
 
         // check if u1 likes the post that u2 made
-        Optional<Long> result = blobbRepository
+        LikeResult result = blobbRepository
                 .checkIfUserWithUuidLikes(u1.getUuid(), b.getUuid());
 
-        assertTrue(result.isEmpty());
+        assertTrue(result.getBlobbExists());
+        assertFalse(result.getLikes());
 
         // now, as the u1, like the post that u2 made
         blobbRepository.likeBlobbWithUuid(u1.getUuid(), b.getUuid());
@@ -456,7 +620,7 @@ public class BlobbRepositoryTests {
         result = blobbRepository
                 .checkIfUserWithUuidLikes(u1.getUuid(), b.getUuid());
 
-        assertTrue(result.isPresent());
+        assertTrue(result.getLikes());
     }
 
     @Test
@@ -472,10 +636,10 @@ public class BlobbRepositoryTests {
         blobbRepository.likeBlobbWithUuid(u1.getUuid(), b.getUuid());
 
         // check if the like was registered
-        Optional<Long> result = blobbRepository
+        LikeResult result = blobbRepository
                 .checkIfUserWithUuidLikes(u1.getUuid(), b.getUuid());
 
-        assertTrue(result.isPresent());
+        assertTrue(result.getLikes());
 
         // now unlike that post
         blobbRepository.unlikeBlobbWithUuid(u1.getUuid(), b.getUuid());
@@ -484,7 +648,7 @@ public class BlobbRepositoryTests {
         result = blobbRepository
                 .checkIfUserWithUuidLikes(u1.getUuid(), b.getUuid());
 
-        assertTrue(result.isEmpty());
+        assertFalse(result.getLikes());
     }
 
     @Test
@@ -501,8 +665,8 @@ public class BlobbRepositoryTests {
         User test1 = userRepository.findByUsername("test1").orElse(new User());
 
         Blobb b = createTestBlobb(test1, "test blobb", 0L);
-        b.markAsDeleted();
         blobbRepository.save(b);
+        blobbRepository.markBlobbWithUuidAsDeleted(b.getUuid());
 
         // when
         Optional<BlobbInfo> bInfo = blobbRepository
@@ -529,20 +693,27 @@ public class BlobbRepositoryTests {
         Blobb u2Response3 = new ResponseBlobb(u2, "test", u1Blobb);
         blobbRepository.save(u2Response1);
         blobbRepository.save(u2Response2);
-        u2Response3.markAsDeleted(); // mark this response as deleted before saving
         blobbRepository.save(u2Response3);
+        blobbRepository.markBlobbWithUuidAsDeleted(u2Response3.getUuid());
 
         // create two reblobbs (and delete one)
         Blobb u2Reblobb1 = new Reblobb(u2, "test", u1Blobb);
         Blobb u2Reblobb2 = new Reblobb(u2, "test", u1Blobb);
         blobbRepository.save(u2Reblobb1);
-        u2Reblobb2.markAsDeleted(); // mark this reblobb as deleted before saving
         blobbRepository.save(u2Reblobb2);
+        blobbRepository.markBlobbWithUuidAsDeleted(u2Reblobb2.getUuid());
+
+        // update counters of the initial blobb, the same way the service does it
+        // after saving responses and reblobbs
+        List.of(u2Response1, u2Response2, u2Response3, u2Reblobb1, u2Reblobb2)
+                .forEach(r -> blobbRepository.incrementCountersOfParentOfBlobbWithUuid(r.getUuid()));
 
         // like the initial blobb as u2, u3, u4
         blobbRepository.likeBlobbWithUuid(u2.getUuid(), u1Blobb.getUuid());
         blobbRepository.likeBlobbWithUuid(u3.getUuid(), u1Blobb.getUuid());
         blobbRepository.likeBlobbWithUuid(u4.getUuid(), u1Blobb.getUuid());
+        // likes counter is updated separately, the same way LikeCounterBuffer does it
+        blobbRepository.addToLikesCounters(List.of(Map.of("uuid", u1Blobb.getUuid().toString(), "likes", 3L)));
 
         // when
         Optional<BlobbInfo> bInfo = blobbRepository.getInfoAboutBlobbWithUuid(u1Blobb.getUuid());
@@ -557,6 +728,424 @@ public class BlobbRepositoryTests {
         assertEquals(3L, bInfo.get().getLikes());
     }
 
+    @Test
+    public void unlikeBlobbWithUuid_ReturnsNumberOfRemovedLikes() {
+        User u1 = createTestUser("u1");
+        User u2 = createTestUser("u2");
+
+        Blobb b = createTestBlobb(u2, "test", 0L);
+        blobbRepository.likeBlobbWithUuid(u1.getUuid(), b.getUuid());
+
+        // when
+        LikeResult removed = blobbRepository.unlikeBlobbWithUuid(u1.getUuid(), b.getUuid());
+        // unliking a blobb that is not liked removes nothing
+        LikeResult removedAgain = blobbRepository.unlikeBlobbWithUuid(u1.getUuid(), b.getUuid());
+        // unliking a blobb that doesn't exist reports that
+        LikeResult missing = blobbRepository.unlikeBlobbWithUuid(u1.getUuid(), UUID.randomUUID());
+
+        // then
+        assertTrue(removed.getBlobbExists());
+        assertEquals(1L, removed.getChanged());
+        assertFalse(removed.getLikes());
+        assertTrue(removedAgain.getBlobbExists());
+        assertEquals(0L, removedAgain.getChanged());
+        assertFalse(missing.getBlobbExists());
+        assertEquals(0L, missing.getChanged());
+    }
+
+    @Test
+    public void addToLikesCounters_AddsDeltasToCounters() {
+        User u1 = createTestUser("u1");
+
+        Blobb b1 = createTestBlobb(u1, "test1", 0L);
+        Blobb b2 = createTestBlobb(u1, "test2", 0L);
+
+        // when
+        blobbRepository.addToLikesCounters(List.of(
+                Map.of("uuid", b1.getUuid().toString(), "likes", 5L),
+                Map.of("uuid", b2.getUuid().toString(), "likes", 2L)));
+        blobbRepository.addToLikesCounters(List.of(
+                Map.of("uuid", b2.getUuid().toString(), "likes", -1L)));
+
+        // then
+        assertEquals(5L, blobbRepository.getInfoAboutBlobbWithUuid(b1.getUuid()).get().getLikes());
+        assertEquals(1L, blobbRepository.getInfoAboutBlobbWithUuid(b2.getUuid()).get().getLikes());
+    }
+
+    @Test
+    public void createBlobbs_CreatesBlobbsWithAuthorsAndTags() {
+        User u1 = createTestUser("u1");
+        User u2 = createTestUser("u2");
+
+        // saving a blobb with a tag creates the tag
+        Blobb tagged = new Blobb(u1, "#test");
+        tagged.addTag(new Tag("#test"));
+        Tag tag = blobbRepository.save(tagged).getTags().iterator().next();
+
+        UUID uuid1 = UUID.randomUUID();
+        UUID uuid2 = UUID.randomUUID();
+        Date date = Date.from(Instant.now().minus(1, MINUTES));
+
+        // when
+        blobbRepository.createBlobbs(List.of(
+                Map.of("uuid", uuid1.toString(), "content", "first #test", "creationDate", date.getTime(),
+                        "author", u1.getUuid().toString(), "tags", List.of(tag.getUuid().toString())),
+                Map.of("uuid", uuid2.toString(), "content", "second", "creationDate", date.getTime(),
+                        "author", u2.getUuid().toString(), "tags", List.of())));
+
+        // then
+        Optional<FeedBlobb> first = blobbRepository.getBlobbWithUuid(uuid1);
+        Optional<FeedBlobb> second = blobbRepository.getBlobbWithUuid(uuid2);
+        assertTrue(first.isPresent());
+        assertTrue(second.isPresent());
+        assertEquals("first #test", first.get().getContent());
+        assertEquals(date, first.get().getDate());
+        assertEquals(u1.getUuid(), first.get().getAuthor().getUuid());
+        assertEquals(u2.getUuid(), second.get().getAuthor().getUuid());
+
+        Set<UUID> tagUuids = blobbRepository.findById(uuid1).get()
+                .getTags().stream().map(Tag::getUuid).collect(Collectors.toSet());
+        assertEquals(Set.of(tag.getUuid()), tagUuids);
+        assertTrue(blobbRepository.findById(uuid2).get().getTags().isEmpty());
+    }
+
+    @Test
+    public void createBlobbs_WritingBatchAgainDoesNotDuplicateBlobbs() {
+        User u1 = createTestUser("u1");
+        Blobb tagged = new Blobb(u1, "#test");
+        tagged.addTag(new Tag("#test"));
+        Tag tag = blobbRepository.save(tagged).getTags().iterator().next();
+        UUID uuid = UUID.randomUUID();
+        List<Map<String, Object>> rows = List.of(createRow(uuid, u1, List.of(tag.getUuid().toString())));
+
+        // when
+        blobbRepository.createBlobbs(rows);
+        blobbRepository.createBlobbs(rows);
+
+        // then
+        Long blobbs = session.queryForObject(Long.class,
+                "MATCH (:User)-[p:POSTS]->(b:Blobb) WHERE b.uuid = $uuid RETURN count(p)",
+                Map.of("uuid", uuid.toString()));
+        Long tags = session.queryForObject(Long.class,
+                "MATCH (:Tag)-[t:TAGS]->(b:Blobb) WHERE b.uuid = $uuid RETURN count(t)",
+                Map.of("uuid", uuid.toString()));
+        assertEquals(1L, blobbs);
+        assertEquals(1L, tags);
+    }
+
+    private static Map<String, Object> createRow(UUID uuid, User author, List<String> tags) {
+        return Map.of("uuid", uuid.toString(), "content", "content", "creationDate", new Date().getTime(),
+                "author", author.getUuid().toString(), "tags", tags);
+    }
+
+    @Test
+    public void createResponseToBlobb_CreatesResponseWithTags() {
+        User u1 = createTestUser("u1");
+        Blobb parent = createTestBlobb(u1, "parent", 0L);
+
+        // one of the tags already exists and the other one is created
+        Blobb tagged = new Blobb(u1, "#test");
+        tagged.addTag(new Tag("#test"));
+        Tag tag = blobbRepository.save(tagged).getTags().iterator().next();
+
+        UUID uuid = UUID.randomUUID();
+
+        // when
+        Long created = blobbRepository.createResponseToBlobb(
+                createRow(uuid, u1, List.of()), List.of("#test", "#new"), parent.getUuid());
+
+        // then
+        assertEquals(1L, created);
+        Blobb response = blobbRepository.findById(uuid).get();
+        assertTrue(response instanceof ResponseBlobb);
+        assertEquals(parent.getUuid(), ((ResponseBlobb) response).getRespondsTo().getUuid());
+        Map<String, UUID> tags = response.getTags().stream().collect(Collectors.toMap(Tag::getName, Tag::getUuid));
+        assertEquals(Set.of("#test", "#new"), tags.keySet());
+        assertEquals(tag.getUuid(), tags.get("#test"));
+        assertNotNull(tags.get("#new"));
+
+        List<FeedBlobb> responses = pageOf(blobbRepository.getAllResponsesToBlobbWithUuid(parent.getUuid(), 0L, 5L), FeedBlobb::getUuid);
+        assertEquals(1, responses.size());
+        assertEquals(uuid, responses.get(0).getUuid());
+        assertEquals(parent.getUuid(), responses.get(0).getRespondsTo());
+    }
+
+    @Test
+    public void createReblobbOfBlobb_CreatesReblobbWithoutTags() {
+        User u1 = createTestUser("u1");
+        Blobb parent = createTestBlobb(u1, "parent", 0L);
+
+        UUID uuid = UUID.randomUUID();
+
+        // when
+        Long created = blobbRepository.createReblobbOfBlobb(createRow(uuid, u1, List.of()), List.of(), parent.getUuid());
+
+        // then
+        assertEquals(1L, created);
+        Blobb reblobb = blobbRepository.findById(uuid).get();
+        assertTrue(reblobb instanceof Reblobb);
+        assertEquals(parent.getUuid(), ((Reblobb) reblobb).getReblobbs().getUuid());
+        assertTrue(reblobb.getTags().isEmpty());
+    }
+
+    @Test
+    public void createResponseToBlobb_DoesNotCreateResponsesToMissingOrDeletedBlobbs() {
+        User u1 = createTestUser("u1");
+        Blobb deleted = createTestBlobb(u1, "deleted", 0L);
+        blobbRepository.markBlobbWithUuidAsDeleted(deleted.getUuid());
+
+        UUID uuid1 = UUID.randomUUID();
+        UUID uuid2 = UUID.randomUUID();
+        UUID uuid3 = UUID.randomUUID();
+
+        // when
+        Long toMissing = blobbRepository.createResponseToBlobb(
+                createRow(uuid1, u1, List.of()), List.of("#missing"), UUID.randomUUID());
+        Long toDeleted = blobbRepository.createResponseToBlobb(
+                createRow(uuid2, u1, List.of()), List.of("#missing"), deleted.getUuid());
+        Long reblobbOfDeleted = blobbRepository.createReblobbOfBlobb(
+                createRow(uuid3, u1, List.of()), List.of("#missing"), deleted.getUuid());
+
+        // then
+        assertEquals(0L, toMissing);
+        assertEquals(0L, toDeleted);
+        assertEquals(0L, reblobbOfDeleted);
+        assertFalse(blobbRepository.existsById(uuid1));
+        assertFalse(blobbRepository.existsById(uuid2));
+        assertFalse(blobbRepository.existsById(uuid3));
+        // tags are not created when nothing is created
+        Long tags = session.queryForObject(Long.class,
+                "MATCH (t:Tag) WHERE t.name = '#missing' RETURN count(t)", Map.of());
+        assertEquals(0L, tags);
+    }
+
+    @Test
+    public void markBlobbWithUuidAsDeleted_KeepsReferencesToDeletedBlobb() {
+        User u1 = createTestUser("u1");
+        User u2 = createTestUser("u2");
+        Blobb parent = createTestBlobb(u1, "parent", 0L);
+        Blobb response = blobbRepository.save(new ResponseBlobb(u2, "response", parent));
+        Blobb reblobb = blobbRepository.save(new Reblobb(u2, "reblobb", parent));
+        blobbRepository.likeBlobbWithUuid(u2.getUuid(), parent.getUuid());
+
+        // when
+        blobbRepository.markBlobbWithUuidAsDeleted(parent.getUuid());
+
+        // then
+        // deleted blobbs still exist, their responses and reblobbs are listed and still reference them
+        assertTrue(blobbRepository.checkIfUserWithUuidLikes(u2.getUuid(), parent.getUuid()).getBlobbExists());
+        assertEquals(1, pageOf(blobbRepository.getAllResponsesToBlobbWithUuid(parent.getUuid(), 0L, 5L), FeedBlobb::getUuid).size());
+        assertEquals(1, pageOf(blobbRepository.getAllReblobbsOfBlobbWithUuid(parent.getUuid(), 0L, 5L), FeedBlobb::getUuid).size());
+        assertEquals(parent.getUuid(), blobbRepository.getBlobbWithUuid(response.getUuid()).get().getRespondsTo());
+        assertEquals(parent.getUuid(), blobbRepository.getBlobbWithUuid(reblobb.getUuid()).get().getReblobbs());
+
+        // deleted blobbs can still be unliked
+        LikeResult unlike = blobbRepository.unlikeBlobbWithUuid(u2.getUuid(), parent.getUuid());
+        assertTrue(unlike.getBlobbExists());
+        assertEquals(1L, unlike.getChanged());
+    }
+
+    @Test
+    public void markBlobbWithUuidAsDeleted_OnlyCountsBlobbsThatWereNotDeleted() {
+        User u1 = createTestUser("u1");
+        Blobb b = createTestBlobb(u1, "test", 0L);
+
+        // when
+        Long first = blobbRepository.markBlobbWithUuidAsDeleted(b.getUuid());
+        Long second = blobbRepository.markBlobbWithUuidAsDeleted(b.getUuid());
+        Long missing = blobbRepository.markBlobbWithUuidAsDeleted(UUID.randomUUID());
+
+        // then
+        assertEquals(1L, first);
+        assertEquals(0L, second);
+        assertEquals(0L, missing);
+        assertTrue(blobbRepository.getBlobbWithUuid(b.getUuid()).isEmpty());
+    }
+
+    @Test
+    public void findAuthorOfDeletedBlobbWithUuid_OnlyFindsDeletedBlobbs() {
+        User u1 = createTestUser("u1");
+        Blobb deleted = createTestBlobb(u1, "deleted", 0L);
+        Blobb live = createTestBlobb(u1, "live", 0L);
+        blobbRepository.markBlobbWithUuidAsDeleted(deleted.getUuid());
+
+        // when
+        Optional<UUID> authorOfDeleted = blobbRepository.findAuthorOfDeletedBlobbWithUuid(deleted.getUuid());
+        Optional<UUID> authorOfLive = blobbRepository.findAuthorOfDeletedBlobbWithUuid(live.getUuid());
+
+        // then
+        assertEquals(Optional.of(u1.getUuid()), authorOfDeleted);
+        assertTrue(authorOfLive.isEmpty());
+    }
+
+    @Test
+    public void decrementCountersOfParentOfBlobbWithUuid_DecrementsCorrectCounter() {
+        User u1 = createTestUser("u1");
+
+        Blobb b = createTestBlobb(u1, "test", 0L);
+        Blobb response = blobbRepository.save(new ResponseBlobb(u1, "response", b));
+        Blobb reblobb = blobbRepository.save(new Reblobb(u1, "reblobb", b));
+        blobbRepository.incrementCountersOfParentOfBlobbWithUuid(response.getUuid());
+        blobbRepository.incrementCountersOfParentOfBlobbWithUuid(reblobb.getUuid());
+
+        // when
+        blobbRepository.save(response);
+        blobbRepository.markBlobbWithUuidAsDeleted(response.getUuid());
+        blobbRepository.decrementCountersOfParentOfBlobbWithUuid(response.getUuid());
+
+        // then
+        BlobbInfo info = blobbRepository.getInfoAboutBlobbWithUuid(b.getUuid()).get();
+        assertEquals(0L, info.getResponses());
+        assertEquals(1L, info.getReblobbs());
+    }
+
+    // runs identical requests at the same time, outside of the transaction of the test,
+    // so the data of the test has to be removed by the test itself
+    private static <T> List<T> runConcurrently(int requests, Callable<T> request) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return request.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void likeBlobbWithUuid_ConcurrentIdenticalRequestsLikeOnce() throws Exception {
+        User u1 = userRepository.findByUsername("test1").orElse(new User());
+        Blobb b = createTestBlobb(u1, "test", 0L);
+
+        try {
+            // when
+            List<LikeResult> likes = runConcurrently(8, () ->
+                    blobbRepository.likeBlobbWithUuid(u1.getUuid(), b.getUuid()));
+            List<LikeResult> unlikes = runConcurrently(8, () ->
+                    blobbRepository.unlikeBlobbWithUuid(u1.getUuid(), b.getUuid()));
+
+            // then
+            assertEquals(1L, likes.stream().mapToLong(LikeResult::getChanged).sum());
+            assertTrue(likes.stream().allMatch(LikeResult::getLikes));
+            assertEquals(1L, unlikes.stream().mapToLong(LikeResult::getChanged).sum());
+        } finally {
+            session.query("MATCH (n) DETACH DELETE n", Map.of());
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void likeBlobbWithUuid_ConcurrentRequestsOfDifferentUsersAllLike() throws Exception {
+        User u1 = userRepository.findByUsername("test1").orElse(new User());
+        Blobb b = createTestBlobb(u1, "test", 0L);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            users.add(createTestUser("liking" + i));
+        }
+        AtomicInteger next = new AtomicInteger();
+
+        try {
+            // when
+            List<LikeResult> likes = runConcurrently(8, () ->
+                    blobbRepository.likeBlobbWithUuid(users.get(next.getAndIncrement()).getUuid(), b.getUuid()));
+
+            // then
+            Long relationships = session.queryForObject(Long.class,
+                    "MATCH (:User)-[l:LIKES]->(b:Blobb) WHERE b.uuid = $uuid RETURN count(l)",
+                    Map.of("uuid", b.getUuid().toString()));
+            assertEquals(8L, likes.stream().mapToLong(LikeResult::getChanged).sum());
+            assertEquals(8L, relationships);
+        } finally {
+            session.query("MATCH (n) DETACH DELETE n", Map.of());
+        }
+    }
+
+    @Test
+    public void reconcileCountersOfBlobbs_RecomputesCountersFromRelationships() {
+        User test1 = userRepository.findByUsername("test1").orElse(new User());
+        User u1 = createTestUser("u1");
+
+        // a response that is saved without incrementing the counter of its parent
+        Blobb b = createTestBlobb(u1, "test", 0L);
+        blobbRepository.save(new ResponseBlobb(test1, "response", b));
+        blobbRepository.likeBlobbWithUuid(test1.getUuid(), b.getUuid());
+
+        // when
+        // process every blobb in batches of 7
+        List<UUID> processed = new ArrayList<>();
+        List<UUID> batch = blobbRepository.reconcileCountersOfBlobbs(null, 7L, Map.of());
+        while (!batch.isEmpty()) {
+            processed.addAll(batch);
+            batch = blobbRepository.reconcileCountersOfBlobbs(batch.get(batch.size() - 1), 7L, Map.of());
+        }
+
+        // then
+        // 20 blobbs created before each test, the test blobb and its response
+        assertEquals(22, processed.size());
+        assertEquals(22, new HashSet<>(processed).size());
+
+        BlobbInfo info = blobbRepository.getInfoAboutBlobbWithUuid(b.getUuid()).get();
+        assertEquals(1L, info.getResponses());
+        assertEquals(1L, info.getLikes());
+        assertEquals(0L, info.getReblobbs());
+    }
+
+    @Test
+    public void reconcileCountersOfBlobbs_LeavesOutPendingLikes() {
+        User test1 = userRepository.findByUsername("test1").orElse(new User());
+        User u1 = createTestUser("u1");
+
+        Blobb b = createTestBlobb(u1, "test", 0L);
+        blobbRepository.likeBlobbWithUuid(test1.getUuid(), b.getUuid());
+        blobbRepository.likeBlobbWithUuid(u1.getUuid(), b.getUuid());
+
+        // when
+        // one of the likes has not been flushed yet
+        blobbRepository.reconcileCountersOfBlobbs(null, 100L, Map.of(b.getUuid().toString(), 1L));
+
+        // then
+        // flushing the pending like makes the counter equal to the number of relationships
+        BlobbInfo info = blobbRepository.getInfoAboutBlobbWithUuid(b.getUuid()).get();
+        assertEquals(1L, info.getLikes());
+        blobbRepository.addToLikesCounters(List.of(Map.of("uuid", b.getUuid().toString(), "likes", 1L)));
+        assertEquals(2L, blobbRepository.getInfoAboutBlobbWithUuid(b.getUuid()).get().getLikes());
+    }
+
+    @Test
+    public void getAllResponsesToBlobbWithUuid_HasNoMarkerWhenBlobbDoesntExist() {
+        // when
+        List<FeedBlobb> responses = blobbRepository.getAllResponsesToBlobbWithUuid(UUID.randomUUID(), 0L, 10L);
+        List<FeedBlobb> reblobbs = blobbRepository.getAllReblobbsOfBlobbWithUuid(UUID.randomUUID(), 0L, 10L);
+
+        // then
+        assertTrue(ExistenceMarker.strip(responses, FeedBlobb::getUuid).isEmpty());
+        assertTrue(ExistenceMarker.strip(reblobbs, FeedBlobb::getUuid).isEmpty());
+    }
+
+    @Test
+    public void checkIfUserWithUuidLikes_TellsWhenBlobbDoesntExist() {
+        User u = createTestUser("u1");
+
+        // when
+        LikeResult result = blobbRepository.checkIfUserWithUuidLikes(u.getUuid(), UUID.randomUUID());
+
+        // then
+        assertFalse(result.getBlobbExists());
+        assertFalse(result.getLikes());
+    }
+
     @Test
     public void getAllResponsesToBlobbWithUuid_IsEmptyWhenNoResponses() {
         // create a user
@@ -566,7 +1155,7 @@ public class BlobbRepositoryTests {
         Blobb b = createTestBlobb(u, "content", 0L);
 
         // when
-        List<FeedBlobb> blobbs = blobbRepository.getAllResponsesToBlobbWithUuid(b.getUuid(), 0L, 10L);
+        List<FeedBlobb> blobbs = pageOf(blobbRepository.getAllResponsesToBlobbWithUuid(b.getUuid(), 0L, 10L), FeedBlobb::getUuid);
 
         // then
         assertEquals(0, blobbs.size());
@@ -581,12 +1170,12 @@ public class BlobbRepositoryTests {
         Blobb b = createTestBlobb(u, "content", 0L);
         Blobb r1 = new ResponseBlobb(u, "r1", b);
         Blobb r2 = new ResponseBlobb(u, "r2", b);
-        r2.markAsDeleted(); // mark second response as deleted right away
         blobbRepository.save(r1);
         blobbRepository.save(r2);
+        blobbRepository.markBlobbWithUuidAsDeleted(r2.getUuid());
 
         // when
-        List<FeedBlobb> blobbs = blobbRepository.getAllResponsesToBlobbWithUuid(b.getUuid(), 0L, 10L);
+        List<FeedBlobb> blobbs = pageOf(blobbRepository.getAllResponsesToBlobbWithUuid(b.getUuid(), 0L, 10L), FeedBlobb::getUuid);
 
         // then
         assertEquals(1, blobbs.size());
@@ -607,7 +1196,7 @@ public class BlobbRepositoryTests {
         }
 
         // when
-        List<FeedBlobb> blobbs = blobbRepository.getAllResponsesToBlobbWithUuid(b.getUuid(), 2L, 10L);
+        List<FeedBlobb> blobbs = pageOf(blobbRepository.getAllResponsesToBlobbWithUuid(b.getUuid(), 2L, 10L), FeedBlobb::getUuid);
 
         // then
         assertEquals(3, blobbs.size());
@@ -628,7 +1217,7 @@ public class BlobbRepositoryTests {
         }
 
         // when
-        List<FeedBlobb> blobbs = blobbRepository.getAllResponsesToBlobbWithUuid(b.getUuid(), 0L, 4L);
+        List<FeedBlobb> blobbs = pageOf(blobbRepository.getAllResponsesToBlobbWithUuid(b.getUuid(), 0L, 4L), FeedBlobb::getUuid);
 
         // then
         assertEquals(4, blobbs.size());
@@ -645,11 +1234,13 @@ public class BlobbRepositoryTests {
         // make 5 responses
         for (int i = 0; i < 5; i++) {
             Blobb b1 = new ResponseBlobb(u, "response " + i, b);
+            // every one of them is posted a minute after the previous one, so that their order is known
+            b1.setCreationDate(Date.from(Instant.now().minus(10 - i, MINUTES)));
             blobbRepository.save(b1);
         }
 
         // when
-        List<FeedBlobb> blobbs = blobbRepository.getAllResponsesToBlobbWithUuid(b.getUuid(), 0L, 5L);
+        List<FeedBlobb> blobbs = pageOf(blobbRepository.getAllResponsesToBlobbWithUuid(b.getUuid(), 0L, 5L), FeedBlobb::getUuid);
 
         // then
         assertEquals(5, blobbs.size());
@@ -665,6 +1256,33 @@ public class BlobbRepositoryTests {
         }
     }
 
+    @Test
+    public void getAllResponsesToBlobbWithUuid_AfterCursor_ReturnsResponsesAfterCursor() {
+        // create a user
+        User u = createTestUser("u1");
+
+        // create a single post
+        Blobb b = createTestBlobb(u, "content", 0L);
+
+        // make 5 responses, each one posted a minute after the previous one
+        for (int i = 0; i < 5; i++) {
+            Blobb b1 = new ResponseBlobb(u, "response " + i, b);
+            b1.setCreationDate(Date.from(Instant.now().minus(10 - i, MINUTES)));
+            blobbRepository.save(b1);
+        }
+
+        List<FeedBlobb> firstPage = pageOf(blobbRepository.getAllResponsesToBlobbWithUuid(b.getUuid(), 0L, 2L), FeedBlobb::getUuid);
+        FeedBlobb last = firstPage.get(firstPage.size() - 1);
+
+        // when
+        List<FeedBlobb> blobbs = pageOf(blobbRepository
+                .getAllResponsesToBlobbWithUuid_AfterCursor(b.getUuid(), last.getDate(), last.getUuid(), 5L), FeedBlobb::getUuid);
+
+        // then
+        List<String> contents = blobbs.stream().map(FeedBlobb::getContent).collect(Collectors.toList());
+        assertEquals(List.of("response 2", "response 3", "response 4"), contents);
+    }
+
     @Test
     public void getAllReblobbsOfBlobbWithUuid_IsEmptyWhenNoResponses() {
         // create a user
@@ -674,7 +1292,7 @@ public class BlobbRepositoryTests {
         Blobb b = createTestBlobb(u, "content", 0L);
 
         // when
-        List<FeedBlobb> blobbs = blobbRepository.getAllReblobbsOfBlobbWithUuid(b.getUuid(), 0L, 10L);
+        List<FeedBlobb> blobbs = pageOf(blobbRepository.getAllReblobbsOfBlobbWithUuid(b.getUuid(), 0L, 10L), FeedBlobb::getUuid);
 
         // then
         assertEquals(0, blobbs.size());
@@ -689,12 +1307,12 @@ public class BlobbRepositoryTests {
         Blobb b = createTestBlobb(u, "content", 0L);
         Blobb r1 = new Reblobb(u, "r1", b);
         Blobb r2 = new Reblobb(u, "r2", b);
-        r2.markAsDeleted(); // mark second reblobb as deleted right away
         blobbRepository.save(r1);
         blobbRepository.save(r2);
+        blobbRepository.markBlobbWithUuidAsDeleted(r2.getUuid());
 
         // when
-        List<FeedBlobb> blobbs = blobbRepository.getAllReblobbsOfBlobbWithUuid(b.getUuid(), 0L, 10L);
+        List<FeedBlobb> blobbs = pageOf(blobbRepository.getAllReblobbsOfBlobbWithUuid(b.getUuid(), 0L, 10L), FeedBlobb::getUuid);
 
         // then
         assertEquals(1, blobbs.size());
@@ -715,7 +1333,7 @@ public class BlobbRepositoryTests {
         }
 
         // when
-        List<FeedBlobb> blobbs = blobbRepository.getAllReblobbsOfBlobbWithUuid(b.getUuid(), 2L, 10L);
+        List<FeedBlobb> blobbs = pageOf(blobbRepository.getAllReblobbsOfBlobbWithUuid(b.getUuid(), 2L, 10L), FeedBlobb::getUuid);
 
         // then
         assertEquals(3, blobbs.size());
@@ -736,7 +1354,7 @@ public class BlobbRepositoryTests {
         }
 
         // when
-        List<FeedBlobb> blobbs = blobbRepository.getAllReblobbsOfBlobbWithUuid(b.getUuid(), 0L, 4L);
+        List<FeedBlobb> blobbs = pageOf(blobbRepository.getAllReblobbsOfBlobbWithUuid(b.getUuid(), 0L, 4L), FeedBlobb::getUuid);
 
         // then
         assertEquals(4, blobbs.size());
@@ -753,11 +1371,13 @@ public class BlobbRepositoryTests {
         // make 5 reblobbs
         for (int i = 0; i < 5; i++) {
             Blobb b1 = new Reblobb(u, "reblobb " + i, b);
+            // every one of them is posted a minute after the previous one, so that their order is known
+            b1.setCreationDate(Date.from(Instant.now().minus(10 - i, MINUTES)));
             blobbRepository.save(b1);
         }
 
         // when
-        List<FeedBlobb> blobbs = blobbRepository.getAllReblobbsOfBlobbWithUuid(b.getUuid(), 0L, 5L);
+        List<FeedBlobb> blobbs = pageOf(blobbRepository.getAllReblobbsOfBlobbWithUuid(b.getUuid(), 0L, 5L), FeedBlobb::getUuid);
 
         // then
         assertEquals(5, blobbs.size());
@@ -773,6 +1393,100 @@ public class BlobbRepositoryTests {
         }
     }
 
+    @Test
+    public void getAllReblobbsOfBlobbWithUuid_AfterCursor_ReturnsReblobbsAfterCursor() {
+        // create a user
+        User u = createTestUser("u1");
+
+        // create a single post
+        Blobb b = createTestBlobb(u, "content", 0L);
+
+        // make 5 reblobbs, each one posted a minute after the previous one
+        for (int i = 0; i < 5; i++) {
+            Blobb b1 = new Reblobb(u, "reblobb " + i, b);
+            b1.setCreationDate(Date.from(Instant.now().minus(10 - i, MINUTES)));
+            blobbRepository.save(b1);
+        }
+
+        List<FeedBlobb> firstPage = pageOf(blobbRepository.getAllReblobbsOfBlobbWithUuid(b.getUuid(), 0L, 3L), FeedBlobb::getUuid);
+        FeedBlobb last = firstPage.get(firstPage.size() - 1);
+
+        // when
+        List<FeedBlobb> blobbs = pageOf(blobbRepository
+                .getAllReblobbsOfBlobbWithUuid_AfterCursor(b.getUuid(), last.getDate(), last.getUuid(), 5L), FeedBlobb::getUuid);
+
+        // then
+        List<String> contents = blobbs.stream().map(FeedBlobb::getContent).collect(Collectors.toList());
+        assertEquals(List.of("reblobb 3", "reblobb 4"), contents);
+    }
+
+    @Test
+    public void getFeedForUserWithUuid_PostedBetween_ByAuthors_OnlyContainsPostsOfGivenAuthors() {
+        User test1 = userRepository.findByUsername("test1").orElse(new User());
+        User test2 = userRepository.findByUsername("test2").orElse(new User());
+        User test3 = userRepository.findByUsername("test3").orElse(new User());
+
+        Date date60MinAgo = Date.from(Instant.now().minus(60, MINUTES));
+
+        // when
+        List<FeedBlobb> blobbsOfTest2 = blobbRepository
+                .getFeedForUserWithUuid_PostedBetween_ByAuthors(test1.getUuid(), List.of(test2.getUuid()),
+                        date60MinAgo, new Date(), null, 20L);
+        List<FeedBlobb> blobbsOfTest3 = blobbRepository
+                .getFeedForUserWithUuid_PostedBetween_ByAuthors(test1.getUuid(), List.of(test3.getUuid()),
+                        date60MinAgo, new Date(), null, 2L);
+
+        // then
+        List<String> contentsOfTest2 = blobbsOfTest2.stream().map(FeedBlobb::getContent).collect(Collectors.toList());
+        assertEquals(5, blobbsOfTest2.size());
+        Arrays.asList(10, 11, 12, 13, 14).forEach(i -> {
+            assertTrue(contentsOfTest2.contains(i.toString()));
+        });
+
+        // only two most recent posts of test3
+        List<String> contentsOfTest3 = blobbsOfTest3.stream().map(FeedBlobb::getContent).collect(Collectors.toList());
+        assertEquals(List.of("19", "18"), contentsOfTest3);
+    }
+
+    @Test
+    public void getFeedForUserWithUuid_PostedBetween_ByAuthors_IsEmptyWhenAuthorNotFollowed() {
+        User test2 = userRepository.findByUsername("test2").orElse(new User());
+        User test3 = userRepository.findByUsername("test3").orElse(new User());
+
+        Date date60MinAgo = Date.from(Instant.now().minus(60, MINUTES));
+
+        // when
+        // test2 does not follow test3
+        List<FeedBlobb> blobbs = blobbRepository
+                .getFeedForUserWithUuid_PostedBetween_ByAuthors(test2.getUuid(), List.of(test3.getUuid()),
+                        date60MinAgo, new Date(), null, 20L);
+
+        // then
+        assertEquals(0, blobbs.size());
+    }
+
+    @Test
+    public void getFeedForUserWithUuid_PostedBetween_ByAuthors_SkipsBlobbsBeforeCursor() {
+        User test1 = userRepository.findByUsername("test1").orElse(new User());
+        User test3 = userRepository.findByUsername("test3").orElse(new User());
+
+        Date date60MinAgo = Date.from(Instant.now().minus(60, MINUTES));
+        List<FeedBlobb> allBlobbs = blobbRepository
+                .getFeedForUserWithUuid_PostedBetween_ByAuthors(test1.getUuid(), List.of(test3.getUuid()),
+                        date60MinAgo, new Date(), null, 20L);
+        FeedBlobb cursor = allBlobbs.get(1);
+
+        // when
+        List<FeedBlobb> blobbs = blobbRepository
+                .getFeedForUserWithUuid_PostedBetween_ByAuthors(test1.getUuid(), List.of(test3.getUuid()),
+                        date60MinAgo, cursor.getDate(), cursor.getUuid(), 20L);
+
+        // then
+        assertEquals(allBlobbs.subList(2, allBlobbs.size())
+                        .stream().map(FeedBlobb::getUuid).collect(Collectors.toList()),
+                blobbs.stream().map(FeedBlobb::getUuid).collect(Collectors.toList()));
+    }
+
     @Test
     public void getFeedForUserWithUuid_Popular_IsEmptyWhenUserDoesntExist() {
         Date date7DaysAgo = Date.from(Instant.now().minus(1, MINUTES));
@@ -790,8 +1504,8 @@ public class BlobbRepositoryTests {
 
         // create a post
         Blobb blobb = createTestBlobb(user, "200", 0L);
-        blobb.markAsDeleted(); // mark as deleted even before saving it
         blobbRepository.save(blobb);
+        blobbRepository.markBlobbWithUuidAsDeleted(blobb.getUuid());
 
         Date date40MinAgo = Date.from(Instant.now().minus(40, MINUTES));
 
@@ -891,6 +1605,33 @@ public class BlobbRepositoryTests {
         }
     }
 
+    @Test
+    public void getFeedForUserWithUuid_Popular_UsesStoredPopularityScore() {
+        User test1 = userRepository.findByUsername("test1").orElse(new User());
+        User test3 = userRepository.findByUsername("test3").orElse(new User());
+
+        // post 0 has a single like, a response and a reblobb give it a score of 1 + 2 + 3 = 6,
+        // which moves it above posts that have 4 likes
+        // (post 0 is the last one in the popular feed)
+        UUID post0Uuid = blobbRepository.getFeedForUserWithUuid_Popular_PostedBetween(test1.getUuid(),
+                Date.from(Instant.now().minus(40, MINUTES)), new Date(), 19L, 1L).get(0).getUuid();
+        Blobb parent = blobbRepository.findById(post0Uuid).orElse(null);
+        Blobb response = blobbRepository.save(new ResponseBlobb(test3, "response", parent));
+        Blobb reblobb = blobbRepository.save(new Reblobb(test3, "reblobb", parent));
+        blobbRepository.incrementCountersOfParentOfBlobbWithUuid(response.getUuid());
+        blobbRepository.incrementCountersOfParentOfBlobbWithUuid(reblobb.getUuid());
+
+        // when
+        List<FeedBlobb> blobbs = blobbRepository
+                .getFeedForUserWithUuid_Popular_PostedBetween(test1.getUuid(),
+                        Date.from(Instant.now().minus(40, MINUTES)),
+                        new Date(), 0L, 2L);
+
+        // then
+        assertEquals("0", blobbs.get(0).getContent());
+        assertEquals("19", blobbs.get(1).getContent());
+    }
+
     @Test
     public void getFeedForUserWithUuid_Popular_PostsHaveCorrectAuthors() {
         User test1 = userRepository.findByUsername("test1").orElse(new User());
@@ -908,7 +1649,7 @@ public class BlobbRepositoryTests {
 
         // then
         // expected posts of test1: 0, 1, 2, 3, 4, 5, 6, 7, 8, 9
-        List<FeedBlobb> test1Posts = allBlobbs.stream().filter(b -> b.getAuthor().getUuid() == test1.getUuid())
+        List<FeedBlobb> test1Posts = allBlobbs.stream().filter(b -> b.getAuthor().getUuid().equals(test1.getUuid()))
                 .collect(Collectors.toList());
 
         assertEquals(10, test1Posts.size());
@@ -919,7 +1660,7 @@ public class BlobbRepositoryTests {
         });
 
         // expected posts of test2: 10, 11, 12, 13, 14
-        List<FeedBlobb> test2Posts = allBlobbs.stream().filter(b -> b.getAuthor().getUuid() == test2.getUuid())
+        List<FeedBlobb> test2Posts = allBlobbs.stream().filter(b -> b.getAuthor().getUuid().equals(test2.getUuid()))
                 .collect(Collectors.toList());
 
         assertEquals(5, test2Posts.size());
@@ -930,7 +1671,7 @@ public class BlobbRepositoryTests {
         });
 
         // expected posts of test3: 15, 16, 17, 18, 19
-        List<FeedBlobb> test3Posts = allBlobbs.stream().filter(b -> b.getAuthor().getUuid() == test3.getUuid())
+        List<FeedBlobb> test3Posts = allBlobbs.stream().filter(b -> b.getAuthor().getUuid().equals(test3.getUuid()))
                 .collect(Collectors.toList());
 
         assertEquals(5, test3Posts.size());
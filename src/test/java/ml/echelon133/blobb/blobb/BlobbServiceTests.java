@@ -1,14 +1,19 @@
 package ml.echelon133.blobb.blobb;
 
+import ml.echelon133.blobb.feed.TimelineStore;
+import ml.echelon133.blobb.pagination.Cursor;
 import ml.echelon133.blobb.tag.Tag;
-import ml.echelon133.blobb.tag.TagDoesntExistException;
 import ml.echelon133.blobb.tag.TagService;
+import ml.echelon133.blobb.user.FollowGraph;
 import ml.echelon133.blobb.user.User;
+import ml.echelon133.blobb.user.UserRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Clock;
 import java.time.ZoneId;
@@ -16,10 +21,17 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import static java.time.temporal.ChronoUnit.HOURS;
+import static java.time.temporal.ChronoUnit.MINUTES;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 
 @ExtendWith(MockitoExtension.class)
 public class BlobbServiceTests {
@@ -27,9 +39,27 @@ public class BlobbServiceTests {
     @Mock
     private BlobbRepository blobbRepository;
 
+    @Mock
+    private UserRepository userRepository;
+
     @Mock
     private TagService tagService;
 
+    @Spy
+    private TimelineStore timelineStore = new TimelineStore(5, 100, 1000);
+
+    @Mock
+    private LikeCounterBuffer likeCounterBuffer;
+
+    @Mock
+    private BlobbIngestionQueue ingestionQueue;
+
+    @Spy
+    private BlobbCache blobbCache = new BlobbCache(100, 60000);
+
+    @Mock
+    private FollowGraph followGraph;
+
     @InjectMocks
     private BlobbService blobbService;
 
@@ -86,6 +116,7 @@ public class BlobbServiceTests {
 
         BlobbInfo info = new BlobbInfo();
         info.setUuid(uuid);
+        info.setLikes(0L);
 
         // given
         given(blobbRepository.getInfoAboutBlobbWithUuid(uuid)).willReturn(Optional.of(info));
@@ -94,7 +125,68 @@ public class BlobbServiceTests {
         BlobbInfo receivedInfo = blobbService.getBlobbInfo(uuid);
 
         // then
-        assertEquals(info, receivedInfo);
+        assertEquals(uuid, receivedInfo.getUuid());
+        assertEquals(0L, receivedInfo.getLikes());
+    }
+
+    @Test
+    public void getByUuid_ReadsBlobbFromDatabaseOnlyOnce() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        FeedBlobb blobb = new FeedBlobb();
+
+        // given
+        given(blobbRepository.getBlobbWithUuid(uuid)).willReturn(Optional.of(blobb));
+
+        // when
+        FeedBlobb first = blobbService.getByUuid(uuid);
+        FeedBlobb second = blobbService.getByUuid(uuid);
+
+        // then
+        assertEquals(blobb, first);
+        assertEquals(blobb, second);
+        then(blobbRepository).should(times(1)).getBlobbWithUuid(uuid);
+    }
+
+    @Test
+    public void getBlobbInfo_DoesNotModifyCachedInfo() throws Exception {
+        UUID uuid = UUID.randomUUID();
+
+        BlobbInfo info = new BlobbInfo();
+        info.setUuid(uuid);
+        info.setLikes(3L);
+
+        // given
+        given(blobbRepository.getInfoAboutBlobbWithUuid(uuid)).willReturn(Optional.of(info));
+        given(likeCounterBuffer.getPendingDelta(uuid)).willReturn(2L);
+
+        // when
+        BlobbInfo first = blobbService.getBlobbInfo(uuid);
+        BlobbInfo second = blobbService.getBlobbInfo(uuid);
+
+        // then
+        assertEquals(5L, first.getLikes());
+        assertEquals(5L, second.getLikes());
+        assertEquals(3L, info.getLikes());
+        then(blobbRepository).should(times(1)).getInfoAboutBlobbWithUuid(uuid);
+    }
+
+    @Test
+    public void getBlobbInfo_CountsLikesThatHaveNotBeenFlushed() throws Exception {
+        UUID uuid = UUID.randomUUID();
+
+        BlobbInfo info = new BlobbInfo();
+        info.setUuid(uuid);
+        info.setLikes(3L);
+
+        // given
+        given(blobbRepository.getInfoAboutBlobbWithUuid(uuid)).willReturn(Optional.of(info));
+        given(likeCounterBuffer.getPendingDelta(uuid)).willReturn(2L);
+
+        // when
+        BlobbInfo receivedInfo = blobbService.getBlobbInfo(uuid);
+
+        // then
+        assertEquals(5L, receivedInfo.getLikes());
     }
 
     @Test
@@ -102,7 +194,7 @@ public class BlobbServiceTests {
         UUID uuid = UUID.randomUUID();
 
         // given
-        given(blobbRepository.existsById(uuid)).willReturn(false);
+        given(blobbRepository.getAllResponsesToBlobbWithUuid(uuid, 0L, 5L)).willReturn(List.of());
 
         // when
         String message = assertThrows(BlobbDoesntExistException.class, () -> {
@@ -117,9 +209,6 @@ public class BlobbServiceTests {
     public void getAllResponsesTo_ThrowsWhenSkipAndLimitArgumentsNegative() {
         UUID uuid = UUID.randomUUID();
 
-        // given
-        given(blobbRepository.existsById(uuid)).willReturn(true);
-
         // then
         Exception ex = assertThrows(IllegalArgumentException.class, () -> {
             blobbService.getAllResponsesTo(uuid, -1L, 5L);
@@ -139,9 +228,8 @@ public class BlobbServiceTests {
         UUID uuid = UUID.randomUUID();
 
         // given
-        given(blobbRepository.existsById(uuid)).willReturn(true);
         given(blobbRepository.getAllResponsesToBlobbWithUuid(uuid, 0L, 5L))
-                .willReturn(List.of());
+                .willReturn(createTestPage(0));
 
         // when
         List<FeedBlobb> responses = blobbService.getAllResponsesTo(uuid, 0L, 5L);
@@ -154,10 +242,9 @@ public class BlobbServiceTests {
     public void getAllResponsesTo_ReturnsListOfResponses() throws Exception {
         UUID uuid = UUID.randomUUID();
 
-        List<FeedBlobb> mockList = List.of(new FeedBlobb(), new FeedBlobb());
+        List<FeedBlobb> mockList = createTestPage(2);
 
         // given
-        given(blobbRepository.existsById(uuid)).willReturn(true);
         given(blobbRepository.getAllResponsesToBlobbWithUuid(uuid, 0L, 5L))
                 .willReturn(mockList);
 
@@ -168,12 +255,49 @@ public class BlobbServiceTests {
         assertEquals(2, responses.size());
     }
 
+    @Test
+    public void getAllResponsesTo_WithCursor_ThrowsWhenCursorOrLimitInvalid() {
+        UUID uuid = UUID.randomUUID();
+
+        // then
+        Exception ex = assertThrows(IllegalArgumentException.class, () -> {
+            blobbService.getAllResponsesTo(uuid, new Cursor(new Date(), UUID.randomUUID()), -5L);
+        });
+
+        assertEquals("Invalid limit value.", ex.getMessage());
+
+        // cursors without a date cannot point at any blobb
+        ex = assertThrows(IllegalArgumentException.class, () -> {
+            blobbService.getAllResponsesTo(uuid, new Cursor(UUID.randomUUID()), 5L);
+        });
+
+        assertEquals("Invalid cursor value.", ex.getMessage());
+    }
+
+    @Test
+    public void getAllResponsesTo_WithCursor_ReturnsListOfResponses() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        Cursor cursor = new Cursor(new Date(), UUID.randomUUID());
+
+        List<FeedBlobb> mockList = createTestPage(2);
+
+        // given
+        given(blobbRepository.getAllResponsesToBlobbWithUuid_AfterCursor(uuid, cursor.getDate(), cursor.getUuid(), 5L))
+                .willReturn(mockList);
+
+        // when
+        List<FeedBlobb> responses = blobbService.getAllResponsesTo(uuid, cursor, 5L);
+
+        // then
+        assertEquals(2, responses.size());
+    }
+
     @Test
     public void getAllReblobbsOf_ThrowsWhenBlobbDoesntExist() {
         UUID uuid = UUID.randomUUID();
 
         // given
-        given(blobbRepository.existsById(uuid)).willReturn(false);
+        given(blobbRepository.getAllReblobbsOfBlobbWithUuid(uuid, 0L, 5L)).willReturn(List.of());
 
         // when
         String message = assertThrows(BlobbDoesntExistException.class, () -> {
@@ -188,9 +312,6 @@ public class BlobbServiceTests {
     public void getAllReblobbsOf_ThrowsWhenSkipAndLimitArgumentsNegative() {
         UUID uuid = UUID.randomUUID();
 
-        // given
-        given(blobbRepository.existsById(uuid)).willReturn(true);
-
         // then
         Exception ex = assertThrows(IllegalArgumentException.class, () -> {
             blobbService.getAllReblobbsOf(uuid, -1L, 5L);
@@ -205,14 +326,31 @@ public class BlobbServiceTests {
         assertEquals("Invalid skip and/or limit values.", ex.getMessage());
     }
 
+    @Test
+    public void getAllReblobbsOf_WithCursor_ReturnsListOfReblobbs() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        Cursor cursor = new Cursor(new Date(), UUID.randomUUID());
+
+        List<FeedBlobb> mockList = createTestPage(2);
+
+        // given
+        given(blobbRepository.getAllReblobbsOfBlobbWithUuid_AfterCursor(uuid, cursor.getDate(), cursor.getUuid(), 5L))
+                .willReturn(mockList);
+
+        // when
+        List<FeedBlobb> reblobbs = blobbService.getAllReblobbsOf(uuid, cursor, 5L);
+
+        // then
+        assertEquals(2, reblobbs.size());
+    }
+
     @Test
     public void getAllReblobbsOf_ReturnsEmptyListIfNobodyReblobbed() throws Exception {
         UUID uuid = UUID.randomUUID();
 
         // given
-        given(blobbRepository.existsById(uuid)).willReturn(true);
         given(blobbRepository.getAllReblobbsOfBlobbWithUuid(uuid, 0L, 5L))
-                .willReturn(List.of());
+                .willReturn(createTestPage(0));
 
         // when
         List<FeedBlobb> responses = blobbService.getAllReblobbsOf(uuid, 0L, 5L);
@@ -225,10 +363,9 @@ public class BlobbServiceTests {
     public void getAllReblobbsOf_ReturnsListOfReblobbs() throws Exception {
         UUID uuid = UUID.randomUUID();
 
-        List<FeedBlobb> mockList = List.of(new FeedBlobb(), new FeedBlobb());
+        List<FeedBlobb> mockList = createTestPage(2);
 
         // given
-        given(blobbRepository.existsById(uuid)).willReturn(true);
         given(blobbRepository.getAllReblobbsOfBlobbWithUuid(uuid, 0L, 5L))
                 .willReturn(mockList);
 
@@ -244,11 +381,11 @@ public class BlobbServiceTests {
         UUID uuid = UUID.randomUUID();
 
         // given
-        given(blobbRepository.existsById(uuid)).willReturn(false);
+        given(blobbRepository.checkIfUserWithUuidLikes(null, uuid)).willReturn(new LikeResult(false, 0L, false));
 
         // then
         String message = assertThrows(BlobbDoesntExistException.class, () -> {
-            blobbService.checkIfUserWithUuidLikes(any(User.class), uuid);
+            blobbService.checkIfUserWithUuidLikes(new User(), uuid);
         }).getMessage();
 
         assertEquals(String.format("Blobb with UUID %s doesn't exist", uuid), message);
@@ -260,9 +397,8 @@ public class BlobbServiceTests {
         User user = new User("test1", "mail@test.com", "", "");
 
         // given
-        given(blobbRepository.existsById(uuid)).willReturn(true);
         given(blobbRepository.checkIfUserWithUuidLikes(user.getUuid(), uuid))
-                .willReturn(Optional.empty());
+                .willReturn(new LikeResult(true, 0L, false));
 
         // when
         boolean result = blobbService.checkIfUserWithUuidLikes(user, uuid);
@@ -277,9 +413,8 @@ public class BlobbServiceTests {
         User user = new User("test1", "mail@test.com", "", "");
 
         // given
-        given(blobbRepository.existsById(uuid)).willReturn(true);
         given(blobbRepository.checkIfUserWithUuidLikes(user.getUuid(), uuid))
-                .willReturn(Optional.of(1L));
+                .willReturn(new LikeResult(true, 0L, true));
         // when
         boolean result = blobbService.checkIfUserWithUuidLikes(user, uuid);
 
@@ -288,12 +423,15 @@ public class BlobbServiceTests {
     }
 
     @Test
-    public void likeBlobb_ThrowsWhenBlobbDoesntExist() {
+    public void likeBlobb_ThrowsWhenBlobbDoesntExist() throws Exception {
+        UUID u1Uuid = UUID.randomUUID();
         User user = new User("test1", "mail@test.com", "", "");
         UUID blobbUuid = UUID.randomUUID();
+        user.setUuid(u1Uuid);
 
         // given
-        given(blobbRepository.existsById(blobbUuid)).willReturn(false);
+        given(blobbRepository.likeBlobbWithUuid(u1Uuid, blobbUuid))
+                .willReturn(new LikeResult(false, 0L, false));
 
         // when
         String message = assertThrows(BlobbDoesntExistException.class, () -> {
@@ -311,17 +449,16 @@ public class BlobbServiceTests {
         user.setUuid(u1Uuid);
 
         // given
-        given(blobbRepository.existsById(blobbUuid)).willReturn(true);
-        given(blobbRepository.checkIfUserWithUuidLikes(u1Uuid, blobbUuid))
-                .willReturn(Optional.empty());
         given(blobbRepository.likeBlobbWithUuid(u1Uuid, blobbUuid))
-                .willReturn(Optional.of(1L));
+                .willReturn(new LikeResult(true, 1L, true));
 
         // when
         boolean result = blobbService.likeBlobb(user, blobbUuid);
 
         // then
         assertTrue(result);
+        then(blobbRepository).should(never()).existsById(blobbUuid);
+        then(likeCounterBuffer).should().add(blobbUuid, 1L);
     }
 
     @Test
@@ -332,15 +469,15 @@ public class BlobbServiceTests {
         user.setUuid(u1Uuid);
 
         // given
-        given(blobbRepository.existsById(blobbUuid)).willReturn(true);
-        given(blobbRepository.checkIfUserWithUuidLikes(u1Uuid, blobbUuid))
-                .willReturn(Optional.of(1L));
+        given(blobbRepository.likeBlobbWithUuid(u1Uuid, blobbUuid))
+                .willReturn(new LikeResult(true, 0L, true));
 
         // when
         boolean result = blobbService.likeBlobb(user, blobbUuid);
 
         // then
         assertTrue(result);
+        then(likeCounterBuffer).should(never()).add(blobbUuid, 1L);
     }
 
     @Test
@@ -351,11 +488,8 @@ public class BlobbServiceTests {
         user.setUuid(u1Uuid);
 
         // given
-        given(blobbRepository.existsById(blobbUuid)).willReturn(true);
-        given(blobbRepository.checkIfUserWithUuidLikes(u1Uuid, blobbUuid))
-                .willReturn(Optional.empty());
         given(blobbRepository.likeBlobbWithUuid(u1Uuid, blobbUuid))
-                .willReturn(Optional.empty());
+                .willReturn(new LikeResult(true, 0L, false));
 
         // when
         boolean result = blobbService.likeBlobb(user, blobbUuid);
@@ -365,12 +499,15 @@ public class BlobbServiceTests {
     }
 
     @Test
-    public void unlikeBlobb_ThrowsWhenBlobbDoesntExist() {
+    public void unlikeBlobb_ThrowsWhenBlobbDoesntExist() throws Exception {
+        UUID u1Uuid = UUID.randomUUID();
         User user = new User("test1", "mail@test.com", "", "");
         UUID blobbUuid = UUID.randomUUID();
+        user.setUuid(u1Uuid);
 
         // given
-        given(blobbRepository.existsById(blobbUuid)).willReturn(false);
+        given(blobbRepository.unlikeBlobbWithUuid(u1Uuid, blobbUuid))
+                .willReturn(new LikeResult(false, 0L, false));
 
         // when
         String message = assertThrows(BlobbDoesntExistException.class, () -> {
@@ -388,15 +525,15 @@ public class BlobbServiceTests {
         user.setUuid(u1Uuid);
 
         // given
-        given(blobbRepository.existsById(blobbUuid)).willReturn(true);
-        given(blobbRepository.checkIfUserWithUuidLikes(u1Uuid, blobbUuid))
-                .willReturn(Optional.empty());
+        given(blobbRepository.unlikeBlobbWithUuid(u1Uuid, blobbUuid))
+                .willReturn(new LikeResult(true, 1L, false));
 
         // when
         boolean result = blobbService.unlikeBlobb(user, blobbUuid);
 
         // then
         assertTrue(result);
+        then(likeCounterBuffer).should().add(blobbUuid, -1L);
     }
 
     @Test
@@ -407,9 +544,8 @@ public class BlobbServiceTests {
         user.setUuid(u1Uuid);
 
         // given
-        given(blobbRepository.existsById(blobbUuid)).willReturn(true);
-        given(blobbRepository.checkIfUserWithUuidLikes(u1Uuid, blobbUuid))
-                .willReturn(Optional.of(1L));
+        given(blobbRepository.unlikeBlobbWithUuid(u1Uuid, blobbUuid))
+                .willReturn(new LikeResult(true, 0L, true));
 
         // when
         boolean result = blobbService.unlikeBlobb(user, blobbUuid);
@@ -437,6 +573,38 @@ public class BlobbServiceTests {
         assertEquals("Invalid skip and/or limit values.", ex.getMessage());
     }
 
+    // lists of responses and reblobbs are followed by a marker row if the referenced blobb exists
+    private List<FeedBlobb> createTestPage(int size) {
+        List<FeedBlobb> rows = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            FeedBlobb blobb = new FeedBlobb();
+            blobb.setUuid(UUID.randomUUID());
+            rows.add(blobb);
+        }
+        rows.add(new FeedBlobb());
+        return rows;
+    }
+
+    private User createTestAuthor() {
+        User author = new User();
+        author.setUuid(UUID.randomUUID());
+        return author;
+    }
+
+    // tags are referenced by their uuids when blobbs are written
+    private Tag createTestTag(String name) {
+        Tag tag = new Tag(name);
+        ReflectionTestUtils.setField(tag, "uuid", UUID.randomUUID());
+        return tag;
+    }
+
+    private FeedBlobb createFeedBlobb(Date date) {
+        FeedBlobb blobb = new FeedBlobb();
+        blobb.setUuid(UUID.randomUUID());
+        blobb.setDate(date);
+        return blobb;
+    }
+
     @Test
     public void getFeedForUser_ReturnsCorrectlyFilteredResults() {
         UUID uuid = UUID.randomUUID();
@@ -444,23 +612,26 @@ public class BlobbServiceTests {
         u.setUuid(uuid);
 
         Date dateNow = new Date();
-        Date dateOneHourAgo = Date.from(dateNow.toInstant().minus(1, HOURS));
-        Date dateSixHoursAgo = Date.from(dateNow.toInstant().minus(6, HOURS));
         Date dateTwelveHoursAgo = Date.from(dateNow.toInstant().minus(12, HOURS));
 
+        FeedBlobb blobbOneHourAgo = createFeedBlobb(Date.from(dateNow.toInstant().minus(30, MINUTES)));
+        FeedBlobb blobbSixHoursAgo = createFeedBlobb(Date.from(dateNow.toInstant().minus(5, HOURS)));
+        FeedBlobb blobbTwelveHoursAgo = createFeedBlobb(Date.from(dateNow.toInstant().minus(11, HOURS)));
+
         // inject fixed clock into the service
         blobbService.setClock(Clock.fixed(dateNow.toInstant(), ZoneId.systemDefault()));
 
         // given
-        given(blobbRepository
-                .getFeedForUserWithUuid_PostedBetween(uuid, dateOneHourAgo, dateNow, 0L, 5L))
-                .willReturn(List.of(new FeedBlobb()));
-        given(blobbRepository
-                .getFeedForUserWithUuid_PostedBetween(uuid, dateSixHoursAgo, dateNow, 0L, 5L))
-                .willReturn(List.of(new FeedBlobb(), new FeedBlobb()));
+        // the first request seeds the timeline with blobbs from the last twelve hours
         given(blobbRepository
                 .getFeedForUserWithUuid_PostedBetween(uuid, dateTwelveHoursAgo, dateNow, 0L, 5L))
-                .willReturn(List.of(new FeedBlobb(), new FeedBlobb(), new FeedBlobb()));
+                .willReturn(List.of(blobbOneHourAgo, blobbSixHoursAgo, blobbTwelveHoursAgo));
+        // other requests read blobbs referenced by the timeline
+        given(blobbRepository.getBlobbsWithUuids(List.of(blobbOneHourAgo.getUuid(), blobbSixHoursAgo.getUuid())))
+                .willReturn(List.of(blobbSixHoursAgo, blobbOneHourAgo));
+        given(blobbRepository.getBlobbsWithUuids(
+                List.of(blobbOneHourAgo.getUuid(), blobbSixHoursAgo.getUuid(), blobbTwelveHoursAgo.getUuid())))
+                .willReturn(List.of(blobbTwelveHoursAgo, blobbSixHoursAgo, blobbOneHourAgo));
 
         // when
         List<FeedBlobb> oneHourResults = blobbService
@@ -474,9 +645,272 @@ public class BlobbServiceTests {
 
 
         // then
-        assertEquals(1, oneHourResults.size());
-        assertEquals(2, sixHoursResults.size());
-        assertEquals(3, twelveHoursResults.size());
+        assertEquals(List.of(blobbOneHourAgo), oneHourResults);
+        assertEquals(List.of(blobbOneHourAgo, blobbSixHoursAgo), sixHoursResults);
+        assertEquals(List.of(blobbOneHourAgo, blobbSixHoursAgo, blobbTwelveHoursAgo), twelveHoursResults);
+    }
+
+    @Test
+    public void getFeedForUser_ReadsDatabaseWhenTimelineIsIncomplete() {
+        UUID uuid = UUID.randomUUID();
+        User u = new User();
+        u.setUuid(uuid);
+
+        Date dateNow = new Date();
+        Date dateOneHourAgo = Date.from(dateNow.toInstant().minus(1, HOURS));
+        Date dateTwelveHoursAgo = Date.from(dateNow.toInstant().minus(12, HOURS));
+
+        // timeline can hold only 5 entries, so a seed with 5 blobbs makes it incomplete
+        List<FeedBlobb> seed = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            seed.add(createFeedBlobb(Date.from(dateNow.toInstant().minus(i, MINUTES))));
+        }
+        List<FeedBlobb> secondPage = List.of(new FeedBlobb(), new FeedBlobb());
+
+        // inject fixed clock into the service
+        blobbService.setClock(Clock.fixed(dateNow.toInstant(), ZoneId.systemDefault()));
+
+        // given
+        given(blobbRepository
+                .getFeedForUserWithUuid_PostedBetween(uuid, dateTwelveHoursAgo, dateNow, 0L, 5L))
+                .willReturn(seed);
+        given(blobbRepository
+                .getFeedForUserWithUuid_PostedBetween(uuid, dateOneHourAgo, dateNow, 5L, 5L))
+                .willReturn(secondPage);
+
+        // when
+        List<FeedBlobb> firstPageResults = blobbService
+                .getFeedForUser(u, IBlobbService.BlobbsSince.ONE_HOUR, 0L, 5L);
+        List<FeedBlobb> secondPageResults = blobbService
+                .getFeedForUser(u, IBlobbService.BlobbsSince.ONE_HOUR, 5L, 5L);
+
+        // then
+        assertEquals(seed, firstPageResults);
+        assertEquals(secondPage, secondPageResults);
+    }
+
+    @Test
+    public void getFeedForUser_WithCursor_ReturnsBlobbsAfterCursor() {
+        UUID uuid = UUID.randomUUID();
+        User u = new User();
+        u.setUuid(uuid);
+
+        Date dateNow = new Date();
+        Date dateTwelveHoursAgo = Date.from(dateNow.toInstant().minus(12, HOURS));
+
+        // two blobbs posted at the same time are ordered by their uuids
+        Date sameDate = Date.from(dateNow.toInstant().minus(10, MINUTES));
+        FeedBlobb first = createFeedBlobb(sameDate);
+        first.setUuid(UUID.fromString("00000000-0000-0000-0000-000000000002"));
+        FeedBlobb second = createFeedBlobb(sameDate);
+        second.setUuid(UUID.fromString("00000000-0000-0000-0000-000000000001"));
+        FeedBlobb third = createFeedBlobb(Date.from(dateNow.toInstant().minus(20, MINUTES)));
+
+        // inject fixed clock into the service
+        blobbService.setClock(Clock.fixed(dateNow.toInstant(), ZoneId.systemDefault()));
+
+        // given
+        given(blobbRepository
+                .getFeedForUserWithUuid_PostedBetween(uuid, dateTwelveHoursAgo, dateNow, 0L, 5L))
+                .willReturn(List.of(first, second, third));
+        given(blobbRepository.getBlobbsWithUuids(List.of(second.getUuid(), third.getUuid())))
+                .willReturn(List.of(third, second));
+
+        // when
+        // the first request seeds the timeline, the second one reads it
+        List<FeedBlobb> firstPage = blobbService
+                .getFeedForUser(u, IBlobbService.BlobbsSince.ONE_HOUR, new Cursor(sameDate, first.getUuid()), 1L);
+        List<FeedBlobb> secondPage = blobbService
+                .getFeedForUser(u, IBlobbService.BlobbsSince.ONE_HOUR, new Cursor(sameDate, first.getUuid()), 5L);
+
+        // then
+        assertEquals(List.of(second), firstPage);
+        assertEquals(List.of(second, third), secondPage);
+    }
+
+    @Test
+    public void getFeedForUser_WithCursor_ReadsDatabaseWhenTimelineIsIncomplete() {
+        UUID uuid = UUID.randomUUID();
+        User u = new User();
+        u.setUuid(uuid);
+
+        Date dateNow = new Date();
+        Date dateOneHourAgo = Date.from(dateNow.toInstant().minus(1, HOURS));
+        Date dateTwelveHoursAgo = Date.from(dateNow.toInstant().minus(12, HOURS));
+
+        // timeline can hold only 5 entries, so a seed with 5 blobbs makes it incomplete
+        List<FeedBlobb> seed = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            seed.add(createFeedBlobb(Date.from(dateNow.toInstant().minus(i, MINUTES))));
+        }
+        FeedBlobb last = seed.get(4);
+        List<FeedBlobb> secondPage = List.of(new FeedBlobb(), new FeedBlobb());
+
+        // inject fixed clock into the service
+        blobbService.setClock(Clock.fixed(dateNow.toInstant(), ZoneId.systemDefault()));
+
+        // given
+        given(blobbRepository
+                .getFeedForUserWithUuid_PostedBetween(uuid, dateTwelveHoursAgo, dateNow, 0L, 5L))
+                .willReturn(seed);
+        given(blobbRepository
+                .getFeedForUserWithUuid_PostedBetween_AfterCursor(uuid, dateOneHourAgo, dateNow,
+                        last.getDate(), last.getUuid(), 5L))
+                .willReturn(secondPage);
+
+        // when
+        List<FeedBlobb> results = blobbService
+                .getFeedForUser(u, IBlobbService.BlobbsSince.ONE_HOUR, new Cursor(last.getDate(), last.getUuid()), 5L);
+
+        // then
+        assertEquals(secondPage, results);
+    }
+
+    @Test
+    public void getFeedForUser_WithCursor_ThrowsWhenCursorHasNoDate() {
+        User u = new User();
+
+        // then
+        Exception ex = assertThrows(IllegalArgumentException.class, () -> {
+            blobbService.getFeedForUser(u, IBlobbService.BlobbsSince.ONE_HOUR, new Cursor(UUID.randomUUID()), 5L);
+        });
+
+        assertEquals("Invalid cursor value.", ex.getMessage());
+    }
+
+    @Test
+    public void processBlobbAndSave_PushesBlobbIntoTimelinesOfFollowers() throws Exception {
+        User author = new User();
+        author.setUuid(UUID.randomUUID());
+        UUID followerUuid = UUID.randomUUID();
+
+        Date dateNow = new Date();
+        Date dateTwelveHoursAgo = Date.from(dateNow.toInstant().minus(12, HOURS));
+
+        Blobb blobb = new Blobb(author, "test");
+        blobb.setUuid(UUID.randomUUID());
+        blobb.setCreationDate(dateNow);
+
+        FeedBlobb feedBlobb = createFeedBlobb(dateNow);
+        feedBlobb.setUuid(blobb.getUuid());
+
+        User follower = new User();
+        follower.setUuid(followerUuid);
+
+        // inject fixed clock into the service
+        blobbService.setClock(Clock.fixed(dateNow.toInstant(), ZoneId.systemDefault()));
+
+        // given
+        given(blobbRepository
+                .getFeedForUserWithUuid_PostedBetween(followerUuid, dateTwelveHoursAgo, dateNow, 0L, 5L))
+                .willReturn(List.of());
+        given(userRepository.findUuidsOfAllFollowersOfUserWithUuid(author.getUuid()))
+                .willReturn(List.of(author.getUuid(), followerUuid));
+        given(blobbRepository.getBlobbsWithUuids(List.of(blobb.getUuid())))
+                .willReturn(List.of(feedBlobb));
+
+        // when
+        // seed the timeline of the follower
+        List<FeedBlobb> feedBefore = blobbService.getFeedForUser(follower, IBlobbService.BlobbsSince.ONE_HOUR, 0L, 5L);
+        blobbService.processBlobbAndSave(blobb);
+        List<FeedBlobb> feedAfter = blobbService.getFeedForUser(follower, IBlobbService.BlobbsSince.ONE_HOUR, 0L, 5L);
+
+        // then
+        assertEquals(0, feedBefore.size());
+        assertEquals(List.of(feedBlobb), feedAfter);
+        // only seeding reads the feed from the database
+        then(blobbRepository).should(never())
+                .getFeedForUserWithUuid_PostedBetween(followerUuid, Date.from(dateNow.toInstant().minus(1, HOURS)), dateNow, 0L, 5L);
+    }
+
+    @Test
+    public void processBlobbAndSave_DoesNotPushBlobbsOfPopularAuthors() throws Exception {
+        User author = new User();
+        author.setUuid(UUID.randomUUID());
+
+        Blobb blobb = new Blobb(author, "test");
+        blobb.setUuid(UUID.randomUUID());
+
+        // given
+        given(followGraph.countFollowers(author.getUuid())).willReturn(1000L);
+
+        // when
+        blobbService.processBlobbAndSave(blobb);
+
+        // then
+        assertEquals(Set.of(author.getUuid()), timelineStore.getPulledAuthors(blobb.getCreationDate()));
+        then(userRepository).should(never()).findUuidsOfAllFollowersOfUserWithUuid(author.getUuid());
+        then(userRepository).should(never()).getUserProfileInfo(author.getUuid());
+    }
+
+    @Test
+    public void processBlobbAndSave_PushesBlobbsOfAuthorsThatAreNotPopularAnymore() throws Exception {
+        User author = new User();
+        author.setUuid(UUID.randomUUID());
+
+        Date dateNow = new Date();
+        Blobb pulledBlobb = new Blobb(author, "test");
+        pulledBlobb.setUuid(UUID.randomUUID());
+        pulledBlobb.setCreationDate(Date.from(dateNow.toInstant().minus(13, HOURS)));
+        Blobb pushedBlobb = new Blobb(author, "test");
+        pushedBlobb.setUuid(UUID.randomUUID());
+        pushedBlobb.setCreationDate(dateNow);
+
+        // given
+        given(followGraph.countFollowers(author.getUuid())).willReturn(1000L, 999L);
+        given(userRepository.findUuidsOfAllFollowersOfUserWithUuid(author.getUuid()))
+                .willReturn(List.of(author.getUuid()));
+
+        // when
+        blobbService.processBlobbAndSave(pulledBlobb);
+        Set<UUID> pulledBefore = timelineStore.getPulledAuthors(pulledBlobb.getCreationDate());
+        blobbService.processBlobbAndSave(pushedBlobb);
+        Set<UUID> pulledAfter = timelineStore.getPulledAuthors(pulledBlobb.getCreationDate());
+
+        // then
+        assertEquals(Set.of(author.getUuid()), pulledBefore);
+        // the pulled blobb is too old to be a part of any feed, so the author is forgotten
+        assertEquals(Set.of(), pulledAfter);
+        then(userRepository).should(times(1)).findUuidsOfAllFollowersOfUserWithUuid(author.getUuid());
+    }
+
+    @Test
+    public void getFeedForUser_MergesPulledBlobbsWithTimeline() {
+        UUID uuid = UUID.randomUUID();
+        User u = new User();
+        u.setUuid(uuid);
+        UUID popularAuthorUuid = UUID.randomUUID();
+
+        Date dateNow = new Date();
+        Date dateOneHourAgo = Date.from(dateNow.toInstant().minus(1, HOURS));
+        Date dateTwelveHoursAgo = Date.from(dateNow.toInstant().minus(12, HOURS));
+
+        FeedBlobb pushedBlobb = createFeedBlobb(Date.from(dateNow.toInstant().minus(20, MINUTES)));
+        FeedBlobb pulledNewerBlobb = createFeedBlobb(Date.from(dateNow.toInstant().minus(10, MINUTES)));
+        FeedBlobb pulledOlderBlobb = createFeedBlobb(Date.from(dateNow.toInstant().minus(30, MINUTES)));
+
+        // inject fixed clock into the service
+        blobbService.setClock(Clock.fixed(dateNow.toInstant(), ZoneId.systemDefault()));
+        timelineStore.pullIfPopular(popularAuthorUuid, 1000L, dateNow, dateTwelveHoursAgo);
+
+        // given
+        given(blobbRepository
+                .getFeedForUserWithUuid_PostedBetween(uuid, dateTwelveHoursAgo, dateNow, 0L, 5L))
+                .willReturn(List.of(pushedBlobb));
+        given(blobbRepository
+                .getFeedForUserWithUuid_PostedBetween_ByAuthors(uuid, List.of(popularAuthorUuid), dateOneHourAgo, dateNow, null, 5L))
+                .willReturn(List.of(pulledNewerBlobb, pulledOlderBlobb));
+        // only the blobb that had been pushed into the timeline has to be read
+        given(blobbRepository.getBlobbsWithUuids(List.of(pushedBlobb.getUuid())))
+                .willReturn(List.of(pushedBlobb));
+
+        // when
+        // seed the timeline
+        blobbService.getFeedForUser(u, IBlobbService.BlobbsSince.ONE_HOUR, 0L, 5L);
+        List<FeedBlobb> feed = blobbService.getFeedForUser(u, IBlobbService.BlobbsSince.ONE_HOUR, 0L, 5L);
+
+        // then
+        assertEquals(List.of(pulledNewerBlobb, pushedBlobb, pulledOlderBlobb), feed);
     }
 
     @Test
@@ -485,14 +919,12 @@ public class BlobbServiceTests {
         String expected2 = "#anothertest";
         String content = "This is " + expected1 + " and " + expected2;
 
-        Blobb blobb = new Blobb(new User(), content);
+        Blobb blobb = new Blobb(createTestAuthor(), content);
 
         // given
-        given(tagService.findByName(expected1))
-                .willThrow(new TagDoesntExistException(expected1));
-        given(tagService.findByName(expected2))
-                .willThrow(new TagDoesntExistException(expected2));
-        given(blobbRepository.save(blobb)).willReturn(blobb);
+        // tags that don't exist yet are created
+        given(tagService.findOrCreateByNames(Set.of(expected1, expected2)))
+                .willReturn(List.of(createTestTag(expected1), createTestTag(expected2)));
 
         // when
         Blobb processed = blobbService.processBlobbAndSave(blobb);
@@ -504,23 +936,22 @@ public class BlobbServiceTests {
 
         assertTrue(tagNames.contains(expected1));
         assertTrue(tagNames.contains(expected2));
+        then(tagService).should().recordUses(processed.getTags(), processed.getCreationDate());
     }
 
     @Test
     public void processBlobbAndSave_FindsExistingTagsInContent() throws Exception {
         String expected1 = "#test";
         String expected2 = "#anothertest";
-        Tag tag1 = new Tag(expected1);
-        Tag tag2 = new Tag(expected2);
+        Tag tag1 = createTestTag(expected1);
+        Tag tag2 = createTestTag(expected2);
 
         String content = "This is " + expected1 + " and " + expected2;
 
-        Blobb blobb = new Blobb(new User(), content);
+        Blobb blobb = new Blobb(createTestAuthor(), content);
 
         // given
-        given(tagService.findByName(expected1)).willReturn(tag1);
-        given(tagService.findByName(expected2)).willReturn(tag2);
-        given(blobbRepository.save(blobb)).willReturn(blobb);
+        given(tagService.findOrCreateByNames(Set.of(expected1, expected2))).willReturn(List.of(tag1, tag2));
 
         // when
         Blobb processed = blobbService.processBlobbAndSave(blobb);
@@ -548,16 +979,14 @@ public class BlobbServiceTests {
         String content = expected1 + " and " + expected2 + ". Also "
                 + invalidTag1 + " and " + expected3 + "bbbb";
 
-        Blobb blobb = new Blobb(new User(), content);
+        Blobb blobb = new Blobb(createTestAuthor(), content);
 
         // given
-        given(tagService.findByName(expected1.toLowerCase()))
-                .willThrow(new TagDoesntExistException(expected1));
-        given(tagService.findByName(expected2.toLowerCase()))
-                .willThrow(new TagDoesntExistException(expected2));
-        given(tagService.findByName(expected3.toLowerCase()))
-                .willThrow(new TagDoesntExistException(expected3));
-        given(blobbRepository.save(blobb)).willReturn(blobb);
+        given(tagService.findOrCreateByNames(
+                Set.of(expected1.toLowerCase(), expected2.toLowerCase(), expected3.toLowerCase())))
+                .willReturn(List.of(createTestTag(expected1.toLowerCase()),
+                        createTestTag(expected2.toLowerCase()),
+                        createTestTag(expected3.toLowerCase())));
 
         // when
         Blobb processed = blobbService.processBlobbAndSave(blobb);
@@ -580,12 +1009,11 @@ public class BlobbServiceTests {
 
         String content = expected1 + " " + duplicate1 + " " + duplicate2;
 
-        Blobb blobb = new Blobb(new User(), content);
+        Blobb blobb = new Blobb(createTestAuthor(), content);
 
         // given
-        given(tagService.findByName(expected1.toLowerCase()))
-                .willThrow(new TagDoesntExistException(expected1));
-        given(blobbRepository.save(blobb)).willReturn(blobb);
+        given(tagService.findOrCreateByNames(Set.of(expected1.toLowerCase())))
+                .willReturn(List.of(createTestTag(expected1.toLowerCase())));
 
         // when
         Blobb processed = blobbService.processBlobbAndSave(blobb);
@@ -598,15 +1026,30 @@ public class BlobbServiceTests {
         assertTrue(tagNames.contains(expected1.toLowerCase()));
     }
 
+    @Test
+    public void processBlobbAndSave_DoesNotLookForTagsWhenContentHasNone() throws Exception {
+        Blobb blobb = new Blobb(createTestAuthor(), "no tags here");
+
+        // given
+
+        // when
+        Blobb processed = blobbService.processBlobbAndSave(blobb);
+
+        // then
+        assertEquals(0, processed.getTags().size());
+        then(tagService).should(never()).findOrCreateByNames(any());
+    }
+
     @Test
     public void postReblobb_ThrowsWhenBlobbDoesntExist() {
-        User author = new User("test1", "", "" ,"");
+        User author = createTestAuthor();
         UUID postUuid = UUID.randomUUID();
 
-        String content = "Test";
+        String content = "Test #test";
 
         // given
-        given(blobbRepository.findById(postUuid)).willReturn(Optional.empty());
+        // blobbs that don't exist and blobbs marked as deleted cannot be reblobbed
+        given(blobbRepository.createReblobbOfBlobb(any(), any(), eq(postUuid))).willReturn(0L);
 
         // then
         String message = assertThrows(BlobbDoesntExistException.class, () -> {
@@ -614,64 +1057,182 @@ public class BlobbServiceTests {
         }).getMessage();
 
         assertEquals(String.format("Blobb with UUID %s doesn't exist", postUuid), message);
+        then(blobbRepository).should(never()).incrementCountersOfParentOfBlobbWithUuid(any());
+        // tags are only created together with the blobb
+        then(tagService).should(never()).findOrCreateByNames(any());
     }
 
     @Test
-    public void postReblobb_ThrowsWhenBlobbMarkedAsDeleted() {
-        User author = new User("test1", "", "" ,"");
+    public void postResponse_ThrowsWhenBlobbDoesntExist() {
+        User author = createTestAuthor();
         UUID postUuid = UUID.randomUUID();
 
-        Blobb parentBlobb = new Blobb(author, "test");
-        parentBlobb.setUuid(postUuid);
-        parentBlobb.markAsDeleted();
+        String content = "Test #test";
 
         // given
-        given(blobbRepository.findById(postUuid)).willReturn(Optional.of(parentBlobb));
+        // blobbs that don't exist and blobbs marked as deleted cannot be responded to
+        given(blobbRepository.createResponseToBlobb(any(), any(), eq(postUuid))).willReturn(0L);
 
         // then
         String message = assertThrows(BlobbDoesntExistException.class, () -> {
-            blobbService.postReblobb(author, "test", postUuid);
+            blobbService.postResponse(author, content, postUuid);
         }).getMessage();
 
         assertEquals(String.format("Blobb with UUID %s doesn't exist", postUuid), message);
+        then(blobbRepository).should(never()).incrementCountersOfParentOfBlobbWithUuid(any());
+        // tags are only created together with the blobb
+        then(tagService).should(never()).findOrCreateByNames(any());
     }
 
     @Test
-    public void postResponse_ThrowsWhenBlobbDoesntExist() {
-        User author = new User("test1", "", "" ,"");
+    public void postResponse_IncrementsCountersOfParent() throws Exception {
+        User author = createTestAuthor();
         UUID postUuid = UUID.randomUUID();
 
-        String content = "Test";
+        // given
+        given(blobbRepository.createResponseToBlobb(any(), any(), eq(postUuid))).willReturn(1L);
+
+        // when
+        Blobb response = blobbService.postResponse(author, "test", postUuid);
+
+        // then
+        assertNotNull(response.getUuid());
+        assertEquals(postUuid, ((ResponseBlobb) response).getRespondsTo().getUuid());
+        then(blobbRepository).should().incrementCountersOfParentOfBlobbWithUuid(response.getUuid());
+        then(blobbCache).should().invalidateInfo(postUuid);
+        // neither the author nor the parent is read from the database
+        then(userRepository).should(never()).findById(any());
+        then(blobbRepository).should(never()).findById(any());
+    }
+
+    @Test
+    public void postReblobb_IncrementsCountersOfParent() throws Exception {
+        User author = createTestAuthor();
+        UUID postUuid = UUID.randomUUID();
 
         // given
-        given(blobbRepository.findById(postUuid)).willReturn(Optional.empty());
+        given(blobbRepository.createReblobbOfBlobb(any(), any(), eq(postUuid))).willReturn(1L);
+
+        // when
+        Blobb reblobb = blobbService.postReblobb(author, "test", postUuid);
 
         // then
-        String message = assertThrows(BlobbDoesntExistException.class, () -> {
-            blobbService.postResponse(author, content, postUuid);
-        }).getMessage();
+        assertNotNull(reblobb.getUuid());
+        assertEquals(postUuid, ((Reblobb) reblobb).getReblobbs().getUuid());
+        then(blobbRepository).should().incrementCountersOfParentOfBlobbWithUuid(reblobb.getUuid());
+        then(blobbCache).should().invalidateInfo(postUuid);
+    }
 
-        assertEquals(String.format("Blobb with UUID %s doesn't exist", postUuid), message);
+    @Test
+    public void processBlobbAndSave_WritesBlobbWithoutSavingRelatedEntities() throws Exception {
+        User author = createTestAuthor();
+        Tag tag = createTestTag("#test");
+        Blobb blobb = new Blobb(author, "with #test");
+
+        // given
+        given(tagService.findOrCreateByNames(Set.of("#test"))).willReturn(List.of(tag));
+
+        // when
+        Blobb processed = blobbService.processBlobbAndSave(blobb);
+
+        // then
+        then(blobbRepository).should().createBlobbs(List.of(Map.of(
+                "uuid", processed.getUuid().toString(),
+                "content", "with #test",
+                "creationDate", blobb.getCreationDate().getTime(),
+                "author", author.getUuid().toString(),
+                "tags", List.of(tag.getUuid().toString()))));
+        then(blobbRepository).should(never()).save(any());
     }
 
     @Test
-    public void postResponse_ThrowsWhenBlobbMarkedAsDeleted() {
-        User author = new User("test1", "", "" ,"");
-        UUID postUuid = UUID.randomUUID();
+    public void postBlobb_QueuesBlobbWithAssignedUuid() throws Exception {
+        User author = createTestAuthor();
 
-        Blobb blobb = new Blobb(author, "test");
-        blobb.setUuid(postUuid);
-        blobb.markAsDeleted();
+        // given
+        given(ingestionQueue.offer(any(Blobb.class))).willReturn(true);
+
+        // when
+        Blobb blobb = blobbService.postBlobb(author, "test");
+
+        // then
+        assertNotNull(blobb.getUuid());
+        assertSame(author, blobb.getAuthor());
+        then(ingestionQueue).should().offer(blobb);
+        // blobbs are written by the writer of the queue, not while the request waits
+        then(blobbRepository).should(never()).save(any(Blobb.class));
+        then(userRepository).should(never()).findById(any(UUID.class));
+    }
+
+    @Test
+    public void postBlobb_ThrowsWhenQueueIsFull() {
+        User author = createTestAuthor();
 
         // given
-        given(blobbRepository.findById(postUuid)).willReturn(Optional.of(blobb));
+        given(ingestionQueue.offer(any(Blobb.class))).willReturn(false);
 
         // then
-        String message = assertThrows(BlobbDoesntExistException.class, () -> {
-            blobbService.postResponse(author, "test", postUuid);
+        String message = assertThrows(BlobbQueueFullException.class, () -> {
+            blobbService.postBlobb(author, "test");
         }).getMessage();
 
-        assertEquals(String.format("Blobb with UUID %s doesn't exist", postUuid), message);
+        assertEquals("Too many blobbs are being posted, try again later", message);
+    }
+
+    @Test
+    public void saveQueuedBlobbs_WritesBatchWithSingleQuery() {
+        User author = createTestAuthor();
+        Tag tag1 = createTestTag("#test");
+        Tag tag2 = createTestTag("#another");
+
+        Blobb b1 = new Blobb(author, "first #test");
+        b1.setUuid(UUID.randomUUID());
+        Blobb b2 = new Blobb(author, "second #test #another");
+        b2.setUuid(UUID.randomUUID());
+        Blobb b3 = new Blobb(author, "third");
+        b3.setUuid(UUID.randomUUID());
+
+        // given
+        // tags of all blobbs are found with a single query
+        given(tagService.findOrCreateByNames(Set.of("#test", "#another"))).willReturn(List.of(tag1, tag2));
+
+        // when
+        blobbService.saveQueuedBlobbs(List.of(b1, b2, b3));
+
+        // then
+        then(blobbRepository).should().createBlobbs(argThat(rows ->
+                rows.size() == 3 &&
+                rows.get(0).get("uuid").equals(b1.getUuid().toString()) &&
+                rows.get(0).get("author").equals(author.getUuid().toString()) &&
+                rows.get(0).get("creationDate").equals(b1.getCreationDate().getTime()) &&
+                rows.get(0).get("tags").equals(List.of(tag1.getUuid().toString())) &&
+                ((List<?>) rows.get(1).get("tags")).size() == 2 &&
+                rows.get(2).get("tags").equals(List.of())));
+        then(tagService).should().recordUses(Set.of(tag1), b1.getCreationDate());
+        then(tagService).should().recordUses(Set.of(tag1, tag2), b2.getCreationDate());
+        then(tagService).should().recordUses(Set.of(), b3.getCreationDate());
+        then(userRepository).should(times(3)).findUuidsOfAllFollowersOfUserWithUuid(author.getUuid());
+    }
+
+    @Test
+    public void saveQueuedBlobbs_ReplacesTagsWhenBatchIsWrittenAgain() {
+        User author = createTestAuthor();
+        Blobb b1 = new Blobb(author, "first #test");
+        b1.setUuid(UUID.randomUUID());
+
+        // given
+        // every attempt finds or creates tags again, which returns new objects
+        given(tagService.findOrCreateByNames(Set.of("#test")))
+                .willReturn(List.of(createTestTag("#test")), List.of(createTestTag("#test")));
+        willThrow(IllegalStateException.class).willDoNothing().given(blobbRepository).createBlobbs(any());
+
+        // when
+        assertThrows(IllegalStateException.class, () -> blobbService.saveQueuedBlobbs(List.of(b1)));
+        blobbService.saveQueuedBlobbs(List.of(b1));
+
+        // then
+        assertEquals(1, b1.getTags().size());
+        then(tagService).should().recordUses(b1.getTags(), b1.getCreationDate());
     }
 
     @Test
@@ -733,13 +1294,100 @@ public class BlobbServiceTests {
 
         // given
         given(blobbRepository.findById(postUuid)).willReturn(Optional.of(blobb));
-        given(blobbRepository.save(blobb)).willReturn(blobb);
+        given(blobbRepository.markBlobbWithUuidAsDeleted(postUuid)).willReturn(1L);
 
         // when
         boolean response = blobbService.markBlobbAsDeleted(loggedUser, postUuid);
 
         // then
         assertTrue(response);
+        then(timelineStore).should().removeBlobb(postUuid);
+        then(blobbRepository).should().decrementCountersOfParentOfBlobbWithUuid(postUuid);
+        then(tagService).should().removeUses(blobb.getTags(), blobb.getCreationDate());
+        then(blobbRepository).should(never()).save(any());
+        then(blobbCache).should().invalidate(postUuid);
+    }
+
+    @Test
+    public void markBlobbAsDeleted_InvalidatesInfoOfParent() throws Exception {
+        UUID postUuid = UUID.randomUUID();
+        UUID parentUuid = UUID.randomUUID();
+
+        User author = createTestAuthor();
+
+        Blobb parent = new Blobb(author, "parent");
+        parent.setUuid(parentUuid);
+        Blobb response = new ResponseBlobb(author, "test", parent);
+        response.setUuid(postUuid);
+
+        // given
+        given(blobbRepository.findById(postUuid)).willReturn(Optional.of(response));
+        given(blobbRepository.markBlobbWithUuidAsDeleted(postUuid)).willReturn(1L);
+
+        // when
+        blobbService.markBlobbAsDeleted(author, postUuid);
+
+        // then
+        then(blobbCache).should().invalidate(postUuid);
+        then(blobbCache).should().invalidateInfo(parentUuid);
+    }
+
+    @Test
+    public void markBlobbAsDeleted_DoesNotDecrementCountersTwice() throws Exception {
+        UUID postUuid = UUID.randomUUID();
+
+        User author = createTestAuthor();
+
+        Blobb blobb = new Blobb(author, "test");
+        blobb.setUuid(postUuid);
+
+        // given
+        // another request marks the blobb as deleted after this one has found it
+        given(blobbRepository.findById(postUuid)).willReturn(Optional.of(blobb));
+        given(blobbRepository.markBlobbWithUuidAsDeleted(postUuid)).willReturn(0L);
+
+        // when
+        boolean response = blobbService.markBlobbAsDeleted(author, postUuid);
+
+        // then
+        assertTrue(response);
+        then(blobbRepository).should(never()).decrementCountersOfParentOfBlobbWithUuid(postUuid);
+        then(tagService).should(never()).removeUses(any(), any());
+    }
+
+    @Test
+    public void markBlobbAsDeleted_ReturnsTrueWhenDeletedAgain() throws Exception {
+        UUID postUuid = UUID.randomUUID();
+        User author = createTestAuthor();
+
+        // given
+        // blobbs marked as deleted are not found as blobbs anymore
+        given(blobbRepository.findById(postUuid)).willReturn(Optional.empty());
+        given(blobbRepository.findAuthorOfDeletedBlobbWithUuid(postUuid)).willReturn(Optional.of(author.getUuid()));
+
+        // when
+        boolean response = blobbService.markBlobbAsDeleted(author, postUuid);
+
+        // then
+        assertTrue(response);
+        then(blobbRepository).should(never()).markBlobbWithUuidAsDeleted(any());
+        then(blobbRepository).should(never()).decrementCountersOfParentOfBlobbWithUuid(any());
+        then(tagService).should(never()).removeUses(any(), any());
+    }
+
+    @Test
+    public void markBlobbAsDeleted_ThrowsWhenUserNotAuthorizedToDeleteDeletedBlobb() {
+        UUID postUuid = UUID.randomUUID();
+        User author = createTestAuthor();
+        User u1 = new User("u1", "", "", "");
+        u1.setUuid(UUID.randomUUID());
+
+        // given
+        given(blobbRepository.findById(postUuid)).willReturn(Optional.empty());
+        given(blobbRepository.findAuthorOfDeletedBlobbWithUuid(postUuid)).willReturn(Optional.of(author.getUuid()));
+
+        // then
+        assertThrows(UserCannotDeleteBlobbException.class, () -> blobbService.markBlobbAsDeleted(u1, postUuid));
     }
 
     @Test
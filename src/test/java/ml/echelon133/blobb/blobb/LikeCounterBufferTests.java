@@ -0,0 +1,144 @@
+package ml.echelon133.blobb.blobb;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+
+@ExtendWith(MockitoExtension.class)
+public class LikeCounterBufferTests {
+
+    @Mock
+    private BlobbRepository blobbRepository;
+
+    @Mock
+    private BlobbCache blobbCache;
+
+    @InjectMocks
+    private LikeCounterBuffer likeCounterBuffer;
+
+    @Test
+    public void add_AccumulatesDeltas() {
+        UUID uuid = UUID.randomUUID();
+
+        // when
+        likeCounterBuffer.add(uuid, 1L);
+        likeCounterBuffer.add(uuid, 1L);
+        likeCounterBuffer.add(uuid, -1L);
+
+        // then
+        assertEquals(1L, likeCounterBuffer.getPendingDelta(uuid));
+        assertEquals(0L, likeCounterBuffer.getPendingDelta(UUID.randomUUID()));
+    }
+
+    @Test
+    public void flush_WritesDeltasInSingleBatch() {
+        UUID uuid1 = UUID.randomUUID();
+        UUID uuid2 = UUID.randomUUID();
+        UUID uuid3 = UUID.randomUUID();
+
+        likeCounterBuffer.add(uuid1, 3L);
+        likeCounterBuffer.add(uuid2, -1L);
+        // deltas that cancel out are not written
+        likeCounterBuffer.add(uuid3, 1L);
+        likeCounterBuffer.add(uuid3, -1L);
+
+        // when
+        likeCounterBuffer.flush();
+
+        // then
+        then(blobbRepository).should().addToLikesCounters(argThat(deltas ->
+                deltas.size() == 2 &&
+                deltas.contains(Map.of("uuid", uuid1.toString(), "likes", 3L)) &&
+                deltas.contains(Map.of("uuid", uuid2.toString(), "likes", -1L))));
+        assertEquals(0L, likeCounterBuffer.getPendingDelta(uuid1));
+        assertEquals(0L, likeCounterBuffer.getPendingDelta(uuid2));
+        then(blobbCache).should().invalidateInfo(uuid1);
+        then(blobbCache).should().invalidateInfo(uuid2);
+        then(blobbCache).should(never()).invalidateInfo(uuid3);
+    }
+
+    @Test
+    public void flush_DoesNothingWhenThereAreNoDeltas() {
+        // when
+        likeCounterBuffer.flush();
+
+        // then
+        then(blobbRepository).should(never()).addToLikesCounters(any());
+    }
+
+    @Test
+    public void flush_KeepsDeltasWhenWriteFails() {
+        UUID uuid = UUID.randomUUID();
+        likeCounterBuffer.add(uuid, 2L);
+
+        // given
+        willThrow(new RuntimeException()).given(blobbRepository).addToLikesCounters(any());
+
+        // when
+        try {
+            likeCounterBuffer.flush();
+        } catch (RuntimeException ignore) {}
+
+        // then
+        assertEquals(2L, likeCounterBuffer.getPendingDelta(uuid));
+    }
+
+    @Test
+    public void withPendingDeltas_KeepsDeltasUntilActionIsDone() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        likeCounterBuffer.add(uuid, 2L);
+        CountDownLatch flushing = new CountDownLatch(1);
+        Thread flush = new Thread(() -> {
+            flushing.countDown();
+            likeCounterBuffer.flush();
+        });
+
+        // when
+        Map<String, Long> snapshot = likeCounterBuffer.withPendingDeltas(pending -> {
+            flush.start();
+            try {
+                flushing.await(5, TimeUnit.SECONDS);
+                // the flush has to wait for the action
+                flush.join(200);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            assertEquals(2L, likeCounterBuffer.getPendingDelta(uuid));
+            return pending;
+        });
+
+        flush.join(5000);
+
+        // then
+        assertEquals(Map.of(uuid.toString(), 2L), snapshot);
+        assertEquals(0L, likeCounterBuffer.getPendingDelta(uuid));
+    }
+
+    @Test
+    public void add_RemovesDeltasThatCancelOut() {
+        UUID uuid = UUID.randomUUID();
+
+        // when
+        likeCounterBuffer.add(uuid, 1L);
+        likeCounterBuffer.add(uuid, -1L);
+
+        // then
+        boolean empty = likeCounterBuffer.withPendingDeltas(Map::isEmpty);
+        assertTrue(empty);
+    }
+}
@@ -0,0 +1,76 @@
+package ml.echelon133.blobb.blobb;
+
+import ml.echelon133.blobb.user.Author;
+import ml.echelon133.blobb.user.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NormalizedBlobbsTests {
+
+    private static FeedBlobb createTestBlobb(User author) {
+        FeedBlobb blobb = new FeedBlobb();
+        blobb.setUuid(UUID.randomUUID());
+        blobb.setContent("test");
+        blobb.setDate(new Date());
+        blobb.setAuthor(new Author(author));
+        blobb.setRespondsTo(UUID.randomUUID());
+        return blobb;
+    }
+
+    @Test
+    public void of_HoldsEveryAuthorOnce() {
+        User user1 = new User("user1", "", "", "");
+        user1.setUuid(UUID.randomUUID());
+        User user2 = new User("user2", "", "", "");
+        user2.setUuid(UUID.randomUUID());
+
+        List<FeedBlobb> listed = List.of(createTestBlobb(user1), createTestBlobb(user2), createTestBlobb(user1));
+
+        // when
+        NormalizedBlobbs normalized = NormalizedBlobbs.of(listed);
+
+        // then
+        assertEquals(2, normalized.getAuthors().size());
+        assertEquals(List.of(user1.getUuid(), user2.getUuid()), List.copyOf(normalized.getAuthors().keySet()));
+        assertEquals("user2", normalized.getAuthors().get(user2.getUuid()).getUsername());
+    }
+
+    @Test
+    public void of_KeepsOrderAndPropertiesOfBlobbs() {
+        User user1 = new User("user1", "", "", "");
+        user1.setUuid(UUID.randomUUID());
+
+        List<FeedBlobb> listed = List.of(createTestBlobb(user1), createTestBlobb(user1));
+
+        // when
+        NormalizedBlobbs normalized = NormalizedBlobbs.of(listed);
+
+        // then
+        assertEquals(2, normalized.getBlobbs().size());
+        for (int i = 0; i < listed.size(); i++) {
+            FeedBlobb blobb = listed.get(i);
+            NormalizedBlobbs.Entry entry = normalized.getBlobbs().get(i);
+            assertEquals(blobb.getUuid(), entry.getUuid());
+            assertEquals(blobb.getContent(), entry.getContent());
+            assertEquals(blobb.getDate(), entry.getDate());
+            assertEquals(user1.getUuid(), entry.getAuthor());
+            assertNull(entry.getReblobbs());
+            assertEquals(blobb.getRespondsTo(), entry.getRespondsTo());
+        }
+    }
+
+    @Test
+    public void of_HandlesEmptyList() {
+        // when
+        NormalizedBlobbs normalized = NormalizedBlobbs.of(List.<FeedBlobb>of());
+
+        // then
+        assertTrue(normalized.getBlobbs().isEmpty());
+        assertTrue(normalized.getAuthors().isEmpty());
+    }
+}
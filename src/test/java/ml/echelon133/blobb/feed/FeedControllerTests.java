@@ -4,6 +4,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import ml.echelon133.blobb.blobb.BlobbService;
 import ml.echelon133.blobb.blobb.FeedBlobb;
 import ml.echelon133.blobb.blobb.IBlobbService;
+import ml.echelon133.blobb.blobb.NormalizedBlobbs;
+import ml.echelon133.blobb.pagination.Cursor;
+import ml.echelon133.blobb.user.Author;
 import ml.echelon133.blobb.user.User;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,6 +14,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.json.JacksonTester;
 import org.springframework.boot.test.json.JsonContent;
@@ -20,6 +24,7 @@ import org.springframework.security.web.context.SecurityContextPersistenceFilter
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
@@ -39,6 +44,9 @@ public class FeedControllerTests {
     @Mock
     private BlobbService blobbService;
 
+    @Spy
+    private FeedRequestCoalescer feedRequestCoalescer = new FeedRequestCoalescer();
+
     @InjectMocks
     private FeedController feedController;
 
@@ -47,6 +55,8 @@ public class FeedControllerTests {
 
     private JacksonTester<List<FeedBlobb>> jsonFeedBlobbs;
 
+    private JacksonTester<NormalizedBlobbs> jsonNormalizedBlobbs;
+
     @BeforeAll
     public static void beforeAll() {
         testUser = new User("user1", "", "","");
@@ -248,4 +258,124 @@ public class FeedControllerTests {
         assertThat(response2.getStatus()).isEqualTo(HttpStatus.OK.value());
         assertThat(response2.getContentAsString()).isEqualTo(json2.getJson());
     }
+
+    @Test
+    public void getUserFeed_ProvidedCursorIsUsed() throws Exception {
+        FeedBlobb blobb = new FeedBlobb();
+        blobb.setUuid(UUID.randomUUID());
+        blobb.setDate(new Date());
+        List<FeedBlobb> testBlobbs = List.of(blobb);
+
+        Cursor cursor = new Cursor(new Date(), UUID.randomUUID());
+
+        // json
+        JsonContent<List<FeedBlobb>> json = jsonFeedBlobbs.write(testBlobbs);
+
+        // given
+        given(blobbService.getFeedForUser(testUser, IBlobbService.BlobbsSince.ONE_HOUR, cursor, 1L))
+                .willReturn(testBlobbs);
+
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                get("/api/feed")
+                        .accept(APPLICATION_JSON)
+                        .with(user(testUser))
+                        .param("cursor", cursor.encode())
+                        .param("limit", "1")
+        ).andReturn().getResponse();
+
+        // then
+        // the page is full, so it holds the cursor that points at its last blobb
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString()).isEqualTo(json.getJson());
+        assertThat(response.getHeader(Cursor.NEXT_CURSOR_HEADER))
+                .isEqualTo(new Cursor(blobb.getDate(), blobb.getUuid()).encode());
+    }
+
+    @Test
+    public void getUserFeed_NoNextCursorWhenPageNotFull() throws Exception {
+        List<FeedBlobb> testBlobbs = List.of(new FeedBlobb());
+
+        // given
+        given(blobbService.getFeedForUser(testUser, IBlobbService.BlobbsSince.ONE_HOUR, 0L, 20L))
+                .willReturn(testBlobbs);
+
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                get("/api/feed")
+                        .accept(APPLICATION_JSON)
+                        .with(user(testUser))
+        ).andReturn().getResponse();
+
+        // then
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getHeader(Cursor.NEXT_CURSOR_HEADER)).isNull();
+    }
+
+    @Test
+    public void getUserFeed_HandlesInvalidCursor() throws Exception {
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                get("/api/feed")
+                        .accept(APPLICATION_JSON)
+                        .with(user(testUser))
+                        .param("cursor", "asdf")
+        ).andReturn().getResponse();
+
+        // then
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+        assertThat(response.getContentAsString()).contains("Invalid cursor value.");
+    }
+
+    @Test
+    public void getUserFeed_HandlesCursorWithPopularity() throws Exception {
+        Cursor cursor = new Cursor(new Date(), UUID.randomUUID());
+
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                get("/api/feed")
+                        .accept(APPLICATION_JSON)
+                        .with(user(testUser))
+                        .param("by", "popularity")
+                        .param("cursor", cursor.encode())
+        ).andReturn().getResponse();
+
+        // then
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+        assertThat(response.getContentAsString()).contains("Cursor cannot be used with popularity ordering.");
+    }
+
+    @Test
+    public void getUserFeed_ReturnsNormalizedFeedWhenRequested() throws Exception {
+        List<FeedBlobb> testBlobbs = List.of(new FeedBlobb(), new FeedBlobb());
+        for (FeedBlobb blobb : testBlobbs) {
+            blobb.setUuid(UUID.randomUUID());
+            blobb.setDate(new Date());
+            blobb.setAuthor(new Author(testUser));
+        }
+
+        // json
+        JsonContent<NormalizedBlobbs> json = jsonNormalizedBlobbs.write(NormalizedBlobbs.of(testBlobbs));
+
+        // given
+        given(blobbService.getFeedForUser(testUser, IBlobbService.BlobbsSince.ONE_HOUR, 0L, 2L))
+                .willReturn(testBlobbs);
+
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                get("/api/feed")
+                        .accept(APPLICATION_JSON)
+                        .with(user(testUser))
+                        .param("limit", "2")
+                        .param("normalized", "true")
+        ).andReturn().getResponse();
+
+        // then
+        // the author of both blobbs is serialized once, and the page still holds the next cursor
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString()).isEqualTo(json.getJson());
+        assertThat(response.getContentAsString().split("\"username\"").length).isEqualTo(2);
+        assertThat(response.getHeader(Cursor.NEXT_CURSOR_HEADER))
+                .isEqualTo(new Cursor(testBlobbs.get(1).getDate(), testBlobbs.get(1).getUuid()).encode());
+    }
 }
@@ -0,0 +1,155 @@
+package ml.echelon133.blobb.feed;
+
+import ml.echelon133.blobb.blobb.FeedBlobb;
+import ml.echelon133.blobb.blobb.IBlobbService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedRequestCoalescerTests {
+
+    private static FeedRequestCoalescer.FeedRequest createTestRequest(UUID userUuid) {
+        return new FeedRequestCoalescer.FeedRequest(userUuid, IBlobbService.BlobbsSince.ONE_HOUR,
+                false, 0L, null, 20L);
+    }
+
+    @Test
+    public void getFeed_SharesFeedBetweenConcurrentIdenticalRequests() throws Exception {
+        FeedRequestCoalescer coalescer = new FeedRequestCoalescer();
+        UUID userUuid = UUID.randomUUID();
+        List<FeedBlobb> feed = List.of(new FeedBlobb());
+        AtomicInteger reads = new AtomicInteger();
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // when
+            Future<List<FeedBlobb>> first = executor.submit(() -> coalescer.getFeed(createTestRequest(userUuid), () -> {
+                reads.incrementAndGet();
+                reading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return feed;
+            }));
+            assertTrue(reading.await(5, TimeUnit.SECONDS));
+            Future<List<FeedBlobb>> second = executor.submit(() -> coalescer.getFeed(createTestRequest(userUuid), () -> {
+                reads.incrementAndGet();
+                return List.of();
+            }));
+            // the second request has to be waiting for the first one before the feed is returned
+            while (coalescer.getCoalescedCount() == 0) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            // then
+            assertSame(feed, first.get(5, TimeUnit.SECONDS));
+            assertSame(feed, second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, reads.get());
+            assertEquals(2, coalescer.getRequestCount());
+            assertEquals(1, coalescer.getCoalescedCount());
+            assertEquals(0.5, coalescer.getCoalescingRatio());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void getFeed_ReadsFeedAgainAfterPreviousRequestIsDone() {
+        FeedRequestCoalescer coalescer = new FeedRequestCoalescer();
+        UUID userUuid = UUID.randomUUID();
+        AtomicInteger reads = new AtomicInteger();
+
+        // when
+        coalescer.getFeed(createTestRequest(userUuid), () -> List.of(new FeedBlobb(), new FeedBlobb()));
+        List<FeedBlobb> feed = coalescer.getFeed(createTestRequest(userUuid), () -> {
+            reads.incrementAndGet();
+            return List.of();
+        });
+
+        // then
+        assertEquals(0, feed.size());
+        assertEquals(1, reads.get());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void getFeed_RethrowsExceptionOfReader() {
+        FeedRequestCoalescer coalescer = new FeedRequestCoalescer();
+
+        // when
+        Exception ex = assertThrows(IllegalArgumentException.class, () -> {
+            coalescer.getFeed(createTestRequest(UUID.randomUUID()), () -> {
+                throw new IllegalArgumentException("Invalid skip and/or limit values.");
+            });
+        });
+
+        // then
+        assertEquals("Invalid skip and/or limit values.", ex.getMessage());
+    }
+
+    @Test
+    public void getFeed_SharesErrorOfReaderWithWaitingRequests() throws Exception {
+        FeedRequestCoalescer coalescer = new FeedRequestCoalescer();
+        UUID userUuid = UUID.randomUUID();
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // when
+            Future<List<FeedBlobb>> first = executor.submit(() -> coalescer.getFeed(createTestRequest(userUuid), () -> {
+                reading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new OutOfMemoryError();
+            }));
+            assertTrue(reading.await(5, TimeUnit.SECONDS));
+            Future<List<FeedBlobb>> second = executor.submit(() -> coalescer.getFeed(createTestRequest(userUuid), List::of));
+            while (coalescer.getCoalescedCount() == 0) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            // then
+            ExecutionException firstEx = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            ExecutionException secondEx = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+            assertTrue(firstEx.getCause() instanceof OutOfMemoryError);
+            assertSame(firstEx.getCause(), secondEx.getCause());
+
+            // the feed can be read again once the failed request is done
+            List<FeedBlobb> feed = List.of(new FeedBlobb());
+            assertSame(feed, coalescer.getFeed(createTestRequest(userUuid), () -> feed));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void feedRequest_IsIdenticalOnlyWithSameParameters() {
+        UUID userUuid = UUID.randomUUID();
+
+        // when
+        FeedRequestCoalescer.FeedRequest request = createTestRequest(userUuid);
+        FeedRequestCoalescer.FeedRequest popular = new FeedRequestCoalescer.FeedRequest(userUuid,
+                IBlobbService.BlobbsSince.ONE_HOUR, true, 0L, null, 20L);
+
+        // then
+        assertEquals(createTestRequest(userUuid), request);
+        assertEquals(createTestRequest(userUuid).hashCode(), request.hashCode());
+        assertNotEquals(createTestRequest(UUID.randomUUID()), request);
+        assertNotEquals(popular, request);
+    }
+}
@@ -0,0 +1,71 @@
+package ml.echelon133.blobb.feed;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimelineStoreTests {
+
+    private static TimelineStore.Entry createTestEntry() {
+        return new TimelineStore.Entry(UUID.randomUUID(), new Date());
+    }
+
+    @Test
+    public void finishSeeding_MakesTimelineReady() {
+        TimelineStore timelineStore = new TimelineStore(5, 100, 1000);
+        UUID userUuid = UUID.randomUUID();
+        TimelineStore.Entry entry = createTestEntry();
+
+        // when
+        long seeding = timelineStore.beginSeeding(userUuid);
+        boolean readyBefore = timelineStore.getTimeline(userUuid).isPresent();
+        timelineStore.finishSeeding(userUuid, seeding, List.of(entry), true);
+
+        // then
+        assertFalse(readyBefore);
+        assertEquals(List.of(entry), timelineStore.getTimeline(userUuid).orElseThrow().getEntries());
+    }
+
+    @Test
+    public void finishSeeding_DropsEntriesOfSeedingThatBeganBeforeInvalidation() {
+        TimelineStore timelineStore = new TimelineStore(5, 100, 1000);
+        UUID userUuid = UUID.randomUUID();
+        TimelineStore.Entry staleEntry = createTestEntry();
+        TimelineStore.Entry freshEntry = createTestEntry();
+
+        // when
+        long staleSeeding = timelineStore.beginSeeding(userUuid);
+        timelineStore.invalidate(userUuid);
+        long freshSeeding = timelineStore.beginSeeding(userUuid);
+        // the seeding that began first finishes while the other one still reads the database
+        timelineStore.finishSeeding(userUuid, staleSeeding, List.of(staleEntry), true);
+        boolean readyAfterStaleSeeding = timelineStore.getTimeline(userUuid).isPresent();
+        timelineStore.finishSeeding(userUuid, freshSeeding, List.of(freshEntry), true);
+
+        // then
+        assertNotEquals(staleSeeding, freshSeeding);
+        assertFalse(readyAfterStaleSeeding);
+        assertEquals(List.of(freshEntry), timelineStore.getTimeline(userUuid).orElseThrow().getEntries());
+    }
+
+    @Test
+    public void finishSeeding_AcceptsConcurrentSeedingsOfTheSameTimeline() {
+        TimelineStore timelineStore = new TimelineStore(5, 100, 1000);
+        UUID userUuid = UUID.randomUUID();
+        TimelineStore.Entry entry = createTestEntry();
+
+        // when
+        long first = timelineStore.beginSeeding(userUuid);
+        long second = timelineStore.beginSeeding(userUuid);
+        timelineStore.finishSeeding(userUuid, second, List.of(entry), true);
+        timelineStore.finishSeeding(userUuid, first, List.of(entry), true);
+
+        // then
+        assertEquals(first, second);
+        assertEquals(List.of(entry), timelineStore.getTimeline(userUuid).orElseThrow().getEntries());
+    }
+}
@@ -0,0 +1,46 @@
+package ml.echelon133.blobb.pagination;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class UuidBatchesTests {
+
+    @Test
+    public void processAll_StartsEveryBatchAfterLastUuidOfPreviousOne() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        List<UUID> afterUuids = new ArrayList<>();
+
+        // when
+        UuidBatches.processAll(2L, (afterUuid, limit) -> {
+            afterUuids.add(afterUuid);
+            assertEquals(2L, limit);
+            return afterUuid == null ? List.of(first, second) : List.of(third);
+        });
+
+        // then
+        // the second batch is not full, so there is nothing more to process
+        assertEquals(Arrays.asList(null, second), afterUuids);
+    }
+
+    @Test
+    public void processAll_StopsWhenThereIsNothingToProcess() {
+        List<UUID> afterUuids = new ArrayList<>();
+
+        // when
+        UuidBatches.processAll(2L, (afterUuid, limit) -> {
+            afterUuids.add(afterUuid);
+            return List.of();
+        });
+
+        // then
+        assertEquals(Arrays.asList((UUID) null), afterUuids);
+    }
+}
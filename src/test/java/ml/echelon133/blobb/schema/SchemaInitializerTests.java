@@ -0,0 +1,253 @@
+package ml.echelon133.blobb.schema;
+
+import ml.echelon133.blobb.blobb.Blobb;
+import ml.echelon133.blobb.blobb.BlobbRepository;
+import ml.echelon133.blobb.tag.TagRepository;
+import ml.echelon133.blobb.user.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.graphdb.ExecutionPlanDescription;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.neo4j.DataNeo4jTest;
+import org.springframework.data.neo4j.annotation.Query;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// schema changes cannot be made in the transaction that wraps every test by default,
+// and the database with constraints must not be reused by other tests, which create duplicate users and tags
+@DataNeo4jTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+public class SchemaInitializerTests {
+
+    private Session session;
+    private GraphDatabaseService database;
+    private SchemaInitializer schemaInitializer;
+
+    @Autowired
+    public SchemaInitializerTests(Session session, SessionFactory sessionFactory) {
+        this.session = session;
+        this.database = sessionFactory.unwrap(GraphDatabaseService.class);
+    }
+
+    @BeforeEach
+    public void beforeEach() {
+        schemaInitializer = new SchemaInitializer(session, 2);
+        schemaInitializer.migrate();
+    }
+
+    // operators that take locks have a suffix, e.g. 'NodeUniqueIndexSeek(Locking)' used by MERGE
+    private static boolean usesOperator(ExecutionPlanDescription plan, String operator) {
+        if (plan.getName().startsWith(operator)) {
+            return true;
+        }
+        return plan.getChildren().stream().anyMatch(child -> usesOperator(child, operator));
+    }
+
+    private ExecutionPlanDescription explain(String query, Map<String, Object> params) {
+        try (Result result = database.execute("EXPLAIN " + query, params)) {
+            return result.getExecutionPlanDescription();
+        }
+    }
+
+    @Test
+    public void migrate_StoresLatestVersion() {
+        assertEquals(SchemaInitializer.getLatestVersion(), schemaInitializer.getCurrentVersion());
+    }
+
+    @Test
+    public void migrate_CanRunAgain() {
+        // when
+        schemaInitializer.migrate();
+
+        // then
+        assertEquals(SchemaInitializer.getLatestVersion(), schemaInitializer.getCurrentVersion());
+        Long versionNodes = session.queryForObject(Long.class,
+                "MATCH (v:SchemaVersion) RETURN count(v)", Map.of());
+        assertEquals(1L, versionNodes);
+    }
+
+    @Test
+    public void migrate_ConvertsDatesStoredAsStrings() {
+        List<String> uuids = List.of(
+                UUID.randomUUID().toString(), UUID.randomUUID().toString(), UUID.randomUUID().toString());
+        long date = Instant.parse("2020-09-01T10:15:30.123Z").toEpochMilli();
+
+        // given
+        // more blobbs than fit in a single batch, and a blobb that has already been converted
+        session.query("CREATE (:Blobb { uuid: $u0, creationDate: '2020-09-01T10:15:30.123Z' }) " +
+                        "CREATE (:Blobb { uuid: $u1, creationDate: '2020-09-01T10:15:30.123Z' }) " +
+                        "CREATE (:Blobb { uuid: $u2, creationDate: $date }) " +
+                        "CREATE (:User { uuid: $u0, creationDate: '2020-09-01T10:15:30.123Z' })",
+                Map.of("u0", uuids.get(0), "u1", uuids.get(1), "u2", uuids.get(2), "date", date));
+        session.query("MATCH (v:SchemaVersion) SET v.version = 2", Map.of());
+
+        // when
+        schemaInitializer.migrate();
+
+        // then
+        List<Long> blobbDates = new ArrayList<>();
+        session.query(Long.class, "MATCH (b:Blobb) WHERE b.uuid IN $uuids RETURN b.creationDate",
+                Map.of("uuids", uuids)).forEach(blobbDates::add);
+        Long userDate = session.queryForObject(Long.class,
+                "MATCH (u:User) WHERE u.uuid = $uuid RETURN u.creationDate", Map.of("uuid", uuids.get(0)));
+
+        assertEquals(List.of(date, date, date), blobbDates);
+        assertEquals(date, userDate);
+        assertEquals(SchemaInitializer.getLatestVersion(), schemaInitializer.getCurrentVersion());
+
+        session.query("MATCH (n) WHERE n.uuid IN $uuids DETACH DELETE n", Map.of("uuids", uuids));
+    }
+
+    @Test
+    public void migrate_ConvertsDatesWhenConstraintsCannotBeCreated() {
+        List<String> uuids = List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+        String username = "user" + uuids.get(0).substring(0, 8);
+        Date date = Date.from(Instant.parse("2020-09-01T10:15:30.123Z"));
+
+        // given
+        // duplicate usernames make creating constraints fail
+        session.query("DROP CONSTRAINT ON (u:User) ASSERT u.username IS UNIQUE", Map.of());
+        session.query("CREATE (:User { uuid: $u0, username: $username }) " +
+                        "CREATE (:User { uuid: $u1, username: $username }) " +
+                        "CREATE (:Blobb { uuid: $u0, content: 'test', creationDate: '2020-09-01T10:15:30.123Z' })",
+                Map.of("u0", uuids.get(0), "u1", uuids.get(1), "username", username));
+        session.query("MATCH (v:SchemaVersion) SET v.version = 0", Map.of());
+
+        try {
+            // blobbs can be loaded before their dates are converted
+            Blobb notConverted = session.queryForObject(Blobb.class,
+                    "MATCH (b:Blobb) WHERE b.uuid = $uuid RETURN b", Map.of("uuid", uuids.get(0)));
+
+            // when
+            schemaInitializer.migrate();
+
+            // then
+            Long convertedDate = session.queryForObject(Long.class,
+                    "MATCH (b:Blobb) WHERE b.uuid = $uuid RETURN b.creationDate", Map.of("uuid", uuids.get(0)));
+
+            assertEquals(date, notConverted.getCreationDate());
+            assertEquals(date.getTime(), convertedDate);
+            assertEquals(0, schemaInitializer.getCurrentVersion());
+        } finally {
+            session.query("MATCH (n) WHERE n.uuid IN $uuids DETACH DELETE n", Map.of("uuids", uuids));
+            schemaInitializer.migrate();
+        }
+        assertEquals(SchemaInitializer.getLatestVersion(), schemaInitializer.getCurrentVersion());
+    }
+
+    @Test
+    public void migrate_SwapsLabelsOfDeletedBlobbs() {
+        List<String> uuids = List.of(
+                UUID.randomUUID().toString(), UUID.randomUUID().toString(), UUID.randomUUID().toString());
+
+        // given
+        session.query("CREATE (:Blobb { uuid: $u0, deleted: true }) " +
+                        "CREATE (:Blobb:ResponseBlobb { uuid: $u1, deleted: true }) " +
+                        "CREATE (:Blobb:Reblobb { uuid: $u2, deleted: false })",
+                Map.of("u0", uuids.get(0), "u1", uuids.get(1), "u2", uuids.get(2)));
+        session.query("MATCH (v:SchemaVersion) SET v.version = 3", Map.of());
+
+        // when
+        schemaInitializer.migrate();
+
+        // then
+        List<String> deleted = new ArrayList<>();
+        session.query(String.class, "MATCH (b:DeletedBlobb) WHERE b.uuid IN $uuids " +
+                        "AND NOT b:Blobb AND NOT b:ResponseBlobb RETURN b.uuid ORDER BY b.uuid",
+                Map.of("uuids", uuids)).forEach(deleted::add);
+        Long live = session.queryForObject(Long.class,
+                "MATCH (b:Blobb:Reblobb) WHERE b.uuid IN $uuids AND NOT b:DeletedBlobb RETURN count(b)",
+                Map.of("uuids", uuids));
+
+        assertEquals(uuids.subList(0, 2).stream().sorted().collect(Collectors.toList()), deleted);
+        assertEquals(1L, live);
+
+        session.query("MATCH (n) WHERE n.uuid IN $uuids DETACH DELETE n", Map.of("uuids", uuids));
+    }
+
+    // plans are checked for queries that repositories actually run, so a query that stops using an index fails here
+    private static String queryOf(Class<?> repository, String methodName) {
+        return Arrays.stream(repository.getMethods())
+                .filter(method -> method.getName().equals(methodName))
+                .map(method -> method.getAnnotation(Query.class).value())
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static Map<String, Object> cursorParams(String uuidParam) {
+        return Map.of(
+                uuidParam, UUID.randomUUID().toString(),
+                "cursorDate", "2020-09-01T10:15:30.123Z",
+                "cursorUuid", UUID.randomUUID().toString(),
+                "limit", 5L);
+    }
+
+    @Test
+    public void feedQueries_UseIndexes() {
+        Map<String, Object> params = Map.of(
+                "uuid", UUID.randomUUID().toString(),
+                "first", "2020-09-01T00:00:00.000Z",
+                "second", "2020-09-02T00:00:00.000Z",
+                "skip", 0L,
+                "limit", 5L);
+        Map<String, Object> cursorParams = new HashMap<>(params);
+        cursorParams.putAll(cursorParams("uuid"));
+
+        ExecutionPlanDescription feed = explain(
+                queryOf(BlobbRepository.class, "getFeedForUserWithUuid_PostedBetween"), params);
+        ExecutionPlanDescription feedAfterCursor = explain(
+                queryOf(BlobbRepository.class, "getFeedForUserWithUuid_PostedBetween_AfterCursor"), cursorParams);
+
+        assertTrue(usesOperator(feed, "NodeUniqueIndexSeek"));
+        assertTrue(usesOperator(feedAfterCursor, "NodeUniqueIndexSeek"));
+    }
+
+    @Test
+    public void cursorQueries_UseIndexes() {
+        ExecutionPlanDescription blobbsOfUser = explain(
+                queryOf(UserRepository.class, "findRecentBlobbsOfUser_AfterCursor"), cursorParams("userUuid"));
+        ExecutionPlanDescription blobbsTagged = explain(
+                queryOf(TagRepository.class, "findRecentBlobbsTagged_AfterCursor"), cursorParams("tagUuid"));
+        ExecutionPlanDescription responses = explain(
+                queryOf(BlobbRepository.class, "getAllResponsesToBlobbWithUuid_AfterCursor"), cursorParams("uuid"));
+
+        assertTrue(usesOperator(blobbsOfUser, "NodeUniqueIndexSeek"));
+        assertTrue(usesOperator(blobbsTagged, "NodeUniqueIndexSeek"));
+        assertTrue(usesOperator(responses, "NodeUniqueIndexSeek"));
+        // parents of responses are also looked up among blobbs marked as deleted
+        assertTrue(usesOperator(responses, "NodeIndexSeek"));
+    }
+
+    @Test
+    public void tagQueries_UseIndexes() {
+        ExecutionPlanDescription findOrCreate = explain(
+                queryOf(TagRepository.class, "findOrCreateByNames"),
+                Map.of("names", List.of("#tag")));
+        ExecutionPlanDescription mostPopular = explain(
+                queryOf(TagRepository.class, "findMostPopularTags_Between"),
+                Map.of("first", "2020-09-01T00:00:00.000Z",
+                        "second", "2020-09-02T00:00:00.000Z",
+                        "howManyTagsToGet", 5L));
+
+        assertTrue(usesOperator(findOrCreate, "NodeUniqueIndexSeek"));
+        assertTrue(usesOperator(mostPopular, "NodeIndexSeekByRange"));
+    }
+}
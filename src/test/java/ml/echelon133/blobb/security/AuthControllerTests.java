@@ -0,0 +1,101 @@
+package ml.echelon133.blobb.security;
+
+import ml.echelon133.blobb.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.SecurityContextPersistenceFilter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+public class AuthControllerTests {
+
+    // controller that returns the uuid of the logged user
+    @RestController
+    static class PrincipalController {
+        @GetMapping("/api/principal")
+        public String principal() {
+            User loggedUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+            return loggedUser.getUuid().toString();
+        }
+    }
+
+    private MockMvc mockMvc;
+
+    private TokenService tokenService;
+
+    private User testUser;
+
+    @BeforeEach
+    public void beforeEach() {
+        tokenService = new TokenService("secret", 60000);
+        testUser = new User("user1", "", "", "");
+        testUser.setUuid(UUID.randomUUID());
+
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new AuthController(tokenService), new PrincipalController())
+                .setControllerAdvice(new AuthExceptionHandler())
+                .addFilters(new SecurityContextPersistenceFilter(), new TokenAuthenticationFilter(tokenService))
+                .build();
+    }
+
+    @Test
+    public void issueToken_ReturnsTokenOfLoggedUser() throws Exception {
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                post("/api/auth/token")
+                        .accept(APPLICATION_JSON)
+                        .with(user(testUser))
+        ).andReturn().getResponse();
+
+        // then
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString()).contains("\"token\"");
+        assertThat(response.getContentAsString()).contains("\"expiresIn\":\"60\"");
+    }
+
+    @Test
+    public void issueToken_RejectsRequestAuthenticatedWithToken() throws Exception {
+        String token = tokenService.issueToken(testUser);
+
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                post("/api/auth/token")
+                        .accept(APPLICATION_JSON)
+                        .header("Authorization", "Bearer " + token)
+        ).andReturn().getResponse();
+
+        // then
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.FORBIDDEN.value());
+        assertThat(response.getContentAsString()).doesNotContain("\"token\"");
+        assertThat(response.getContentAsString())
+                .contains("Tokens are only issued to requests authenticated with a password");
+    }
+
+    @Test
+    public void tokenAuthenticationFilter_AuthenticatesRequestsWithValidToken() throws Exception {
+        String token = tokenService.issueToken(testUser);
+
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                get("/api/principal")
+                        .header("Authorization", "Bearer " + token)
+        ).andReturn().getResponse();
+
+        // then
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString()).isEqualTo(testUser.getUuid().toString());
+    }
+}
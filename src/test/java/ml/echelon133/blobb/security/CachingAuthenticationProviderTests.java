@@ -0,0 +1,92 @@
+package ml.echelon133.blobb.security;
+
+import ml.echelon133.blobb.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+@ExtendWith(MockitoExtension.class)
+public class CachingAuthenticationProviderTests {
+
+    @Mock
+    private UserDetailsService userDetailsService;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    private PrincipalCache principalCache;
+
+    private CachingAuthenticationProvider provider;
+
+    private User testUser;
+
+    @BeforeEach
+    public void beforeEach() {
+        principalCache = new PrincipalCache(100, 60000);
+        provider = new CachingAuthenticationProvider(userDetailsService, passwordEncoder, principalCache);
+        testUser = new User("user1", "", "hash", "");
+        testUser.setUuid(UUID.randomUUID());
+    }
+
+    @Test
+    public void authenticate_ChecksPasswordOnlyOnce() {
+        // given
+        given(userDetailsService.loadUserByUsername("user1")).willReturn(testUser);
+        given(passwordEncoder.matches("password", "hash")).willReturn(true);
+
+        // when
+        provider.authenticate(new UsernamePasswordAuthenticationToken("user1", "password"));
+        Authentication result = provider.authenticate(new UsernamePasswordAuthenticationToken("user1", "password"));
+
+        // then
+        assertSame(testUser, result.getPrincipal());
+        then(userDetailsService).should(times(1)).loadUserByUsername("user1");
+        then(passwordEncoder).should(times(1)).matches("password", "hash");
+    }
+
+    @Test
+    public void authenticate_DoesNotUseCachedUserWithDifferentPassword() {
+        // given
+        given(userDetailsService.loadUserByUsername("user1")).willReturn(testUser);
+        given(passwordEncoder.matches("password", "hash")).willReturn(true);
+        given(passwordEncoder.matches("wrong", "hash")).willReturn(false);
+
+        // when
+        provider.authenticate(new UsernamePasswordAuthenticationToken("user1", "password"));
+
+        // then
+        assertThrows(BadCredentialsException.class, () -> {
+            provider.authenticate(new UsernamePasswordAuthenticationToken("user1", "wrong"));
+        });
+    }
+
+    @Test
+    public void authenticate_ChecksPasswordAgainAfterInvalidation() {
+        // given
+        given(userDetailsService.loadUserByUsername("user1")).willReturn(testUser);
+        given(passwordEncoder.matches("password", "hash")).willReturn(true);
+
+        // when
+        provider.authenticate(new UsernamePasswordAuthenticationToken("user1", "password"));
+        principalCache.invalidate("user1");
+        provider.authenticate(new UsernamePasswordAuthenticationToken("user1", "password"));
+
+        // then
+        then(passwordEncoder).should(times(2)).matches("password", "hash");
+    }
+}
@@ -0,0 +1,93 @@
+package ml.echelon133.blobb.security;
+
+import ml.echelon133.blobb.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenServiceTests {
+
+    private TokenService tokenService;
+
+    private User testUser;
+
+    private Instant now = Instant.parse("2020-05-10T12:30:00Z");
+
+    @BeforeEach
+    public void beforeEach() {
+        tokenService = new TokenService("secret", 60000);
+        tokenService.setClock(Clock.fixed(now, ZoneId.systemDefault()));
+        testUser = new User("user:1", "", "", "");
+        testUser.setUuid(UUID.randomUUID());
+    }
+
+    @Test
+    public void verifyToken_ReturnsUserTheTokenHasBeenIssuedFor() {
+        String token = tokenService.issueToken(testUser);
+
+        // when
+        Optional<User> user = tokenService.verifyToken(token);
+
+        // then
+        assertTrue(user.isPresent());
+        assertEquals(testUser.getUuid(), user.get().getUuid());
+        assertEquals(testUser.getUsername(), user.get().getUsername());
+    }
+
+    @Test
+    public void verifyToken_RejectsExpiredTokens() {
+        String token = tokenService.issueToken(testUser);
+
+        // when
+        tokenService.setClock(Clock.fixed(now.plusMillis(60000), ZoneId.systemDefault()));
+        Optional<User> user = tokenService.verifyToken(token);
+
+        // then
+        assertTrue(user.isEmpty());
+    }
+
+    @Test
+    public void verifyToken_RejectsTamperedTokens() {
+        String token = tokenService.issueToken(testUser);
+        User otherUser = new User("user2", "", "", "");
+        otherUser.setUuid(UUID.randomUUID());
+        String otherToken = tokenService.issueToken(otherUser);
+
+        // payload of one token with the signature of another
+        String tampered = otherToken.substring(0, otherToken.indexOf('.')) + token.substring(token.indexOf('.'));
+
+        // when
+        Optional<User> user = tokenService.verifyToken(tampered);
+
+        // then
+        assertTrue(user.isEmpty());
+    }
+
+    @Test
+    public void verifyToken_RejectsTokensSignedWithDifferentSecret() {
+        TokenService otherService = new TokenService("other secret", 60000);
+        otherService.setClock(Clock.fixed(now, ZoneId.systemDefault()));
+        String token = otherService.issueToken(testUser);
+
+        // when
+        Optional<User> user = tokenService.verifyToken(token);
+
+        // then
+        assertTrue(user.isEmpty());
+    }
+
+    @Test
+    public void verifyToken_RejectsMalformedTokens() {
+        assertTrue(tokenService.verifyToken("").isEmpty());
+        assertTrue(tokenService.verifyToken("abc").isEmpty());
+        assertTrue(tokenService.verifyToken("a.b").isEmpty());
+        assertTrue(tokenService.verifyToken("!!!.???").isEmpty());
+    }
+}
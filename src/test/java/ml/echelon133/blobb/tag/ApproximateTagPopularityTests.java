@@ -0,0 +1,146 @@
+package ml.echelon133.blobb.tag;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.time.temporal.ChronoUnit.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+public class ApproximateTagPopularityTests {
+
+    @Mock
+    private TagRepository tagRepository;
+
+    private ApproximateTagPopularity tagPopularity;
+
+    private Instant now = Instant.parse("2020-05-10T12:30:00Z");
+
+    private void setTime(Instant instant) {
+        tagPopularity.setClock(Clock.fixed(instant, ZoneId.systemDefault()));
+    }
+
+    private void recordUses(String name, int times, Instant when) {
+        for (int i = 0; i < times; i++) {
+            tagPopularity.record(List.of(new Tag(name)), Date.from(when));
+        }
+    }
+
+    private List<String> popularNames(long limit, ITagService.PopularSince since) {
+        return tagPopularity.findMostPopular(limit, since)
+                .stream().map(Tag::getName).collect(Collectors.toList());
+    }
+
+    @BeforeEach
+    public void beforeEach() {
+        // a sketch that is wide enough to give exact counts of a few tags
+        tagPopularity = new ApproximateTagPopularity(tagRepository, 1024, 4, 10);
+        setTime(now);
+    }
+
+    @Test
+    public void findMostPopular_SortsTagsByNumberOfUses() {
+        recordUses("#a", 1, now);
+        recordUses("#b", 3, now);
+        recordUses("#c", 2, now);
+
+        // when
+        List<String> popular = popularNames(2L, ITagService.PopularSince.ONE_HOUR);
+
+        // then
+        assertEquals(List.of("#b", "#c"), popular);
+    }
+
+    @Test
+    public void findMostPopular_CountsOnlyUsesWithinPeriod() {
+        recordUses("#hour", 1, now.minus(10, MINUTES));
+        recordUses("#day", 2, now.minus(5, HOURS));
+        recordUses("#week", 3, now.minus(3, DAYS));
+        recordUses("#old", 4, now.minus(8, DAYS));
+
+        // when
+        List<String> hour = popularNames(10L, ITagService.PopularSince.ONE_HOUR);
+        List<String> day = popularNames(10L, ITagService.PopularSince.DAY);
+        List<String> week = popularNames(10L, ITagService.PopularSince.WEEK);
+
+        // then
+        assertEquals(List.of("#hour"), hour);
+        assertEquals(List.of("#day", "#hour"), day);
+        assertEquals(List.of("#week", "#day", "#hour"), week);
+    }
+
+    @Test
+    public void findMostPopular_FindsHeavyHittersAmongManyTags() {
+        // summaries of buckets hold only 10 tags, but there are 500 distinct tags used once each
+        for (int i = 0; i < 500; i++) {
+            recordUses("#tag" + i, 1, now);
+        }
+        recordUses("#popular", 50, now);
+        recordUses("#second", 30, now);
+
+        // when
+        List<String> popular = popularNames(2L, ITagService.PopularSince.ONE_HOUR);
+
+        // then
+        assertEquals(List.of("#popular", "#second"), popular);
+    }
+
+    @Test
+    public void findMostPopular_NewTagReplacesLeastUsedTagOfFullSummary() {
+        // summaries of buckets hold only 10 tags
+        for (int i = 0; i < 10; i++) {
+            recordUses("#tag" + i, i + 2, now);
+        }
+
+        // when
+        recordUses("#new", 1, now);
+
+        // then
+        List<String> popular = popularNames(20L, ITagService.PopularSince.ONE_HOUR);
+        assertEquals(10, popular.size());
+        assertTrue(popular.contains("#new"));
+        assertFalse(popular.contains("#tag0"));
+    }
+
+    @Test
+    public void remove_DecrementsUses() {
+        recordUses("#a", 3, now);
+        recordUses("#b", 2, now);
+
+        // when
+        tagPopularity.remove(List.of(new Tag("#a")), Date.from(now));
+        tagPopularity.remove(List.of(new Tag("#a")), Date.from(now));
+
+        // then
+        assertEquals(List.of("#b", "#a"), popularNames(10L, ITagService.PopularSince.ONE_HOUR));
+    }
+
+    @Test
+    public void getErrorBound_GrowsWithNumberOfUsesInPeriod() {
+        recordUses("#a", 1000, now);
+        recordUses("#b", 1000, now.minus(2, HOURS));
+
+        // when
+        long hourBound = tagPopularity.getErrorBound(ITagService.PopularSince.ONE_HOUR);
+        long dayBound = tagPopularity.getErrorBound(ITagService.PopularSince.DAY);
+
+        // then
+        // e / 1024 * 1000 uses
+        assertEquals(3L, hourBound);
+        // e / 1024 * 2000 uses
+        assertEquals(6L, dayBound);
+        assertTrue(popularNames(10L, ITagService.PopularSince.ONE_HOUR).contains("#a"));
+    }
+}
@@ -0,0 +1,59 @@
+package ml.echelon133.blobb.tag;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.HOURS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+public class ExactTagPopularityTests {
+
+    @Mock
+    private TagRepository tagRepository;
+
+    @InjectMocks
+    private ExactTagPopularity exactTagPopularity;
+
+    @Test
+    public void findMostPopular_CorrectlyCalculatesPastDates() {
+        Date now = new Date();
+        Clock fixedClock = Clock.fixed(now.toInstant(), ZoneId.systemDefault());
+        Date hourAgo = Date.from(fixedClock.instant().minus(1, HOURS));
+        Date dayAgo = Date.from(fixedClock.instant().minus(1, DAYS));
+        Date weekAgo = Date.from(fixedClock.instant().minus(7, DAYS));
+
+        exactTagPopularity.setClock(fixedClock);
+
+        // given
+        given(tagRepository.findMostPopularTags_Between(hourAgo, now, 10L))
+                .willReturn(List.of(new Tag()));
+        given(tagRepository.findMostPopularTags_Between(dayAgo, now, 10L))
+                .willReturn(List.of(new Tag(), new Tag()));
+        given(tagRepository.findMostPopularTags_Between(weekAgo, now, 10L))
+                .willReturn(List.of(new Tag(), new Tag(), new Tag()));
+
+        // when
+        List<Tag> popularHourAgo = exactTagPopularity
+                .findMostPopular(10L, ITagService.PopularSince.ONE_HOUR);
+        List<Tag> popularDayAgo = exactTagPopularity
+                .findMostPopular(10L, ITagService.PopularSince.DAY);
+        List<Tag> popularWeekAgo = exactTagPopularity
+                .findMostPopular(10L, ITagService.PopularSince.WEEK);
+
+        // then
+        assertEquals(1L, popularHourAgo.size());
+        assertEquals(2L, popularDayAgo.size());
+        assertEquals(3L, popularWeekAgo.size());
+    }
+}
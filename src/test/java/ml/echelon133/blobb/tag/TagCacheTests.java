@@ -0,0 +1,53 @@
+package ml.echelon133.blobb.tag;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TagCacheTests {
+
+    @Test
+    public void getByName_RecordsHitsAndMisses() {
+        TagCache tagCache = new TagCache(100, 60000);
+        Tag tag = new Tag("#test");
+
+        // when
+        tagCache.getByName("#test", name -> Optional.of(tag));
+        Optional<Tag> cached = tagCache.getByName("#test", name -> Optional.empty());
+
+        // then
+        assertEquals(Optional.of(tag), cached);
+        assertEquals(1, tagCache.getNameStats().hitCount());
+        assertEquals(1, tagCache.getNameStats().missCount());
+    }
+
+    @Test
+    public void getByName_DoesNotCacheMissingTags() {
+        TagCache tagCache = new TagCache(100, 60000);
+        Tag tag = new Tag("#test");
+
+        // when
+        Optional<Tag> missing = tagCache.getByName("#test", name -> Optional.empty());
+        Optional<Tag> created = tagCache.getByName("#test", name -> Optional.of(tag));
+
+        // then
+        assertTrue(missing.isEmpty());
+        assertEquals(Optional.of(tag), created);
+    }
+
+    @Test
+    public void putAll_MakesTagsPresent() {
+        TagCache tagCache = new TagCache(100, 60000);
+        Tag tag = new Tag("#test");
+
+        // when
+        tagCache.putAll(List.of(tag));
+
+        // then
+        assertEquals(Map.of("#test", tag), tagCache.getAllPresentByNames(List.of("#test", "#other")));
+    }
+}
@@ -1,6 +1,8 @@
 package ml.echelon133.blobb.tag;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import ml.echelon133.blobb.blobb.NormalizedBlobbs;
+import ml.echelon133.blobb.pagination.Cursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,6 +16,7 @@ import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
@@ -42,6 +45,8 @@ public class TagControllerTests {
 
     private JacksonTester<List<RecentBlobb>> jsonRecentBlobbs;
 
+    private JacksonTester<NormalizedBlobbs> jsonNormalizedBlobbs;
+
     @BeforeEach
     public void beforeEach() {
         JacksonTester.initFields(this, new ObjectMapper());
@@ -156,6 +161,26 @@ public class TagControllerTests {
         assertThat(response.getContentAsString()).isEqualTo(json.getJson());
     }
 
+    @Test
+    public void listPopularTags_ResponseHasErrorBoundHeader() throws Exception {
+        // given
+        given(tagService.findMostPopular(5L, ITagService.PopularSince.DAY))
+                .willReturn(List.of(new Tag("#test")));
+        given(tagService.getPopularityErrorBound(ITagService.PopularSince.DAY))
+                .willReturn(7L);
+
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                get("/api/tags/popular")
+                        .accept(APPLICATION_JSON)
+                        .param("since", "day")
+        ).andReturn().getResponse();
+
+        // then
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getHeader(TagController.ERROR_BOUND_HEADER)).isEqualTo("7");
+    }
+
     @Test
     public void listPopularTags_ProvidedSinceParameterIsUsed() throws Exception {
         List<Tag> oneHour = List.of(new Tag("#test"));
@@ -290,6 +315,35 @@ public class TagControllerTests {
         assertThat(response.getContentAsString()).isEqualTo(json.getJson());
     }
 
+    @Test
+    public void findRecentBlobbs_ProvidedCursorIsUsed() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        Cursor cursor = new Cursor(new Date(), UUID.randomUUID());
+
+        List<RecentBlobb> recent = List.of(new RecentBlobb(), new RecentBlobb());
+
+        // json
+        JsonContent<List<RecentBlobb>> json = jsonRecentBlobbs.write(recent);
+
+        // given
+        given(tagService.findRecentBlobbsTagged(uuid, cursor, 20L))
+                .willReturn(recent);
+
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                get("/api/tags/" + uuid + "/recentBlobbs")
+                        .accept(APPLICATION_JSON)
+                        .param("cursor", cursor.encode())
+                        .param("limit", "20")
+        ).andReturn().getResponse();
+
+        // then
+        // the page is not full, so there is no next cursor
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString()).isEqualTo(json.getJson());
+        assertThat(response.getHeader(Cursor.NEXT_CURSOR_HEADER)).isNull();
+    }
+
     @Test
     public void findRecentBlobbs_CorrectResponseWhenTagDoesntExist() throws Exception {
         UUID uuid = UUID.randomUUID();
@@ -355,4 +409,29 @@ public class TagControllerTests {
         assertThat(response.getContentAsString())
                 .contains("Invalid skip and/or limit values.");
     }
+
+    @Test
+    public void findRecentBlobbs_ReturnsNormalizedBlobbsWhenRequested() throws Exception {
+        UUID uuid = UUID.randomUUID();
+
+        List<RecentBlobb> recent = List.of(new RecentBlobb(), new RecentBlobb());
+
+        // json
+        JsonContent<NormalizedBlobbs> json = jsonNormalizedBlobbs.write(NormalizedBlobbs.of(recent));
+
+        // given
+        given(tagService.findRecentBlobbsTagged(uuid, 0L, 5L))
+                .willReturn(recent);
+
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                get("/api/tags/" + uuid + "/recentBlobbs")
+                        .accept(APPLICATION_JSON)
+                        .param("normalized", "true")
+        ).andReturn().getResponse();
+
+        // then
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString()).isEqualTo(json.getJson());
+    }
 }
@@ -2,6 +2,7 @@ package ml.echelon133.blobb.tag;
 
 import ml.echelon133.blobb.blobb.Blobb;
 import ml.echelon133.blobb.blobb.BlobbRepository;
+import ml.echelon133.blobb.pagination.ExistenceMarker;
 import ml.echelon133.blobb.user.User;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,6 +10,7 @@ import org.springframework.boot.test.autoconfigure.data.neo4j.DataNeo4jTest;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static java.time.temporal.ChronoUnit.DAYS;
@@ -45,6 +47,11 @@ public class TagRepositoryTests {
         return b;
     }
 
+    // listed blobbs are followed by the existence marker of the tag
+    private static <T> List<T> pageOf(List<T> rows, Function<T, UUID> uuidOf) {
+        return ExistenceMarker.strip(rows, uuidOf).orElseThrow();
+    }
+
     @Test
     public void savedTagGetsUuid() {
         Tag tag = createTag("#test");
@@ -64,14 +71,31 @@ public class TagRepositoryTests {
         assertEquals(savedTag, foundTag.orElse(null));
     }
 
+    @Test
+    public void findOrCreateByNames_CreatesOnlyMissingTags() {
+        Tag existing = tagRepository.save(createTag("#existing"));
+
+        // when
+        List<Tag> tags = tagRepository.findOrCreateByNames(List.of("#existing", "#new"));
+
+        // then
+        assertEquals(2, tags.size());
+        assertEquals(2, tagRepository.count());
+        assertTrue(tags.contains(existing));
+
+        Tag created = tags.stream().filter(t -> t.getName().equals("#new")).findFirst().orElseThrow();
+        assertNotNull(created.getUuid());
+        assertEquals(created, tagRepository.findByName("#new").orElse(null));
+    }
+
     @Test
     public void findMostPopularTags_DoesNotCountDeletedBlobbs() {
         User u1 = createTestUser();
 
         // create a single blobb tagged '#test' and mark it as deleted
         Blobb b1 = createBlobb(u1, "test", createTag("#test"));
-        b1.markAsDeleted();
         blobbRepository.save(b1);
+        blobbRepository.markBlobbWithUuidAsDeleted(b1.getUuid());
 
         // create another blobb tagged '#asdf' and don't delete it
         Blobb b2 = createBlobb(u1, "test", createTag("#asdf"));
@@ -256,12 +280,21 @@ public class TagRepositoryTests {
         UUID tagUuid = tagRepository.save(t).getUuid();
 
         // when
-        List<RecentBlobb> recent = tagRepository.findRecentBlobbsTagged(tagUuid, 0L, 10L);
+        List<RecentBlobb> recent = pageOf(tagRepository.findRecentBlobbsTagged(tagUuid, 0L, 10L), RecentBlobb::getUuid);
 
         // then
         assertEquals(0, recent.size());
     }
 
+    @Test
+    public void findRecentBlobbsTagged_HasNoMarkerWhenTagDoesntExist() {
+        // when
+        List<RecentBlobb> recent = tagRepository.findRecentBlobbsTagged(UUID.randomUUID(), 0L, 10L);
+
+        // then
+        assertTrue(ExistenceMarker.strip(recent, RecentBlobb::getUuid).isEmpty());
+    }
+
     @Test
     public void findRecentBlobbsTagged_ReturnsObjectsInCorrectOrder() {
         Tag savedTag = tagRepository.save(createTag("#test"));
@@ -285,7 +318,7 @@ public class TagRepositoryTests {
         blobbRepository.save(b3);
 
         // when
-        List<RecentBlobb> recent = tagRepository.findRecentBlobbsTagged(savedTag.getUuid(), 0L, 10L);
+        List<RecentBlobb> recent = pageOf(tagRepository.findRecentBlobbsTagged(savedTag.getUuid(), 0L, 10L), RecentBlobb::getUuid);
 
         // then
         List<String> recentContents = recent.stream().map(RecentBlobb::getContent).collect(Collectors.toList());
@@ -322,7 +355,7 @@ public class TagRepositoryTests {
         blobbRepository.save(b3);
 
         // when
-        List<RecentBlobb> recent = tagRepository.findRecentBlobbsTagged(savedTag.getUuid(), 0L, 1L);
+        List<RecentBlobb> recent = pageOf(tagRepository.findRecentBlobbsTagged(savedTag.getUuid(), 0L, 1L), RecentBlobb::getUuid);
 
         // then
         List<String> recentContents = recent.stream().map(RecentBlobb::getContent).collect(Collectors.toList());
@@ -359,7 +392,7 @@ public class TagRepositoryTests {
         blobbRepository.save(b3);
 
         // when
-        List<RecentBlobb> recent = tagRepository.findRecentBlobbsTagged(savedTag.getUuid(), 1L, 10L);
+        List<RecentBlobb> recent = pageOf(tagRepository.findRecentBlobbsTagged(savedTag.getUuid(), 1L, 10L), RecentBlobb::getUuid);
 
         // then
         List<String> recentContents = recent.stream().map(RecentBlobb::getContent).collect(Collectors.toList());
@@ -372,4 +405,57 @@ public class TagRepositoryTests {
             assertEquals(expectedOrder.get(i), recentContents.get(i));
         }
     }
+
+    @Test
+    public void findRecentBlobbsTagged_AfterCursor_ReturnsBlobbsOlderThanCursor() {
+        Tag savedTag = tagRepository.save(createTag("#test"));
+
+        // create three blobbs with exactly the same date
+        Date now = new Date();
+        for (int i = 1; i <= 3; i++) {
+            Blobb b = createBlobb(createTestUser(), "content" + i, savedTag);
+            b.setCreationDate(now);
+            blobbRepository.save(b);
+        }
+
+        List<RecentBlobb> allRecent = pageOf(tagRepository.findRecentBlobbsTagged(savedTag.getUuid(), 0L, 10L), RecentBlobb::getUuid);
+        RecentBlobb first = allRecent.get(0);
+
+        // when
+        List<RecentBlobb> recent = pageOf(tagRepository
+                .findRecentBlobbsTagged_AfterCursor(savedTag.getUuid(), first.getDate(), first.getUuid(), 10L), RecentBlobb::getUuid);
+
+        // then
+        List<UUID> expected = allRecent.subList(1, 3).stream().map(RecentBlobb::getUuid).collect(Collectors.toList());
+        assertEquals(expected, recent.stream().map(RecentBlobb::getUuid).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void findTagUsesPerMinute_Since_GroupsUsesByMinute() {
+        Tag savedTag = tagRepository.save(createTag("#test"));
+        long minute = Instant.now().toEpochMilli() / 60000;
+
+        // two blobbs posted within the same minute, one deleted blobb and one blobb posted two days ago
+        for (int i = 0; i < 2; i++) {
+            Blobb b = createBlobb(createTestUser(), "content", savedTag);
+            b.setCreationDate(new Date(minute * 60000 + i));
+            blobbRepository.save(b);
+        }
+        Blobb deleted = createBlobb(createTestUser(), "content", savedTag);
+        deleted.setCreationDate(new Date(minute * 60000));
+        blobbRepository.save(deleted);
+        blobbRepository.markBlobbWithUuidAsDeleted(deleted.getUuid());
+        Blobb old = createBlobb(createTestUser(), "content", savedTag);
+        old.setCreationDate(Date.from(Instant.now().minus(2, DAYS)));
+        blobbRepository.save(old);
+
+        // when
+        List<TagUsage> uses = tagRepository.findTagUsesPerMinute_Since(Date.from(Instant.now().minus(1, DAYS)));
+
+        // then
+        assertEquals(1, uses.size());
+        assertEquals(savedTag, uses.get(0).getTag());
+        assertEquals(minute, uses.get(0).getMinute());
+        assertEquals(2L, uses.get(0).getUses());
+    }
 }
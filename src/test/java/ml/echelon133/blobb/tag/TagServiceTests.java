@@ -1,23 +1,27 @@
 package ml.echelon133.blobb.tag;
 
+import ml.echelon133.blobb.pagination.Cursor;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.time.Clock;
-import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
-import static java.time.temporal.ChronoUnit.DAYS;
-import static java.time.temporal.ChronoUnit.HOURS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 
 @ExtendWith(MockitoExtension.class)
 public class TagServiceTests {
@@ -25,6 +29,12 @@ public class TagServiceTests {
     @Mock
     private TagRepository tagRepository;
 
+    @Mock
+    private TagPopularityTracker popularityTracker;
+
+    @Spy
+    private TagCache tagCache = new TagCache(100, 60000);
+
     @InjectMocks
     private TagService tagService;
 
@@ -90,6 +100,65 @@ public class TagServiceTests {
         assertEquals(tag, foundTag);
     }
 
+    @Test
+    public void findOrCreateByNames_ReturnsObjects() {
+        Set<String> names = Set.of("#a", "#b");
+
+        // given
+        given(tagRepository.findOrCreateByNames(names)).willReturn(List.of(new Tag("#a"), new Tag("#b")));
+
+        // when
+        List<Tag> tags = tagService.findOrCreateByNames(names);
+
+        // then
+        assertEquals(2, tags.size());
+    }
+
+    @Test
+    public void findOrCreateByNames_DoesNotQueryWhenNoNames() {
+        // when
+        List<Tag> tags = tagService.findOrCreateByNames(Set.of());
+
+        // then
+        assertEquals(0, tags.size());
+        then(tagRepository).should(never()).findOrCreateByNames(any());
+    }
+
+    @Test
+    public void findByName_ReadsTagFromDatabaseOnlyOnce() throws Exception {
+        Tag tag = new Tag("#test");
+
+        // given
+        given(tagRepository.findByName("#test")).willReturn(Optional.of(tag));
+
+        // when
+        tagService.findByName("#test");
+        Tag foundTag = tagService.findByName("#test");
+
+        // then
+        assertEquals(tag, foundTag);
+        then(tagRepository).should(times(1)).findByName("#test");
+    }
+
+    @Test
+    public void findOrCreateByNames_QueriesOnlyTagsThatAreNotCached() {
+        Tag cachedTag = new Tag("#cached");
+        Tag newTag = new Tag("#new");
+        tagCache.putAll(List.of(cachedTag));
+
+        // given
+        given(tagRepository.findOrCreateByNames(Set.of("#new"))).willReturn(List.of(newTag));
+
+        // when
+        List<Tag> tags = tagService.findOrCreateByNames(Set.of("#cached", "#new"));
+        List<Tag> tagsAgain = tagService.findOrCreateByNames(Set.of("#cached", "#new"));
+
+        // then
+        assertEquals(Set.of(cachedTag, newTag), Set.copyOf(tags));
+        assertEquals(Set.of(cachedTag, newTag), Set.copyOf(tagsAgain));
+        then(tagRepository).should(times(1)).findOrCreateByNames(any());
+    }
+
     @Test
     public void findMostPopular_ThrowsWhenLimitNegative() {
 
@@ -103,35 +172,43 @@ public class TagServiceTests {
     }
 
     @Test
-    public void findMostPopular_CorrectlyCalculatesPastDates() {
-        Date now = new Date();
-        Clock fixedClock = Clock.fixed(now.toInstant(), ZoneId.systemDefault());
-        Date hourAgo = Date.from(fixedClock.instant().minus(1, HOURS));
-        Date dayAgo = Date.from(fixedClock.instant().minus(1, DAYS));
-        Date weekAgo = Date.from(fixedClock.instant().minus(7, DAYS));
+    public void findMostPopular_ReadsPopularityTracker() {
+        List<Tag> tags = List.of(new Tag("#a"), new Tag("#b"));
+
+        // given
+        given(popularityTracker.findMostPopular(10L, ITagService.PopularSince.DAY)).willReturn(tags);
 
-        tagService.setClock(fixedClock);
+        // when
+        List<Tag> popular = tagService.findMostPopular(10L, ITagService.PopularSince.DAY);
+
+        // then
+        assertEquals(tags, popular);
+    }
 
+    @Test
+    public void getPopularityErrorBound_ReadsPopularityTracker() {
         // given
-        given(tagRepository.findMostPopularTags_Between(hourAgo, now, 10L))
-                .willReturn(List.of(new Tag()));
-        given(tagRepository.findMostPopularTags_Between(dayAgo, now, 10L))
-                .willReturn(List.of(new Tag(), new Tag()));
-        given(tagRepository.findMostPopularTags_Between(weekAgo, now, 10L))
-                .willReturn(List.of(new Tag(), new Tag(), new Tag()));
+        given(popularityTracker.getErrorBound(ITagService.PopularSince.WEEK)).willReturn(12L);
+
+        // when
+        long bound = tagService.getPopularityErrorBound(ITagService.PopularSince.WEEK);
+
+        // then
+        assertEquals(12L, bound);
+    }
+
+    @Test
+    public void recordUses_PassesTagsToPopularityTracker() {
+        List<Tag> tags = List.of(new Tag("#a"));
+        Date date = new Date();
 
         // when
-        List<Tag> popularHourAgo = tagService
-                .findMostPopular(10L, ITagService.PopularSince.ONE_HOUR);
-        List<Tag> popularDayAgo = tagService
-                .findMostPopular(10L, ITagService.PopularSince.DAY);
-        List<Tag> popularWeekAgo = tagService
-                .findMostPopular(10L, ITagService.PopularSince.WEEK);
+        tagService.recordUses(tags, date);
+        tagService.removeUses(tags, date);
 
         // then
-        assertEquals(1L, popularHourAgo.size());
-        assertEquals(2L, popularDayAgo.size());
-        assertEquals(3L, popularWeekAgo.size());
+        then(popularityTracker).should().record(tags, date);
+        then(popularityTracker).should().remove(tags, date);
     }
 
     @Test
@@ -139,7 +216,7 @@ public class TagServiceTests {
         UUID uuid = UUID.randomUUID();
 
         // given
-        given(tagRepository.existsById(uuid)).willReturn(false);
+        given(tagRepository.findRecentBlobbsTagged(uuid, 0L, 10L)).willReturn(List.of());
 
         // then
         String message = assertThrows(TagDoesntExistException.class, () -> {
@@ -153,9 +230,6 @@ public class TagServiceTests {
     public void findRecentBlobbsTagged_ThrowsIfSkipIsNegative() {
         UUID uuid = UUID.randomUUID();
 
-        // given
-        given(tagRepository.existsById(uuid)).willReturn(true);
-
         // then
         String message = assertThrows(IllegalArgumentException.class, () -> {
             tagService.findRecentBlobbsTagged(uuid, -1L, 10L);
@@ -168,9 +242,6 @@ public class TagServiceTests {
     public void findRecentBlobbsTagged_ThrowsIfLimitIsNegative() {
         UUID uuid = UUID.randomUUID();
 
-        // given
-        given(tagRepository.existsById(uuid)).willReturn(true);
-
         // then
         String message = assertThrows(IllegalArgumentException.class, () -> {
             tagService.findRecentBlobbsTagged(uuid, 0L, -10L);
@@ -184,9 +255,8 @@ public class TagServiceTests {
         UUID uuid = UUID.randomUUID();
 
         // given
-        given(tagRepository.existsById(uuid)).willReturn(true);
         given(tagRepository.findRecentBlobbsTagged(uuid, 0L, 10L))
-                .willReturn(List.of(new RecentBlobb(), new RecentBlobb()));
+                .willReturn(createTestPage(2));
 
         // when
         List<RecentBlobb> recent = tagService.findRecentBlobbsTagged(uuid, 0L, 10L);
@@ -194,4 +264,32 @@ public class TagServiceTests {
         // then
         assertEquals(2, recent.size());
     }
+
+    @Test
+    public void findRecentBlobbsTagged_WithCursor_ReturnsObjects() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        Cursor cursor = new Cursor(new Date(), UUID.randomUUID());
+
+        // given
+        given(tagRepository.findRecentBlobbsTagged_AfterCursor(uuid, cursor.getDate(), cursor.getUuid(), 10L))
+                .willReturn(createTestPage(2));
+
+        // when
+        List<RecentBlobb> recent = tagService.findRecentBlobbsTagged(uuid, cursor, 10L);
+
+        // then
+        assertEquals(2, recent.size());
+    }
+
+    // recent blobbs are followed by the existence marker of the tag
+    private List<RecentBlobb> createTestPage(int size) {
+        List<RecentBlobb> rows = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            RecentBlobb blobb = new RecentBlobb();
+            blobb.setUuid(UUID.randomUUID());
+            rows.add(blobb);
+        }
+        rows.add(new RecentBlobb());
+        return rows;
+    }
 }
@@ -0,0 +1,150 @@
+package ml.echelon133.blobb.tag;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.time.temporal.ChronoUnit.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+public class TrendingTagsTests {
+
+    @Mock
+    private TagRepository tagRepository;
+
+    private TrendingTags trendingTags;
+
+    private Instant now = Instant.parse("2020-05-10T12:30:00Z");
+
+    private void setTime(Instant instant) {
+        trendingTags.setClock(Clock.fixed(instant, ZoneId.systemDefault()));
+    }
+
+    private void recordUses(Tag tag, int times, Instant when) {
+        for (int i = 0; i < times; i++) {
+            trendingTags.record(List.of(tag), Date.from(when));
+        }
+    }
+
+    private List<String> popularNames(long limit, ITagService.PopularSince since) {
+        return trendingTags.findMostPopular(limit, since)
+                .stream().map(Tag::getName).collect(Collectors.toList());
+    }
+
+    @BeforeEach
+    public void beforeEach() {
+        trendingTags = new TrendingTags(tagRepository);
+        setTime(now);
+    }
+
+    @Test
+    public void findMostPopular_SortsTagsByNumberOfUses() {
+        recordUses(new Tag("#a"), 1, now);
+        recordUses(new Tag("#b"), 3, now);
+        recordUses(new Tag("#c"), 2, now);
+
+        // when
+        List<String> popular = popularNames(10L, ITagService.PopularSince.ONE_HOUR);
+
+        // then
+        assertEquals(List.of("#b", "#c", "#a"), popular);
+    }
+
+    @Test
+    public void findMostPopular_LimitsNumberOfResults() {
+        recordUses(new Tag("#a"), 1, now);
+        recordUses(new Tag("#b"), 1, now);
+        recordUses(new Tag("#c"), 1, now);
+
+        // when
+        List<String> popular = popularNames(2L, ITagService.PopularSince.ONE_HOUR);
+
+        // then
+        // tags used equally often are sorted by name
+        assertEquals(List.of("#a", "#b"), popular);
+    }
+
+    @Test
+    public void findMostPopular_CountsOnlyUsesWithinPeriod() {
+        recordUses(new Tag("#hour"), 1, now.minus(10, MINUTES));
+        recordUses(new Tag("#day"), 2, now.minus(5, HOURS));
+        recordUses(new Tag("#week"), 3, now.minus(3, DAYS));
+        recordUses(new Tag("#old"), 4, now.minus(8, DAYS));
+
+        // when
+        List<String> hour = popularNames(10L, ITagService.PopularSince.ONE_HOUR);
+        List<String> day = popularNames(10L, ITagService.PopularSince.DAY);
+        List<String> week = popularNames(10L, ITagService.PopularSince.WEEK);
+
+        // then
+        assertEquals(List.of("#hour"), hour);
+        assertEquals(List.of("#day", "#hour"), day);
+        assertEquals(List.of("#week", "#day", "#hour"), week);
+    }
+
+    @Test
+    public void findMostPopular_ForgetsUsesThatFallOutOfPeriod() {
+        recordUses(new Tag("#a"), 2, now);
+        setTime(now.plus(30, MINUTES));
+        recordUses(new Tag("#b"), 1, now.plus(30, MINUTES));
+
+        // when
+        setTime(now.plus(61, MINUTES));
+        List<String> hour = popularNames(10L, ITagService.PopularSince.ONE_HOUR);
+        setTime(now.plus(25, HOURS));
+        List<String> day = popularNames(10L, ITagService.PopularSince.DAY);
+        List<String> week = popularNames(10L, ITagService.PopularSince.WEEK);
+        setTime(now.plus(8, DAYS));
+        List<String> laterWeek = popularNames(10L, ITagService.PopularSince.WEEK);
+
+        // then
+        assertEquals(List.of("#b"), hour);
+        assertEquals(List.of(), day);
+        assertEquals(List.of("#a", "#b"), week);
+        assertEquals(List.of(), laterWeek);
+    }
+
+    @Test
+    public void remove_DecrementsUses() {
+        Tag a = new Tag("#a");
+        recordUses(a, 3, now);
+        recordUses(new Tag("#b"), 2, now);
+
+        // when
+        trendingTags.remove(List.of(a), Date.from(now));
+        trendingTags.remove(List.of(a), Date.from(now));
+
+        // then
+        assertEquals(List.of("#b", "#a"), popularNames(10L, ITagService.PopularSince.ONE_HOUR));
+    }
+
+    @Test
+    public void load_ReadsUsesFromDatabase() {
+        TagUsage usage = new TagUsage();
+        usage.setTag(new Tag("#a"));
+        usage.setMinute(now.minus(2, HOURS).toEpochMilli() / 60000);
+        usage.setUses(5L);
+
+        // given
+        given(tagRepository.findTagUsesPerMinute_Since(any())).willReturn(List.of(usage));
+
+        // when
+        trendingTags.load();
+
+        // then
+        assertEquals(List.of(), popularNames(10L, ITagService.PopularSince.ONE_HOUR));
+        assertEquals(List.of("#a"), popularNames(10L, ITagService.PopularSince.DAY));
+    }
+}
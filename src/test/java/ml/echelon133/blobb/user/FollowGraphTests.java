@@ -0,0 +1,233 @@
+package ml.echelon133.blobb.user;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+public class FollowGraphTests {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private FollowGraph followGraph;
+
+    private UUID u1;
+    private UUID u2;
+    private UUID u3;
+
+    @BeforeEach
+    public void beforeEach() {
+        followGraph = new FollowGraph(userRepository);
+        u1 = UUID.randomUUID();
+        u2 = UUID.randomUUID();
+        u3 = UUID.randomUUID();
+    }
+
+    private static List<UUID> sortedAsStrings(UUID... uuids) {
+        return List.of(uuids)
+                .stream()
+                .map(UUID::toString)
+                .sorted()
+                .map(UUID::fromString)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void load_ReadsAllRelationshipsFromDatabase() {
+        // given
+        given(userRepository.findAllFollowEdges()).willReturn(List.of(
+                new FollowEdge(u1, u1),
+                new FollowEdge(u1, u2),
+                new FollowEdge(u1, u3),
+                new FollowEdge(u2, u3),
+                // duplicate relationships are only counted once
+                new FollowEdge(u2, u3)
+        ));
+
+        // when
+        followGraph.load();
+
+        // then
+        assertTrue(followGraph.follows(u1, u2));
+        assertTrue(followGraph.follows(u1, u3));
+        assertTrue(followGraph.follows(u2, u3));
+        assertFalse(followGraph.follows(u2, u1));
+        assertFalse(followGraph.follows(u3, u1));
+        assertEquals(2, followGraph.findFollows(u1, 0, 5000).size());
+        assertEquals(1, followGraph.findFollows(u2, 0, 5000).size());
+        assertEquals(2, followGraph.findFollowers(u3, 0, 5000).size());
+    }
+
+    @Test
+    public void load_HandlesMoreUsersThanInitialCapacity() {
+        List<FollowEdge> edges = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            edges.add(new FollowEdge(UUID.randomUUID(), u1));
+        }
+
+        // given
+        given(userRepository.findAllFollowEdges()).willReturn(edges);
+
+        // when
+        followGraph.load();
+
+        // then
+        assertEquals(3000, followGraph.findFollowers(u1, 0, 5000).size());
+        assertTrue(followGraph.follows(edges.get(2999).getFollower(), u1));
+    }
+
+    @Test
+    public void addFollow_AndRemoveFollow_UpdateRelationships() {
+        // when
+        followGraph.addFollow(u1, u2);
+        followGraph.addFollow(u1, u2);
+        followGraph.addFollow(u3, u2);
+
+        // then
+        assertTrue(followGraph.follows(u1, u2));
+        assertEquals(1, followGraph.findFollows(u1, 0, 5000).size());
+        assertEquals(2, followGraph.findFollowers(u2, 0, 5000).size());
+
+        // when
+        followGraph.removeFollow(u1, u2);
+
+        // then
+        assertFalse(followGraph.follows(u1, u2));
+        assertEquals(0, followGraph.findFollows(u1, 0, 5000).size());
+        assertEquals(1, followGraph.findFollowers(u2, 0, 5000).size());
+    }
+
+    @Test
+    public void follows_ReturnsFalseForUnknownUsers() {
+        assertFalse(followGraph.follows(u1, u2));
+        assertEquals(0, followGraph.findFollows(u1, 0, 5000).size());
+        assertEquals(0, followGraph.findFollowers(u1, 0, 5000).size());
+        assertEquals(0, followGraph.findFollows(u1, 0, 5).size());
+        assertEquals(0, followGraph.countFollowers(u1));
+    }
+
+    @Test
+    public void countersAndListings_IgnoreUsersFollowingThemselves() {
+        // given
+        followGraph.addFollow(u1, u1);
+        followGraph.addFollow(u1, u2);
+        followGraph.addFollow(u2, u1);
+
+        // then
+        assertEquals(1, followGraph.findFollows(u1, 0, 5000).size());
+        assertEquals(1, followGraph.findFollowers(u1, 0, 5000).size());
+        assertEquals(1, followGraph.countFollowers(u1));
+        assertEquals(1, followGraph.countFollowers(u2));
+        assertEquals(List.of(u2), followGraph.findFollows(u1, 0, 5));
+        assertEquals(List.of(u2), followGraph.findFollowers(u1, 0, 5));
+    }
+
+    @Test
+    public void findFollows_OrdersUuidsLikeDatabase() {
+        // given
+        followGraph.addFollow(u1, u2);
+        followGraph.addFollow(u1, u3);
+        UUID u4 = UUID.randomUUID();
+        followGraph.addFollow(u1, u4);
+
+        List<UUID> expected = sortedAsStrings(u2, u3, u4);
+
+        // then
+        assertEquals(expected, followGraph.findFollows(u1, 0, 5));
+        assertEquals(expected.subList(1, 2), followGraph.findFollows(u1, 1, 1));
+        assertEquals(expected.subList(1, 3), followGraph.findFollows_AfterCursor(u1, expected.get(0), 5));
+    }
+
+    @Test
+    public void findFollowers_OrdersUuidsLikeDatabase() {
+        // given
+        followGraph.addFollow(u2, u1);
+        followGraph.addFollow(u3, u1);
+
+        List<UUID> expected = sortedAsStrings(u2, u3);
+
+        // then
+        assertEquals(expected, followGraph.findFollowers(u1, 0, 5));
+        assertEquals(expected.subList(1, 2), followGraph.findFollowers_AfterCursor(u1, expected.get(0), 5));
+    }
+
+    @Test
+    public void findFollows_PagesOverUserFollowingThemselves() {
+        UUID u4 = UUID.randomUUID();
+
+        // given
+        followGraph.addFollow(u1, u1);
+        followGraph.addFollow(u1, u2);
+        followGraph.addFollow(u1, u3);
+        followGraph.addFollow(u1, u4);
+
+        List<UUID> expected = sortedAsStrings(u2, u3, u4);
+
+        // then
+        // every page holds a single user, no matter where the user following themselves is
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(List.of(expected.get(i)), followGraph.findFollows(u1, i, 1));
+        }
+        assertEquals(List.of(), followGraph.findFollows(u1, 3, 1));
+        // the cursor can point at a user who is not related anymore
+        assertEquals(sortedAsStrings(u2, u3, u4).stream()
+                        .filter(u -> u.toString().compareTo(u1.toString()) > 0)
+                        .collect(Collectors.toList()),
+                followGraph.findFollows_AfterCursor(u1, u1, 5));
+    }
+
+    @Test
+    public void addFollow_KeepsOrderOfLoadedRelationships() {
+        List<FollowEdge> edges = new ArrayList<>();
+        List<UUID> followed = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            UUID uuid = UUID.randomUUID();
+            followed.add(uuid);
+            edges.add(new FollowEdge(u1, uuid));
+        }
+
+        // given
+        given(userRepository.findAllFollowEdges()).willReturn(edges);
+
+        // when
+        followGraph.load();
+        followGraph.addFollow(u1, u2);
+        followed.add(u2);
+
+        // then
+        assertEquals(sortedAsStrings(followed.toArray(new UUID[0])), followGraph.findFollows(u1, 0, 20));
+    }
+
+    @Test
+    public void load_DoesNotOverwriteRelationshipsChangedDuringRead() throws Exception {
+        Thread follow = new Thread(() -> followGraph.addFollow(u1, u2));
+
+        // given
+        given(userRepository.findAllFollowEdges()).willAnswer(invocation -> {
+            // a follow that happens while relationships are being read has to wait for the load
+            follow.start();
+            follow.join(200);
+            assertTrue(follow.isAlive());
+            return List.of(new FollowEdge(u2, u3));
+        });
+
+        // when
+        followGraph.load();
+        follow.join(5000);
+
+        // then
+        assertTrue(followGraph.follows(u1, u2));
+        assertTrue(followGraph.follows(u2, u3));
+    }
+}
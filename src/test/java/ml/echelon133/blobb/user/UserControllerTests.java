@@ -1,6 +1,8 @@
 package ml.echelon133.blobb.user;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import ml.echelon133.blobb.blobb.NormalizedBlobbs;
+import ml.echelon133.blobb.pagination.Cursor;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -51,6 +53,8 @@ public class UserControllerTests {
 
     private JacksonTester<List<UserBlobb>> jsonUserBlobbs;
 
+    private JacksonTester<NormalizedBlobbs> jsonNormalizedBlobbs;
+
     private JacksonTester<UserDetailsDto> jsonUserDetailsDto;
 
     @BeforeAll
@@ -81,6 +85,9 @@ public class UserControllerTests {
         // json
         JsonContent<User> json = jsonUser.write(testUser);
 
+        // given
+        given(userService.findByUuid(testUser.getUuid())).willReturn(testUser);
+
         // when
         MockHttpServletResponse response = mockMvc.perform(
                 get("/api/users/me")
@@ -673,6 +680,38 @@ public class UserControllerTests {
                 .contains(json.getJson());
     }
 
+    @Test
+    public void getFollowers_ProvidedCursorIsUsed() throws Exception {
+        User follower = new User("test1", "","","");
+        follower.setUuid(UUID.randomUUID());
+        List<User> followers = List.of(follower);
+
+        UUID uuid = UUID.randomUUID();
+        Cursor cursor = new Cursor(UUID.randomUUID());
+
+        // expected json
+        JsonContent<List<User>> json = jsonUsers.write(followers);
+
+        // given
+        given(userService.findAllFollowersOfUser(uuid, cursor, 1L))
+                .willReturn(followers);
+
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                get("/api/users/" + uuid + "/followers")
+                        .param("cursor", cursor.encode())
+                        .param("limit", "1")
+                        .accept(APPLICATION_JSON)
+        ).andReturn().getResponse();
+
+        // then
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString())
+                .contains(json.getJson());
+        assertThat(response.getHeader(Cursor.NEXT_CURSOR_HEADER))
+                .isEqualTo(new Cursor(follower.getUuid()).encode());
+    }
+
     @Test
     public void getFollows_HandlesInvalidUuid() throws Exception {
         String invalidUuid = "asdf";
@@ -1008,4 +1047,33 @@ public class UserControllerTests {
         assertThat(response.getContentAsString())
                 .contains("Invalid skip and/or limit values.");
     }
+
+    @Test
+    public void getRecentBlobbs_ReturnsNormalizedBlobbsWhenRequested() throws Exception {
+        UUID uuid = UUID.randomUUID();
+
+        List<UserBlobb> recent = List.of(new UserBlobb(), new UserBlobb());
+        for (UserBlobb blobb : recent) {
+            blobb.setAuthor(new Author(testUser));
+        }
+
+        // json
+        JsonContent<NormalizedBlobbs> json = jsonNormalizedBlobbs.write(NormalizedBlobbs.of(recent));
+
+        // given
+        given(userService.findRecentBlobbsOfUser(uuid, 0L, 10L))
+                .willReturn(recent);
+
+        // when
+        MockHttpServletResponse response = mockMvc.perform(
+                get("/api/users/" + uuid + "/recentBlobbs")
+                        .accept(APPLICATION_JSON)
+                        .param("normalized", "true")
+        ).andReturn().getResponse();
+
+        // then
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString()).isEqualTo(json.getJson());
+        assertThat(response.getContentAsString()).contains("\"authors\":{\"" + testUser.getUuid() + "\"");
+    }
 }
@@ -2,13 +2,20 @@ package ml.echelon133.blobb.user;
 
 import ml.echelon133.blobb.blobb.Blobb;
 import ml.echelon133.blobb.blobb.BlobbRepository;
+import ml.echelon133.blobb.pagination.ExistenceMarker;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.neo4j.ogm.session.Session;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.neo4j.DataNeo4jTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static java.time.temporal.ChronoUnit.HOURS;
@@ -19,11 +26,27 @@ public class UserRepositoryTests {
 
     private UserRepository userRepository;
     private BlobbRepository blobbRepository;
+    private Session session;
 
     @Autowired
-    public UserRepositoryTests(UserRepository userRepository, BlobbRepository blobbRepository) {
+    public UserRepositoryTests(UserRepository userRepository, BlobbRepository blobbRepository, Session session) {
         this.userRepository = userRepository;
         this.blobbRepository = blobbRepository;
+        this.session = session;
+    }
+
+    // listed blobbs are followed by the existence marker of the user
+    private static <T> List<T> pageOf(List<T> rows, Function<T, UUID> uuidOf) {
+        return ExistenceMarker.strip(rows, uuidOf).orElseThrow();
+    }
+
+    // uuids of users followed by the user, other than the user themselves
+    private List<UUID> followsOf(User user) {
+        return userRepository.findAllFollowEdges()
+                .stream()
+                .filter(e -> e.getFollower().equals(user.getUuid()) && !e.getFollowed().equals(user.getUuid()))
+                .map(FollowEdge::getFollowed)
+                .collect(Collectors.toList());
     }
 
     @BeforeEach
@@ -55,9 +78,9 @@ public class UserRepositoryTests {
         User u3 = userRepository.findByUsername("user3").orElse(null);
 
         // All these lists should be empty, because we don't have any relationships between users
-        List<User> usersFollowedByU1 = userRepository.findAllFollowsOfUserWithUuid(u1.getUuid(), 0L, 5L);
-        List<User> usersFollowedByU2 = userRepository.findAllFollowsOfUserWithUuid(u2.getUuid(), 0L, 5L);
-        List<User> usersFollowedByU3 = userRepository.findAllFollowsOfUserWithUuid(u3.getUuid(), 0L, 5L);
+        List<UUID> usersFollowedByU1 = followsOf(u1);
+        List<UUID> usersFollowedByU2 = followsOf(u2);
+        List<UUID> usersFollowedByU3 = followsOf(u3);
 
         assertEquals(0, usersFollowedByU1.size());
         assertEquals(0, usersFollowedByU2.size());
@@ -74,22 +97,25 @@ public class UserRepositoryTests {
         userRepository.followUserWithUuid(u3.getUuid(), u1.getUuid());
 
         // query the database again
-        usersFollowedByU1 = userRepository.findAllFollowsOfUserWithUuid(u1.getUuid(), 0L, 5L);
-        usersFollowedByU2 = userRepository.findAllFollowsOfUserWithUuid(u2.getUuid(), 0L, 5L);
-        usersFollowedByU3 = userRepository.findAllFollowsOfUserWithUuid(u3.getUuid(), 0L, 5L);
+        usersFollowedByU1 = followsOf(u1);
+        usersFollowedByU2 = followsOf(u2);
+        usersFollowedByU3 = followsOf(u3);
 
         // check if u1 follows u2, u3
         assertEquals(2, usersFollowedByU1.size());
-        assertEquals(1, usersFollowedByU1.stream().filter(u -> u.getUuid() == u2.getUuid()).count());
-        assertEquals(1, usersFollowedByU1.stream().filter(u -> u.getUuid() == u3.getUuid()).count());
+        assertEquals(1, usersFollowedByU1.stream().filter(u -> u.equals(u2.getUuid())).count());
+        assertEquals(1, usersFollowedByU1.stream().filter(u -> u.equals(u3.getUuid())).count());
 
         // check if u2 follows u3
         assertEquals(1, usersFollowedByU2.size());
-        assertEquals(1, usersFollowedByU2.stream().filter(u -> u.getUuid() == u3.getUuid()).count());
+        assertEquals(1, usersFollowedByU2.stream().filter(u -> u.equals(u3.getUuid())).count());
 
         // check if u3 follows u1
         assertEquals(1, usersFollowedByU3.size());
-        assertEquals(1, usersFollowedByU3.stream().filter(u -> u.getUuid() == u1.getUuid()).count());
+        assertEquals(1, usersFollowedByU3.stream().filter(u -> u.equals(u1.getUuid())).count());
+
+        // counters are updated together with the relationships
+        assertEquals(0, userRepository.findUuidsOfUsersWithInconsistentCounters().size());
     }
 
     @Test
@@ -101,135 +127,250 @@ public class UserRepositoryTests {
         userRepository.followUserWithUuid(u1.getUuid(), u2.getUuid());
         userRepository.followUserWithUuid(u2.getUuid(), u1.getUuid());
 
-        List<User> usersFollowedByU1 = userRepository.findAllFollowsOfUserWithUuid(u1.getUuid(), 0L, 5L);
-        List<User> usersFollowedByU2 = userRepository.findAllFollowsOfUserWithUuid(u2.getUuid(), 0L, 5L);
+        List<UUID> usersFollowedByU1 = followsOf(u1);
+        List<UUID> usersFollowedByU2 = followsOf(u2);
 
         // check if u1 follows u2, and u2 follows u1
         assertEquals(1, usersFollowedByU1.size());
-        assertEquals(1, usersFollowedByU1.stream().filter(u -> u.getUuid() == u2.getUuid()).count());
+        assertEquals(1, usersFollowedByU1.stream().filter(u -> u.equals(u2.getUuid())).count());
         assertEquals(1, usersFollowedByU2.size());
-        assertEquals(1, usersFollowedByU2.stream().filter(u -> u.getUuid() == u1.getUuid()).count());
+        assertEquals(1, usersFollowedByU2.stream().filter(u -> u.equals(u1.getUuid())).count());
 
         // make u1 and u2 unfollow each other
         userRepository.unfollowUserWithUuid(u1.getUuid(), u2.getUuid());
         userRepository.unfollowUserWithUuid(u2.getUuid(), u1.getUuid());
 
         // check the database again
-        usersFollowedByU1 = userRepository.findAllFollowsOfUserWithUuid(u1.getUuid(), 0L, 5L);
-        usersFollowedByU2 = userRepository.findAllFollowsOfUserWithUuid(u2.getUuid(), 0L, 5L);
+        usersFollowedByU1 = followsOf(u1);
+        usersFollowedByU2 = followsOf(u2);
 
         // check if both lists are empty
         assertEquals(0, usersFollowedByU1.size());
         assertEquals(0, usersFollowedByU2.size());
+
+        // counters are updated together with the relationships
+        assertEquals(0, userRepository.findUuidsOfUsersWithInconsistentCounters().size());
     }
 
     @Test
-    public void findAllFollowersOfUserWithUuid_ReturnsCorrectListOfFollowers() {
+    public void followUserWithUuid_DoesNotCreateDuplicateFollows() {
         User u1 = userRepository.findByUsername("user1").orElse(null);
         User u2 = userRepository.findByUsername("user2").orElse(null);
 
-        // list of all who follow u1
-        List<User> usersFollowingU1 = userRepository.findAllFollowersOfUserWithUuid(u1.getUuid(), 0L, 5L);
-        assertEquals(0, usersFollowingU1.size());
+        // when
+        FollowResult first = userRepository.followUserWithUuid(u1.getUuid(), u2.getUuid());
+        FollowResult second = userRepository.followUserWithUuid(u1.getUuid(), u2.getUuid());
 
-        // follow u1 as u2
-        userRepository.followUserWithUuid(u2.getUuid(), u1.getUuid());
+        // then
+        assertTrue(first.getUserExists());
+        assertEquals(1L, first.getChanged());
+        assertTrue(first.getFollows());
+        assertTrue(second.getUserExists());
+        assertEquals(0L, second.getChanged());
+        assertTrue(second.getFollows());
+
+        UserProfileInfo u2ProfileInfo = userRepository.getUserProfileInfo(u2.getUuid()).orElse(null);
+        assertEquals(1, u2ProfileInfo.getFollowers());
+        assertEquals(0, userRepository.findUuidsOfUsersWithInconsistentCounters().size());
+    }
 
-        // refresh the list
-        usersFollowingU1 = userRepository.findAllFollowersOfUserWithUuid(u1.getUuid(), 0L, 5L);
+    @Test
+    public void followUserWithUuid_ReportsMissingUser() {
+        User u1 = userRepository.findByUsername("user1").orElse(null);
+
+        // when
+        FollowResult follow = userRepository.followUserWithUuid(u1.getUuid(), UUID.randomUUID());
+        FollowResult unfollow = userRepository.unfollowUserWithUuid(u1.getUuid(), UUID.randomUUID());
+
+        // then
+        assertFalse(follow.getUserExists());
+        assertEquals(0L, follow.getChanged());
+        assertFalse(follow.getFollows());
+        assertFalse(unfollow.getUserExists());
+        assertEquals(0L, unfollow.getChanged());
+    }
 
-        // check if the list of u1 followers contains u2
-        assertEquals(1, usersFollowingU1.size());
-        assertEquals(1, usersFollowingU1.stream().filter(u -> u.getUuid() == u2.getUuid()).count());
+    // runs identical requests at the same time, outside of the transaction of the test,
+    // so the data of the test has to be removed by the test itself
+    private static <T> List<T> runConcurrently(int requests, Callable<T> request) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return request.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     @Test
-    public void getUserProfileInfo_ReturnsCorrectCounterValues() {
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void followUserWithUuid_ConcurrentIdenticalRequestsFollowOnce() throws Exception {
         User u1 = userRepository.findByUsername("user1").orElse(null);
         User u2 = userRepository.findByUsername("user2").orElse(null);
-        User u3 = userRepository.findByUsername("user3").orElse(null);
 
-        UserProfileInfo u1ProfileInfo = userRepository.getUserProfileInfo(u1.getUuid()).orElse(null);
+        try {
+            // when
+            List<FollowResult> follows = runConcurrently(8, () ->
+                    userRepository.followUserWithUuid(u1.getUuid(), u2.getUuid()));
+            List<FollowResult> unfollows = runConcurrently(8, () ->
+                    userRepository.unfollowUserWithUuid(u1.getUuid(), u2.getUuid()));
+
+            // then
+            assertEquals(1L, follows.stream().mapToLong(FollowResult::getChanged).sum());
+            assertTrue(follows.stream().allMatch(FollowResult::getFollows));
+            assertEquals(1L, unfollows.stream().mapToLong(FollowResult::getChanged).sum());
+            assertEquals(0, userRepository.findUuidsOfUsersWithInconsistentCounters().size());
+        } finally {
+            session.query("MATCH (n) DETACH DELETE n", Map.of());
+        }
+    }
 
-        // both followedBy and follows counters should be 0
-        assertEquals(0, u1ProfileInfo.getFollowers());
-        assertEquals(0, u1ProfileInfo.getFollows());
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void followUserWithUuid_UsersCanFollowEachOtherAtSameTime() throws Exception {
+        User u1 = userRepository.findByUsername("user1").orElse(null);
+        User u2 = userRepository.findByUsername("user2").orElse(null);
 
-        // u2 and u3 follow u1
-        userRepository.followUserWithUuid(u2.getUuid(), u1.getUuid());
-        userRepository.followUserWithUuid(u3.getUuid(), u1.getUuid());
+        AtomicInteger requests = new AtomicInteger();
+
+        try {
+            // when
+            List<FollowResult> follows = runConcurrently(8, () -> {
+                // half of the requests follow in the opposite direction
+                if (requests.getAndIncrement() % 2 == 0) {
+                    return userRepository.followUserWithUuid(u1.getUuid(), u2.getUuid());
+                }
+                return userRepository.followUserWithUuid(u2.getUuid(), u1.getUuid());
+            });
+
+            // then
+            assertEquals(2L, follows.stream().mapToLong(FollowResult::getChanged).sum());
+            assertEquals(0, userRepository.findUuidsOfUsersWithInconsistentCounters().size());
+        } finally {
+            session.query("MATCH (n) DETACH DELETE n", Map.of());
+        }
+    }
 
-        // u1 follows u3
-        userRepository.followUserWithUuid(u1.getUuid(), u3.getUuid());
+    @Test
+    public void unfollowUserWithUuid_ReportsRemovedFollow() {
+        User u1 = userRepository.findByUsername("user1").orElse(null);
+        User u2 = userRepository.findByUsername("user2").orElse(null);
+        userRepository.followUserWithUuid(u1.getUuid(), u2.getUuid());
 
-        // update profile info
-        u1ProfileInfo = userRepository.getUserProfileInfo(u1.getUuid()).orElse(null);
+        // when
+        FollowResult removed = userRepository.unfollowUserWithUuid(u1.getUuid(), u2.getUuid());
+        FollowResult removedAgain = userRepository.unfollowUserWithUuid(u1.getUuid(), u2.getUuid());
 
-        // u1 is followed by two people (u2, u3) and follows one user (u3)
-        assertEquals(2, u1ProfileInfo.getFollowers());
-        assertEquals(1, u1ProfileInfo.getFollows());
+        // then
+        assertTrue(removed.getUserExists());
+        assertEquals(1L, removed.getChanged());
+        assertFalse(removed.getFollows());
+        assertTrue(removedAgain.getUserExists());
+        assertEquals(0L, removedAgain.getChanged());
     }
 
     @Test
-    public void findAllFollowsOfUserWithUuid_LimitAndSkipArgumentsWork() {
+    public void unfollowUserWithUuid_DoesNotChangeCountersWhenThereIsNoFollow() {
+        User u1 = userRepository.findByUsername("user1").orElse(null);
+        User u2 = userRepository.findByUsername("user2").orElse(null);
+
+        // when
+        userRepository.unfollowUserWithUuid(u1.getUuid(), u2.getUuid());
+
+        // then
+        UserProfileInfo u1ProfileInfo = userRepository.getUserProfileInfo(u1.getUuid()).orElse(null);
+        UserProfileInfo u2ProfileInfo = userRepository.getUserProfileInfo(u2.getUuid()).orElse(null);
+        assertEquals(0, u1ProfileInfo.getFollows());
+        assertEquals(0, u2ProfileInfo.getFollowers());
+        assertEquals(0, userRepository.findUuidsOfUsersWithInconsistentCounters().size());
+    }
+
+    @Test
+    public void reconcileCountersOfUsers_RecomputesCountersFromRelationships() {
         User u1 = userRepository.findByUsername("user1").orElse(null);
         User u2 = userRepository.findByUsername("user2").orElse(null);
         User u3 = userRepository.findByUsername("user3").orElse(null);
 
-        // u1 follows u2, u3
-        userRepository.followUserWithUuid(u1.getUuid(), u2.getUuid());
-        userRepository.followUserWithUuid(u1.getUuid(), u3.getUuid());
+        // relationships created without followUserWithUuid are not counted
+        session.query("MATCH (u1:User), (u2:User) WHERE u1.uuid = $u1 AND u2.uuid = $u2 " +
+                        "CREATE (u2)-[:FOLLOWS]->(u1)",
+                Map.of("u1", u1.getUuid().toString(), "u2", u2.getUuid().toString()));
+        userRepository.followUserWithUuid(u3.getUuid(), u1.getUuid());
+        assertEquals(2, userRepository.findUuidsOfUsersWithInconsistentCounters().size());
 
-        List<User> skip0limit1 = userRepository.findAllFollowsOfUserWithUuid(u1.getUuid(), 0L, 1L);
-        List<User> skip0limit5 = userRepository.findAllFollowsOfUserWithUuid(u1.getUuid(), 0L, 5L);
-        List<User> skip1limit5 = userRepository.findAllFollowsOfUserWithUuid(u1.getUuid(), 1L, 5L);
+        // when
+        // process every user in batches of 2
+        List<UUID> processed = new ArrayList<>();
+        List<UUID> batch = userRepository.reconcileCountersOfUsers(null, 2L);
+        while (!batch.isEmpty()) {
+            processed.addAll(batch);
+            batch = userRepository.reconcileCountersOfUsers(batch.get(batch.size() - 1), 2L);
+        }
+
+        // then
+        assertEquals(3, processed.size());
+        assertEquals(0, userRepository.findUuidsOfUsersWithInconsistentCounters().size());
 
-        assertEquals(1, skip0limit1.size());
-        assertEquals(2, skip0limit5.size());
-        assertEquals(1, skip1limit5.size());
+        UserProfileInfo u1ProfileInfo = userRepository.getUserProfileInfo(u1.getUuid()).orElse(null);
+        assertEquals(2, u1ProfileInfo.getFollowers());
+        assertEquals(0, u1ProfileInfo.getFollows());
     }
 
     @Test
-    public void findAllFollowersOfUserWithUuid_LimitAndSkipArgumentsWork() {
+    public void findUuidsOfAllFollowersOfUserWithUuid_IncludesTheUserThemselves() {
         User u1 = userRepository.findByUsername("user1").orElse(null);
         User u2 = userRepository.findByUsername("user2").orElse(null);
         User u3 = userRepository.findByUsername("user3").orElse(null);
 
-        // u3 follows u1
-        userRepository.followUserWithUuid(u3.getUuid(), u1.getUuid());
-        // u2 follows u1
+        // follow u1 as u2
         userRepository.followUserWithUuid(u2.getUuid(), u1.getUuid());
 
-        List<User> skip0limit1 = userRepository.findAllFollowersOfUserWithUuid(u1.getUuid(), 0L, 1L);
-        List<User> skip0limit5 = userRepository.findAllFollowersOfUserWithUuid(u1.getUuid(), 0L, 5L);
-        List<User> skip1limit5 = userRepository.findAllFollowersOfUserWithUuid(u1.getUuid(), 1L, 5L);
+        // when
+        List<UUID> followers = userRepository.findUuidsOfAllFollowersOfUserWithUuid(u1.getUuid());
 
-        assertEquals(1, skip0limit1.size());
-        assertEquals(2, skip0limit5.size());
-        assertEquals(1, skip1limit5.size());
+        // then
+        assertEquals(2, followers.size());
+        assertTrue(followers.containsAll(List.of(u1.getUuid(), u2.getUuid())));
+        assertFalse(followers.contains(u3.getUuid()));
     }
 
     @Test
-    public void checkIfUserWithUuidFollows_Works() {
+    public void getUserProfileInfo_ReturnsCorrectCounterValues() {
         User u1 = userRepository.findByUsername("user1").orElse(null);
         User u2 = userRepository.findByUsername("user2").orElse(null);
+        User u3 = userRepository.findByUsername("user3").orElse(null);
 
-        Optional<Long> u1FollowsU2 = userRepository.checkIfUserWithUuidFollows(u1.getUuid(), u2.getUuid());
-        Optional<Long> u2FollowsU1 = userRepository.checkIfUserWithUuidFollows(u2.getUuid(), u1.getUuid());
+        UserProfileInfo u1ProfileInfo = userRepository.getUserProfileInfo(u1.getUuid()).orElse(null);
 
-        assertTrue(u1FollowsU2.isEmpty());
-        assertTrue(u2FollowsU1.isEmpty());
+        // both followedBy and follows counters should be 0
+        assertEquals(0, u1ProfileInfo.getFollowers());
+        assertEquals(0, u1ProfileInfo.getFollows());
 
-        // u1 follows u2
-        userRepository.followUserWithUuid(u1.getUuid(), u2.getUuid());
-        // u2 follows u1
+        // u2 and u3 follow u1
         userRepository.followUserWithUuid(u2.getUuid(), u1.getUuid());
+        userRepository.followUserWithUuid(u3.getUuid(), u1.getUuid());
 
-        u1FollowsU2 = userRepository.checkIfUserWithUuidFollows(u1.getUuid(), u2.getUuid());
-        u2FollowsU1 = userRepository.checkIfUserWithUuidFollows(u2.getUuid(), u1.getUuid());
+        // u1 follows u3
+        userRepository.followUserWithUuid(u1.getUuid(), u3.getUuid());
 
-        assertTrue(u1FollowsU2.isPresent());
-        assertTrue(u2FollowsU1.isPresent());
+        // update profile info
+        u1ProfileInfo = userRepository.getUserProfileInfo(u1.getUuid()).orElse(null);
+
+        // u1 is followed by two people (u2, u3) and follows one user (u3)
+        assertEquals(2, u1ProfileInfo.getFollowers());
+        assertEquals(1, u1ProfileInfo.getFollows());
     }
 
     @Test
@@ -237,8 +378,8 @@ public class UserRepositoryTests {
         User u1 = userRepository.findByUsername("user1").orElse(null);
 
         // when
-        List<UserBlobb> recent = userRepository
-                .findRecentBlobbsOfUser(u1.getUuid(), 0L, 10L);
+        List<UserBlobb> recent = pageOf(userRepository
+                .findRecentBlobbsOfUser(u1.getUuid(), 0L, 10L), UserBlobb::getUuid);
 
         // then
         assertEquals(0, recent.size());
@@ -265,8 +406,8 @@ public class UserRepositoryTests {
         blobbRepository.save(b3);
 
         // when
-        List<UserBlobb> recent = userRepository
-                .findRecentBlobbsOfUser(u1.getUuid(), 0L, 10L);
+        List<UserBlobb> recent = pageOf(userRepository
+                .findRecentBlobbsOfUser(u1.getUuid(), 0L, 10L), UserBlobb::getUuid);
 
         // then
         List<String> recentContents = recent.stream().map(UserBlobb::getContent).collect(Collectors.toList());
@@ -280,6 +421,23 @@ public class UserRepositoryTests {
         }
     }
 
+    @Test
+    public void findRecentBlobbsOfUser_DoesNotContainDeletedBlobbs() {
+        User u1 = userRepository.findByUsername("user1").orElse(null);
+
+        Blobb b1 = blobbRepository.save(new Blobb(u1, "content1"));
+        Blobb b2 = blobbRepository.save(new Blobb(u1, "content2"));
+        blobbRepository.markBlobbWithUuidAsDeleted(b2.getUuid());
+
+        // when
+        List<UserBlobb> recent = pageOf(userRepository
+                .findRecentBlobbsOfUser(u1.getUuid(), 0L, 10L), UserBlobb::getUuid);
+
+        // then
+        assertEquals(1, recent.size());
+        assertEquals(b1.getUuid(), recent.get(0).getUuid());
+    }
+
     @Test
     public void findRecentBlobbsOfUser_LimitsNumberOfResults() {
         User u1 = userRepository.findByUsername("user1").orElse(null);
@@ -301,8 +459,8 @@ public class UserRepositoryTests {
         blobbRepository.save(b3);
 
         // when
-        List<UserBlobb> recent = userRepository
-                .findRecentBlobbsOfUser(u1.getUuid(), 0L, 1L);
+        List<UserBlobb> recent = pageOf(userRepository
+                .findRecentBlobbsOfUser(u1.getUuid(), 0L, 1L), UserBlobb::getUuid);
 
         // then
         List<String> recentContents = recent.stream().map(UserBlobb::getContent).collect(Collectors.toList());
@@ -337,8 +495,8 @@ public class UserRepositoryTests {
         blobbRepository.save(b3);
 
         // when
-        List<UserBlobb> recent = userRepository
-                .findRecentBlobbsOfUser(u1.getUuid(), 1L, 5L);
+        List<UserBlobb> recent = pageOf(userRepository
+                .findRecentBlobbsOfUser(u1.getUuid(), 1L, 5L), UserBlobb::getUuid);
         // then
         List<String> recentContents = recent.stream().map(UserBlobb::getContent).collect(Collectors.toList());
 
@@ -351,6 +509,35 @@ public class UserRepositoryTests {
         }
     }
 
+    @Test
+    public void findRecentBlobbsOfUser_AfterCursor_ReturnsBlobbsOlderThanCursor() {
+        User u1 = userRepository.findByUsername("user1").orElse(null);
+
+        Date now = new Date();
+        Date hourAgo = Date.from(Instant.now().minus(1, HOURS));
+        Date twoHoursAgo = Date.from(Instant.now().minus(2, HOURS));
+
+        // three u1 blobbs
+        Blobb b1 = new Blobb(u1, "content1");
+        b1.setCreationDate(now);
+        Blobb b2 = new Blobb(u1, "content2");
+        b2.setCreationDate(hourAgo);
+        Blobb b3 = new Blobb(u1, "content3");
+        b3.setCreationDate(twoHoursAgo);
+
+        blobbRepository.save(b1);
+        blobbRepository.save(b2);
+        blobbRepository.save(b3);
+
+        // when
+        List<UserBlobb> recent = pageOf(userRepository
+                .findRecentBlobbsOfUser_AfterCursor(u1.getUuid(), b1.getCreationDate(), b1.getUuid(), 5L), UserBlobb::getUuid);
+
+        // then
+        List<String> recentContents = recent.stream().map(UserBlobb::getContent).collect(Collectors.toList());
+        assertEquals(List.of("content2", "content3"), recentContents);
+    }
+
     @Test
     public void findRecentBlobbsOfUser_DoesNotShowBlobbsOfOtherUsers() {
         User u1 = userRepository.findByUsername("user1").orElse(null);
@@ -361,10 +548,73 @@ public class UserRepositoryTests {
         blobbRepository.save(b1);
 
         // when
-        List<UserBlobb> recent = userRepository
-                .findRecentBlobbsOfUser(u2.getUuid(), 0L, 5L);
+        List<UserBlobb> recent = pageOf(userRepository
+                .findRecentBlobbsOfUser(u2.getUuid(), 0L, 5L), UserBlobb::getUuid);
 
         // then
         assertEquals(0, recent.size());
     }
+
+    @Test
+    public void findAllFollowEdges_ReturnsAllFollowRelationships() {
+        User u1 = userRepository.findByUsername("user1").orElse(null);
+        User u2 = userRepository.findByUsername("user2").orElse(null);
+        User u3 = userRepository.findByUsername("user3").orElse(null);
+
+        // given
+        userRepository.followUserWithUuid(u1.getUuid(), u2.getUuid());
+        userRepository.followUserWithUuid(u3.getUuid(), u1.getUuid());
+
+        // when
+        List<FollowEdge> edges = userRepository.findAllFollowEdges();
+
+        // then
+        Set<String> pairs = edges
+                .stream()
+                .map(e -> e.getFollower() + "->" + e.getFollowed())
+                .collect(Collectors.toSet());
+        assertEquals(Set.of(
+                u1.getUuid() + "->" + u1.getUuid(),
+                u2.getUuid() + "->" + u2.getUuid(),
+                u3.getUuid() + "->" + u3.getUuid(),
+                u1.getUuid() + "->" + u2.getUuid(),
+                u3.getUuid() + "->" + u1.getUuid()
+        ), pairs);
+    }
+
+    @Test
+    public void findUserWithUuidAndAllWithUuids_ReturnsOnlyRequestedUsers() {
+        User u1 = userRepository.findByUsername("user1").orElse(null);
+        User u2 = userRepository.findByUsername("user2").orElse(null);
+        User u3 = userRepository.findByUsername("user3").orElse(null);
+
+        // when
+        List<User> users = userRepository
+                .findUserWithUuidAndAllWithUuids(u2.getUuid(), List.of(u1.getUuid(), u3.getUuid(), UUID.randomUUID()));
+
+        // then
+        Set<String> usernames = users.stream().map(User::getUsername).collect(Collectors.toSet());
+        assertEquals(Set.of("user1", "user2", "user3"), usernames);
+    }
+
+    @Test
+    public void findUserWithUuidAndAllWithUuids_DoesNotReturnMissingUser() {
+        User u1 = userRepository.findByUsername("user1").orElse(null);
+
+        // when
+        List<User> users = userRepository.findUserWithUuidAndAllWithUuids(UUID.randomUUID(), List.of(u1.getUuid()));
+
+        // then
+        assertEquals(1, users.size());
+        assertEquals("user1", users.get(0).getUsername());
+    }
+
+    @Test
+    public void findRecentBlobbsOfUser_HasNoMarkerWhenUserDoesntExist() {
+        // when
+        List<UserBlobb> recent = userRepository.findRecentBlobbsOfUser(UUID.randomUUID(), 0L, 10L);
+
+        // then
+        assertTrue(ExistenceMarker.strip(recent, UserBlobb::getUuid).isEmpty());
+    }
 }
@@ -1,17 +1,23 @@
 package ml.echelon133.blobb.user;
 
+import ml.echelon133.blobb.feed.TimelineStore;
+import ml.echelon133.blobb.pagination.Cursor;
+import ml.echelon133.blobb.security.PrincipalCache;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -20,6 +26,15 @@ public class UserServiceTests {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private TimelineStore timelineStore;
+
+    @Mock
+    private PrincipalCache principalCache;
+
+    @Mock
+    private FollowGraph followGraph;
+
     @InjectMocks
     private UserService userService;
 
@@ -29,13 +44,23 @@ public class UserServiceTests {
         return u;
     }
 
+    // users whose follows or followers are listed are read together with users on the list
+    private List<User> withListedUser(UUID uuid, List<User> users) {
+        User listed = getTestUser();
+        listed.setUuid(uuid);
+        List<User> all = new ArrayList<>(users);
+        all.add(listed);
+        return all;
+    }
+
     @Test
     public void followUserWithUuid_ThrowsWhenUserDoesntExist() {
         User user = getTestUser();
         UUID u2Uuid = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(u2Uuid)).willReturn(false);
+        given(userRepository.followUserWithUuid(user.getUuid(), u2Uuid))
+                .willReturn(new FollowResult(false, 0L, false));
 
         // when
         String message = assertThrows(UserDoesntExistException.class, () -> {
@@ -43,6 +68,7 @@ public class UserServiceTests {
         }).getMessage();
 
         assertEquals(String.format("User with UUID %s doesn't exist", u2Uuid), message);
+        then(followGraph).should(never()).addFollow(user.getUuid(), u2Uuid);
     }
 
     @Test
@@ -51,15 +77,17 @@ public class UserServiceTests {
         UUID u2Uuid = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(u2Uuid)).willReturn(true);
-        given(userRepository.checkIfUserWithUuidFollows(user.getUuid(), u2Uuid)).willReturn(Optional.empty());
-        given(userRepository.followUserWithUuid(user.getUuid(), u2Uuid)).willReturn(Optional.of(1L));
+        given(userRepository.followUserWithUuid(user.getUuid(), u2Uuid))
+                .willReturn(new FollowResult(true, 1L, true));
 
         // when
         boolean result = userService.followUserWithUuid(user, u2Uuid);
 
         // then
         assertTrue(result);
+        then(userRepository).should(never()).existsById(u2Uuid);
+        then(followGraph).should().addFollow(user.getUuid(), u2Uuid);
+        then(timelineStore).should().invalidate(user.getUuid());
     }
 
     @Test
@@ -68,14 +96,15 @@ public class UserServiceTests {
         UUID u2Uuid = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(u2Uuid)).willReturn(true);
-        given(userRepository.checkIfUserWithUuidFollows(user.getUuid(), u2Uuid)).willReturn(Optional.of(1L));
+        given(userRepository.followUserWithUuid(user.getUuid(), u2Uuid))
+                .willReturn(new FollowResult(true, 0L, true));
 
         // when
         boolean result = userService.followUserWithUuid(user, u2Uuid);
 
         // then
         assertTrue(result);
+        then(timelineStore).should(never()).invalidate(user.getUuid());
     }
 
     @Test
@@ -84,31 +113,28 @@ public class UserServiceTests {
         UUID u2Uuid = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(u2Uuid)).willReturn(true);
-        given(userRepository.checkIfUserWithUuidFollows(user.getUuid(), u2Uuid)).willReturn(Optional.empty());
-        given(userRepository.followUserWithUuid(user.getUuid(), u2Uuid)).willReturn(Optional.empty());
+        given(userRepository.followUserWithUuid(user.getUuid(), u2Uuid))
+                .willReturn(new FollowResult(true, 0L, false));
 
         // when
         boolean result = userService.followUserWithUuid(user, u2Uuid);
 
         // then
         assertFalse(result);
+        then(followGraph).should(never()).addFollow(user.getUuid(), u2Uuid);
     }
 
     @Test
     public void followUserWithUuid_ThrowsWhenUserFollowsThemselves() {
         User user = getTestUser();
 
-        // given
-        given(userRepository.existsById(user.getUuid())).willReturn(true);
-        given(userRepository.checkIfUserWithUuidFollows(user.getUuid(), user.getUuid())).willReturn(Optional.empty());
-
         // then
         String message = assertThrows(IllegalArgumentException.class, () -> {
             userService.followUserWithUuid(user, user.getUuid());
         }).getMessage();
 
         assertEquals("Users cannot follow themselves.", message);
+        then(userRepository).should(never()).followUserWithUuid(user.getUuid(), user.getUuid());
     }
 
     @Test
@@ -117,7 +143,8 @@ public class UserServiceTests {
         UUID u2Uuid = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(u2Uuid)).willReturn(false);
+        given(userRepository.unfollowUserWithUuid(user.getUuid(), u2Uuid))
+                .willReturn(new FollowResult(false, 0L, false));
 
         // when
         String message = assertThrows(UserDoesntExistException.class, () -> {
@@ -134,14 +161,33 @@ public class UserServiceTests {
         UUID u2Uuid = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(u2Uuid)).willReturn(true);
-        given(userRepository.checkIfUserWithUuidFollows(user.getUuid(), u2Uuid)).willReturn(Optional.empty());
+        given(userRepository.unfollowUserWithUuid(user.getUuid(), u2Uuid))
+                .willReturn(new FollowResult(true, 1L, false));
+
+        // when
+        boolean result = userService.unfollowUserWithUuid(user, u2Uuid);
+
+        // then
+        assertTrue(result);
+        then(followGraph).should().removeFollow(user.getUuid(), u2Uuid);
+        then(timelineStore).should().invalidate(user.getUuid());
+    }
+
+    @Test
+    public void unfollowUserWithUuid_WhenUserDidNotFollow() throws Exception {
+        User user = getTestUser();
+        UUID u2Uuid = UUID.randomUUID();
+
+        // given
+        given(userRepository.unfollowUserWithUuid(user.getUuid(), u2Uuid))
+                .willReturn(new FollowResult(true, 0L, false));
 
         // when
         boolean result = userService.unfollowUserWithUuid(user, u2Uuid);
 
         // then
         assertTrue(result);
+        then(timelineStore).should(never()).invalidate(user.getUuid());
     }
 
     @Test
@@ -150,14 +196,15 @@ public class UserServiceTests {
         UUID u2Uuid = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(u2Uuid)).willReturn(true);
-        given(userRepository.checkIfUserWithUuidFollows(user.getUuid(), u2Uuid)).willReturn(Optional.of(1L));
+        given(userRepository.unfollowUserWithUuid(user.getUuid(), u2Uuid))
+                .willReturn(new FollowResult(true, 0L, true));
 
         // when
         boolean result = userService.unfollowUserWithUuid(user, u2Uuid);
 
         // then
         assertFalse(result);
+        then(followGraph).should(never()).removeFollow(user.getUuid(), u2Uuid);
     }
 
     @Test
@@ -165,7 +212,7 @@ public class UserServiceTests {
         UUID uUuid = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(uUuid)).willReturn(false);
+        given(userRepository.findUserWithUuidAndAllWithUuids(uUuid, List.of())).willReturn(List.of());
 
         // when
         String message = assertThrows(UserDoesntExistException.class, () -> {
@@ -180,9 +227,6 @@ public class UserServiceTests {
     public void findAllFollowsOfUser_ThrowsWhenSkipAndLimitArgumentsNegative() {
         UUID uUuid = UUID.randomUUID();
 
-        // given
-        given(userRepository.existsById(uUuid)).willReturn(true);
-
         // then
         Exception ex = assertThrows(IllegalArgumentException.class, () -> {
             userService.findAllFollowsOfUser(uUuid, -1L, 0L);
@@ -202,8 +246,9 @@ public class UserServiceTests {
         UUID uUuid = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(uUuid)).willReturn(true);
-        given(userRepository.findAllFollowsOfUserWithUuid(uUuid, 0L, 5L)).willReturn(List.of());
+        given(followGraph.findFollows(uUuid, 0L, 5L)).willReturn(List.of());
+        given(userRepository.findUserWithUuidAndAllWithUuids(uUuid, List.of()))
+                .willReturn(withListedUser(uUuid, List.of()));
 
         // when
         List<User> followedBy = userService.findAllFollowsOfUser(uUuid, 0L, 5L);
@@ -216,17 +261,55 @@ public class UserServiceTests {
     public void findAllFollowsOfUser_ReturnsListOfFollowers() throws Exception {
         UUID uUuid = UUID.randomUUID();
 
-        List<User> mockList = List.of(new User(), new User(), new User());
+        List<User> mockList = List.of(getTestUser(), getTestUser(), getTestUser());
+        List<UUID> uuids = List.of(mockList.get(2).getUuid(), mockList.get(0).getUuid(), mockList.get(1).getUuid());
 
         // given
-        given(userRepository.existsById(uUuid)).willReturn(true);
-        given(userRepository.findAllFollowsOfUserWithUuid(uUuid, 0L, 5L)).willReturn(mockList);
+        given(followGraph.findFollows(uUuid, 0L, 5L)).willReturn(uuids);
+        given(userRepository.findUserWithUuidAndAllWithUuids(uUuid, uuids))
+                .willReturn(withListedUser(uUuid, mockList));
 
         // when
         List<User> followedBy = userService.findAllFollowsOfUser(uUuid, 0L, 5L);
 
         // then
         assertEquals(3, followedBy.size());
+        // users are returned in the same order as their uuids have been read from the follow graph
+        assertEquals(uuids.get(0), followedBy.get(0).getUuid());
+        assertEquals(uuids.get(1), followedBy.get(1).getUuid());
+        assertEquals(uuids.get(2), followedBy.get(2).getUuid());
+    }
+
+    @Test
+    public void findAllFollowsOfUser_WithCursor_ThrowsWhenLimitNegative() {
+        UUID uUuid = UUID.randomUUID();
+
+        // then
+        Exception ex = assertThrows(IllegalArgumentException.class, () -> {
+            userService.findAllFollowsOfUser(uUuid, new Cursor(UUID.randomUUID()), -1L);
+        });
+
+        assertEquals("Invalid limit value.", ex.getMessage());
+    }
+
+    @Test
+    public void findAllFollowsOfUser_WithCursor_ReturnsListOfFollowers() throws Exception {
+        UUID uUuid = UUID.randomUUID();
+        Cursor cursor = new Cursor(UUID.randomUUID());
+
+        List<User> mockList = List.of(getTestUser(), getTestUser());
+        List<UUID> uuids = List.of(mockList.get(0).getUuid(), mockList.get(1).getUuid());
+
+        // given
+        given(followGraph.findFollows_AfterCursor(uUuid, cursor.getUuid(), 5L)).willReturn(uuids);
+        given(userRepository.findUserWithUuidAndAllWithUuids(uUuid, uuids))
+                .willReturn(withListedUser(uUuid, mockList));
+
+        // when
+        List<User> followedBy = userService.findAllFollowsOfUser(uUuid, cursor, 5L);
+
+        // then
+        assertEquals(2, followedBy.size());
     }
 
     @Test
@@ -234,7 +317,7 @@ public class UserServiceTests {
         UUID uUuid = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(uUuid)).willReturn(false);
+        given(userRepository.findUserWithUuidAndAllWithUuids(uUuid, List.of())).willReturn(List.of());
 
         // when
         String message = assertThrows(UserDoesntExistException.class, () -> {
@@ -249,9 +332,6 @@ public class UserServiceTests {
     public void findAllFollowersOfUser_ThrowsWhenSkipAndLimitArgumentsNegative() {
         UUID uUuid = UUID.randomUUID();
 
-        // given
-        given(userRepository.existsById(uUuid)).willReturn(true);
-
         // then
         Exception ex = assertThrows(IllegalArgumentException.class, () -> {
             userService.findAllFollowersOfUser(uUuid, -1L, 0L);
@@ -271,10 +351,12 @@ public class UserServiceTests {
         UUID uUuid = UUID.randomUUID();
 
         List<User> mockList = List.of(getTestUser(), getTestUser(), getTestUser());
+        List<UUID> uuids = List.of(mockList.get(0).getUuid(), mockList.get(1).getUuid(), mockList.get(2).getUuid());
 
         // given
-        given(userRepository.existsById(uUuid)).willReturn(true);
-        given(userRepository.findAllFollowersOfUserWithUuid(uUuid, 0L, 5L)).willReturn(mockList);
+        given(followGraph.findFollowers(uUuid, 0L, 5L)).willReturn(uuids);
+        given(userRepository.findUserWithUuidAndAllWithUuids(uUuid, uuids))
+                .willReturn(withListedUser(uUuid, mockList));
 
         // when
         List<User> following = userService.findAllFollowersOfUser(uUuid, 0L, 5L);
@@ -288,8 +370,9 @@ public class UserServiceTests {
         UUID uUuid = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(uUuid)).willReturn(true);
-        given(userRepository.findAllFollowersOfUserWithUuid(uUuid, 0L, 5L)).willReturn(List.of());
+        given(followGraph.findFollowers(uUuid, 0L, 5L)).willReturn(List.of());
+        given(userRepository.findUserWithUuidAndAllWithUuids(uUuid, List.of()))
+                .willReturn(withListedUser(uUuid, List.of()));
 
         // when
         List<User> following = userService.findAllFollowersOfUser(uUuid, 0L, 5L);
@@ -303,7 +386,7 @@ public class UserServiceTests {
         UUID uUuid = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(uUuid)).willReturn(false);
+        given(userRepository.getUserProfileInfo(uUuid)).willReturn(Optional.empty());
 
         // then
         String message = assertThrows(UserDoesntExistException.class, () -> {
@@ -314,34 +397,15 @@ public class UserServiceTests {
     }
 
     @Test
-    public void getUserProfileInfo_ReturnsPlaceholderObjectWhenFails() throws Exception {
+    public void getUserProfileInfo_ReturnsStoredCounters() throws Exception {
         UUID uUuid = UUID.randomUUID();
+        UserProfileInfo stored = new UserProfileInfo();
+        stored.setUuid(uUuid);
+        stored.setFollows(20L);
+        stored.setFollowers(10L);
 
         // given
-        given(userRepository.existsById(uUuid)).willReturn(true);
-        given(userRepository.getUserProfileInfo(uUuid)).willReturn(Optional.empty());
-
-        // when
-        UserProfileInfo profileInfo = userService.getUserProfileInfo(uUuid);
-
-        // then
-        assertNull(profileInfo.getUuid());
-        assertNull(profileInfo.getFollows());
-        assertNull(profileInfo.getFollowers());
-    }
-
-    @Test
-    public void getUserProfileInfo_ReturnsObject() throws Exception {
-        UUID uUuid = UUID.randomUUID();
-
-        UserProfileInfo mockProfileInfo = new UserProfileInfo();
-        mockProfileInfo.setUuid(uUuid);
-        mockProfileInfo.setFollowers(10L);
-        mockProfileInfo.setFollows(20L);
-
-        // given
-        given(userRepository.existsById(uUuid)).willReturn(true);
-        given(userRepository.getUserProfileInfo(uUuid)).willReturn(Optional.of(mockProfileInfo));
+        given(userRepository.getUserProfileInfo(uUuid)).willReturn(Optional.of(stored));
 
         // when
         UserProfileInfo profileInfo = userService.getUserProfileInfo(uUuid);
@@ -350,6 +414,7 @@ public class UserServiceTests {
         assertEquals(uUuid, profileInfo.getUuid());
         assertEquals(20L, profileInfo.getFollows());
         assertEquals(10L, profileInfo.getFollowers());
+        then(userRepository).should(never()).existsById(uUuid);
     }
 
     @Test
@@ -357,22 +422,6 @@ public class UserServiceTests {
         UUID uuid = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(uuid)).willReturn(false);
-
-        // then
-        String message = assertThrows(UserDoesntExistException.class, () -> {
-            userService.findByUuid(uuid);
-        }).getMessage();
-
-        assertEquals(String.format("User with UUID %s doesn't exist", uuid), message);
-    }
-
-    @Test
-    public void findByUuid_ThrowsWhenDatabaseFails() {
-        UUID uuid = UUID.randomUUID();
-
-        // given
-        given(userRepository.existsById(uuid)).willReturn(true);
         given(userRepository.findById(uuid)).willReturn(Optional.empty());
 
         // then
@@ -388,7 +437,6 @@ public class UserServiceTests {
         User user = getTestUser();
 
         // given
-        given(userRepository.existsById(user.getUuid())).willReturn(true);
         given(userRepository.findById(user.getUuid())).willReturn(Optional.of(user));
 
         // when
@@ -421,7 +469,7 @@ public class UserServiceTests {
 
         // given
         given(userRepository.existsById(uuid)).willReturn(true);
-        given(userRepository.checkIfUserWithUuidFollows(user.getUuid(), uuid)).willReturn(Optional.empty());
+        given(followGraph.follows(user.getUuid(), uuid)).willReturn(false);
 
         // when
         boolean result = userService.checkIfUserFollows(user, uuid);
@@ -437,7 +485,7 @@ public class UserServiceTests {
 
         // given
         given(userRepository.existsById(uuid)).willReturn(true);
-        given(userRepository.checkIfUserWithUuidFollows(user.getUuid(), uuid)).willReturn(Optional.of(1L));
+        given(followGraph.follows(user.getUuid(), uuid)).willReturn(true);
 
         // when
         boolean result = userService.checkIfUserFollows(user, uuid);
@@ -481,7 +529,7 @@ public class UserServiceTests {
         UUID uUuid = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(uUuid)).willReturn(false);
+        given(userRepository.findRecentBlobbsOfUser(uUuid, 0L, 5L)).willReturn(List.of());
 
         // when
         String message = assertThrows(UserDoesntExistException.class, () -> {
@@ -496,9 +544,6 @@ public class UserServiceTests {
     public void findRecentBlobbsOfUser_ThrowsWhenSkipAndLimitArgumentsNegative() {
         UUID uUuid = UUID.randomUUID();
 
-        // given
-        given(userRepository.existsById(uUuid)).willReturn(true);
-
         // then
         Exception ex = assertThrows(IllegalArgumentException.class, () -> {
             userService.findRecentBlobbsOfUser(uUuid, -1L, 0L);
@@ -517,10 +562,14 @@ public class UserServiceTests {
     public void findRecentBlobbsOfUser_ReturnsObjects() throws Exception {
         UUID uUuid = UUID.randomUUID();
 
-        List<UserBlobb> recent = List.of(new UserBlobb(), new UserBlobb());
+        // recent blobbs are followed by the existence marker of the user
+        UserBlobb b1 = new UserBlobb();
+        b1.setUuid(UUID.randomUUID());
+        UserBlobb b2 = new UserBlobb();
+        b2.setUuid(UUID.randomUUID());
+        List<UserBlobb> recent = List.of(b1, b2, new UserBlobb());
 
         // given
-        given(userRepository.existsById(uUuid)).willReturn(true);
         given(userRepository.findRecentBlobbsOfUser(uUuid, 0L, 5L))
                 .willReturn(recent);
 
@@ -550,5 +599,43 @@ public class UserServiceTests {
         assertEquals(dto.getDisplayedUsername(), updated.getDisplayedUsername());
         assertEquals(dto.getDescription(), updated.getDescription());
         assertEquals(dto.getAviURL(), updated.getAviURL());
+        then(principalCache).should().invalidate(testUser.getUsername());
+    }
+
+    @Test
+    public void updateUser_SavesUserReadFromDatabase() {
+        // principal of a request authenticated with a token only has the uuid and the username
+        User principal = new User("test", null, null, null);
+        principal.setUuid(UUID.randomUUID());
+        User dbUser = new User("test", "test@test.com", "password", "");
+        dbUser.setUuid(principal.getUuid());
+
+        UserDetailsDto dto = new UserDetailsDto();
+        dto.setDisplayedUsername("My displayed username");
+        dto.setDescription("This is my description");
+        dto.setAviURL("");
+
+        // given
+        given(userRepository.findById(principal.getUuid())).willReturn(Optional.of(dbUser));
+        given(userRepository.save(dbUser)).willReturn(dbUser);
+
+        // when
+        User updated = userService.updateUser(principal, dto);
+
+        // then
+        assertEquals("test@test.com", updated.getEmail());
+        assertEquals(dto.getDisplayedUsername(), updated.getDisplayedUsername());
+    }
+
+    @Test
+    public void findRecentBlobbsOfUser_WithCursor_ThrowsWhenCursorHasNoDate() {
+        UUID uUuid = UUID.randomUUID();
+
+        // then
+        Exception ex = assertThrows(IllegalArgumentException.class, () -> {
+            userService.findRecentBlobbsOfUser(uUuid, new Cursor(UUID.randomUUID()), 5L);
+        });
+
+        assertEquals("Invalid cursor value.", ex.getMessage());
     }
 }